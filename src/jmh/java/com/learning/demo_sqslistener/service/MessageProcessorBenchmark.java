@@ -0,0 +1,109 @@
+package com.learning.demo_sqslistener.service;
+
+import com.amazonaws.services.sqs.model.Message;
+import com.learning.demo_sqslistener.TestComponents;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro-benchmarks of the {@link MessageProcessor} hot path: validation, encoding and sanitization,
+ * JSON validation and the full {@code processMessage} call against an in-process HTTP stub.
+ * <p>
+ * Run with {@code mvn -Pjmh test-compile exec:exec}; the GC profiler reports the allocation
+ * rate per operation ({@code gc.alloc.rate.norm}). Override the JMH arguments with
+ * {@code -Djmh.args="..."}.
+ *
+ * @author demo-sqslistener
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MessageProcessorBenchmark {
+
+    /** Payload size in characters, up to {@link MessageProcessor#MAX_MESSAGE_SIZE} */
+    @Param({"256", "2048", "9500"})
+    int size;
+
+    /** clean: plain JSON; malicious: JSON text fields carrying script and markup tags */
+    @Param({"clean", "malicious"})
+    String kind;
+
+    private MessageProcessor processor;
+    private Message message;
+    private String body;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        processor = TestComponents.messageProcessor("http://benchmark.local/api/products");
+        RestTemplate stub = new RestTemplate((uri, method) -> {
+            MockClientHttpRequest request = new MockClientHttpRequest(method, uri);
+            request.setResponse(new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+            return request;
+        });
+        ReflectionTestUtils.setField(processor, "restTemplate", stub);
+        body = payload(size, "malicious".equals(kind));
+        message = new Message().withMessageId("benchmark-message").withBody(body);
+    }
+
+    @Benchmark
+    public Message validateMessage() {
+        processor.validateMessage(message);
+        return message;
+    }
+
+    @Benchmark
+    public Utf8Payload encodeAndSanitize() {
+        return Utf8Payload.encode(body, MessageProcessor.MAX_MESSAGE_SIZE).sanitize();
+    }
+
+    @Benchmark
+    public Utf8Payload validateJson() {
+        Utf8Payload payload = Utf8Payload.encode(body, MessageProcessor.MAX_MESSAGE_SIZE);
+        processor.validateJsonFormat(payload);
+        return payload;
+    }
+
+    @Benchmark
+    public Message processMessage() {
+        processor.processMessage(message);
+        return message;
+    }
+
+    /**
+     * Builds a product-like JSON document of exactly {@code size} characters. Malicious
+     * payloads carry a script block and markup inside the description field.
+     */
+    static String payload(int size, boolean malicious) {
+        String head = "{\"name\":\"Benchmark Product\",\"price\":99.99,\"quantity\":10,\"description\":\"";
+        String tail = "\"}";
+        String filler = malicious
+            ? "<script>alert(document.cookie)</script><b>bold</b> text <i>markup</i> "
+            : "plain product description text without markup ";
+        StringBuilder json = new StringBuilder(size).append(head);
+        int room = size - head.length() - tail.length();
+        while (json.length() - head.length() < room) {
+            json.append(filler, 0, Math.min(filler.length(), room - (json.length() - head.length())));
+        }
+        return json.append(tail).toString();
+    }
+}
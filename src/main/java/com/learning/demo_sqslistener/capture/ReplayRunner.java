@@ -0,0 +1,45 @@
+package com.learning.demo_sqslistener.capture;
+
+import com.learning.demo_sqslistener.service.MessageProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * Replays a traffic capture through the application's {@link MessageProcessor} once the
+ * application has started. Active with the {@code replay} profile, usually together with
+ * {@code local-sqs} so the listener does not need a real queue.
+ *
+ * @author demo-sqslistener
+ */
+@Component
+@Profile("replay")
+public class ReplayRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplayRunner.class);
+
+    private final TrafficReplayer replayer;
+    private final Path directory;
+    private final double speed;
+
+    public ReplayRunner(MessageProcessor messageProcessor,
+                        @Value("${capture.replay.dir:${capture.dir:data/capture}}") String directory,
+                        @Value("${capture.replay.speed:1.0}") double speed,
+                        @Value("${capture.segment-bytes:16777216}") int segmentBytes) {
+        this.replayer = new TrafficReplayer(messageProcessor, segmentBytes);
+        this.directory = Path.of(directory);
+        this.speed = speed;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        logger.info("Replaying capture from {} at speed {}", directory, speed);
+        replayer.replay(directory, speed);
+    }
+}
@@ -0,0 +1,231 @@
+package com.learning.demo_sqslistener.capture;
+
+import com.amazonaws.services.sqs.model.Message;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.learning.demo_sqslistener.exception.ErrorCodes;
+import com.learning.demo_sqslistener.exception.SQSProcessingException;
+import com.learning.demo_sqslistener.journal.JournalRecord;
+import com.learning.demo_sqslistener.journal.SegmentedJournal;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records a sample of the messages received by {@code SQSListener} to a {@link SegmentedJournal},
+ * so that a production message mix can be replayed locally with {@link TrafficReplayer}.
+ * <p>
+ * Each record holds the wall-clock receive time in nanoseconds since the epoch, the message ID
+ * and the body. The time is anchored to the wall clock once and advanced with the monotonic clock,
+ * so gaps within a run are exact and records appended after a restart still sort after the
+ * earlier ones. Configured JSON fields are redacted by replacing their text with {@code *} of the same
+ * length, so payload sizes stay realistic; bodies that are not JSON are masked completely when
+ * redaction is on. Appends are not awaited or forced to disk, so capturing does not slow down
+ * the listener, and capturing stops once the configured number of messages is reached.
+ *
+ * @author demo-sqslistener
+ */
+@Service
+public class TrafficCapture {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrafficCapture.class);
+    static final String JOURNAL_NAME = "capture";
+    private static final byte FORMAT_VERSION = 2;
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final boolean enabled;
+    private final double sampleRate;
+    private final Set<String> redactFields;
+    private final long maxMessages;
+    private final SegmentedJournal journal;
+    private final long startNanos = System.nanoTime();
+    private final long startEpochNanos = epochNanos(Instant.now());
+    private final AtomicLong captured = new AtomicLong();
+
+    public TrafficCapture(
+            @Value("${capture.enabled:false}") boolean enabled,
+            @Value("${capture.dir:data/capture}") String directory,
+            @Value("${capture.sample-rate:1.0}") double sampleRate,
+            @Value("${capture.redact-fields:}") List<String> redactFields,
+            @Value("${capture.max-messages:100000}") long maxMessages,
+            @Value("${capture.segment-bytes:16777216}") int segmentBytes) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("capture.sample-rate must be between 0 and 1");
+        }
+        this.enabled = enabled;
+        this.sampleRate = sampleRate;
+        this.redactFields = Set.copyOf(redactFields.stream().filter(f -> !f.isBlank()).map(String::trim).toList());
+        this.maxMessages = maxMessages;
+        if (!enabled) {
+            this.journal = null;
+            return;
+        }
+        Path path = Path.of(directory);
+        try {
+            this.journal = new SegmentedJournal(path, JOURNAL_NAME, segmentBytes, false);
+        } catch (IOException e) {
+            throw new SQSProcessingException(ErrorCodes.SYSTEM_ERROR,
+                String.format("Unable to open capture journal in %s", path), e);
+        }
+        logger.info("Capturing {}% of received messages to {} (redacted fields: {})",
+            sampleRate * 100, path, this.redactFields);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getCapturedCount() {
+        return captured.get();
+    }
+
+    /**
+     * Records a received message if it is picked by the sample. Never throws; a message that
+     * cannot be captured is only logged.
+     *
+     * @param message message just received from SQS
+     */
+    public void capture(Message message) {
+        if (!enabled || message.getBody() == null) {
+            return;
+        }
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        long count = captured.incrementAndGet();
+        if (count > maxMessages) {
+            if (count == maxMessages + 1) {
+                logger.info("Captured {} messages, capture stopped", maxMessages);
+            }
+            return;
+        }
+        try {
+            journal.append(encode(new CapturedMessage(startEpochNanos + (System.nanoTime() - startNanos),
+                message.getMessageId(), redact(message.getBody()))));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not capture message {}: {}", message.getMessageId(), e.getMessage());
+        }
+    }
+
+    private static long epochNanos(Instant instant) {
+        return TimeUnit.SECONDS.toNanos(instant.getEpochSecond()) + instant.getNano();
+    }
+
+    /**
+     * Applies the configured redaction to a message body.
+     *
+     * @param body message body
+     * @return the body with the configured fields masked
+     */
+    String redact(String body) {
+        if (redactFields.isEmpty()) {
+            return body;
+        }
+        try {
+            JsonNode root = objectMapper.readTree(body);
+            if (root == null || !root.isContainerNode()) {
+                return mask(body);
+            }
+            redactNode(root);
+            return objectMapper.writeValueAsString(root);
+        } catch (JsonProcessingException e) {
+            return mask(body);
+        }
+    }
+
+    private void redactNode(JsonNode node) {
+        if (node instanceof ObjectNode object) {
+            Iterator<Map.Entry<String, JsonNode>> fields = object.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (redactFields.contains(field.getKey()) && field.getValue().isValueNode()) {
+                    field.setValue(TextNode.valueOf(mask(field.getValue().asText())));
+                } else {
+                    redactNode(field.getValue());
+                }
+            }
+        } else if (node instanceof ArrayNode array) {
+            array.forEach(this::redactNode);
+        }
+    }
+
+    private static String mask(String value) {
+        return "*".repeat(value.length());
+    }
+
+    static byte[] encode(CapturedMessage message) throws IOException {
+        byte[] id = message.messageId() != null ? message.messageId().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        byte[] body = message.body().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(17 + id.length + body.length);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(FORMAT_VERSION);
+        out.writeLong(message.receivedEpochNanos());
+        out.writeShort(id.length);
+        out.write(id);
+        out.writeInt(body.length);
+        out.write(body);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a capture record.
+     *
+     * @param record record read from a capture journal
+     * @return the captured message
+     * @throws IOException if the record is not a capture record of a known version
+     */
+    public static CapturedMessage decode(JournalRecord record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record.payload()));
+        byte version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported capture record version " + version);
+        }
+        long receivedEpochNanos = in.readLong();
+        byte[] id = new byte[in.readUnsignedShort()];
+        in.readFully(id);
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+        return new CapturedMessage(receivedEpochNanos, id.length == 0 ? null : new String(id, StandardCharsets.UTF_8),
+            new String(body, StandardCharsets.UTF_8));
+    }
+
+    @PreDestroy
+    public void close() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * A captured message.
+     *
+     * @param receivedEpochNanos time the message was received, in nanoseconds since the epoch
+     * @param messageId          SQS message ID
+     * @param body               message body after redaction
+     */
+    public record CapturedMessage(long receivedEpochNanos, String messageId, String body) {
+    }
+}
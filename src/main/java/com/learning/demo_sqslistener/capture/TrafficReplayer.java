@@ -0,0 +1,121 @@
+package com.learning.demo_sqslistener.capture;
+
+import com.amazonaws.services.sqs.model.Message;
+import com.learning.demo_sqslistener.journal.JournalBatch;
+import com.learning.demo_sqslistener.journal.JournalPosition;
+import com.learning.demo_sqslistener.journal.JournalRecord;
+import com.learning.demo_sqslistener.journal.SegmentedJournal;
+import com.learning.demo_sqslistener.service.MessageProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes a capture written by {@link TrafficCapture} through a {@link MessageProcessor},
+ * keeping the original inter-arrival times scaled by a speed factor.
+ * <p>
+ * A speed of 1 replays at the captured rate, 2 twice as fast, and 0 as fast as possible.
+ * Messages are processed one at a time on the calling thread, like the listener does, and a
+ * message that is late because processing fell behind is sent immediately, so the result
+ * shows whether the pipeline keeps up with the captured traffic. A capture that spans several
+ * runs of the listener is replayed on its wall-clock timeline, so the time the listener was
+ * down is replayed as a pause. The capture is opened read-only and left untouched.
+ *
+ * @author demo-sqslistener
+ */
+public class TrafficReplayer {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrafficReplayer.class);
+    private static final int READ_BATCH = 256;
+
+    private final MessageProcessor messageProcessor;
+    private final int segmentBytes;
+
+    /**
+     * @param messageProcessor processor the captured messages are pushed through
+     * @param segmentBytes     segment size the capture was written with
+     */
+    public TrafficReplayer(MessageProcessor messageProcessor, int segmentBytes) {
+        this.messageProcessor = messageProcessor;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Replays a capture.
+     *
+     * @param directory directory holding the capture segments
+     * @param speed     rate multiplier; 0 or less replays without delays
+     * @return counts and timing of the replay
+     * @throws IOException if the capture cannot be read
+     */
+    public ReplayResult replay(Path directory, double speed) throws IOException {
+        long processed = 0;
+        long failed = 0;
+        long maxLagNanos = 0;
+        long firstReceived = -1;
+        long start = System.nanoTime();
+        try (SegmentedJournal journal = SegmentedJournal.openReadOnly(directory, TrafficCapture.JOURNAL_NAME,
+                segmentBytes)) {
+            JournalPosition position = journal.firstPosition();
+            JournalBatch batch;
+            while (!(batch = journal.read(position, READ_BATCH)).isEmpty()) {
+                for (JournalRecord record : batch.records()) {
+                    TrafficCapture.CapturedMessage captured = TrafficCapture.decode(record);
+                    if (firstReceived < 0) {
+                        firstReceived = captured.receivedEpochNanos();
+                    }
+                    if (speed > 0) {
+                        long due = start + (long) ((captured.receivedEpochNanos() - firstReceived) / speed);
+                        long wait = due - System.nanoTime();
+                        if (wait > 0) {
+                            TimeUnit.NANOSECONDS.sleep(wait);
+                        } else {
+                            maxLagNanos = Math.max(maxLagNanos, -wait);
+                        }
+                    }
+                    try {
+                        messageProcessor.processMessage(new Message()
+                            .withMessageId(captured.messageId())
+                            .withBody(captured.body()));
+                        processed++;
+                    } catch (RuntimeException e) {
+                        failed++;
+                        logger.debug("Replayed message {} failed: {}", captured.messageId(), e.getMessage());
+                    }
+                }
+                position = batch.end();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Replay interrupted after {} messages", processed + failed);
+        }
+        ReplayResult result = new ReplayResult(processed, failed, System.nanoTime() - start, maxLagNanos);
+        logger.info("Replayed capture from {} at speed {}: {}", directory, speed, result);
+        return result;
+    }
+
+    /**
+     * Outcome of a replay.
+     *
+     * @param processed   messages processed successfully
+     * @param failed      messages whose processing threw
+     * @param elapsedNanos wall-clock duration of the replay
+     * @param maxLagNanos largest delay of a message behind its scheduled replay time
+     */
+    public record ReplayResult(long processed, long failed, long elapsedNanos, long maxLagNanos) {
+
+        public double throughput() {
+            return elapsedNanos == 0 ? 0 : (processed + failed) * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d processed, %d failed in %d ms (%.1f msg/s, max lag %d ms)",
+                processed, failed, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), throughput(),
+                TimeUnit.NANOSECONDS.toMillis(maxLagNanos));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.learning.demo_sqslistener.config;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.learning.demo_sqslistener.metrics.ListenerMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Training run for the class-data-sharing archive of the {@code fast-start} build. Active with
+ * the {@code cds-training} profile, together with {@code local-sqs}: sends a message to the local
+ * queue, waits until the listener has processed it and exits, so that the archive written at
+ * exit holds the classes of startup and of the message path.
+ *
+ * @author demo-sqslistener
+ */
+@Component
+@Profile("cds-training")
+public class CdsTrainingRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(CdsTrainingRunner.class);
+    private static final long POLL_INTERVAL_MS = 50;
+
+    private final AmazonSQS amazonSQS;
+    private final ListenerMetrics metrics;
+    private final ConfigurableApplicationContext context;
+    private final String queueUrl;
+    private final String body;
+    private final long timeoutMs;
+
+    public CdsTrainingRunner(AmazonSQS amazonSQS, ListenerMetrics metrics, ConfigurableApplicationContext context,
+                             @Value("${aws.sqs.url}") String queueUrl,
+                             @Value("${startup.training.message:{\"id\":\"cds-training\",\"price\":1}}") String body,
+                             @Value("${startup.training.timeout-ms:60000}") long timeoutMs) {
+        this.amazonSQS = amazonSQS;
+        this.metrics = metrics;
+        this.context = context;
+        this.queueUrl = queueUrl;
+        this.body = body;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        amazonSQS.sendMessage(queueUrl, body);
+        // Waits on its own thread, so startup completes before the context is closed for the exit
+        Thread.ofPlatform().name("cds-training").start(this::exitAfterFirstMessage);
+    }
+
+    private void exitAfterFirstMessage() {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (metrics.getFirstMessageUptimeMillis() < 0 && System.nanoTime() - end < 0) {
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        int status = metrics.getFirstMessageUptimeMillis() < 0 ? 1 : 0;
+        if (status == 0) {
+            logger.info("Training run complete, first message processed {} ms after JVM start",
+                metrics.getFirstMessageUptimeMillis());
+        } else {
+            logger.error("Training run timed out after {} ms without processing a message", timeoutMs);
+        }
+        System.exit(SpringApplication.exit(context, () -> status));
+    }
+}
@@ -0,0 +1,33 @@
+package com.learning.demo_sqslistener.config;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Settings of the {@code fast-start} profile, which initializes beans lazily
+ * (see {@code application-fast-start.properties}) so the listener polls sooner after startup.
+ * Controllers, the ingest path and other beans off the listener's path are created on first use.
+ * <p>
+ * Beans with {@link Scheduled} methods stay eager: their schedules are only registered when the
+ * bean is created, so a lazy {@code DlqSpillReplayer} would never replay spilled dead letters and a
+ * lazy {@code ShardedQueueRouter} would never refresh the shard backlogs. The listener itself needs
+ * no exclusion, as the context creates lifecycle beans in order to start them.
+ *
+ * @author demo-sqslistener
+ */
+@Configuration
+@Profile("fast-start")
+public class FastStartConfig {
+
+    @Bean
+    static LazyInitializationExcludeFilter scheduledBeansExcludeFilter() {
+        return (beanName, definition, type) -> type != null && !MethodIntrospector.selectMethods(type,
+            (MethodIntrospector.MetadataLookup<Scheduled>) method ->
+                AnnotatedElementUtils.findMergedAnnotation(method, Scheduled.class)).isEmpty();
+    }
+}
@@ -0,0 +1,50 @@
+package com.learning.demo_sqslistener.config;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.CreateQueueRequest;
+import com.learning.demo_sqslistener.localsqs.InMemoryAmazonSQS;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces the AWS client with {@link InMemoryAmazonSQS} when the {@code local-sqs} profile is
+ * active. The configured queue, shards and DLQ are created on startup, with the DLQ as
+ * redrive target of every source queue.
+ */
+@Configuration
+@Profile("local-sqs")
+public class LocalSqsConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public AmazonSQS amazonSQSClient(
+            @Value("${aws.sqs.shards.urls:${aws.sqs.url}}") List<String> queueUrls,
+            @Value("${aws.sqs.dlq.url}") String dlqUrl,
+            @Value("${aws.sqs.local.visibility-timeout-seconds:30}") int visibilityTimeoutSeconds,
+            @Value("${aws.sqs.local.max-receive-count:10}") int maxReceiveCount,
+            @Value("${aws.sqs.local.latency-min-ms:0}") long minLatencyMillis,
+            @Value("${aws.sqs.local.latency-max-ms:0}") long maxLatencyMillis,
+            @Value("${aws.sqs.local.error-rate:0}") double errorRate) {
+        InMemoryAmazonSQS sqs = new InMemoryAmazonSQS();
+        String dlqArn = sqs.getQueueAttributes(sqs.createQueue(new CreateQueueRequest(queueName(dlqUrl))).getQueueUrl(),
+            List.of("QueueArn")).getAttributes().get("QueueArn");
+        String redrivePolicy = String.format("{\"maxReceiveCount\":\"%d\",\"deadLetterTargetArn\":\"%s\"}",
+            maxReceiveCount, dlqArn);
+        for (String queueUrl : queueUrls) {
+            sqs.createQueue(new CreateQueueRequest(queueName(queueUrl.trim())).withAttributes(Map.of(
+                "VisibilityTimeout", String.valueOf(visibilityTimeoutSeconds),
+                "RedrivePolicy", redrivePolicy)));
+        }
+        sqs.setLatency(minLatencyMillis, maxLatencyMillis);
+        sqs.setErrorRate(errorRate);
+        return sqs;
+    }
+
+    private static String queueName(String queueUrl) {
+        return queueUrl.substring(queueUrl.lastIndexOf('/') + 1);
+    }
+}
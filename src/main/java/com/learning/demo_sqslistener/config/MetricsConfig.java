@@ -0,0 +1,32 @@
+package com.learning.demo_sqslistener.config;
+
+import com.learning.demo_sqslistener.service.BatchingMessageSender;
+import com.learning.demo_sqslistener.service.SendAdmissionLimiter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Meters for the buffers of the ingest path. Listener metrics live in
+ * {@link com.learning.demo_sqslistener.metrics.ListenerMetrics}.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder ingestBufferMetrics(BatchingMessageSender batchingSender, SendAdmissionLimiter admissionLimiter) {
+        return registry -> {
+            Gauge.builder("sqs.producer.buffer.depth", batchingSender, BatchingMessageSender::pendingCount)
+                .description("Messages waiting for a batched send")
+                .register(registry);
+            Gauge.builder("ingest.admission.in.flight", admissionLimiter, SendAdmissionLimiter::getInFlight)
+                .description("Admitted sends not yet acknowledged by SQS")
+                .register(registry);
+            FunctionCounter.builder("ingest.admission.rejected", admissionLimiter, SendAdmissionLimiter::getRejectedCount)
+                .description("Sends rejected by admission control")
+                .register(registry);
+        };
+    }
+}
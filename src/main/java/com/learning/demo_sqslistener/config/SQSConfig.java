@@ -3,21 +3,26 @@ package com.learning.demo_sqslistener.config;
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
 import com.amazonaws.services.sqs.AmazonSQS;
 import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
+import com.learning.demo_sqslistener.metrics.SqsClientMetricsHandler;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 
 @Configuration
+@Profile("!local-sqs")
 public class SQSConfig {
     
     @Value("${aws.region}")
     private String region;
     
     @Bean
-    public AmazonSQS amazonSQSClient() {
+    public AmazonSQS amazonSQSClient(MeterRegistry meterRegistry) {
         return AmazonSQSClientBuilder.standard()
                 .withRegion(region)
                 .withCredentials(DefaultAWSCredentialsProviderChain.getInstance())
+                .withRequestHandlers(new SqsClientMetricsHandler(meterRegistry))
                 .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,56 @@
+package com.learning.demo_sqslistener.controller;
+
+import com.learning.demo_sqslistener.service.ListenerControlService;
+import com.learning.demo_sqslistener.service.ListenerSettings;
+import com.learning.demo_sqslistener.service.ListenerStatus;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin/listener")
+public class ListenerAdminController {
+
+    private final ListenerControlService controlService;
+
+    public ListenerAdminController(ListenerControlService controlService) {
+        this.controlService = controlService;
+    }
+
+    @GetMapping
+    public ResponseEntity<ListenerStatus> getStatus() {
+        return ResponseEntity.ok(controlService.status());
+    }
+
+    /**
+     * Changes the given settings, leaving the others as they are. Answers with a problem detail
+     * naming the rejected setting: 400 if a setting is out of range, and 409 if it needs a feature
+     * that is not enabled. Nothing is changed in either case.
+     */
+    @PatchMapping
+    public ResponseEntity<?> updateSettings(@RequestBody ListenerSettings settings) {
+        try {
+            return ResponseEntity.ok(controlService.update(settings));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.of(ProblemDetail.forStatusAndDetail(HttpStatus.CONFLICT, e.getMessage())).build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.of(ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage())).build();
+        }
+    }
+
+    @PostMapping("/pause")
+    public ResponseEntity<ListenerStatus> pause() {
+        return ResponseEntity.ok(controlService.pause());
+    }
+
+    @PostMapping("/resume")
+    public ResponseEntity<ListenerStatus> resume() {
+        return ResponseEntity.ok(controlService.resume());
+    }
+}
@@ -1,26 +1,69 @@
 package com.learning.demo_sqslistener.controller;
 
 import com.amazonaws.services.sqs.model.SendMessageResult;
+import com.learning.demo_sqslistener.service.BulkIngestService;
 import com.learning.demo_sqslistener.service.SQSService;
+import com.learning.demo_sqslistener.service.SendAdmissionLimiter;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/api/messages")
 public class MessageController {
 
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String PARTITION_KEY_HEADER = "X-Partition-Key";
+
     private final SQSService sqsService;
+    private final BulkIngestService bulkIngestService;
+    private final SendAdmissionLimiter admissionLimiter;
 
-    public MessageController(SQSService sqsService) {
+    public MessageController(SQSService sqsService, BulkIngestService bulkIngestService,
+                             SendAdmissionLimiter admissionLimiter) {
         this.sqsService = sqsService;
+        this.bulkIngestService = bulkIngestService;
+        this.admissionLimiter = admissionLimiter;
     }
 
+    /**
+     * Enqueues a single message without holding a request thread while SQS responds.
+     * Answers 429 with {@code Retry-After} once too many sends are pending. An optional
+     * {@code X-Partition-Key} header keeps messages with the same key on the same queue shard.
+     */
     @PostMapping
-    public ResponseEntity<SendMessageResult> sendMessage(@RequestBody String message) {
-        SendMessageResult result = sqsService.sendMessage(message);
-        return ResponseEntity.ok(result);
+    public CompletableFuture<ResponseEntity<SendMessageResult>> sendMessage(
+            @RequestBody String message,
+            @RequestHeader(value = PARTITION_KEY_HEADER, required = false) String partitionKey) {
+        if (!admissionLimiter.tryAcquire()) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(admissionLimiter.getRetryAfterSeconds()))
+                .build());
+        }
+        return sqsService.sendMessageAsync(message, partitionKey)
+            .whenComplete((result, error) -> admissionLimiter.release())
+            .thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * Enqueues every record of an NDJSON or JSON array body. The body is read as a stream and
+     * one NDJSON result line is written back per record as soon as it is known.
+     */
+    @PostMapping(path = "/bulk", consumes = {NDJSON, MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_PLAIN_VALUE})
+    public void sendBulk(InputStream body, HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        bulkIngestService.ingest(body, response.getOutputStream());
     }
-} 
\ No newline at end of file
+}
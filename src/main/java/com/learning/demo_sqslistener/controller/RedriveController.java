@@ -0,0 +1,44 @@
+package com.learning.demo_sqslistener.controller;
+
+import com.learning.demo_sqslistener.service.DlqRedriveService;
+import com.learning.demo_sqslistener.service.RedriveOptions;
+import com.learning.demo_sqslistener.service.RedriveProgress;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/redrive")
+public class RedriveController {
+
+    private final DlqRedriveService redriveService;
+
+    public RedriveController(DlqRedriveService redriveService) {
+        this.redriveService = redriveService;
+    }
+
+    @PostMapping
+    public ResponseEntity<RedriveProgress> startRedrive(@RequestBody(required = false) RedriveOptions options) {
+        try {
+            RedriveOptions requested = options != null ? options : new RedriveOptions(null, null, null, false, null);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(redriveService.start(requested));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(redriveService.progress().orElse(null));
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<RedriveProgress> getProgress() {
+        return ResponseEntity.of(redriveService.progress());
+    }
+
+    @DeleteMapping
+    public ResponseEntity<RedriveProgress> cancelRedrive() {
+        return ResponseEntity.of(redriveService.cancel());
+    }
+}
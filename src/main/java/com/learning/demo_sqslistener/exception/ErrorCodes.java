@@ -11,6 +11,7 @@ public enum ErrorCodes {
     SQS_MESSAGE_RECEIVE_ERROR("SQS-1004", "Failed to receive messages from SQS queue"),
     SQS_VISIBILITY_UPDATE_ERROR("SQS-1005", "Failed to update message visibility timeout"),
     SQS_DLQ_MOVE_ERROR("SQS-1006", "Failed to move message to Dead Letter Queue"),
+    SQS_DLQ_SPILL_ERROR("SQS-1007", "Failed to write message to local DLQ spill journal"),
     
     // Message Processing Errors (2000-2999)
     MESSAGE_PROCESSING_ERROR("MSG-2001", "Failed to process message"),
@@ -18,6 +19,7 @@ public enum ErrorCodes {
     MESSAGE_SIZE_EXCEEDED("MSG-2003", "Message size exceeds maximum limit"),
     MESSAGE_FORMAT_ERROR("MSG-2004", "Invalid message format"),
     INVALID_JSON_FORMAT("MSG-2005", "Invalid JSON format in message"),
+    PROCESSING_DEADLINE_EXCEEDED("MSG-2006", "Message processing deadline exceeded"),
     
     // Retry Management Errors (3000-3999)
     RETRY_LIMIT_EXCEEDED("RTY-3001", "Maximum retry attempts exceeded"),
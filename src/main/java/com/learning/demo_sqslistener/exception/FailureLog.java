@@ -0,0 +1,77 @@
+package com.learning.demo_sqslistener.exception;
+
+import com.google.common.util.concurrent.RateLimiter;
+import org.slf4j.Logger;
+
+import java.util.Arrays;
+
+/**
+ * Reports a failed message outcome as a single log line.
+ * <p>
+ * The line ends with the failure and its root cause. The exception itself, with its stack trace,
+ * is attached at most {@link #STACK_TRACES_PER_MINUTE} times a minute across the application, so
+ * an outage that fails every message does not turn into a stream of stack traces.
+ *
+ * @author demo-sqslistener
+ */
+public final class FailureLog {
+
+    static final int STACK_TRACES_PER_MINUTE = 6;
+    private static final RateLimiter stackTraces = RateLimiter.create(STACK_TRACES_PER_MINUTE / 60.0);
+
+    private FailureLog() {
+    }
+
+    /**
+     * Logs a failure at WARN.
+     *
+     * @param logger logger to write to
+     * @param failure the failure
+     * @param format slf4j message format, followed by the failure description
+     * @param args arguments of the format
+     */
+    public static void warn(Logger logger, Throwable failure, String format, Object... args) {
+        if (logger.isWarnEnabled()) {
+            logger.warn(format + ": {}", withFailure(failure, args));
+        }
+    }
+
+    /**
+     * Logs a failure at ERROR.
+     *
+     * @param logger logger to write to
+     * @param failure the failure
+     * @param format slf4j message format, followed by the failure description
+     * @param args arguments of the format
+     */
+    public static void error(Logger logger, Throwable failure, String format, Object... args) {
+        if (logger.isErrorEnabled()) {
+            logger.error(format + ": {}", withFailure(failure, args));
+        }
+    }
+
+    private static Object[] withFailure(Throwable failure, Object[] args) {
+        boolean trace = stackTraces.tryAcquire();
+        Object[] all = Arrays.copyOf(args, args.length + (trace ? 2 : 1));
+        all[args.length] = describe(failure);
+        if (trace) {
+            all[args.length + 1] = failure;
+        }
+        return all;
+    }
+
+    /**
+     * @return the failure's message followed by its root cause, if it has one
+     */
+    static String describe(Throwable failure) {
+        String description = failure.getMessage() != null ? failure.getMessage() : failure.getClass().getSimpleName();
+        Throwable root = failure;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        if (root == failure) {
+            return description;
+        }
+        return description + " (caused by " + root.getClass().getSimpleName() + ": " + root.getMessage() + ")";
+    }
+}
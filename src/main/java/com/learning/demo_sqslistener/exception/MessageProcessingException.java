@@ -2,6 +2,9 @@ package com.learning.demo_sqslistener.exception;
 
 import lombok.Getter;
 
+import java.util.EnumMap;
+import java.util.Map;
+
 /**
  * Custom exception class for handling message processing errors.
  * This exception extends the base RuntimeException class and provides
@@ -11,6 +14,15 @@ import lombok.Getter;
  */
 @Getter
 public class MessageProcessingException extends RuntimeException {
+    /** Shared instances of {@link #expected(ErrorCodes)}, one per error code */
+    private static final Map<ErrorCodes, MessageProcessingException> EXPECTED = new EnumMap<>(ErrorCodes.class);
+
+    static {
+        for (ErrorCodes code : ErrorCodes.values()) {
+            EXPECTED.put(code, new MessageProcessingException(code, code.getFormattedMessage(), null, false));
+        }
+    }
+
     private final ErrorCodes errorCode;
 
     public MessageProcessingException(ErrorCodes errorCode) {
@@ -32,4 +44,38 @@ public class MessageProcessingException extends RuntimeException {
         super(errorCode.getFormattedMessage(additionalInfo), cause);
         this.errorCode = errorCode;
     }
-} 
\ No newline at end of file
+
+    /**
+     * Creates an exception without a stack trace or suppressed exceptions. Used for failures that
+     * are part of normal operation, such as a downstream outage, whose stack trace says nothing
+     * the error code and message do not.
+     */
+    protected MessageProcessingException(ErrorCodes errorCode, String message, Throwable cause, boolean writableStackTrace) {
+        super(message, cause, false, writableStackTrace);
+        this.errorCode = errorCode;
+    }
+
+    /**
+     * Returns the shared, preallocated exception for an expected failure that is fully described by
+     * its error code. It carries no stack trace, cause or message ID, so whoever handles it must
+     * add the message context when reporting it.
+     *
+     * @param errorCode the failure
+     * @return an immutable exception shared by all callers
+     */
+    public static MessageProcessingException expected(ErrorCodes errorCode) {
+        return EXPECTED.get(errorCode);
+    }
+
+    /**
+     * Creates an exception for an expected failure without capturing a stack trace.
+     *
+     * @param errorCode the failure
+     * @param additionalInfo details appended to the error code's message
+     * @param cause the underlying failure, or null
+     * @return the exception
+     */
+    public static MessageProcessingException stackless(ErrorCodes errorCode, String additionalInfo, Throwable cause) {
+        return new MessageProcessingException(errorCode, errorCode.getFormattedMessage(additionalInfo), cause, false);
+    }
+}
@@ -0,0 +1,20 @@
+package com.learning.demo_sqslistener.exception;
+
+/**
+ * Thrown when a message fails validation, such as a missing body or a body over the size limit.
+ * Invalid messages are an expected input, so the exception does not capture a stack trace.
+ * It is an {@link IllegalArgumentException} to callers that only care about bad input.
+ *
+ * @author demo-sqslistener
+ */
+public class MessageValidationException extends IllegalArgumentException {
+
+    public MessageValidationException(String message) {
+        super(message);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,17 @@
+package com.learning.demo_sqslistener.journal;
+
+import java.util.List;
+
+/**
+ * Result of a {@link SegmentedJournal#read(JournalPosition, int)} call.
+ *
+ * @param records records read, in append order
+ * @param end     position to resume from once every record in the batch has been handled;
+ *                may lie past the last record when exhausted segments were skipped
+ */
+public record JournalBatch(List<JournalRecord> records, JournalPosition end) {
+
+    public boolean isEmpty() {
+        return records.isEmpty();
+    }
+}
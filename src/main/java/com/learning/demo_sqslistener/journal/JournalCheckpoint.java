@@ -0,0 +1,60 @@
+package com.learning.demo_sqslistener.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Persists the read position of a {@link SegmentedJournal} consumer.
+ * The checkpoint is written to a temporary file and atomically moved into place,
+ * so a crash never leaves a half-written checkpoint behind.
+ *
+ * @author demo-sqslistener
+ */
+public class JournalCheckpoint {
+
+    private static final Logger logger = LoggerFactory.getLogger(JournalCheckpoint.class);
+
+    private final Path file;
+
+    public JournalCheckpoint(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the stored position.
+     *
+     * @param fallback position to use when no checkpoint has been stored yet
+     * @return the stored position, or {@code fallback}
+     */
+    public JournalPosition load(JournalPosition fallback) {
+        if (!Files.exists(file)) {
+            return fallback;
+        }
+        try {
+            String[] parts = Files.readString(file, StandardCharsets.UTF_8).trim().split(":");
+            JournalPosition stored = new JournalPosition(Long.parseLong(parts[0]), Integer.parseInt(parts[1]));
+            return stored.compareTo(fallback) < 0 ? fallback : stored;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Unreadable journal checkpoint {}, starting from {}: {}", file, fallback, e.getMessage());
+            return fallback;
+        }
+    }
+
+    /**
+     * Stores a position.
+     *
+     * @param position position to resume from after a restart
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public void store(JournalPosition position) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, position.segmentId() + ":" + position.offset(), StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
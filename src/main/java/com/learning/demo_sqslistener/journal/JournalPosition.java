@@ -0,0 +1,17 @@
+package com.learning.demo_sqslistener.journal;
+
+/**
+ * Logical position inside a {@link SegmentedJournal}: a segment id plus a byte offset
+ * within that segment.
+ *
+ * @param segmentId sequential id of the segment file
+ * @param offset    byte offset of the next record within the segment
+ */
+public record JournalPosition(long segmentId, int offset) implements Comparable<JournalPosition> {
+
+    @Override
+    public int compareTo(JournalPosition other) {
+        int bySegment = Long.compare(segmentId, other.segmentId);
+        return bySegment != 0 ? bySegment : Integer.compare(offset, other.offset);
+    }
+}
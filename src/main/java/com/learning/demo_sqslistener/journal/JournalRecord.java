@@ -0,0 +1,11 @@
+package com.learning.demo_sqslistener.journal;
+
+/**
+ * A single record read back from a {@link SegmentedJournal}.
+ *
+ * @param position position at which the record starts
+ * @param next     position immediately after the record; checkpoint this once the record is handled
+ * @param payload  the record payload as it was appended
+ */
+public record JournalRecord(JournalPosition position, JournalPosition next, byte[] payload) {
+}
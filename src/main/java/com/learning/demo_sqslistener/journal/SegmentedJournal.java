@@ -0,0 +1,467 @@
+package com.learning.demo_sqslistener.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal stored in fixed-size, memory-mapped segment files.
+ * <p>
+ * Records are laid out as {@code [int length][int crc32][payload]}; a zero length marks the
+ * end of the written region of a segment. Appends are queued and written by a single
+ * committer thread which drains everything that is waiting, writes it, and forces the
+ * mapped segment once for the whole batch (group commit) before completing the callers'
+ * futures. When a record does not fit into the active segment, the segment is sealed and
+ * a new one is started.
+ * <p>
+ * On open, the last segment is scanned and any torn tail left by a crash is discarded.
+ * A journal opened with {@link #openReadOnly} only reads: it never writes to the segments, so
+ * a torn tail is skipped rather than cleared, and appending or deleting segments is refused.
+ *
+ * @author demo-sqslistener
+ */
+public class SegmentedJournal implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedJournal.class);
+
+    /** Size of the length and checksum header in front of every record */
+    static final int HEADER_BYTES = 8;
+
+    /** Upper bound on the number of appends written per group commit */
+    private static final int MAX_COMMIT_BATCH = 512;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final String name;
+    private final int segmentBytes;
+    private final boolean forceOnCommit;
+    private final boolean readOnly;
+    private final Pattern segmentPattern;
+    private final BlockingQueue<PendingAppend> pending = new LinkedBlockingQueue<>();
+    private final Thread committer;
+
+    /** Active segment state, owned by the committer thread once the journal is open */
+    private long activeSegmentId;
+    private FileChannel activeChannel;
+    private MappedByteBuffer activeBuffer;
+
+    /** Everything before this position is durable and visible to readers */
+    private volatile JournalPosition committedEnd;
+    private volatile boolean closed;
+
+    /**
+     * Opens (or creates) a journal.
+     *
+     * @param directory     directory holding the segment files
+     * @param name          file name prefix of the segments, so several journals can share a directory
+     * @param segmentBytes  size of each segment file; also the upper bound for a single record
+     * @param forceOnCommit whether each group commit is forced to the storage device
+     * @throws IOException if the directory or the active segment cannot be opened
+     */
+    public SegmentedJournal(Path directory, String name, int segmentBytes, boolean forceOnCommit) throws IOException {
+        this(directory, name, segmentBytes, forceOnCommit, false);
+    }
+
+    private SegmentedJournal(Path directory, String name, int segmentBytes, boolean forceOnCommit, boolean readOnly)
+            throws IOException {
+        if (segmentBytes <= HEADER_BYTES) {
+            throw new IllegalArgumentException("Segment size must be larger than " + HEADER_BYTES + " bytes");
+        }
+        this.directory = directory;
+        this.name = name;
+        this.segmentBytes = segmentBytes;
+        this.forceOnCommit = forceOnCommit;
+        this.readOnly = readOnly;
+        this.segmentPattern = Pattern.compile(Pattern.quote(name) + "-(\\d{20})" + Pattern.quote(SEGMENT_SUFFIX));
+
+        if (readOnly) {
+            List<Long> existing = segmentIds();
+            long lastSegment = existing.isEmpty() ? 1L : existing.get(existing.size() - 1);
+            this.committedEnd = new JournalPosition(lastSegment, existing.isEmpty() ? 0 : validEnd(lastSegment));
+            this.committer = null;
+            logger.info("Opened journal {} in {} read-only up to segment {} offset {}",
+                name, directory, committedEnd.segmentId(), committedEnd.offset());
+            return;
+        }
+        Files.createDirectories(directory);
+        List<Long> existing = segmentIds();
+        openSegment(existing.isEmpty() ? 1L : existing.get(existing.size() - 1));
+        this.committedEnd = new JournalPosition(activeSegmentId, activeBuffer.position());
+
+        this.committer = new Thread(this::runCommitter, "journal-" + name);
+        this.committer.setDaemon(true);
+        this.committer.start();
+        logger.info("Opened journal {} in {} at segment {} offset {}",
+            name, directory, activeSegmentId, activeBuffer.position());
+    }
+
+    /**
+     * Opens an existing journal for reading only, e.g. to replay a capture. The segment files are
+     * never modified, a torn tail of the last segment is left in place and not read.
+     *
+     * @param directory    directory holding the segment files
+     * @param name         file name prefix of the segments
+     * @param segmentBytes size the segments were written with
+     * @return the journal, positioned to read every valid record
+     * @throws IOException if the directory or the last segment cannot be read
+     */
+    public static SegmentedJournal openReadOnly(Path directory, String name, int segmentBytes) throws IOException {
+        return new SegmentedJournal(directory, name, segmentBytes, false, true);
+    }
+
+    /**
+     * Queues a record for the next group commit.
+     *
+     * @param payload record content; must not be empty
+     * @return future completed with the record's position once it is committed
+     */
+    public CompletableFuture<JournalPosition> append(byte[] payload) {
+        if (payload == null || payload.length == 0) {
+            throw new IllegalArgumentException("Journal payload cannot be empty");
+        }
+        if (payload.length > segmentBytes - HEADER_BYTES) {
+            throw new IllegalArgumentException(String.format(
+                "Record of %d bytes exceeds segment capacity of %d bytes", payload.length, segmentBytes - HEADER_BYTES));
+        }
+        if (readOnly) {
+            throw new IllegalStateException("Journal " + name + " is open read-only");
+        }
+        PendingAppend append = new PendingAppend(payload);
+        if (closed) {
+            append.future.completeExceptionally(new IllegalStateException("Journal " + name + " is closed"));
+            return append.future;
+        }
+        pending.add(append);
+        // close() may have run between the check and the add, after the committer drained the
+        // queue for the last time; whoever removes the append from the queue owns it
+        if (closed && pending.remove(append)) {
+            append.future.completeExceptionally(new IllegalStateException("Journal " + name + " is closed"));
+        }
+        return append.future;
+    }
+
+    /**
+     * Reads committed records starting at the given position.
+     *
+     * @param from       position to start reading from
+     * @param maxRecords maximum number of records to return
+     * @return the records read and the position to continue from
+     * @throws IOException if a segment file cannot be read
+     */
+    public JournalBatch read(JournalPosition from, int maxRecords) throws IOException {
+        JournalPosition end = committedEnd;
+        List<JournalRecord> records = new ArrayList<>();
+        long segmentId = from.segmentId();
+        int offset = from.offset();
+
+        while (records.size() < maxRecords && segmentId <= end.segmentId()) {
+            Path file = segmentPath(segmentId);
+            int limit = segmentId == end.segmentId() ? end.offset() : segmentBytes;
+            if (Files.exists(file)) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    offset = readSegment(channel, segmentId, offset, limit, maxRecords, records);
+                }
+            } else {
+                offset = limit;
+            }
+            if (records.size() >= maxRecords || segmentId == end.segmentId()) {
+                break;
+            }
+            segmentId++;
+            offset = 0;
+        }
+        return new JournalBatch(records, new JournalPosition(segmentId, offset));
+    }
+
+    /**
+     * Deletes sealed segments that lie entirely before the given position.
+     *
+     * @param position a checkpointed position; segments with a lower id are no longer needed
+     */
+    public void deleteSegmentsBefore(JournalPosition position) {
+        if (readOnly) {
+            throw new IllegalStateException("Journal " + name + " is open read-only");
+        }
+        long committedSegment = committedEnd.segmentId();
+        try {
+            for (long segmentId : segmentIds()) {
+                if (segmentId < position.segmentId() && segmentId < committedSegment) {
+                    Files.deleteIfExists(segmentPath(segmentId));
+                    logger.debug("Deleted journal segment {} of {}", segmentId, name);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to delete old segments of journal {}: {}", name, e.getMessage());
+        }
+    }
+
+    /**
+     * @return position of the first record still held by the journal
+     */
+    public JournalPosition firstPosition() {
+        try {
+            List<Long> ids = segmentIds();
+            return new JournalPosition(ids.isEmpty() ? committedEnd.segmentId() : ids.get(0), 0);
+        } catch (IOException e) {
+            return new JournalPosition(committedEnd.segmentId(), 0);
+        }
+    }
+
+    /**
+     * @return position right after the last committed record
+     */
+    public JournalPosition committedEnd() {
+        return committedEnd;
+    }
+
+    /**
+     * @return number of appends waiting for the next group commit
+     */
+    public int pendingAppends() {
+        return pending.size();
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * Stops accepting appends, commits everything already queued and releases the active segment.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (readOnly) {
+            return;
+        }
+        try {
+            committer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            activeBuffer.force();
+            activeChannel.close();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to close journal {} cleanly: {}", name, e.getMessage());
+        }
+        logger.info("Closed journal {}", name);
+    }
+
+    private void runCommitter() {
+        List<PendingAppend> batch = new ArrayList<>(MAX_COMMIT_BATCH);
+        while (!closed || !pending.isEmpty()) {
+            try {
+                PendingAppend first = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pending.drainTo(batch, MAX_COMMIT_BATCH - 1);
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        PendingAppend leftover;
+        while ((leftover = pending.poll()) != null) {
+            leftover.future.completeExceptionally(new IllegalStateException("Journal " + name + " is closed"));
+        }
+    }
+
+    private void commit(List<PendingAppend> batch) {
+        List<PendingAppend> written = new ArrayList<>(batch.size());
+        for (PendingAppend append : batch) {
+            try {
+                append.position = write(append.payload);
+                written.add(append);
+            } catch (IOException | RuntimeException e) {
+                logger.error("Failed to write record to journal {}: {}", name, e.getMessage());
+                append.future.completeExceptionally(e);
+            }
+        }
+        if (written.isEmpty()) {
+            return;
+        }
+        try {
+            if (forceOnCommit) {
+                activeBuffer.force();
+            }
+            committedEnd = new JournalPosition(activeSegmentId, activeBuffer.position());
+            for (PendingAppend append : written) {
+                append.future.complete(append.position);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to force journal {} to disk: {}", name, e.getMessage());
+            for (PendingAppend append : written) {
+                append.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private JournalPosition write(byte[] payload) throws IOException {
+        int recordBytes = HEADER_BYTES + payload.length;
+        if (activeBuffer.remaining() < recordBytes) {
+            rotate();
+        }
+        int offset = activeBuffer.position();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        activeBuffer.put(offset + HEADER_BYTES, payload);
+        activeBuffer.putInt(offset + 4, (int) crc.getValue());
+        // Length goes in last so a torn write reads back as the end of the segment
+        activeBuffer.putInt(offset, payload.length);
+        activeBuffer.position(offset + recordBytes);
+        return new JournalPosition(activeSegmentId, offset);
+    }
+
+    private void rotate() throws IOException {
+        activeBuffer.force();
+        activeChannel.close();
+        // Records in the sealed segment are durable, publish them before moving on
+        committedEnd = new JournalPosition(activeSegmentId + 1, 0);
+        openSegment(activeSegmentId + 1);
+        logger.info("Rotated journal {} to segment {}", name, activeSegmentId);
+    }
+
+    private void openSegment(long segmentId) throws IOException {
+        FileChannel channel = FileChannel.open(segmentPath(segmentId),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        int end = recover(buffer);
+        buffer.position(end);
+        this.activeSegmentId = segmentId;
+        this.activeChannel = channel;
+        this.activeBuffer = buffer;
+    }
+
+    /**
+     * Finds the end of the valid records in a segment and clears anything after it.
+     */
+    private int recover(MappedByteBuffer buffer) {
+        int offset = validEnd(buffer);
+        if (offset + HEADER_BYTES <= segmentBytes && buffer.getInt(offset) != 0) {
+            logger.warn("Discarding torn tail of journal {} at offset {}", name, offset);
+            for (int i = offset; i < segmentBytes; i++) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.force();
+        }
+        return offset;
+    }
+
+    /**
+     * Finds the end of the valid records in a segment without modifying it.
+     */
+    private int validEnd(long segmentId) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segmentId), StandardOpenOption.READ)) {
+            return validEnd(channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), segmentBytes)));
+        }
+    }
+
+    /**
+     * @return offset right after the last record whose length and checksum are intact
+     */
+    private static int validEnd(ByteBuffer buffer) {
+        int limit = buffer.capacity();
+        int offset = 0;
+        while (offset + HEADER_BYTES <= limit) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_BYTES + length > limit) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(offset + HEADER_BYTES, length));
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                break;
+            }
+            offset += HEADER_BYTES + length;
+        }
+        return offset;
+    }
+
+    private int readSegment(FileChannel channel, long segmentId, int offset, int limit,
+                            int maxRecords, List<JournalRecord> records) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (records.size() < maxRecords && offset + HEADER_BYTES <= limit) {
+            header.clear();
+            readFully(channel, header, offset);
+            int length = header.getInt(0);
+            if (length <= 0 || offset + HEADER_BYTES + length > limit) {
+                return limit;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(channel, payload, offset + HEADER_BYTES);
+            CRC32 crc = new CRC32();
+            crc.update(payload.array());
+            if ((int) crc.getValue() != header.getInt(4)) {
+                logger.warn("Checksum mismatch in journal {} segment {} at offset {}, skipping rest of segment",
+                    name, segmentId, offset);
+                return limit;
+            }
+            int next = offset + HEADER_BYTES + length;
+            records.add(new JournalRecord(
+                new JournalPosition(segmentId, offset), new JournalPosition(segmentId, next), payload.array()));
+            offset = next;
+        }
+        return records.size() >= maxRecords ? offset : limit;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                throw new IOException("Unexpected end of journal segment");
+            }
+        }
+    }
+
+    private List<Long> segmentIds() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .map(path -> segmentPattern.matcher(path.getFileName().toString()))
+                .filter(Matcher::matches)
+                .map(matcher -> Long.parseLong(matcher.group(1)))
+                .sorted()
+                .toList();
+        }
+    }
+
+    private Path segmentPath(long segmentId) {
+        return directory.resolve(String.format("%s-%020d%s", name, segmentId, SEGMENT_SUFFIX));
+    }
+
+    private static final class PendingAppend {
+        private final byte[] payload;
+        private final CompletableFuture<JournalPosition> future = new CompletableFuture<>();
+        private JournalPosition position;
+
+        private PendingAppend(byte[] payload) {
+            this.payload = payload;
+        }
+    }
+}
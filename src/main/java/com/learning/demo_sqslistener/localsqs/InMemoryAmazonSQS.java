@@ -0,0 +1,553 @@
+package com.learning.demo_sqslistener.localsqs;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.sqs.AbstractAmazonSQS;
+import com.amazonaws.services.sqs.model.AmazonSQSException;
+import com.amazonaws.services.sqs.model.BatchEntryIdsNotDistinctException;
+import com.amazonaws.services.sqs.model.BatchRequestTooLongException;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchResult;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchResultEntry;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityRequest;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityResult;
+import com.amazonaws.services.sqs.model.CreateQueueRequest;
+import com.amazonaws.services.sqs.model.CreateQueueResult;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResultEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageResult;
+import com.amazonaws.services.sqs.model.DeleteQueueRequest;
+import com.amazonaws.services.sqs.model.DeleteQueueResult;
+import com.amazonaws.services.sqs.model.EmptyBatchRequestException;
+import com.amazonaws.services.sqs.model.GetQueueAttributesRequest;
+import com.amazonaws.services.sqs.model.GetQueueAttributesResult;
+import com.amazonaws.services.sqs.model.GetQueueUrlRequest;
+import com.amazonaws.services.sqs.model.GetQueueUrlResult;
+import com.amazonaws.services.sqs.model.InvalidMessageContentsException;
+import com.amazonaws.services.sqs.model.ListQueuesRequest;
+import com.amazonaws.services.sqs.model.ListQueuesResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.MessageAttributeValue;
+import com.amazonaws.services.sqs.model.PurgeQueueRequest;
+import com.amazonaws.services.sqs.model.PurgeQueueResult;
+import com.amazonaws.services.sqs.model.QueueAttributeName;
+import com.amazonaws.services.sqs.model.QueueDoesNotExistException;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageResult;
+import com.amazonaws.services.sqs.model.SetQueueAttributesRequest;
+import com.amazonaws.services.sqs.model.SetQueueAttributesResult;
+import com.amazonaws.services.sqs.model.TooManyEntriesInBatchRequestException;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+import com.learning.demo_sqslistener.service.SqsBatchLimits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Thread-safe, in-process implementation of {@link com.amazonaws.services.sqs.AmazonSQS} for
+ * local runs and load tests.
+ * <p>
+ * Supports standard and FIFO queues with long-poll receives, visibility timeouts, receipt
+ * handles, {@code ApproximateReceiveCount}, message delays, the batch send, delete and
+ * change-visibility operations, and redrive to a dead letter queue through a
+ * {@code RedrivePolicy}. FIFO queues deliver each message group in order, one batch at a time,
+ * and deduplicate within five minutes. Every call can be slowed by a random latency and failed
+ * with a configurable probability, to rehearse a slow or flaky SQS.
+ * <p>
+ * Queues are addressed by name: any URL whose last path segment is the queue name resolves to
+ * the queue, so configured production-style URLs work unchanged.
+ *
+ * @author demo-sqslistener
+ */
+public class InMemoryAmazonSQS extends AbstractAmazonSQS {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryAmazonSQS.class);
+
+    private static final String ACCOUNT_ID = "000000000000";
+    private static final String REGION = "local";
+    private static final int MAX_WAIT_TIME_SECONDS = 20;
+    private static final int MAX_RECEIVE_MESSAGES = 10;
+
+    private final Map<String, InMemoryQueue> queues = new ConcurrentHashMap<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Clock clock;
+    private final String endpoint;
+    private volatile long minLatencyMillis;
+    private volatile long maxLatencyMillis;
+    private volatile double errorRate;
+
+    public InMemoryAmazonSQS() {
+        this(Clock.systemUTC());
+    }
+
+    /**
+     * @param clock clock used for timestamps, visibility timeouts and delays
+     */
+    public InMemoryAmazonSQS(Clock clock) {
+        this.clock = clock;
+        this.endpoint = "http://localhost/" + ACCOUNT_ID + "/";
+    }
+
+    /**
+     * Adds a random latency in {@code [minMillis, maxMillis]} to every call.
+     */
+    public void setLatency(long minMillis, long maxMillis) {
+        if (minMillis < 0 || maxMillis < minMillis) {
+            throw new IllegalArgumentException("Invalid latency range " + minMillis + ".." + maxMillis);
+        }
+        this.minLatencyMillis = minMillis;
+        this.maxLatencyMillis = maxMillis;
+    }
+
+    /**
+     * Fails the given fraction of calls with a 500 {@code InternalError}.
+     *
+     * @param errorRate probability in {@code [0, 1]}
+     */
+    public void setErrorRate(double errorRate) {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("Error rate must be between 0 and 1: " + errorRate);
+        }
+        this.errorRate = errorRate;
+    }
+
+    @Override
+    public CreateQueueResult createQueue(CreateQueueRequest request) {
+        simulateService();
+        String name = request.getQueueName();
+        Map<String, String> attributes = request.getAttributes() == null ? Map.of() : request.getAttributes();
+        boolean fifo = Boolean.parseBoolean(attributes.getOrDefault("FifoQueue", "false"));
+        if (fifo != name.endsWith(".fifo")) {
+            throw error(new AmazonSQSException("FIFO queue names must end with .fifo"), "InvalidParameterValue");
+        }
+        InMemoryQueue queue = queues.computeIfAbsent(name, key -> {
+            InMemoryQueue created = new InMemoryQueue(key, endpoint + key,
+                "arn:aws:sqs:" + REGION + ":" + ACCOUNT_ID + ":" + key, fifo, clock.millis());
+            applyAttributes(created, attributes);
+            logger.info("Created in-memory queue {}", key);
+            return created;
+        });
+        return new CreateQueueResult().withQueueUrl(queue.url);
+    }
+
+    @Override
+    public GetQueueUrlResult getQueueUrl(GetQueueUrlRequest request) {
+        simulateService();
+        return new GetQueueUrlResult().withQueueUrl(queue(request.getQueueName()).url);
+    }
+
+    @Override
+    public ListQueuesResult listQueues(ListQueuesRequest request) {
+        simulateService();
+        String prefix = request.getQueueNamePrefix() == null ? "" : request.getQueueNamePrefix();
+        return new ListQueuesResult().withQueueUrls(queues.values().stream()
+            .filter(queue -> queue.name.startsWith(prefix))
+            .map(queue -> queue.url)
+            .sorted()
+            .toList());
+    }
+
+    @Override
+    public DeleteQueueResult deleteQueue(DeleteQueueRequest request) {
+        simulateService();
+        queues.remove(queue(request.getQueueUrl()).name);
+        return new DeleteQueueResult();
+    }
+
+    @Override
+    public PurgeQueueResult purgeQueue(PurgeQueueRequest request) {
+        simulateService();
+        queue(request.getQueueUrl()).purge();
+        return new PurgeQueueResult();
+    }
+
+    @Override
+    public SetQueueAttributesResult setQueueAttributes(SetQueueAttributesRequest request) {
+        simulateService();
+        applyAttributes(queue(request.getQueueUrl()), request.getAttributes());
+        return new SetQueueAttributesResult();
+    }
+
+    @Override
+    public GetQueueAttributesResult getQueueAttributes(GetQueueAttributesRequest request) {
+        simulateService();
+        InMemoryQueue queue = queue(request.getQueueUrl());
+        List<String> names = request.getAttributeNames();
+        boolean all = names == null || names.isEmpty() || names.contains(QueueAttributeName.All.toString());
+        int[] counts = queue.counts(clock.millis());
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put(QueueAttributeName.ApproximateNumberOfMessages.toString(), String.valueOf(counts[0]));
+        attributes.put(QueueAttributeName.ApproximateNumberOfMessagesNotVisible.toString(), String.valueOf(counts[1]));
+        attributes.put(QueueAttributeName.ApproximateNumberOfMessagesDelayed.toString(), String.valueOf(counts[2]));
+        attributes.put(QueueAttributeName.QueueArn.toString(), queue.arn);
+        attributes.put(QueueAttributeName.VisibilityTimeout.toString(), String.valueOf(queue.visibilityTimeoutSeconds));
+        attributes.put(QueueAttributeName.DelaySeconds.toString(), String.valueOf(queue.delaySeconds));
+        attributes.put(QueueAttributeName.ReceiveMessageWaitTimeSeconds.toString(),
+            String.valueOf(queue.receiveWaitTimeSeconds));
+        attributes.put(QueueAttributeName.CreatedTimestamp.toString(),
+            String.valueOf(TimeUnit.MILLISECONDS.toSeconds(queue.createdMillis)));
+        if (queue.fifo) {
+            attributes.put(QueueAttributeName.FifoQueue.toString(), "true");
+            attributes.put(QueueAttributeName.ContentBasedDeduplication.toString(),
+                String.valueOf(queue.contentBasedDeduplication));
+        }
+        if (queue.redrivePolicy != null) {
+            attributes.put(QueueAttributeName.RedrivePolicy.toString(), String.format(
+                "{\"maxReceiveCount\":\"%d\",\"deadLetterTargetArn\":\"%s\"}",
+                queue.redrivePolicy.maxReceiveCount(), queue.redrivePolicy.deadLetterTargetArn()));
+        }
+        if (!all) {
+            attributes.keySet().retainAll(names);
+        }
+        return new GetQueueAttributesResult().withAttributes(attributes);
+    }
+
+    @Override
+    public SendMessageResult sendMessage(SendMessageRequest request) {
+        simulateService();
+        InMemoryQueue queue = queue(request.getQueueUrl());
+        InMemoryQueue.StoredMessage stored = store(queue, request.getMessageBody(), request.getMessageAttributes(),
+            request.getDelaySeconds(), request.getMessageGroupId(), request.getMessageDeduplicationId());
+        return new SendMessageResult()
+            .withMessageId(stored.messageId)
+            .withMD5OfMessageBody(stored.md5OfBody)
+            .withSequenceNumber(stored.sequenceNumber);
+    }
+
+    @Override
+    public SendMessageBatchResult sendMessageBatch(SendMessageBatchRequest request) {
+        simulateService();
+        InMemoryQueue queue = queue(request.getQueueUrl());
+        List<SendMessageBatchRequestEntry> entries = request.getEntries();
+        checkBatch(entries, SendMessageBatchRequestEntry::getId);
+        long payload = entries.stream()
+            .mapToLong(entry -> SqsBatchLimits.payloadSize(entry.getMessageBody(), entry.getMessageAttributes()))
+            .sum();
+        if (payload > SqsBatchLimits.MAX_BATCH_PAYLOAD_BYTES) {
+            throw error(new BatchRequestTooLongException("Batch requests cannot be longer than "
+                + SqsBatchLimits.MAX_BATCH_PAYLOAD_BYTES + " bytes"), "AWS.SimpleQueueService.BatchRequestTooLong");
+        }
+        SendMessageBatchResult result = new SendMessageBatchResult();
+        for (SendMessageBatchRequestEntry entry : entries) {
+            try {
+                InMemoryQueue.StoredMessage stored = store(queue, entry.getMessageBody(), entry.getMessageAttributes(),
+                    entry.getDelaySeconds(), entry.getMessageGroupId(), entry.getMessageDeduplicationId());
+                result.withSuccessful(new SendMessageBatchResultEntry()
+                    .withId(entry.getId())
+                    .withMessageId(stored.messageId)
+                    .withMD5OfMessageBody(stored.md5OfBody)
+                    .withSequenceNumber(stored.sequenceNumber));
+            } catch (AmazonServiceException e) {
+                result.withFailed(failure(entry.getId(), e));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public ReceiveMessageResult receiveMessage(ReceiveMessageRequest request) {
+        simulateService();
+        InMemoryQueue queue = queue(request.getQueueUrl());
+        int max = request.getMaxNumberOfMessages() == null ? 1 : request.getMaxNumberOfMessages();
+        if (max < 1 || max > MAX_RECEIVE_MESSAGES) {
+            throw error(new AmazonSQSException("MaxNumberOfMessages must be between 1 and 10"), "InvalidParameterValue");
+        }
+        int waitSeconds = request.getWaitTimeSeconds() == null
+            ? queue.receiveWaitTimeSeconds : Math.min(request.getWaitTimeSeconds(), MAX_WAIT_TIME_SECONDS);
+        int visibilityTimeout = request.getVisibilityTimeout() == null
+            ? queue.visibilityTimeoutSeconds : request.getVisibilityTimeout();
+
+        List<InMemoryQueue.StoredMessage> deadLetters = new ArrayList<>();
+        List<InMemoryQueue.Delivery> deliveries;
+        try {
+            deliveries = queue.receive(max, visibilityTimeout, TimeUnit.SECONDS.toNanos(waitSeconds), clock, deadLetters);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            deliveries = List.of();
+        }
+        if (!deadLetters.isEmpty()) {
+            redrive(queue, deadLetters);
+        }
+
+        List<Message> messages = new ArrayList<>(deliveries.size());
+        for (InMemoryQueue.Delivery delivery : deliveries) {
+            messages.add(toMessage(delivery, request.getAttributeNames(), request.getMessageAttributeNames()));
+        }
+        return new ReceiveMessageResult().withMessages(messages);
+    }
+
+    @Override
+    public DeleteMessageResult deleteMessage(DeleteMessageRequest request) {
+        simulateService();
+        queue(request.getQueueUrl()).delete(request.getReceiptHandle());
+        return new DeleteMessageResult();
+    }
+
+    @Override
+    public DeleteMessageBatchResult deleteMessageBatch(DeleteMessageBatchRequest request) {
+        simulateService();
+        InMemoryQueue queue = queue(request.getQueueUrl());
+        checkBatch(request.getEntries(), DeleteMessageBatchRequestEntry::getId);
+        DeleteMessageBatchResult result = new DeleteMessageBatchResult();
+        for (DeleteMessageBatchRequestEntry entry : request.getEntries()) {
+            try {
+                queue.delete(entry.getReceiptHandle());
+                result.withSuccessful(new DeleteMessageBatchResultEntry().withId(entry.getId()));
+            } catch (AmazonServiceException e) {
+                result.withFailed(failure(entry.getId(), e));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public ChangeMessageVisibilityResult changeMessageVisibility(ChangeMessageVisibilityRequest request) {
+        simulateService();
+        queue(request.getQueueUrl()).changeVisibility(request.getReceiptHandle(),
+            request.getVisibilityTimeout(), clock.millis());
+        return new ChangeMessageVisibilityResult();
+    }
+
+    @Override
+    public ChangeMessageVisibilityBatchResult changeMessageVisibilityBatch(ChangeMessageVisibilityBatchRequest request) {
+        simulateService();
+        InMemoryQueue queue = queue(request.getQueueUrl());
+        checkBatch(request.getEntries(), ChangeMessageVisibilityBatchRequestEntry::getId);
+        ChangeMessageVisibilityBatchResult result = new ChangeMessageVisibilityBatchResult();
+        for (ChangeMessageVisibilityBatchRequestEntry entry : request.getEntries()) {
+            try {
+                queue.changeVisibility(entry.getReceiptHandle(), entry.getVisibilityTimeout(), clock.millis());
+                result.withSuccessful(new ChangeMessageVisibilityBatchResultEntry().withId(entry.getId()));
+            } catch (AmazonServiceException e) {
+                result.withFailed(failure(entry.getId(), e));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void shutdown() {
+        queues.clear();
+    }
+
+    private InMemoryQueue.StoredMessage store(InMemoryQueue queue, String body,
+                                              Map<String, MessageAttributeValue> attributes, Integer delaySeconds,
+                                              String groupId, String deduplicationId) {
+        if (body == null || body.isEmpty()) {
+            throw error(new InvalidMessageContentsException("The message body must not be empty"), "InvalidMessageContents");
+        }
+        if (SqsBatchLimits.payloadSize(body, attributes) > SqsBatchLimits.MAX_BATCH_PAYLOAD_BYTES) {
+            throw error(new InvalidMessageContentsException("Message must be shorter than "
+                + SqsBatchLimits.MAX_BATCH_PAYLOAD_BYTES + " bytes"), "InvalidParameterValue");
+        }
+        if (queue.fifo) {
+            if (groupId == null) {
+                throw error(new AmazonSQSException("The request must contain the parameter MessageGroupId."),
+                    "MissingParameter");
+            }
+            if (deduplicationId == null) {
+                if (!queue.contentBasedDeduplication) {
+                    throw error(new AmazonSQSException("The queue should either have ContentBasedDeduplication "
+                        + "enabled or MessageDeduplicationId provided explicitly"), "InvalidParameterValue");
+                }
+                deduplicationId = Hashing.sha256().hashString(body, StandardCharsets.UTF_8).toString();
+            }
+        }
+        InMemoryQueue.StoredMessage message = new InMemoryQueue.StoredMessage(UUID.randomUUID().toString(), body,
+            attributes == null ? Map.of() : Map.copyOf(attributes),
+            BinaryUtils.toHex(Md5Utils.computeMD5Hash(body.getBytes(StandardCharsets.UTF_8))),
+            clock.millis(), groupId, deduplicationId);
+        int delay = delaySeconds != null ? delaySeconds : queue.delaySeconds;
+        return queue.send(message, delay, deduplicationId, clock.millis());
+    }
+
+    private void redrive(InMemoryQueue source, List<InMemoryQueue.StoredMessage> deadLetters) {
+        String targetArn = source.redrivePolicy.deadLetterTargetArn();
+        InMemoryQueue target = queues.get(targetArn.substring(targetArn.lastIndexOf(':') + 1));
+        if (target == null) {
+            logger.warn("Dead letter queue {} of {} does not exist, dropping {} message(s)",
+                targetArn, source.name, deadLetters.size());
+            return;
+        }
+        for (InMemoryQueue.StoredMessage message : deadLetters) {
+            InMemoryQueue.StoredMessage moved = new InMemoryQueue.StoredMessage(message.messageId, message.body,
+                message.messageAttributes, message.md5OfBody, message.sentMillis, message.groupId,
+                message.deduplicationId);
+            target.send(moved, 0, message.messageId, clock.millis());
+        }
+        logger.debug("Moved {} message(s) from {} to dead letter queue {}", deadLetters.size(), source.name, target.name);
+    }
+
+    private Message toMessage(InMemoryQueue.Delivery delivery, List<String> attributeNames,
+                              List<String> messageAttributeNames) {
+        InMemoryQueue.StoredMessage stored = delivery.message();
+        Message message = new Message()
+            .withMessageId(stored.messageId)
+            .withReceiptHandle(delivery.receiptHandle())
+            .withBody(stored.body)
+            .withMD5OfBody(stored.md5OfBody);
+        if (attributeNames != null && !attributeNames.isEmpty()) {
+            boolean all = attributeNames.contains("All");
+            Map<String, String> attributes = new HashMap<>();
+            attributes.put("SentTimestamp", String.valueOf(stored.sentMillis));
+            attributes.put("ApproximateFirstReceiveTimestamp", String.valueOf(delivery.firstReceiveMillis()));
+            attributes.put("ApproximateReceiveCount", String.valueOf(delivery.receiveCount()));
+            attributes.put("SenderId", ACCOUNT_ID);
+            if (stored.groupId != null) {
+                attributes.put("MessageGroupId", stored.groupId);
+                attributes.put("MessageDeduplicationId", stored.deduplicationId);
+                attributes.put("SequenceNumber", stored.sequenceNumber);
+            }
+            if (!all) {
+                attributes.keySet().retainAll(attributeNames);
+            }
+            message.setAttributes(attributes);
+        }
+        if (messageAttributeNames != null && !messageAttributeNames.isEmpty() && !stored.messageAttributes.isEmpty()) {
+            Map<String, MessageAttributeValue> selected = new HashMap<>();
+            stored.messageAttributes.forEach((name, value) -> {
+                if (matchesAny(name, messageAttributeNames)) {
+                    selected.put(name, value);
+                }
+            });
+            message.setMessageAttributes(selected);
+        }
+        return message;
+    }
+
+    private static boolean matchesAny(String name, List<String> patterns) {
+        for (String pattern : patterns) {
+            if (pattern.equals("All") || pattern.equals(".*") || pattern.equals(name)
+                    || (pattern.endsWith(".*") && name.startsWith(pattern.substring(0, pattern.length() - 1)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void applyAttributes(InMemoryQueue queue, Map<String, String> attributes) {
+        if (attributes == null) {
+            return;
+        }
+        attributes.forEach((name, value) -> {
+            switch (name) {
+                case "VisibilityTimeout" -> queue.visibilityTimeoutSeconds = Integer.parseInt(value);
+                case "DelaySeconds" -> queue.delaySeconds = Integer.parseInt(value);
+                case "ReceiveMessageWaitTimeSeconds" -> queue.receiveWaitTimeSeconds = Integer.parseInt(value);
+                case "ContentBasedDeduplication" -> queue.contentBasedDeduplication = Boolean.parseBoolean(value);
+                case "RedrivePolicy" -> queue.redrivePolicy = parseRedrivePolicy(value);
+                case "FifoQueue" -> {
+                    // Fixed at creation
+                }
+                default -> logger.debug("Ignoring unsupported queue attribute {}", name);
+            }
+        });
+    }
+
+    private InMemoryQueue.RedrivePolicy parseRedrivePolicy(String json) {
+        if (json == null || json.isBlank()) {
+            return null;
+        }
+        try {
+            JsonNode node = objectMapper.readTree(json);
+            return new InMemoryQueue.RedrivePolicy(node.path("maxReceiveCount").asInt(),
+                node.path("deadLetterTargetArn").asText());
+        } catch (JsonProcessingException e) {
+            throw error(new AmazonSQSException("Invalid RedrivePolicy: " + e.getOriginalMessage()),
+                "InvalidAttributeValue");
+        }
+    }
+
+    private InMemoryQueue queue(String urlOrName) {
+        String name = urlOrName == null ? "" : urlOrName.substring(urlOrName.lastIndexOf('/') + 1);
+        InMemoryQueue queue = queues.get(name);
+        if (queue == null) {
+            throw error(new QueueDoesNotExistException("The specified queue does not exist: " + urlOrName),
+                "AWS.SimpleQueueService.NonExistentQueue");
+        }
+        return queue;
+    }
+
+    private static <T> void checkBatch(List<T> entries, Function<T, String> id) {
+        if (entries == null || entries.isEmpty()) {
+            throw error(new EmptyBatchRequestException("There should be at least one entry in the request"),
+                "AWS.SimpleQueueService.EmptyBatchRequest");
+        }
+        if (entries.size() > SqsBatchLimits.MAX_BATCH_ENTRIES) {
+            throw error(new TooManyEntriesInBatchRequestException("Maximum number of entries per request are "
+                + SqsBatchLimits.MAX_BATCH_ENTRIES), "AWS.SimpleQueueService.TooManyEntriesInBatchRequest");
+        }
+        Set<String> ids = new HashSet<>();
+        for (T entry : entries) {
+            if (!ids.add(id.apply(entry))) {
+                throw error(new BatchEntryIdsNotDistinctException("Id " + id.apply(entry) + " repeated"),
+                    "AWS.SimpleQueueService.BatchEntryIdsNotDistinct");
+            }
+        }
+    }
+
+    private static BatchResultErrorEntry failure(String id, AmazonServiceException e) {
+        return new BatchResultErrorEntry()
+            .withId(id)
+            .withCode(e.getErrorCode())
+            .withMessage(e.getErrorMessage())
+            .withSenderFault(e.getStatusCode() < 500);
+    }
+
+    private static <E extends AmazonServiceException> E error(E exception, String errorCode) {
+        exception.setErrorCode(errorCode);
+        exception.setStatusCode(400);
+        exception.setErrorType(AmazonServiceException.ErrorType.Client);
+        exception.setServiceName("AmazonSQS");
+        return exception;
+    }
+
+    private void simulateService() {
+        long min = minLatencyMillis;
+        long max = maxLatencyMillis;
+        if (max > 0) {
+            try {
+                Thread.sleep(min == max ? min : ThreadLocalRandom.current().nextLong(min, max + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        double rate = errorRate;
+        if (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate) {
+            AmazonSQSException e = new AmazonSQSException("Injected failure");
+            e.setErrorCode("InternalError");
+            e.setStatusCode(500);
+            e.setErrorType(AmazonServiceException.ErrorType.Service);
+            e.setServiceName("AmazonSQS");
+            throw e;
+        }
+    }
+}
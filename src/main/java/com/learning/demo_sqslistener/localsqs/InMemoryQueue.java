@@ -0,0 +1,399 @@
+package com.learning.demo_sqslistener.localsqs;
+
+import com.amazonaws.services.sqs.model.MessageAttributeValue;
+import com.amazonaws.services.sqs.model.MessageNotInflightException;
+import com.amazonaws.services.sqs.model.ReceiptHandleIsInvalidException;
+
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * State of one queue of {@link InMemoryAmazonSQS}. All methods are guarded by a single lock;
+ * waiting receivers are woken when messages are sent or become visible again.
+ * <p>
+ * Standard queues keep visible messages in a deque. FIFO queues keep every undeleted message
+ * in its message group, in send order, and skip a group entirely while one of its messages is
+ * in flight. In-flight and delayed messages are tracked through leases ordered by the time
+ * they become visible; leases made stale by a delete or a visibility change are skipped.
+ */
+final class InMemoryQueue {
+
+    /** Deduplication interval of FIFO queues */
+    static final long DEDUPLICATION_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    final String name;
+    final String url;
+    final String arn;
+    final boolean fifo;
+    final long createdMillis;
+
+    volatile int visibilityTimeoutSeconds;
+    volatile int delaySeconds;
+    volatile int receiveWaitTimeSeconds;
+    volatile boolean contentBasedDeduplication;
+    volatile RedrivePolicy redrivePolicy;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final ArrayDeque<StoredMessage> ready = new ArrayDeque<>();
+    private final LinkedHashMap<String, MessageGroup> groups = new LinkedHashMap<>();
+    private final PriorityQueue<Lease> leases = new PriorityQueue<>();
+    private final Map<String, StoredMessage> byReceipt = new HashMap<>();
+    private final LinkedHashMap<String, Deduplication> deduplication = new LinkedHashMap<>();
+    private long sequence;
+    private int size;
+    private int inFlight;
+    private int delayed;
+
+    InMemoryQueue(String name, String url, String arn, boolean fifo, long createdMillis) {
+        this.name = name;
+        this.url = url;
+        this.arn = arn;
+        this.fifo = fifo;
+        this.createdMillis = createdMillis;
+        this.visibilityTimeoutSeconds = 30;
+    }
+
+    /**
+     * Maximum receives before a message is moved to the dead letter queue.
+     *
+     * @param maxReceiveCount receives allowed before the move
+     * @param deadLetterTargetArn ARN of the dead letter queue
+     */
+    record RedrivePolicy(int maxReceiveCount, String deadLetterTargetArn) {
+    }
+
+    /**
+     * Immutable view of a message handed out by a receive.
+     */
+    record Delivery(StoredMessage message, String receiptHandle, int receiveCount, long firstReceiveMillis) {
+    }
+
+    /**
+     * Sends a message, or returns the message a FIFO deduplication ID already maps to.
+     *
+     * @return the stored message
+     */
+    StoredMessage send(StoredMessage message, int messageDelaySeconds, String deduplicationId, long now) {
+        lock.lock();
+        try {
+            if (fifo) {
+                pruneDeduplication(now);
+                Deduplication previous = deduplication.get(deduplicationId);
+                if (previous != null) {
+                    return previous.message();
+                }
+                deduplication.put(deduplicationId, new Deduplication(message, now + DEDUPLICATION_WINDOW_MILLIS));
+                message.sequenceNumber = String.format("%020d", ++sequence);
+                groups.computeIfAbsent(message.groupId, groupId -> new MessageGroup()).messages.addLast(message);
+            } else if (messageDelaySeconds > 0) {
+                message.delayed = true;
+                message.visibleAt = now + TimeUnit.SECONDS.toMillis(messageDelaySeconds);
+                leases.add(new Lease(message, message.visibleAt, null));
+                delayed++;
+            } else {
+                ready.addLast(message);
+            }
+            size++;
+            available.signalAll();
+            return message;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Receives up to {@code max} messages, waiting up to {@code waitNanos} for the first one.
+     * Messages that exceeded the redrive policy are removed and added to {@code deadLetters}
+     * instead of being delivered; the caller forwards them once the lock is released.
+     */
+    List<Delivery> receive(int max, int visibilityTimeout, long waitNanos, Clock clock,
+                           List<StoredMessage> deadLetters) throws InterruptedException {
+        List<Delivery> result = new ArrayList<>(max);
+        long deadline = System.nanoTime() + waitNanos;
+        lock.lock();
+        try {
+            while (true) {
+                long now = clock.millis();
+                releaseExpired(now);
+                if (fifo) {
+                    collectFifo(max, visibilityTimeout, now, result, deadLetters);
+                } else {
+                    collectStandard(max, visibilityTimeout, now, result, deadLetters);
+                }
+                long remaining = deadline - System.nanoTime();
+                if (!result.isEmpty() || remaining <= 0) {
+                    return result;
+                }
+                Lease next = leases.peek();
+                if (next != null) {
+                    remaining = Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(Math.max(1, next.visibleAt - now)));
+                }
+                available.awaitNanos(remaining);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void delete(String receiptHandle) {
+        lock.lock();
+        try {
+            StoredMessage message = message(receiptHandle);
+            // A superseded receipt handle is accepted but leaves the message in place, as SQS does
+            if (receiptHandle.equals(message.receiptHandle)) {
+                remove(message);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void changeVisibility(String receiptHandle, int timeoutSeconds, long now) {
+        lock.lock();
+        try {
+            StoredMessage message = message(receiptHandle);
+            if (!message.inFlight || !receiptHandle.equals(message.receiptHandle)) {
+                MessageNotInflightException e = new MessageNotInflightException("Message is not in flight");
+                e.setErrorCode("AWS.SimpleQueueService.MessageNotInflight");
+                e.setStatusCode(400);
+                throw e;
+            }
+            message.visibleAt = now + TimeUnit.SECONDS.toMillis(timeoutSeconds);
+            leases.add(new Lease(message, message.visibleAt, receiptHandle));
+            if (timeoutSeconds == 0) {
+                available.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void purge() {
+        lock.lock();
+        try {
+            ready.clear();
+            groups.clear();
+            leases.clear();
+            byReceipt.clear();
+            size = 0;
+            inFlight = 0;
+            delayed = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return approximate visible, in-flight and delayed message counts
+     */
+    int[] counts(long now) {
+        lock.lock();
+        try {
+            releaseExpired(now);
+            return new int[] {size - inFlight - delayed, inFlight, delayed};
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private StoredMessage message(String receiptHandle) {
+        StoredMessage message = receiptHandle == null ? null : byReceipt.get(receiptHandle);
+        if (message == null) {
+            ReceiptHandleIsInvalidException e =
+                new ReceiptHandleIsInvalidException("The input receipt handle is invalid: " + receiptHandle);
+            e.setErrorCode("ReceiptHandleIsInvalid");
+            e.setStatusCode(400);
+            throw e;
+        }
+        return message;
+    }
+
+    private void collectStandard(int max, int visibilityTimeout, long now,
+                                 List<Delivery> result, List<StoredMessage> deadLetters) {
+        StoredMessage message;
+        while (result.size() < max && (message = ready.pollFirst()) != null) {
+            if (message.deleted || message.inFlight) {
+                continue;
+            }
+            if (exceedsRedrive(message)) {
+                remove(message);
+                deadLetters.add(message);
+                continue;
+            }
+            result.add(deliver(message, visibilityTimeout, now));
+        }
+    }
+
+    private void collectFifo(int max, int visibilityTimeout, long now,
+                             List<Delivery> result, List<StoredMessage> deadLetters) {
+        Iterator<MessageGroup> groupIterator = groups.values().iterator();
+        while (groupIterator.hasNext() && result.size() < max) {
+            MessageGroup group = groupIterator.next();
+            if (group.inFlight > 0) {
+                continue;
+            }
+            Iterator<StoredMessage> messages = group.messages.iterator();
+            while (messages.hasNext() && result.size() < max) {
+                StoredMessage message = messages.next();
+                if (exceedsRedrive(message)) {
+                    messages.remove();
+                    markRemoved(message);
+                    deadLetters.add(message);
+                    continue;
+                }
+                result.add(deliver(message, visibilityTimeout, now));
+                group.inFlight++;
+            }
+            if (group.messages.isEmpty()) {
+                groupIterator.remove();
+            }
+        }
+    }
+
+    private boolean exceedsRedrive(StoredMessage message) {
+        return redrivePolicy != null && message.receiveCount >= redrivePolicy.maxReceiveCount();
+    }
+
+    private Delivery deliver(StoredMessage message, int visibilityTimeout, long now) {
+        String receiptHandle = UUID.randomUUID().toString();
+        message.receiveCount++;
+        if (message.firstReceiveMillis == 0) {
+            message.firstReceiveMillis = now;
+        }
+        message.receiptHandle = receiptHandle;
+        message.receiptHandles.add(receiptHandle);
+        byReceipt.put(receiptHandle, message);
+        message.inFlight = true;
+        message.visibleAt = now + TimeUnit.SECONDS.toMillis(visibilityTimeout);
+        leases.add(new Lease(message, message.visibleAt, receiptHandle));
+        inFlight++;
+        return new Delivery(message, receiptHandle, message.receiveCount, message.firstReceiveMillis);
+    }
+
+    private void releaseExpired(long now) {
+        Lease lease;
+        while ((lease = leases.peek()) != null && lease.visibleAt <= now) {
+            leases.poll();
+            StoredMessage message = lease.message;
+            if (message.deleted || message.visibleAt != lease.visibleAt
+                    || !Objects.equals(message.receiptHandle, lease.receiptHandle)) {
+                continue;
+            }
+            if (message.delayed) {
+                message.delayed = false;
+                delayed--;
+                ready.addLast(message);
+            } else if (message.inFlight) {
+                message.inFlight = false;
+                inFlight--;
+                if (fifo) {
+                    groups.get(message.groupId).inFlight--;
+                } else {
+                    ready.addLast(message);
+                }
+            }
+            available.signalAll();
+        }
+    }
+
+    private void remove(StoredMessage message) {
+        if (fifo) {
+            MessageGroup group = groups.get(message.groupId);
+            if (group != null) {
+                group.messages.remove(message);
+                if (message.inFlight) {
+                    group.inFlight--;
+                }
+                if (group.messages.isEmpty()) {
+                    groups.remove(message.groupId);
+                }
+            }
+        }
+        markRemoved(message);
+    }
+
+    private void markRemoved(StoredMessage message) {
+        message.deleted = true;
+        size--;
+        if (message.inFlight) {
+            message.inFlight = false;
+            inFlight--;
+        }
+        if (message.delayed) {
+            message.delayed = false;
+            delayed--;
+        }
+        for (String receiptHandle : message.receiptHandles) {
+            byReceipt.remove(receiptHandle);
+        }
+        message.receiptHandles.clear();
+    }
+
+    private void pruneDeduplication(long now) {
+        Iterator<Deduplication> entries = deduplication.values().iterator();
+        while (entries.hasNext() && entries.next().expiresAt() <= now) {
+            entries.remove();
+        }
+    }
+
+    /**
+     * A message as stored by the queue. Mutable fields are only touched under the queue lock.
+     */
+    static final class StoredMessage {
+        final String messageId;
+        final String body;
+        final Map<String, MessageAttributeValue> messageAttributes;
+        final String md5OfBody;
+        final long sentMillis;
+        final String groupId;
+        final String deduplicationId;
+        String sequenceNumber;
+        int receiveCount;
+        long firstReceiveMillis;
+        String receiptHandle;
+        long visibleAt;
+        boolean inFlight;
+        boolean delayed;
+        boolean deleted;
+        final List<String> receiptHandles = new ArrayList<>(1);
+
+        StoredMessage(String messageId, String body, Map<String, MessageAttributeValue> messageAttributes,
+                      String md5OfBody, long sentMillis, String groupId, String deduplicationId) {
+            this.messageId = messageId;
+            this.body = body;
+            this.messageAttributes = messageAttributes;
+            this.md5OfBody = md5OfBody;
+            this.sentMillis = sentMillis;
+            this.groupId = groupId;
+            this.deduplicationId = deduplicationId;
+        }
+    }
+
+    private static final class MessageGroup {
+        final ArrayDeque<StoredMessage> messages = new ArrayDeque<>();
+        int inFlight;
+    }
+
+    private record Lease(StoredMessage message, long visibleAt, String receiptHandle) implements Comparable<Lease> {
+        @Override
+        public int compareTo(Lease other) {
+            return Long.compare(visibleAt, other.visibleAt);
+        }
+    }
+
+    private record Deduplication(StoredMessage message, long expiresAt) {
+    }
+}
@@ -0,0 +1,382 @@
+package com.learning.demo_sqslistener.metrics;
+
+import com.amazonaws.services.sqs.model.Message;
+import com.google.common.util.concurrent.RateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of the message listener pipeline.
+ * <p>
+ * Every meter is registered once up front and kept in a field, so recording on the hot path is
+ * a counter increment or a histogram bucket update without any registry lookup or tag
+ * allocation. Latency timers publish fixed percentile-histogram buckets for Prometheus.
+ *
+ * @author demo-sqslistener
+ */
+@Component
+public class ListenerMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListenerMetrics.class);
+
+    /** Lower bound of the latency histograms */
+    static final Duration MIN_EXPECTED_LATENCY = Duration.ofMillis(1);
+    /** Upper bound of the latency histograms */
+    static final Duration MAX_EXPECTED_LATENCY = Duration.ofSeconds(60);
+    /** Percentiles of the processing time computed in process, for the live status */
+    static final double[] STATUS_PERCENTILES = {0.5, 0.95, 0.99};
+    /** Upper bound of the message age histograms, the maximum SQS retention period */
+    static final Duration MAX_EXPECTED_AGE = Duration.ofDays(14);
+
+    /** SQS system attribute holding the time the message was sent, in epoch millis */
+    public static final String SENT_TIMESTAMP = "SentTimestamp";
+    /** SQS system attribute holding the time the message was first received, in epoch millis */
+    public static final String FIRST_RECEIVE_TIMESTAMP = "ApproximateFirstReceiveTimestamp";
+
+    /**
+     * How the processing of a received message ended.
+     */
+    public enum Outcome {
+        ACKED, RETRIED, DEAD_LETTERED, DLQ_FAILED, EXPIRED, COALESCED;
+
+        private final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Part of the message path exercised by the warm-up before polling starts.
+     */
+    public enum WarmUpStage {
+        /** Validation, sanitization and JSON check of a message */
+        PIPELINE,
+        /** A request to the downstream API */
+        DOWNSTREAM,
+        /** A request to the SQS endpoint */
+        SQS;
+
+        private final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    private final MeterRegistry registry;
+    private final Counter received;
+    private final Counter acked;
+    private final Counter retried;
+    private final Counter deadLettered;
+    private final Counter expired;
+    private final Counter coalesced;
+    private final Timer downstreamSuccess;
+    private final Timer downstreamFailure;
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+    private final Counter hedgesSkipped;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    /** Processing time of every delivery, with percentiles over the last minute */
+    private final Timer processingTime;
+    /** Processed deliveries per second */
+    private final RateWindow processedRate = new RateWindow(System::nanoTime);
+    /** JVM uptime when the first message finished processing, -1 until then */
+    private final AtomicLong firstMessageUptimeMillis = new AtomicLong(-1);
+    /** Duration of the warm-up before polling started, -1 until it finished */
+    private final AtomicLong warmUpMillis = new AtomicLong(-1);
+    /** Latency of each warm-up stage when cold, at the start of the warm-up */
+    private final Timer[] warmUpCold = new Timer[WarmUpStage.values().length];
+    /** Latency of each warm-up stage when warm, at the end of the warm-up */
+    private final Timer[] warmUpWarm = new Timer[WarmUpStage.values().length];
+    private final Map<String, MessageTimers> messageTimers = new ConcurrentHashMap<>();
+
+    public ListenerMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.received = counter("sqs.listener.messages.received", "Messages received from SQS");
+        this.acked = counter("sqs.listener.messages.acked", "Messages processed and deleted");
+        this.retried = counter("sqs.listener.messages.retried", "Processing failures left for redelivery");
+        this.deadLettered = counter("sqs.listener.messages.dlq", "Messages moved to the dead letter queue");
+        this.coalesced = counter("sqs.listener.messages.coalesced", "Messages deleted because a later message had the same key");
+        this.expired = counter("sqs.listener.messages.expired", "Messages released because their processing deadline passed");
+        this.downstreamSuccess = latencyTimer("downstream.requests", "Latency of the downstream POST")
+            .tag("outcome", "success").register(registry);
+        this.downstreamFailure = latencyTimer("downstream.requests", "Latency of the downstream POST")
+            .tag("outcome", "failure").register(registry);
+        this.hedgesSent = hedgeCounter("sent", "Hedged downstream requests sent");
+        this.hedgesWon = hedgeCounter("won", "Hedged downstream requests answered before the original");
+        this.hedgesSkipped = hedgeCounter("skipped", "Hedges not sent because the hedge budget was used up");
+        this.processingTime = Timer.builder("sqs.listener.processing.time")
+            .description("Time spent processing one delivery, any queue and outcome")
+            .publishPercentiles(STATUS_PERCENTILES)
+            .distributionStatisticExpiry(Duration.ofMinutes(1))
+            .register(registry);
+        Gauge.builder("sqs.listener.messages.in.flight", inFlight, AtomicInteger::get)
+            .description("Messages currently being processed")
+            .register(registry);
+        Gauge.builder("sqs.listener.first.message.time", firstMessageUptimeMillis,
+                uptime -> uptime.get() < 0 ? Double.NaN : uptime.get() / 1000.0)
+            .description("Time from JVM start until the first message finished processing")
+            .baseUnit("seconds")
+            .register(registry);
+        Gauge.builder("sqs.listener.warmup.duration", warmUpMillis,
+                millis -> millis.get() < 0 ? Double.NaN : millis.get() / 1000.0)
+            .description("Time spent warming up before polling started")
+            .baseUnit("seconds")
+            .register(registry);
+        for (WarmUpStage stage : WarmUpStage.values()) {
+            warmUpCold[stage.ordinal()] = warmUpTimer(stage, "cold");
+            warmUpWarm[stage.ordinal()] = warmUpTimer(stage, "warm");
+        }
+    }
+
+    /**
+     * Starts a latency timer with the histogram settings shared by all latency metrics.
+     *
+     * @param name metric name
+     * @param description metric description
+     * @return a builder the caller can add tags to before registering
+     */
+    public static Timer.Builder latencyTimer(String name, String description) {
+        return Timer.builder(name)
+            .description(description)
+            .publishPercentileHistogram()
+            .minimumExpectedValue(MIN_EXPECTED_LATENCY)
+            .maximumExpectedValue(MAX_EXPECTED_LATENCY);
+    }
+
+    /**
+     * Exposes the current rate of a limiter as a gauge.
+     *
+     * @param name gauge name
+     * @param limiter limiter to observe
+     */
+    public void bindRateLimiter(String name, RateLimiter limiter) {
+        Gauge.builder(name, limiter, RateLimiter::getRate)
+            .description("Current permits per second of the rate limiter")
+            .register(registry);
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    public void messagesReceived(int count) {
+        received.increment(count);
+    }
+
+    public void messageAcked() {
+        acked.increment();
+    }
+
+    public void messageRetried() {
+        retried.increment();
+    }
+
+    public void messageDeadLettered() {
+        deadLettered.increment();
+    }
+
+    public void messageExpired() {
+        expired.increment();
+    }
+
+    public void messageCoalesced() {
+        coalesced.increment();
+    }
+
+    public void processingStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    public void processingFinished() {
+        inFlight.decrementAndGet();
+        if (firstMessageUptimeMillis.get() < 0) {
+            long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+            if (firstMessageUptimeMillis.compareAndSet(-1, uptime)) {
+                logger.info("First message processed {} ms after JVM start", uptime);
+            }
+        }
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public double getReceivedCount() {
+        return received.count();
+    }
+
+    public double getAckedCount() {
+        return acked.count();
+    }
+
+    /**
+     * @param windowSeconds length of the window, up to a minute
+     * @return deliveries processed per second over the last seconds, whatever their outcome
+     */
+    public double getProcessedPerSecond(int windowSeconds) {
+        return processedRate.perSecond(windowSeconds);
+    }
+
+    /**
+     * @return processing time percentiles over about the last minute in milliseconds, keyed
+     *         {@code p50}, {@code p95} and {@code p99}
+     */
+    public Map<String, Double> getProcessingPercentilesMillis() {
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        for (ValueAtPercentile value : processingTime.takeSnapshot().percentileValues()) {
+            percentiles.put("p" + Math.round(value.percentile() * 100), value.value(TimeUnit.MILLISECONDS));
+        }
+        return percentiles;
+    }
+
+    /**
+     * @return JVM uptime in milliseconds when the first message finished processing, or -1 if none has yet
+     */
+    public long getFirstMessageUptimeMillis() {
+        return firstMessageUptimeMillis.get();
+    }
+
+    /**
+     * Records how much faster a part of the message path became during the warm-up.
+     *
+     * @param stage the part of the message path
+     * @param coldNanos mean latency at the start of the warm-up, in nanoseconds
+     * @param warmNanos mean latency at the end of the warm-up, in nanoseconds
+     */
+    public void recordWarmUp(WarmUpStage stage, long coldNanos, long warmNanos) {
+        warmUpCold[stage.ordinal()].record(coldNanos, TimeUnit.NANOSECONDS);
+        warmUpWarm[stage.ordinal()].record(warmNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void warmUpFinished(long nanos) {
+        warmUpMillis.set(TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    /**
+     * Records the duration of one downstream POST.
+     *
+     * @param nanos elapsed time in nanoseconds
+     * @param success whether the call returned a 2xx response
+     */
+    public void recordDownstream(long nanos, boolean success) {
+        (success ? downstreamSuccess : downstreamFailure).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void hedgeSent() {
+        hedgesSent.increment();
+    }
+
+    public void hedgeWon() {
+        hedgesWon.increment();
+    }
+
+    public void hedgeSkipped() {
+        hedgesSkipped.increment();
+    }
+
+    /**
+     * Records the age of a message whose processing just ended:
+     * <ul>
+     *   <li>{@code sqs.message.end.to.end} – from send to now</li>
+     *   <li>{@code sqs.message.queue.dwell} – from send to the first receive</li>
+     *   <li>{@code sqs.message.processing} – time spent processing this delivery</li>
+     * </ul>
+     * Ages are skipped when the message lacks the timestamp attributes.
+     *
+     * @param queueUrl URL of the queue the message was received from
+     * @param message the processed message
+     * @param outcome how processing ended
+     * @param processingNanos time spent processing, in nanoseconds
+     */
+    public void recordMessage(String queueUrl, Message message, Outcome outcome, long processingNanos) {
+        MessageTimers timers = messageTimers.computeIfAbsent(queueUrl, MessageTimers::new);
+        int index = outcome.ordinal();
+        timers.processing[index].record(processingNanos, TimeUnit.NANOSECONDS);
+        if (outcome != Outcome.COALESCED) {
+            // Coalesced messages are dropped unprocessed
+            processingTime.record(processingNanos, TimeUnit.NANOSECONDS);
+            processedRate.record();
+        }
+        Map<String, String> attributes = message.getAttributes();
+        long sent = timestamp(attributes, SENT_TIMESTAMP);
+        if (sent <= 0) {
+            return;
+        }
+        timers.endToEnd[index].record(Math.max(0, System.currentTimeMillis() - sent), TimeUnit.MILLISECONDS);
+        long firstReceive = timestamp(attributes, FIRST_RECEIVE_TIMESTAMP);
+        if (firstReceive > 0) {
+            timers.dwell[index].record(Math.max(0, firstReceive - sent), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static long timestamp(Map<String, String> attributes, String name) {
+        String value = attributes == null ? null : attributes.get(name);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static String queueName(String queueUrl) {
+        int slash = queueUrl.lastIndexOf('/');
+        return slash < 0 ? queueUrl : queueUrl.substring(slash + 1);
+    }
+
+    /**
+     * Age and processing timers of one queue, one per outcome.
+     */
+    private final class MessageTimers {
+        final Timer[] endToEnd = new Timer[Outcome.values().length];
+        final Timer[] dwell = new Timer[Outcome.values().length];
+        final Timer[] processing = new Timer[Outcome.values().length];
+
+        MessageTimers(String queueUrl) {
+            String queue = queueName(queueUrl);
+            for (Outcome outcome : Outcome.values()) {
+                int i = outcome.ordinal();
+                endToEnd[i] = ageTimer("sqs.message.end.to.end", "Time from send until processing ended", queue, outcome);
+                dwell[i] = ageTimer("sqs.message.queue.dwell", "Time from send until first receive", queue, outcome);
+                processing[i] = latencyTimer("sqs.message.processing", "Time spent processing one delivery")
+                    .tag("queue", queue).tag("outcome", outcome.tag).register(registry);
+            }
+        }
+
+        private Timer ageTimer(String name, String description, String queue, Outcome outcome) {
+            return latencyTimer(name, description)
+                .maximumExpectedValue(MAX_EXPECTED_AGE)
+                .tag("queue", queue)
+                .tag("outcome", outcome.tag)
+                .register(registry);
+        }
+    }
+
+    private Timer warmUpTimer(WarmUpStage stage, String phase) {
+        return Timer.builder("sqs.listener.warmup.latency")
+            .description("Latency of a part of the message path at the start (cold) and end (warm) of the warm-up")
+            .tag("stage", stage.tag)
+            .tag("phase", phase)
+            .register(registry);
+    }
+
+    private Counter hedgeCounter(String result, String description) {
+        return Counter.builder("downstream.hedges").description(description).tag("result", result).register(registry);
+    }
+
+    private Counter counter(String name, String description) {
+        return Counter.builder(name).description(description).register(registry);
+    }
+}
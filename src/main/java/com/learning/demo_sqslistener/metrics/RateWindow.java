@@ -0,0 +1,57 @@
+package com.learning.demo_sqslistener.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Events per second over a sliding window of whole seconds, kept in a ring of per-second counts.
+ *
+ * @author demo-sqslistener
+ */
+final class RateWindow {
+
+    /** Seconds the ring covers, the longest window a rate can be taken over */
+    static final int MAX_SECONDS = 60;
+
+    private final LongSupplier nanoClock;
+    private final long[] counts = new long[MAX_SECONDS];
+    /** Second each slot of {@link #counts} belongs to */
+    private final long[] seconds = new long[MAX_SECONDS];
+
+    RateWindow(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        Arrays.fill(seconds, Long.MIN_VALUE);
+    }
+
+    synchronized void record() {
+        long second = currentSecond();
+        int slot = Math.floorMod(second, MAX_SECONDS);
+        if (seconds[slot] != second) {
+            seconds[slot] = second;
+            counts[slot] = 0;
+        }
+        counts[slot]++;
+    }
+
+    /**
+     * @param windowSeconds length of the window, the current second excluded as it is still filling
+     * @return mean events per second over the window
+     */
+    synchronized double perSecond(int windowSeconds) {
+        int window = Math.max(1, Math.min(windowSeconds, MAX_SECONDS - 1));
+        long current = currentSecond();
+        long total = 0;
+        for (long second = current - window; second < current; second++) {
+            int slot = Math.floorMod(second, MAX_SECONDS);
+            if (seconds[slot] == second) {
+                total += counts[slot];
+            }
+        }
+        return (double) total / window;
+    }
+
+    private long currentSecond() {
+        return TimeUnit.NANOSECONDS.toSeconds(nanoClock.getAsLong());
+    }
+}
@@ -0,0 +1,69 @@
+package com.learning.demo_sqslistener.metrics;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.handlers.HandlerContextKey;
+import com.amazonaws.handlers.RequestHandler2;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AWS SDK request handler that records the latency of every SQS API call, tagged with the
+ * operation (e.g. {@code ReceiveMessage}, {@code SendMessageBatch}) and outcome.
+ * Timers are created once per operation and reused afterwards.
+ *
+ * @author demo-sqslistener
+ */
+public class SqsClientMetricsHandler extends RequestHandler2 {
+
+    static final String METRIC_NAME = "sqs.client.requests";
+
+    private static final HandlerContextKey<Long> START_NANOS = new HandlerContextKey<>("MetricsStartNanos");
+
+    private final MeterRegistry registry;
+    private final Map<Class<?>, Timer> successTimers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Timer> failureTimers = new ConcurrentHashMap<>();
+
+    public SqsClientMetricsHandler(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void beforeRequest(Request<?> request) {
+        request.addHandlerContext(START_NANOS, System.nanoTime());
+    }
+
+    @Override
+    public void afterResponse(Request<?> request, Response<?> response) {
+        record(request, successTimers, "success");
+    }
+
+    @Override
+    public void afterError(Request<?> request, Response<?> response, Exception e) {
+        record(request, failureTimers, "failure");
+    }
+
+    private void record(Request<?> request, Map<Class<?>, Timer> timers, String outcome) {
+        Long start = request.getHandlerContext(START_NANOS);
+        AmazonWebServiceRequest original = request.getOriginalRequest();
+        if (start == null || original == null) {
+            return;
+        }
+        Timer timer = timers.computeIfAbsent(original.getClass(), type ->
+            ListenerMetrics.latencyTimer(METRIC_NAME, "Latency of SQS API calls")
+                .tag("operation", operationName(type))
+                .tag("outcome", outcome)
+                .register(registry));
+        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    static String operationName(Class<?> requestType) {
+        String name = requestType.getSimpleName();
+        return name.endsWith("Request") ? name.substring(0, name.length() - "Request".length()) : name;
+    }
+}
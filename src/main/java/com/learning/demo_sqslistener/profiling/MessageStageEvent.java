@@ -0,0 +1,186 @@
+package com.learning.demo_sqslistener.profiling;
+
+import com.google.common.base.Utf8;
+import com.learning.demo_sqslistener.exception.ErrorCodes;
+import com.learning.demo_sqslistener.exception.MessageProcessingException;
+import com.learning.demo_sqslistener.exception.SQSProcessingException;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JDK Flight Recorder event covering one stage of the message pipeline, e.g. the receive
+ * call, sanitization, the downstream POST or the delete.
+ * <p>
+ * Usage follows the JFR begin/end pattern:
+ * <pre>
+ * MessageStageEvent event = MessageStageEvent.start(MessageStageEvent.POST, messageId, body);
+ * ... do the work ...
+ * event.succeeded();   // or event.failed(exception) / event.failed(errorCode)
+ * </pre>
+ * Only the first call ending an event counts, so a stage may be failed from an outer
+ * catch block after it already succeeded.
+ * When the event is disabled {@link #shouldCommit()} is false and nothing but the timestamps
+ * is touched; the payload size is only computed for events that are actually committed.
+ * <p>
+ * The 1 ms threshold keeps fast successful stages out of continuous recordings. Failed stages
+ * are in addition reported as a {@link MessageStageFailureEvent}, which has no threshold.
+ *
+ * @author demo-sqslistener
+ */
+@Name("com.learning.demo_sqslistener.MessageStage")
+@Label("Message Stage")
+@Category({"SQS Listener"})
+@Description("Duration and outcome of one stage of processing an SQS message")
+@StackTrace(false)
+@Threshold("1 ms")
+public class MessageStageEvent extends jdk.jfr.Event {
+
+    public static final String RECEIVE = "RECEIVE";
+    public static final String VALIDATE = "VALIDATE";
+    public static final String SANITIZE = "SANITIZE";
+    public static final String JSON_VALIDATE = "JSON_VALIDATE";
+    public static final String POST = "POST";
+    public static final String DELETE = "DELETE";
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Message ID")
+    String messageId;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Error Code")
+    String errorCode;
+
+    /** Payload whose UTF-8 size is reported; kept out of the recording itself */
+    private transient String payload;
+
+    private transient boolean finished;
+
+    private transient long startNanos;
+
+    /**
+     * Creates and begins an event for a stage working on a single message.
+     *
+     * @param stage one of the stage constants
+     * @param messageId SQS message ID, may be null
+     * @param payload message body, used to report its size
+     * @return the begun event
+     */
+    public static MessageStageEvent start(String stage, String messageId, String payload) {
+        MessageStageEvent event = new MessageStageEvent();
+        event.stage = stage;
+        event.messageId = messageId;
+        event.payload = payload;
+        event.startNanos = System.nanoTime();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Creates and begins an event for a stage without a single message, such as a receive call.
+     *
+     * @param stage one of the stage constants
+     * @return the begun event
+     */
+    public static MessageStageEvent start(String stage) {
+        return start(stage, null, null);
+    }
+
+    /**
+     * @param bytes size to report instead of the payload size, e.g. the total of a received batch
+     */
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    public void succeeded() {
+        finish("SUCCESS", null);
+    }
+
+    public void failed(Throwable failure) {
+        finish("FAILURE", errorCodeOf(failure));
+    }
+
+    public void failed(ErrorCodes code) {
+        finish("FAILURE", code);
+    }
+
+    private void finish(String outcome, ErrorCodes code) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        end();
+        if (shouldCommit()) {
+            this.outcome = outcome;
+            this.errorCode = code != null ? code.getCode() : null;
+            if (payload != null) {
+                this.bytes = encodedLength(payload);
+            }
+            commit();
+        }
+        if ("FAILURE".equals(outcome)) {
+            commitFailure(code);
+        }
+        payload = null;
+    }
+
+    private void commitFailure(ErrorCodes code) {
+        MessageStageFailureEvent failure = new MessageStageFailureEvent();
+        if (!failure.isEnabled()) {
+            return;
+        }
+        failure.stage = stage;
+        failure.messageId = messageId;
+        failure.errorCode = code != null ? code.getCode() : null;
+        failure.stageDuration = System.nanoTime() - startNanos;
+        failure.bytes = bytes != 0 || payload == null ? bytes : encodedLength(payload);
+        failure.commit();
+    }
+
+    /**
+     * UTF-8 size of a payload as recorded in the {@code bytes} field of stage events.
+     *
+     * @param payload message body
+     * @return encoded length in bytes
+     */
+    public static long encodedLength(String payload) {
+        try {
+            return Utf8.encodedLength(payload);
+        } catch (IllegalArgumentException e) {
+            // Unpaired surrogate; the char count is close enough for profiling
+            return payload.length();
+        }
+    }
+
+    /**
+     * Maps a failure to the {@link ErrorCodes} value it carries, or the closest generic one.
+     *
+     * @param failure exception raised by a stage
+     * @return the error code to report
+     */
+    static ErrorCodes errorCodeOf(Throwable failure) {
+        if (failure instanceof MessageProcessingException e) {
+            return e.getErrorCode();
+        }
+        if (failure instanceof SQSProcessingException e) {
+            return e.getErrorCode();
+        }
+        if (failure instanceof IllegalArgumentException) {
+            return ErrorCodes.MESSAGE_VALIDATION_ERROR;
+        }
+        return ErrorCodes.UNEXPECTED_ERROR;
+    }
+}
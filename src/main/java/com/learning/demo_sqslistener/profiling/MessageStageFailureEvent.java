@@ -0,0 +1,44 @@
+package com.learning.demo_sqslistener.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event for a pipeline stage that failed.
+ * <p>
+ * {@link MessageStageEvent} has a duration threshold so that fast successful stages stay out
+ * of continuous recordings, which would also drop fast failures such as a rejected payload.
+ * This event has no threshold and is committed by {@link MessageStageEvent} whenever a stage
+ * fails, so every failure is recorded whatever its duration.
+ *
+ * @author demo-sqslistener
+ */
+@Name("com.learning.demo_sqslistener.MessageStageFailure")
+@Label("Message Stage Failure")
+@Category({"SQS Listener"})
+@Description("Stage of processing an SQS message that failed, recorded regardless of duration")
+@StackTrace(false)
+class MessageStageFailureEvent extends jdk.jfr.Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Message ID")
+    String messageId;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Error Code")
+    String errorCode;
+
+    @Label("Stage Duration")
+    @Timespan
+    long stageDuration;
+}
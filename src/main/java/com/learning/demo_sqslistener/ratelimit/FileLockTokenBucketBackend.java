@@ -0,0 +1,67 @@
+package com.learning.demo_sqslistener.ratelimit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link TokenBucketBackend} keeping each bucket in a small file guarded by an exclusive file lock.
+ * All listener processes on one machine, or on machines sharing a file system with working locks,
+ * share the buckets in the same directory. Meant for running several nodes on one machine and for
+ * tests; clusters plug in a backend on a shared store by defining their own bean.
+ * <p>
+ * A bucket file holds the token count as a double and the time of the last refill in epoch
+ * milliseconds, since processes do not share a monotonic clock.
+ *
+ * @author demo-sqslistener
+ */
+@Component
+public class FileLockTokenBucketBackend implements TokenBucketBackend {
+
+    private static final int STATE_BYTES = Double.BYTES + Long.BYTES;
+    /** File locks are held per process, so threads of this JVM take turns before locking */
+    private static final Object PROCESS_LOCK = new Object();
+
+    private final Path directory;
+
+    public FileLockTokenBucketBackend(@Value("${api.global-rate-limit.file-dir:data/ratelimit}") String directory) {
+        this.directory = Path.of(directory);
+    }
+
+    @Override
+    public long take(String bucket, long requested, double permitsPerSecond, long capacity) throws IOException {
+        Files.createDirectories(directory);
+        synchronized (PROCESS_LOCK) {
+            try (FileChannel channel = FileChannel.open(directory.resolve(bucket + ".bucket"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock()) {
+                long now = System.currentTimeMillis();
+                ByteBuffer state = ByteBuffer.allocate(STATE_BYTES);
+                double tokens;
+                long refilledAt;
+                if (channel.read(state, 0) == STATE_BYTES) {
+                    state.flip();
+                    tokens = state.getDouble();
+                    refilledAt = state.getLong();
+                } else {
+                    tokens = capacity;
+                    refilledAt = now;
+                }
+                tokens = Math.min(capacity, tokens + Math.max(0, now - refilledAt) * permitsPerSecond / 1000.0);
+                long granted = Math.min(requested, (long) tokens);
+                tokens -= granted;
+                state.clear();
+                state.putDouble(tokens).putLong(now).flip();
+                channel.write(state, 0);
+                return granted;
+            }
+        }
+    }
+}
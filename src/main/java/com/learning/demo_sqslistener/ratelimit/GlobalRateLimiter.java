@@ -0,0 +1,234 @@
+package com.learning.demo_sqslistener.ratelimit;
+
+import com.google.common.util.concurrent.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Rate limit on downstream calls that holds across all listener nodes.
+ * <p>
+ * The nodes share a token bucket in a {@link TokenBucketBackend}. Each node leases tokens in
+ * batches of {@code lease-size} and hands them out locally, so the backend is called once per
+ * batch instead of once per message. Leased tokens expire after {@code lease-ttl-ms}, which
+ * bounds how far an idle node's lease can push the cluster over the limit when it resumes.
+ * <p>
+ * When the backend cannot be reached the node falls back to a local limit of its share of the
+ * rate, {@code permits-per-second / expected-nodes}, and tries the backend again after
+ * {@code coordination-retry-ms}.
+ * <p>
+ * Only one thread at a time calls the backend, without holding the limiter's lock; the other
+ * threads that run out of tokens wait for its lease within their own timeout.
+ * <p>
+ * The rate can be changed while running. It applies to the node's next lease and to its fallback;
+ * other nodes take it over only when they are changed as well.
+ *
+ * @author demo-sqslistener
+ */
+@Component
+public class GlobalRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(GlobalRateLimiter.class);
+
+    private final boolean enabled;
+    private final TokenBucketBackend backend;
+    private final String bucket;
+    private final int expectedNodes;
+    /** Guarded by this */
+    private double permitsPerSecond;
+    private final long capacity;
+    private final int leaseSize;
+    private final long leaseTtlNanos;
+    private final long coordinationRetryNanos;
+    private final RateLimiter fallback;
+
+    /** Guarded by this, like the fields below */
+    private long leased;
+    private long leaseExpiresAt;
+    private boolean degraded;
+    private long coordinationRetryAt;
+    /** Whether a thread is calling the backend for a lease */
+    private boolean leasing;
+
+    @Autowired
+    public GlobalRateLimiter(
+            @Value("${api.global-rate-limit.enabled:false}") boolean enabled,
+            TokenBucketBackend backend,
+            @Value("${api.global-rate-limit.bucket:downstream}") String bucket,
+            @Value("${api.global-rate-limit.permits-per-second:50}") double permitsPerSecond,
+            @Value("${api.global-rate-limit.burst:50}") long burst,
+            @Value("${api.global-rate-limit.lease-size:10}") int leaseSize,
+            @Value("${api.global-rate-limit.lease-ttl-ms:1000}") long leaseTtlMs,
+            @Value("${api.global-rate-limit.expected-nodes:1}") int expectedNodes,
+            @Value("${api.global-rate-limit.coordination-retry-ms:5000}") long coordinationRetryMs) {
+        this.enabled = enabled;
+        this.backend = backend;
+        this.bucket = bucket;
+        this.permitsPerSecond = permitsPerSecond;
+        this.expectedNodes = expectedNodes;
+        this.capacity = Math.max(burst, leaseSize);
+        this.leaseSize = leaseSize;
+        this.leaseTtlNanos = TimeUnit.MILLISECONDS.toNanos(leaseTtlMs);
+        this.coordinationRetryNanos = TimeUnit.MILLISECONDS.toNanos(coordinationRetryMs);
+        if (!enabled) {
+            this.fallback = null;
+            return;
+        }
+        if (permitsPerSecond <= 0 || leaseSize < 1 || expectedNodes < 1) {
+            throw new IllegalArgumentException(
+                "api.global-rate-limit.permits-per-second, lease-size and expected-nodes must be positive");
+        }
+        this.fallback = RateLimiter.create(permitsPerSecond / expectedNodes);
+        logger.info("Global rate limit of {} permits/s on bucket '{}', leasing {} tokens at a time",
+            permitsPerSecond, bucket, leaseSize);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param permitsPerSecond new cluster-wide rate
+     * @throws IllegalStateException if the limit is not enabled
+     */
+    public synchronized void setPermitsPerSecond(double permitsPerSecond) {
+        if (!enabled) {
+            throw new IllegalStateException("The global rate limit is not enabled");
+        }
+        if (!(permitsPerSecond > 0)) {
+            throw new IllegalArgumentException("Permits per second must be positive: " + permitsPerSecond);
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        fallback.setRate(permitsPerSecond / expectedNodes);
+        logger.info("Global rate limit changed to {} permits/s", permitsPerSecond);
+    }
+
+    public synchronized double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    /**
+     * @return whether the backend is unreachable and the node limits itself to its share of the rate
+     */
+    public synchronized boolean isDegraded() {
+        return degraded;
+    }
+
+    /**
+     * Waits for a permit.
+     *
+     * @param timeoutNanos longest time to wait, {@link Long#MAX_VALUE} to wait indefinitely
+     * @return true if a permit was acquired, false if the timeout passed first or the thread was interrupted
+     */
+    public boolean tryAcquire(long timeoutNanos) {
+        if (!enabled) {
+            return true;
+        }
+        long start = System.nanoTime();
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (leased > 0 && now - leaseExpiresAt < 0) {
+                    leased--;
+                    return true;
+                }
+                leased = 0;
+                if (leasing) {
+                    // Another thread is calling the backend; wait for the tokens it brings back
+                    long remaining = remainingNanos(start, timeoutNanos);
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                    continue;
+                }
+                if (degraded && now - coordinationRetryAt < 0) {
+                    waitNanos = -1;
+                } else {
+                    leasing = true;
+                    waitNanos = 0;
+                }
+            }
+            if (waitNanos == 0) {
+                waitNanos = lease();
+                if (waitNanos == 0) {
+                    return true;
+                }
+            }
+            long remaining = remainingNanos(start, timeoutNanos);
+            if (waitNanos < 0) {
+                if (remaining == Long.MAX_VALUE) {
+                    fallback.acquire();
+                    return true;
+                }
+                return fallback.tryAcquire(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            }
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(Math.min(waitNanos, remaining));
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Leases tokens from the backend and takes one of them for the caller. The backend may be a
+     * network round trip away, so it is called without holding the lock; the caller must have set
+     * {@link #leasing}, which keeps other threads from calling it at the same time.
+     *
+     * @return 0 if a token was taken, the time to wait for the bucket to refill, or -1 if the
+     *         backend failed and the fallback applies
+     */
+    private long lease() {
+        long now = System.nanoTime();
+        try {
+            long granted = backend.take(bucket, leaseSize, getPermitsPerSecond(), capacity);
+            synchronized (this) {
+                if (degraded) {
+                    logger.info("Rate limit backend reachable again, leaving the per-node fallback");
+                    degraded = false;
+                }
+                if (granted > 0) {
+                    leased = granted - 1;
+                    leaseExpiresAt = now + leaseTtlNanos;
+                    return 0;
+                }
+                // Until the bucket has refilled enough for a lease
+                return (long) (leaseSize * TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+            }
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                if (!degraded) {
+                    logger.warn("Rate limit backend unavailable, limiting this node to {} permits/s: {}",
+                        fallback.getRate(), e.getMessage());
+                }
+                degraded = true;
+                coordinationRetryAt = now + coordinationRetryNanos;
+                return -1;
+            }
+        } finally {
+            synchronized (this) {
+                leasing = false;
+                notifyAll();
+            }
+        }
+    }
+
+    private static long remainingNanos(long start, long timeoutNanos) {
+        return timeoutNanos == Long.MAX_VALUE ? Long.MAX_VALUE : timeoutNanos - (System.nanoTime() - start);
+    }
+}
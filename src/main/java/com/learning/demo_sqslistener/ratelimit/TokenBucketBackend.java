@@ -0,0 +1,27 @@
+package com.learning.demo_sqslistener.ratelimit;
+
+import java.io.IOException;
+
+/**
+ * Coordination store holding token buckets shared by all listener nodes.
+ * <p>
+ * {@link GlobalRateLimiter} calls it only to lease a batch of tokens, not once per message,
+ * so an implementation may make a network round trip per call.
+ *
+ * @author demo-sqslistener
+ */
+public interface TokenBucketBackend {
+
+    /**
+     * Refills the bucket for the time passed since it was last used and takes up to the
+     * requested number of tokens from it.
+     *
+     * @param bucket name of the bucket
+     * @param requested number of tokens wanted
+     * @param permitsPerSecond refill rate of the bucket
+     * @param capacity maximum number of tokens the bucket holds
+     * @return number of tokens granted, between 0 and {@code requested}
+     * @throws IOException if the coordination store cannot be reached
+     */
+    long take(String bucket, long requested, double permitsPerSecond, long capacity) throws IOException;
+}
@@ -0,0 +1,234 @@
+package com.learning.demo_sqslistener.service;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+import com.amazonaws.services.sqs.model.SendMessageResult;
+import com.learning.demo_sqslistener.exception.ErrorCodes;
+import com.learning.demo_sqslistener.exception.SQSProcessingException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Producer that combines concurrent sends into {@code SendMessageBatch} calls.
+ * <p>
+ * Sends are collected for up to the configured linger time, grouped by queue URL and
+ * flushed as soon as a batch reaches the SQS limit of 10 entries or 256KB, or when the
+ * linger time expires. Each caller's future is completed with the result of its own
+ * batch entry, so a failed entry only fails that caller.
+ *
+ * @author demo-sqslistener
+ */
+@Service
+public class BatchingMessageSender {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchingMessageSender.class);
+
+    private final AmazonSQS amazonSQS;
+    private final long lingerNanos;
+    private final BlockingQueue<PendingSend> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService flushExecutor;
+    private final Thread collector;
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean running = true;
+
+    public BatchingMessageSender(
+            AmazonSQS amazonSQS,
+            @Value("${aws.sqs.producer.linger-ms:5}") long lingerMs,
+            @Value("${aws.sqs.producer.flush-threads:8}") int flushThreads) {
+        this.amazonSQS = amazonSQS;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.flushExecutor = Executors.newFixedThreadPool(flushThreads, runnable -> {
+            Thread thread = new Thread(runnable, "sqs-batch-flush-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.collector = new Thread(this::collect, "sqs-batch-collector");
+        this.collector.setDaemon(true);
+        this.collector.start();
+        logger.info("BatchingMessageSender initialized with linger of {} ms", lingerMs);
+    }
+
+    /**
+     * Queues a message for the next batch to its queue.
+     *
+     * @param queueUrl target queue
+     * @param body     message body
+     * @return future completed with the result of this message's batch entry
+     */
+    public CompletableFuture<SendMessageResult> send(String queueUrl, String body) {
+        PendingSend send = new PendingSend(queueUrl, body, SqsBatchLimits.payloadSize(body, null));
+        if (send.payloadBytes > SqsBatchLimits.MAX_BATCH_PAYLOAD_BYTES) {
+            send.future.completeExceptionally(new SQSProcessingException(ErrorCodes.MESSAGE_SIZE_EXCEEDED,
+                String.format("Message of %d bytes exceeds SQS limit of %d bytes",
+                    send.payloadBytes, SqsBatchLimits.MAX_BATCH_PAYLOAD_BYTES)));
+            return send.future;
+        }
+        if (!running) {
+            send.future.completeExceptionally(new SQSProcessingException(ErrorCodes.SQS_MESSAGE_SEND_ERROR,
+                "Producer is shutting down"));
+            return send.future;
+        }
+        pending.incrementAndGet();
+        send.future.whenComplete((result, error) -> pending.decrementAndGet());
+        queue.add(send);
+        // shutdown() may have run between the check and the add, after the collector drained the
+        // queue for the last time; whoever removes the send from the queue owns it
+        if (!running && queue.remove(send)) {
+            send.future.completeExceptionally(new SQSProcessingException(ErrorCodes.SQS_MESSAGE_SEND_ERROR,
+                "Producer is shutting down"));
+        }
+        return send.future;
+    }
+
+    /**
+     * @return number of sends accepted but not yet completed
+     */
+    public int pendingCount() {
+        return pending.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            collector.join(TimeUnit.SECONDS.toMillis(5));
+            flushExecutor.shutdown();
+            flushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void collect() {
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingSend first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                Map<String, Batch> batches = new LinkedHashMap<>();
+                long deadline = System.nanoTime() + lingerNanos;
+                PendingSend next = first;
+                while (next != null) {
+                    add(batches, next);
+                    long remaining = deadline - System.nanoTime();
+                    next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                }
+                // Anything that queued up while lingering rides along without further waiting
+                List<PendingSend> ready = new ArrayList<>();
+                queue.drainTo(ready, SqsBatchLimits.MAX_BATCH_ENTRIES * 10);
+                for (PendingSend send : ready) {
+                    add(batches, send);
+                }
+                for (Batch batch : batches.values()) {
+                    dispatch(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void add(Map<String, Batch> batches, PendingSend send) {
+        Batch batch = batches.get(send.queueUrl);
+        if (batch != null && !SqsBatchLimits.fits(batch.sends.size(), batch.payloadBytes, send.payloadBytes)) {
+            dispatch(batches.remove(send.queueUrl));
+            batch = null;
+        }
+        if (batch == null) {
+            batch = new Batch(send.queueUrl);
+            batches.put(send.queueUrl, batch);
+        }
+        batch.sends.add(send);
+        batch.payloadBytes += send.payloadBytes;
+        if (batch.sends.size() == SqsBatchLimits.MAX_BATCH_ENTRIES) {
+            dispatch(batches.remove(send.queueUrl));
+        }
+    }
+
+    private void dispatch(Batch batch) {
+        try {
+            flushExecutor.execute(() -> flush(batch));
+        } catch (RuntimeException e) {
+            flush(batch);
+        }
+    }
+
+    private void flush(Batch batch) {
+        List<SendMessageBatchRequestEntry> entries = new ArrayList<>(batch.sends.size());
+        for (int i = 0; i < batch.sends.size(); i++) {
+            entries.add(new SendMessageBatchRequestEntry(String.valueOf(i), batch.sends.get(i).body));
+        }
+        SendMessageBatchResult result;
+        try {
+            result = amazonSQS.sendMessageBatch(new SendMessageBatchRequest(batch.queueUrl, entries));
+        } catch (RuntimeException e) {
+            logger.error("SendMessageBatch of {} entries failed: {}", entries.size(), e.getMessage());
+            SQSProcessingException failure = new SQSProcessingException(ErrorCodes.SQS_MESSAGE_SEND_ERROR, e);
+            batch.sends.forEach(send -> send.future.completeExceptionally(failure));
+            return;
+        }
+        for (SendMessageBatchResultEntry entry : result.getSuccessful()) {
+            batch.sends.get(Integer.parseInt(entry.getId())).future.complete(new SendMessageResult()
+                .withMessageId(entry.getMessageId())
+                .withMD5OfMessageBody(entry.getMD5OfMessageBody())
+                .withMD5OfMessageAttributes(entry.getMD5OfMessageAttributes())
+                .withSequenceNumber(entry.getSequenceNumber()));
+        }
+        for (BatchResultErrorEntry entry : result.getFailed()) {
+            batch.sends.get(Integer.parseInt(entry.getId())).future.completeExceptionally(
+                new SQSProcessingException(ErrorCodes.SQS_MESSAGE_SEND_ERROR,
+                    String.format("%s: %s", entry.getCode(), entry.getMessage())));
+        }
+        for (PendingSend send : batch.sends) {
+            if (!send.future.isDone()) {
+                send.future.completeExceptionally(new SQSProcessingException(ErrorCodes.SQS_MESSAGE_SEND_ERROR,
+                    "No result returned for batch entry"));
+            }
+        }
+    }
+
+    private static final class PendingSend {
+        private final String queueUrl;
+        private final String body;
+        private final int payloadBytes;
+        private final CompletableFuture<SendMessageResult> future = new CompletableFuture<>();
+
+        private PendingSend(String queueUrl, String body, int payloadBytes) {
+            this.queueUrl = queueUrl;
+            this.body = body;
+            this.payloadBytes = payloadBytes;
+        }
+    }
+
+    private static final class Batch {
+        private final String queueUrl;
+        private final List<PendingSend> sends = new ArrayList<>(SqsBatchLimits.MAX_BATCH_ENTRIES);
+        private int payloadBytes;
+
+        private Batch(String queueUrl) {
+            this.queueUrl = queueUrl;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.learning.demo_sqslistener.service;
+
+import com.amazonaws.services.sqs.model.SendMessageResult;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Streams a bulk request body into SQS.
+ * <p>
+ * The body is either NDJSON (one JSON document per line) or a single JSON array, and is
+ * read incrementally rather than buffered. Each record is validated and handed to
+ * {@link SQSService#sendMessageAsync(String, String)}, so records share batched sends. When a
+ * record carries the configured partition key field, its value routes the record to a shard. At most
+ * a configured number of records are in flight at once, which bounds memory regardless
+ * of the body size. Every send also takes a {@link SendAdmissionLimiter} permit, so bulk records count
+ * against the same pending-send limit as single sends; when the limit is reached the request waits
+ * for its own oldest sends, and a record is rejected only if none of its sends are left to wait for.
+ * One NDJSON result line is streamed back per record, in input order.
+ *
+ * @author demo-sqslistener
+ */
+@Service
+public class BulkIngestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkIngestService.class);
+
+    /** Maximum leading whitespace scanned while detecting the body format */
+    private static final int FORMAT_DETECTION_LIMIT = 64 * 1024;
+
+    private final SQSService sqsService;
+    private final SendAdmissionLimiter admissionLimiter;
+    private final int maxInFlight;
+    private final String partitionKeyField;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonFactory jsonFactory = objectMapper.getFactory();
+
+    public BulkIngestService(SQSService sqsService, SendAdmissionLimiter admissionLimiter,
+                             @Value("${aws.sqs.bulk.max-in-flight:500}") int maxInFlight,
+                             @Value("${aws.sqs.bulk.partition-key-field:}") String partitionKeyField) {
+        this.sqsService = sqsService;
+        this.admissionLimiter = admissionLimiter;
+        this.maxInFlight = maxInFlight;
+        this.partitionKeyField = partitionKeyField;
+    }
+
+    /**
+     * Reads records from {@code body}, enqueues them and writes a result per record to {@code results}.
+     *
+     * @param body    NDJSON or JSON array request body
+     * @param results stream receiving one NDJSON result line per record
+     * @return summary of the accepted and rejected records
+     * @throws IOException if reading the body or writing results fails
+     */
+    public BulkIngestSummary ingest(InputStream body, OutputStream results) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        JsonGenerator generator = jsonFactory.createGenerator(results).setRootValueSeparator(null);
+        ResultWindow window = new ResultWindow(generator);
+
+        // Peek at the first significant character to tell a JSON array from NDJSON
+        reader.mark(FORMAT_DETECTION_LIMIT);
+        int first = skipWhitespace(reader);
+        reader.reset();
+        if (first == '[') {
+            readArray(reader, window);
+        } else if (first != -1) {
+            readLines(reader, window);
+        }
+        window.drain();
+        generator.flush();
+        logger.info("Bulk ingest finished: {} accepted, {} rejected", window.accepted, window.rejected);
+        return new BulkIngestSummary(window.accepted, window.rejected);
+    }
+
+    private void readLines(Reader reader, ResultWindow window) throws IOException {
+        StringBuilder line = new StringBuilder();
+        long lineNumber = 0;
+        int limit = MessageProcessor.MAX_MESSAGE_SIZE;
+        while (true) {
+            line.setLength(0);
+            boolean truncated = false;
+            int c;
+            while ((c = reader.read()) != -1 && c != '\n') {
+                if (line.length() <= limit) {
+                    line.append((char) c);
+                } else {
+                    truncated = true;
+                }
+            }
+            if (c == -1 && line.isEmpty()) {
+                return;
+            }
+            lineNumber++;
+            String record = line.toString().trim();
+            if (truncated || line.length() > limit) {
+                window.reject(lineNumber, "Message size exceeds limit of " + limit + " bytes");
+            } else if (!record.isEmpty()) {
+                submit(lineNumber, record, null, window);
+            }
+            if (c == -1) {
+                return;
+            }
+        }
+    }
+
+    private void readArray(Reader reader, ResultWindow window) throws IOException {
+        long item = 0;
+        try (JsonParser parser = jsonFactory.createParser(reader)) {
+            parser.nextToken();
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    window.reject(item + 1, "Unexpected end of JSON array");
+                    return;
+                }
+                item++;
+                JsonNode node = objectMapper.readTree(parser);
+                submit(item, objectMapper.writeValueAsString(node), node, window);
+            }
+        } catch (JsonProcessingException e) {
+            window.reject(item + 1, "Invalid JSON format: " + e.getOriginalMessage());
+        }
+    }
+
+    private void submit(long lineNumber, String record, JsonNode node, ResultWindow window) throws IOException {
+        int size = SqsBatchLimits.payloadSize(record, null);
+        if (size > MessageProcessor.MAX_MESSAGE_SIZE) {
+            window.reject(lineNumber, "Message size exceeds limit of " + MessageProcessor.MAX_MESSAGE_SIZE + " bytes");
+            return;
+        }
+        if (node == null) {
+            try {
+                node = objectMapper.readTree(record);
+            } catch (JsonProcessingException e) {
+                window.reject(lineNumber, "Invalid JSON format: " + e.getOriginalMessage());
+                return;
+            }
+        }
+        if (!window.admit()) {
+            window.reject(lineNumber, "Too many pending sends");
+            return;
+        }
+        CompletableFuture<SendMessageResult> future;
+        try {
+            future = sqsService.sendMessageAsync(record, partitionKey(node));
+        } catch (RuntimeException e) {
+            admissionLimiter.release();
+            throw e;
+        }
+        window.add(lineNumber, future.whenComplete((result, error) -> admissionLimiter.release()));
+    }
+
+    private String partitionKey(JsonNode node) {
+        if (partitionKeyField.isEmpty()) {
+            return null;
+        }
+        JsonNode key = node.get(partitionKeyField);
+        return key != null && key.isValueNode() && !key.isNull() ? key.asText() : null;
+    }
+
+    private static int skipWhitespace(Reader reader) throws IOException {
+        int c;
+        do {
+            c = reader.read();
+        } while (c != -1 && Character.isWhitespace(c));
+        return c;
+    }
+
+    /**
+     * Ordered window of in-flight sends. Results are written in input order; when the window
+     * is full, the oldest send is awaited before another record is read.
+     */
+    private final class ResultWindow {
+        private final JsonGenerator generator;
+        private final Deque<InFlight> inFlight = new ArrayDeque<>();
+        private long accepted;
+        private long rejected;
+
+        private ResultWindow(JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        void add(long lineNumber, CompletableFuture<SendMessageResult> future) throws IOException {
+            if (inFlight.size() >= maxInFlight) {
+                writeOldest();
+            }
+            inFlight.addLast(new InFlight(lineNumber, future, null));
+        }
+
+        void reject(long lineNumber, String error) throws IOException {
+            if (inFlight.size() >= maxInFlight) {
+                writeOldest();
+            }
+            inFlight.addLast(new InFlight(lineNumber, null, error));
+        }
+
+        /**
+         * Takes an admission permit for the next send, writing out the oldest results while the
+         * limit is reached and this request still has sends in flight.
+         *
+         * @return true if a permit was taken, false if the limit is held entirely by other requests
+         */
+        boolean admit() throws IOException {
+            while (!admissionLimiter.tryAcquire()) {
+                if (inFlight.stream().noneMatch(pending -> pending.future != null)) {
+                    return false;
+                }
+                writeOldest();
+            }
+            return true;
+        }
+
+        void drain() throws IOException {
+            while (!inFlight.isEmpty()) {
+                writeOldest();
+            }
+        }
+
+        private void writeOldest() throws IOException {
+            InFlight oldest = inFlight.removeFirst();
+            if (oldest.future != null && !oldest.future.isDone()) {
+                // About to block: push what is already known to the client first
+                generator.flush();
+            }
+            String messageId = null;
+            String error = oldest.error;
+            if (oldest.future != null) {
+                try {
+                    messageId = oldest.future.join().getMessageId();
+                } catch (CompletionException e) {
+                    error = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+                }
+            }
+            generator.writeStartObject();
+            generator.writeNumberField("line", oldest.lineNumber);
+            if (error == null) {
+                accepted++;
+                generator.writeStringField("status", "OK");
+                generator.writeStringField("messageId", messageId);
+            } else {
+                rejected++;
+                generator.writeStringField("status", "ERROR");
+                generator.writeStringField("error", error);
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+    }
+
+    private record InFlight(long lineNumber, CompletableFuture<SendMessageResult> future, String error) {
+    }
+
+    /**
+     * Outcome counts of a bulk ingest request.
+     */
+    public record BulkIngestSummary(long accepted, long rejected) {
+    }
+}
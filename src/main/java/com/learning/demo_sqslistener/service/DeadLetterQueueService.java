@@ -4,6 +4,7 @@ import com.amazonaws.services.sqs.AmazonSQS;
 import com.amazonaws.services.sqs.model.Message;
 import com.amazonaws.services.sqs.model.MessageAttributeValue;
 import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.learning.demo_sqslistener.exception.FailureLog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -16,36 +17,98 @@ public class DeadLetterQueueService {
     private final AmazonSQS amazonSQS;
     private final String sourceQueueUrl;
     private final String deadLetterQueueUrl;
+    private final DlqSpillJournal spillJournal;
 
     public DeadLetterQueueService(
             AmazonSQS amazonSQS,
             @Value("${aws.sqs.url}") String sourceQueueUrl,
-            @Value("${aws.sqs.dlq.url}") String deadLetterQueueUrl) {
+            @Value("${aws.sqs.dlq.url}") String deadLetterQueueUrl,
+            DlqSpillJournal spillJournal) {
         this.amazonSQS = amazonSQS;
         this.sourceQueueUrl = sourceQueueUrl;
         this.deadLetterQueueUrl = deadLetterQueueUrl;
+        this.spillJournal = spillJournal;
     }
 
-    public boolean moveMessageToDLQ(Message message, String failureReason) {
+    /**
+     * Result of moving a message to the Dead Letter Queue.
+     */
+    public enum MoveResult {
+        /** Stored in the DLQ or the spill journal and removed from the source queue */
+        MOVED,
+        /** Stored in the DLQ or the spill journal, but still on the source queue and due for redelivery */
+        STORED_NOT_DELETED,
+        /** Neither in the DLQ nor in the spill journal; the source queue is untouched */
+        NOT_STORED
+    }
+
+    /**
+     * Moves a message to the Dead Letter Queue and removes it from the source queue.
+     * If the DLQ send fails, the message is written to the local spill journal instead
+     * and still removed from the source queue, so it does not loop back for reprocessing.
+     *
+     * @param message the message to dead-letter
+     * @param failureReason reason recorded in the {@code FailureReason} attribute
+     * @return whether the message was stored and removed from the source queue
+     */
+    public MoveResult moveMessageToDLQ(Message message, String failureReason) {
+        return moveMessageToDLQ(message, failureReason, sourceQueueUrl);
+    }
+
+    /**
+     * Variant of {@link #moveMessageToDLQ(Message, String)} for a message received from a
+     * specific queue, such as one shard of a sharded logical queue.
+     *
+     * @param message the message to dead-letter
+     * @param failureReason reason recorded in the {@code FailureReason} attribute
+     * @param sourceQueueUrl URL of the queue the message was received from
+     * @return whether the message was stored and removed from the source queue
+     */
+    public MoveResult moveMessageToDLQ(Message message, String failureReason, String sourceQueueUrl) {
+        if (!sendToDLQ(message, failureReason)) {
+            return MoveResult.NOT_STORED;
+        }
+
+        try {
+            amazonSQS.deleteMessage(sourceQueueUrl, message.getReceiptHandle());
+            logger.info("Moved message {} to DLQ with reason: {}", message.getMessageId(), failureReason);
+            return MoveResult.MOVED;
+        } catch (RuntimeException e) {
+            FailureLog.warn(logger, e, "Failed to delete dead-lettered message {} from source queue",
+                message.getMessageId());
+            return MoveResult.STORED_NOT_DELETED;
+        }
+    }
+
+    /**
+     * Sends a copy of a message to the DLQ, or to the spill journal if the DLQ cannot be reached,
+     * without touching the source queue. Used for messages that were already deleted from SQS,
+     * such as those processed from the local inbox.
+     *
+     * @param message the message to dead-letter
+     * @param failureReason reason recorded in the {@code FailureReason} attribute
+     * @return true if the message reached the DLQ or the spill journal
+     */
+    public boolean sendToDLQ(Message message, String failureReason) {
+        Map<String, MessageAttributeValue> attributes = Map.of(
+            "OriginalMessageId", new MessageAttributeValue()
+                .withDataType("String")
+                .withStringValue(message.getMessageId()),
+            "FailureReason", new MessageAttributeValue()
+                .withDataType("String")
+                .withStringValue(failureReason));
         SendMessageRequest dlqRequest = new SendMessageRequest()
             .withQueueUrl(deadLetterQueueUrl)
             .withMessageBody(message.getBody())
-            .withMessageAttributes(Map.of(
-                "OriginalMessageId", new MessageAttributeValue()
-                    .withDataType("String")
-                    .withStringValue(message.getMessageId()),
-                "FailureReason", new MessageAttributeValue()
-                    .withDataType("String")
-                    .withStringValue(failureReason)));
+            .withMessageAttributes(attributes);
 
         try {
             amazonSQS.sendMessage(dlqRequest);
-            amazonSQS.deleteMessage(sourceQueueUrl, message.getReceiptHandle());
-            logger.info("Moved message {} to DLQ with reason: {}", message.getMessageId(), failureReason);
             return true;
-        } catch (RuntimeException | Error e) {
-            logger.error("Failed to move message {} to DLQ: {}", message.getMessageId(), e.getMessage(), e);
-            return false;
+        } catch (RuntimeException e) {
+            // The caller reports the outcome; this line only records why the message was spilled
+            FailureLog.warn(logger, e, "Failed to send message {} to the DLQ, spilling it locally", message.getMessageId());
+            return spillJournal.spill(message.getMessageId(), message.getBody(), attributes, failureReason);
         }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,89 @@
+package com.learning.demo_sqslistener.service;
+
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request factory bounding each HTTP request by the {@link ProcessingDeadline} of the message
+ * being processed on the calling thread. Requests made without a deadline keep the configured
+ * timeouts.
+ * <p>
+ * The connect and read timeouts only bound a single connect or a single {@code read()}, so a
+ * response trickling in slower than the read timeout would never be cut off, and the connect time
+ * is not taken from what is left for reading. Each bounded request is therefore also aborted by a
+ * {@link HttpURLConnection#disconnect()} scheduled for the moment the deadline expires, which
+ * fails a connect, write or read in progress. The abort is cancelled by {@link #clear()} once
+ * the exchange is over.
+ *
+ * @author demo-sqslistener
+ */
+class DeadlineRequestFactory extends SimpleClientHttpRequestFactory {
+
+    private static final ThreadLocal<BoundedExchange> CURRENT = new ThreadLocal<>();
+
+    private static final ScheduledThreadPoolExecutor ABORTER = aborter();
+
+    /**
+     * Makes the deadline apply to the requests the calling thread creates until {@link #clear()}.
+     *
+     * @param deadline deadline of the message being processed
+     */
+    static void set(ProcessingDeadline deadline) {
+        CURRENT.set(new BoundedExchange(deadline));
+    }
+
+    /**
+     * Ends the deadline of the calling thread and cancels the aborts of its requests, which must
+     * have completed by now.
+     */
+    static void clear() {
+        BoundedExchange exchange = CURRENT.get();
+        CURRENT.remove();
+        if (exchange != null) {
+            exchange.aborts.forEach(abort -> abort.cancel(false));
+        }
+    }
+
+    @Override
+    protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
+        super.prepareConnection(connection, httpMethod);
+        BoundedExchange exchange = CURRENT.get();
+        if (exchange == null || !exchange.deadline.isBounded()) {
+            return;
+        }
+        // A timeout of 0 means infinite, so never go below 1 ms
+        int remaining = (int) Math.max(1, Math.min(Integer.MAX_VALUE, exchange.deadline.remainingMillis()));
+        connection.setConnectTimeout(bounded(connection.getConnectTimeout(), remaining));
+        connection.setReadTimeout(bounded(connection.getReadTimeout(), remaining));
+        exchange.aborts.add(ABORTER.schedule(connection::disconnect,
+            Math.max(0, exchange.deadline.remainingNanos()), TimeUnit.NANOSECONDS));
+    }
+
+    private static int bounded(int configured, int remaining) {
+        return configured <= 0 ? remaining : Math.min(configured, remaining);
+    }
+
+    private static ScheduledThreadPoolExecutor aborter() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+            Thread.ofPlatform().name("http-deadline-abort").daemon().factory());
+        // Most requests finish in time, so cancelled aborts must not pile up in the queue
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    private static final class BoundedExchange {
+        private final ProcessingDeadline deadline;
+        private final List<ScheduledFuture<?>> aborts = new ArrayList<>(1);
+
+        private BoundedExchange(ProcessingDeadline deadline) {
+            this.deadline = deadline;
+        }
+    }
+}
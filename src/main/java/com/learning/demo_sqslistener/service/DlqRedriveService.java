@@ -0,0 +1,371 @@
+package com.learning.demo_sqslistener.service;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.MessageAttributeValue;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+import com.google.common.util.concurrent.RateLimiter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves messages from the Dead Letter Queue back to the source queue.
+ * <p>
+ * When the source queue is sharded, redriven messages are spread over the shards through
+ * {@link ShardedQueueRouter}; the partition key of the original send is not kept on the
+ * message, so they go round-robin like any send without a key.
+ * <p>
+ * A redrive run uses several parallel long-poll readers on the DLQ. Received messages are
+ * filtered on their {@code FailureReason} attribute, throttled to a messages-per-second
+ * ceiling, re-sent with {@code SendMessageBatch} and deleted from the DLQ with
+ * {@code DeleteMessageBatch} once the send succeeded. Messages that are filtered out, or
+ * seen during a dry run, are left on the DLQ and become visible again once the redrive
+ * visibility timeout expires. A reader stops after several consecutive empty receives.
+ * <p>
+ * The state of the current run is persisted to a local file, and a run that was still
+ * going when the application stopped is resumed on the next start.
+ *
+ * @author demo-sqslistener
+ */
+@Service
+public class DlqRedriveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DlqRedriveService.class);
+
+    /** Minimum interval between two writes of the job state file */
+    private static final long PERSIST_INTERVAL_MS = 1000;
+
+    /** Consecutive SQS errors after which a reader gives up and the run fails */
+    private static final int MAX_CONSECUTIVE_ERRORS = 5;
+
+    private static final String FAILURE_REASON_ATTRIBUTE = "FailureReason";
+
+    private final AmazonSQS amazonSQS;
+    private final ShardedQueueRouter shardRouter;
+    private final String deadLetterQueueUrl;
+    private final double defaultMessagesPerSecond;
+    private final int defaultReaders;
+    private final int visibilityTimeoutSeconds;
+    private final int waitTimeSeconds;
+    private final int emptyReceivesBeforeStop;
+    private final Path stateFile;
+
+    private volatile RedriveJob currentJob;
+    private volatile ExecutorService readerPool;
+    private long lastPersistMillis;
+
+    public DlqRedriveService(
+            AmazonSQS amazonSQS,
+            ShardedQueueRouter shardRouter,
+            @Value("${aws.sqs.dlq.url}") String deadLetterQueueUrl,
+            @Value("${aws.sqs.redrive.max-messages-per-second:100}") double defaultMessagesPerSecond,
+            @Value("${aws.sqs.redrive.readers:4}") int defaultReaders,
+            @Value("${aws.sqs.redrive.visibility-timeout-seconds:300}") int visibilityTimeoutSeconds,
+            @Value("${aws.sqs.redrive.wait-time-seconds:20}") int waitTimeSeconds,
+            @Value("${aws.sqs.redrive.empty-receives-before-stop:3}") int emptyReceivesBeforeStop,
+            @Value("${aws.sqs.redrive.state-file:data/redrive/redrive-job.properties}") String stateFile) {
+        this.amazonSQS = amazonSQS;
+        this.shardRouter = shardRouter;
+        this.deadLetterQueueUrl = deadLetterQueueUrl;
+        this.defaultMessagesPerSecond = defaultMessagesPerSecond;
+        this.defaultReaders = defaultReaders;
+        this.visibilityTimeoutSeconds = visibilityTimeoutSeconds;
+        this.waitTimeSeconds = waitTimeSeconds;
+        this.emptyReceivesBeforeStop = emptyReceivesBeforeStop;
+        this.stateFile = Path.of(stateFile);
+    }
+
+    /**
+     * Starts a new redrive run.
+     *
+     * @param options run parameters; unset values use the configured defaults
+     * @return progress of the newly started run
+     * @throws IllegalStateException if a run is already in progress
+     */
+    public synchronized RedriveProgress start(RedriveOptions options) {
+        if (currentJob != null && currentJob.isRunning()) {
+            throw new IllegalStateException("Redrive " + currentJob.getId() + " is already running");
+        }
+        RedriveJob job = new RedriveJob(UUID.randomUUID().toString(),
+            options.withDefaults(defaultMessagesPerSecond, defaultReaders), Instant.now());
+        launch(job);
+        logger.info("Started DLQ redrive {} with options {}", job.getId(), job.getOptions());
+        return job.snapshot();
+    }
+
+    /**
+     * @return progress of the current or most recent run, if any
+     */
+    public Optional<RedriveProgress> progress() {
+        RedriveJob job = currentJob;
+        return Optional.ofNullable(job).map(RedriveJob::snapshot);
+    }
+
+    /**
+     * Cancels the current run. Batches already in flight are completed.
+     *
+     * @return progress of the cancelled run, if one was running
+     */
+    public synchronized Optional<RedriveProgress> cancel() {
+        RedriveJob job = currentJob;
+        if (job == null || !job.isRunning()) {
+            return Optional.empty();
+        }
+        job.finish(RedriveJob.Status.CANCELLED, null);
+        persist(job, true);
+        logger.info("Cancelled DLQ redrive {}", job.getId());
+        return Optional.of(job.snapshot());
+    }
+
+    /**
+     * Resumes a run that was still in progress when the application last stopped.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void resumeInterruptedRun() {
+        if (!Files.exists(stateFile)) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(stateFile)) {
+            properties.load(in);
+        } catch (IOException e) {
+            logger.warn("Unable to read redrive state file {}: {}", stateFile, e.getMessage());
+            return;
+        }
+        if (RedriveJob.persistedStatus(properties) != RedriveJob.Status.RUNNING) {
+            return;
+        }
+        RedriveJob job = RedriveJob.fromProperties(properties);
+        launch(job);
+        logger.info("Resumed DLQ redrive {} after restart ({} messages already redriven)",
+            job.getId(), job.snapshot().redriven());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ExecutorService pool = readerPool;
+        if (pool != null) {
+            pool.shutdownNow();
+            try {
+                pool.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        RedriveJob job = currentJob;
+        if (job != null) {
+            // Keep the RUNNING status on disk so the run resumes on the next start
+            persist(job, true);
+        }
+    }
+
+    private void launch(RedriveJob job) {
+        currentJob = job;
+        persist(job, true);
+        RateLimiter rateLimiter = RateLimiter.create(job.getOptions().messagesPerSecond());
+        int readers = job.getOptions().readers();
+        ExecutorService pool = Executors.newFixedThreadPool(readers, runnable -> {
+            Thread thread = new Thread(runnable, "dlq-redrive-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        readerPool = pool;
+        CompletableFuture<?>[] readerTasks = new CompletableFuture<?>[readers];
+        for (int i = 0; i < readers; i++) {
+            readerTasks[i] = CompletableFuture.runAsync(() -> runReader(job, rateLimiter), pool);
+        }
+        CompletableFuture.allOf(readerTasks).whenComplete((ignored, error) -> {
+            if (pool.isShutdown()) {
+                return;
+            }
+            job.finish(error == null ? RedriveJob.Status.COMPLETED : RedriveJob.Status.FAILED,
+                error == null ? null : error.getMessage());
+            persist(job, true);
+            pool.shutdown();
+            logger.info("DLQ redrive {} finished: {}", job.getId(), job.snapshot());
+        });
+    }
+
+    private void runReader(RedriveJob job, RateLimiter rateLimiter) {
+        int emptyReceives = 0;
+        int consecutiveErrors = 0;
+        while (job.isRunning() && emptyReceives < emptyReceivesBeforeStop && !Thread.currentThread().isInterrupted()) {
+            int wanted = job.claim(SqsBatchLimits.MAX_BATCH_ENTRIES);
+            if (wanted == 0) {
+                return;
+            }
+            List<Message> messages;
+            try {
+                messages = amazonSQS.receiveMessage(new ReceiveMessageRequest()
+                    .withQueueUrl(deadLetterQueueUrl)
+                    .withMaxNumberOfMessages(wanted)
+                    .withWaitTimeSeconds(waitTimeSeconds)
+                    .withVisibilityTimeout(visibilityTimeoutSeconds)
+                    .withMessageAttributeNames("All"))
+                    .getMessages();
+                consecutiveErrors = 0;
+            } catch (RuntimeException e) {
+                job.release(wanted);
+                if (++consecutiveErrors >= MAX_CONSECUTIVE_ERRORS) {
+                    job.finish(RedriveJob.Status.FAILED, e.getMessage());
+                    throw e;
+                }
+                logger.warn("Failed to receive from DLQ during redrive {}: {}", job.getId(), e.getMessage());
+                sleepQuietly(1000L * consecutiveErrors);
+                continue;
+            }
+            job.release(wanted - messages.size());
+            if (messages.isEmpty()) {
+                emptyReceives++;
+                continue;
+            }
+            emptyReceives = 0;
+
+            List<Message> selected = new ArrayList<>(messages.size());
+            for (Message message : messages) {
+                if (matches(message, job.getOptions().failureReason())) {
+                    selected.add(message);
+                }
+            }
+            job.recordReceived(messages.size(), selected.size());
+            if (!selected.isEmpty() && !job.getOptions().dryRun()) {
+                rateLimiter.acquire(selected.size());
+                redrive(job, selected);
+            }
+            persist(job, false);
+        }
+    }
+
+    private void redrive(RedriveJob job, List<Message> messages) {
+        Map<String, List<Message>> byShard = new LinkedHashMap<>();
+        for (Message message : messages) {
+            byShard.computeIfAbsent(shardRouter.shardFor(null), url -> new ArrayList<>()).add(message);
+        }
+        byShard.forEach((shardUrl, shardMessages) -> redrive(job, shardUrl, shardMessages));
+    }
+
+    private void redrive(RedriveJob job, String shardUrl, List<Message> messages) {
+        List<SendMessageBatchRequestEntry> batch = new ArrayList<>(messages.size());
+        Map<String, Message> byEntryId = new HashMap<>();
+        int batchBytes = 0;
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            int size = SqsBatchLimits.payloadSize(message.getBody(), message.getMessageAttributes());
+            if (!batch.isEmpty() && !SqsBatchLimits.fits(batch.size(), batchBytes, size)) {
+                sendAndDelete(job, shardUrl, batch, byEntryId);
+                batch = new ArrayList<>(messages.size() - i);
+                byEntryId = new HashMap<>();
+                batchBytes = 0;
+            }
+            String entryId = String.valueOf(i);
+            batch.add(new SendMessageBatchRequestEntry(entryId, message.getBody())
+                .withMessageAttributes(message.getMessageAttributes()));
+            byEntryId.put(entryId, message);
+            batchBytes += size;
+        }
+        sendAndDelete(job, shardUrl, batch, byEntryId);
+    }
+
+    private void sendAndDelete(RedriveJob job, String shardUrl, List<SendMessageBatchRequestEntry> batch,
+                               Map<String, Message> byEntryId) {
+        SendMessageBatchResult sendResult;
+        try {
+            sendResult = amazonSQS.sendMessageBatch(shardUrl, batch);
+        } catch (RuntimeException e) {
+            logger.warn("Redrive {} failed to re-send {} message(s): {}", job.getId(), batch.size(), e.getMessage());
+            job.recordFailed(batch.size());
+            return;
+        }
+        for (BatchResultErrorEntry failure : sendResult.getFailed()) {
+            logger.warn("Redrive {} failed to re-send message {}: {}", job.getId(),
+                byEntryId.get(failure.getId()).getMessageId(), failure.getMessage());
+        }
+        job.recordFailed(sendResult.getFailed().size());
+
+        List<DeleteMessageBatchRequestEntry> deletes = new ArrayList<>(sendResult.getSuccessful().size());
+        for (SendMessageBatchResultEntry sent : sendResult.getSuccessful()) {
+            deletes.add(new DeleteMessageBatchRequestEntry(sent.getId(), byEntryId.get(sent.getId()).getReceiptHandle()));
+        }
+        if (deletes.isEmpty()) {
+            return;
+        }
+        job.recordRedriven(deletes.size());
+        try {
+            DeleteMessageBatchResult deleteResult = amazonSQS.deleteMessageBatch(deadLetterQueueUrl, deletes);
+            if (!deleteResult.getFailed().isEmpty()) {
+                logger.warn("Redrive {} could not delete {} re-sent message(s) from the DLQ; they will be redriven again",
+                    job.getId(), deleteResult.getFailed().size());
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Redrive {} could not delete {} re-sent message(s) from the DLQ: {}",
+                job.getId(), deletes.size(), e.getMessage());
+        }
+    }
+
+    private static boolean matches(Message message, String failureReason) {
+        if (failureReason == null) {
+            return true;
+        }
+        MessageAttributeValue reason = message.getMessageAttributes().get(FAILURE_REASON_ATTRIBUTE);
+        return reason != null && failureReason.equals(reason.getStringValue());
+    }
+
+    private synchronized void persist(RedriveJob job, boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force && now - lastPersistMillis < PERSIST_INTERVAL_MS) {
+            return;
+        }
+        lastPersistMillis = now;
+        try {
+            if (stateFile.getParent() != null) {
+                Files.createDirectories(stateFile.getParent());
+            }
+            Path temp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                job.toProperties().store(out, "DLQ redrive state");
+            }
+            Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Unable to persist redrive state to {}: {}", stateFile, e.getMessage());
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
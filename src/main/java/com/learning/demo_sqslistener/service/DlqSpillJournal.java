@@ -0,0 +1,239 @@
+package com.learning.demo_sqslistener.service;
+
+import com.amazonaws.services.sqs.model.MessageAttributeValue;
+import com.learning.demo_sqslistener.exception.ErrorCodes;
+import com.learning.demo_sqslistener.exception.SQSProcessingException;
+import com.learning.demo_sqslistener.journal.JournalBatch;
+import com.learning.demo_sqslistener.journal.JournalCheckpoint;
+import com.learning.demo_sqslistener.journal.JournalPosition;
+import com.learning.demo_sqslistener.journal.JournalRecord;
+import com.learning.demo_sqslistener.journal.SegmentedJournal;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Local, durable holding area for messages whose transfer to the Dead Letter Queue failed.
+ * Spilled messages are written to a {@link SegmentedJournal} and later re-sent by
+ * {@link DlqSpillReplayer}, so a failing DLQ endpoint no longer sends poison messages
+ * back to the source queue.
+ *
+ * @author demo-sqslistener
+ */
+@Service
+public class DlqSpillJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(DlqSpillJournal.class);
+    private static final String JOURNAL_NAME = "dlq-spill";
+    private static final byte FORMAT_VERSION = 1;
+
+    private final boolean enabled;
+    private final long commitTimeoutMs;
+    private final SegmentedJournal journal;
+    private final JournalCheckpoint checkpoint;
+
+    public DlqSpillJournal(
+            @Value("${aws.sqs.dlq.spill.enabled:true}") boolean enabled,
+            @Value("${aws.sqs.dlq.spill.dir:data/dlq-spill}") String directory,
+            @Value("${aws.sqs.dlq.spill.segment-bytes:67108864}") int segmentBytes,
+            @Value("${aws.sqs.dlq.spill.commit-timeout-ms:5000}") long commitTimeoutMs) {
+        this.enabled = enabled;
+        this.commitTimeoutMs = commitTimeoutMs;
+        if (!enabled) {
+            this.journal = null;
+            this.checkpoint = null;
+            logger.info("DLQ spill journal is disabled");
+            return;
+        }
+        Path path = Path.of(directory);
+        try {
+            this.journal = new SegmentedJournal(path, JOURNAL_NAME, segmentBytes, true);
+        } catch (IOException e) {
+            throw new SQSProcessingException(ErrorCodes.SQS_DLQ_SPILL_ERROR,
+                String.format("Unable to open spill journal in %s", path), e);
+        }
+        this.checkpoint = new JournalCheckpoint(path.resolve(JOURNAL_NAME + ".checkpoint"));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Durably records a message that could not be sent to the DLQ.
+     * Blocks until the record is part of a group commit. A commit that takes longer than the
+     * commit timeout is logged and still waited for: it may yet land, and reporting the message
+     * as not stored would send it to the DLQ a second time later.
+     *
+     * @param messageId     ID of the original message
+     * @param body          message body
+     * @param attributes    message attributes intended for the DLQ message
+     * @param failureReason reason the message is being dead-lettered
+     * @return true if the message is now stored in the journal
+     */
+    public boolean spill(String messageId, String body, Map<String, MessageAttributeValue> attributes,
+                         String failureReason) {
+        if (!enabled) {
+            return false;
+        }
+        try {
+            byte[] payload = encode(new SpilledMessage(messageId, body, attributes, failureReason,
+                System.currentTimeMillis()));
+            CompletableFuture<JournalPosition> commit = journal.append(payload);
+            try {
+                commit.get(commitTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                logger.warn("Spill of message {} not committed after {} ms, still waiting", messageId, commitTimeoutMs);
+                commit.get();
+            }
+            logger.debug("Spilled message {} to local DLQ journal", messageId);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while spilling message {} to local DLQ journal", messageId);
+            return false;
+        } catch (ExecutionException | IOException | RuntimeException e) {
+            logger.error("{} for message {}: {}",
+                ErrorCodes.SQS_DLQ_SPILL_ERROR.getFormattedMessage(), messageId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reads spilled messages that have not yet been acknowledged.
+     *
+     * @param maxRecords maximum number of entries to return
+     * @return the next batch of spilled entries
+     * @throws IOException if the journal cannot be read
+     */
+    public JournalBatch readPending(int maxRecords) throws IOException {
+        if (!enabled) {
+            return new JournalBatch(List.of(), new JournalPosition(0, 0));
+        }
+        return journal.read(checkpoint.load(journal.firstPosition()), maxRecords);
+    }
+
+    /**
+     * Marks everything before the given position as delivered and drops fully delivered segments.
+     *
+     * @param position position right after the last delivered entry
+     * @throws IOException if the checkpoint cannot be stored
+     */
+    public void acknowledge(JournalPosition position) throws IOException {
+        checkpoint.store(position);
+        journal.deleteSegmentsBefore(position);
+    }
+
+    public SpilledMessage decode(JournalRecord record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record.payload()));
+        byte version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported spill record version " + version);
+        }
+        long spilledAt = in.readLong();
+        String messageId = readString(in);
+        String body = readString(in);
+        String failureReason = readString(in);
+        int attributeCount = in.readInt();
+        Map<String, MessageAttributeValue> attributes = new LinkedHashMap<>(attributeCount);
+        for (int i = 0; i < attributeCount; i++) {
+            String name = readString(in);
+            MessageAttributeValue value = new MessageAttributeValue()
+                .withDataType(readString(in))
+                .withStringValue(readString(in));
+            byte[] binary = readBytes(in);
+            if (binary != null) {
+                value.setBinaryValue(ByteBuffer.wrap(binary));
+            }
+            attributes.put(name, value);
+        }
+        return new SpilledMessage(messageId, body, attributes, failureReason, spilledAt);
+    }
+
+    byte[] encode(SpilledMessage message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+            256 + (message.body() != null ? message.body().length() : 0));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(FORMAT_VERSION);
+        out.writeLong(message.spilledAtMillis());
+        writeString(out, message.messageId());
+        writeString(out, message.body());
+        writeString(out, message.failureReason());
+        Map<String, MessageAttributeValue> attributes = message.attributes() != null ? message.attributes() : Map.of();
+        out.writeInt(attributes.size());
+        for (Map.Entry<String, MessageAttributeValue> entry : attributes.entrySet()) {
+            MessageAttributeValue value = entry.getValue();
+            writeString(out, entry.getKey());
+            writeString(out, value.getDataType());
+            writeString(out, value.getStringValue());
+            ByteBuffer binary = value.getBinaryValue();
+            if (binary == null) {
+                out.writeInt(-1);
+            } else {
+                byte[] data = new byte[binary.remaining()];
+                binary.duplicate().get(data);
+                out.writeInt(data.length);
+                out.write(data);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] data = readBytes(in);
+        return data == null ? null : new String(data, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] data = new byte[length];
+        in.readFully(data);
+        return data;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * A message held in the spill journal until it can be delivered to the DLQ.
+     */
+    public record SpilledMessage(String messageId, String body, Map<String, MessageAttributeValue> attributes,
+                                 String failureReason, long spilledAtMillis) {
+    }
+}
@@ -0,0 +1,136 @@
+package com.learning.demo_sqslistener.service;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.learning.demo_sqslistener.journal.JournalBatch;
+import com.learning.demo_sqslistener.journal.JournalPosition;
+import com.learning.demo_sqslistener.journal.JournalRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+
+/**
+ * Background task that drains the {@link DlqSpillJournal} into the Dead Letter Queue.
+ * Entries are re-sent in journal order; the first failure stops the pass and the next
+ * attempt is delayed with exponential backoff, so a DLQ outage is not hammered.
+ *
+ * @author demo-sqslistener
+ */
+@Service
+public class DlqSpillReplayer {
+
+    private static final Logger logger = LoggerFactory.getLogger(DlqSpillReplayer.class);
+
+    /** Maximum number of journal entries re-sent per pass */
+    private static final int MAX_ENTRIES_PER_PASS = 100;
+
+    private final AmazonSQS amazonSQS;
+    private final String deadLetterQueueUrl;
+    private final DlqSpillJournal spillJournal;
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+
+    private int consecutiveFailures;
+    private long nextAttemptAtMillis;
+
+    public DlqSpillReplayer(
+            AmazonSQS amazonSQS,
+            @Value("${aws.sqs.dlq.url}") String deadLetterQueueUrl,
+            DlqSpillJournal spillJournal,
+            @Value("${aws.sqs.dlq.spill.base-backoff-ms:1000}") long baseBackoffMs,
+            @Value("${aws.sqs.dlq.spill.max-backoff-ms:300000}") long maxBackoffMs) {
+        this.amazonSQS = amazonSQS;
+        this.deadLetterQueueUrl = deadLetterQueueUrl;
+        this.spillJournal = spillJournal;
+        this.baseBackoffMs = baseBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    /**
+     * Re-sends pending journal entries to the DLQ unless a backoff period is in effect.
+     *
+     * @return number of entries delivered in this pass
+     */
+    @Scheduled(fixedDelayString = "${aws.sqs.dlq.spill.replay-interval-ms:5000}")
+    public synchronized int replayPending() {
+        if (!spillJournal.isEnabled() || System.currentTimeMillis() < nextAttemptAtMillis) {
+            return 0;
+        }
+        JournalBatch batch;
+        try {
+            batch = spillJournal.readPending(MAX_ENTRIES_PER_PASS);
+        } catch (IOException e) {
+            logger.error("Failed to read DLQ spill journal: {}", e.getMessage(), e);
+            return 0;
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        int delivered = 0;
+        JournalPosition acknowledged = null;
+        boolean failed = false;
+        for (JournalRecord record : batch.records()) {
+            if (!deliver(record)) {
+                failed = true;
+                break;
+            }
+            delivered++;
+            acknowledged = record.next();
+        }
+        if (!failed) {
+            acknowledged = batch.end();
+        }
+        if (acknowledged != null) {
+            try {
+                spillJournal.acknowledge(acknowledged);
+            } catch (IOException e) {
+                logger.error("Failed to checkpoint DLQ spill journal, entries may be re-sent: {}", e.getMessage());
+            }
+        }
+
+        if (failed) {
+            backOff();
+        } else {
+            consecutiveFailures = 0;
+            nextAttemptAtMillis = 0;
+        }
+        logger.info("Replayed {} spilled message(s) to DLQ", delivered);
+        return delivered;
+    }
+
+    private boolean deliver(JournalRecord record) {
+        DlqSpillJournal.SpilledMessage message;
+        try {
+            message = spillJournal.decode(record);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Skipping unreadable DLQ spill entry at {}: {}", record.position(), e.getMessage());
+            return true;
+        }
+        try {
+            amazonSQS.sendMessage(new SendMessageRequest()
+                .withQueueUrl(deadLetterQueueUrl)
+                .withMessageBody(message.body())
+                .withMessageAttributes(message.attributes()));
+            logger.info("Delivered spilled message {} to DLQ with reason: {}",
+                message.messageId(), message.failureReason());
+            return true;
+        } catch (RuntimeException e) {
+            logger.warn("DLQ still unavailable for spilled message {}: {}", message.messageId(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void backOff() {
+        consecutiveFailures++;
+        long delay = baseBackoffMs << Math.min(consecutiveFailures - 1, 20);
+        delay = Math.min(delay, maxBackoffMs);
+        nextAttemptAtMillis = System.currentTimeMillis() + delay;
+        logger.warn("Backing off DLQ spill replay for {} ms after {} consecutive failure(s)",
+            delay, consecutiveFailures);
+    }
+}
@@ -0,0 +1,284 @@
+package com.learning.demo_sqslistener.service;
+
+import com.learning.demo_sqslistener.exception.ErrorCodes;
+import com.learning.demo_sqslistener.exception.MessageProcessingException;
+import com.learning.demo_sqslistener.metrics.ListenerMetrics;
+import com.learning.demo_sqslistener.profiling.MessageStageEvent;
+import com.learning.demo_sqslistener.ratelimit.GlobalRateLimiter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Sends a second, hedged copy of a downstream request when the first has not answered within a
+ * high percentile of recent latencies, and uses whichever response arrives first. The slower
+ * request is cancelled by interrupting its virtual thread, which closes its socket.
+ * <p>
+ * Hedges are limited by a budget: every request earns {@code budget-percent / 100} of a hedge,
+ * and a hedge is only sent when a whole one has been earned, so hedges never exceed that share
+ * of traffic even when the downstream slows down as a whole. No hedges are sent until enough
+ * latencies have been observed to estimate the percentile. Only idempotent calls may be hedged.
+ * A hedge is a downstream call of its own and takes a {@link GlobalRateLimiter} permit; when none
+ * is available straight away the hedge is skipped rather than waited for.
+ * <p>
+ * An attempt that is cancelled, because the other one won or the deadline expired, is recorded
+ * with the time it had run so far. That is a lower bound of its latency, but leaving it out would
+ * keep the slowest requests out of the window and pull the percentile down.
+ *
+ * @author demo-sqslistener
+ */
+@Component
+public class DownstreamHedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(DownstreamHedger.class);
+    /** Number of recent latencies the percentile is estimated from */
+    static final int WINDOW = 1024;
+    /** Number of recorded latencies between two percentile estimates */
+    private static final int RECOMPUTE_EVERY = 64;
+    /** Upper bound of unused hedge budget, limits the burst of hedges after a quiet period */
+    private static final double MAX_BUDGET = 10;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final double budgetRatio;
+    private final int minSamples;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final ListenerMetrics metrics;
+    private final GlobalRateLimiter rateLimiter;
+    private final ExecutorService executor;
+
+    private final long[] latencies = new long[WINDOW];
+    private long recorded;
+    private volatile long hedgeDelayNanos = -1;
+    private double budget;
+
+    @Autowired
+    public DownstreamHedger(
+            @Value("${api.hedging.enabled:false}") boolean enabled,
+            @Value("${api.hedging.percentile:0.95}") double percentile,
+            @Value("${api.hedging.budget-percent:5}") double budgetPercent,
+            @Value("${api.hedging.min-samples:100}") int minSamples,
+            @Value("${api.hedging.min-delay-ms:5}") long minDelayMs,
+            @Value("${api.hedging.max-delay-ms:2000}") long maxDelayMs,
+            ListenerMetrics metrics,
+            GlobalRateLimiter rateLimiter) {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("api.hedging.percentile must be between 0 and 1");
+        }
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.budgetRatio = budgetPercent / 100;
+        this.minSamples = Math.min(minSamples, WINDOW);
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMs);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.metrics = metrics;
+        this.rateLimiter = rateLimiter;
+        this.executor = enabled ? Executors.newVirtualThreadPerTaskExecutor() : null;
+        if (enabled) {
+            logger.info("Hedging downstream requests at p{} latency, at most {}% of requests",
+                percentile * 100, budgetPercent);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the current hedge delay in nanoseconds, or -1 while there are too few samples
+     */
+    public long getHedgeDelayNanos() {
+        return hedgeDelayNanos;
+    }
+
+    /**
+     * Runs an idempotent call, hedging it if it is slow.
+     *
+     * @param messageId ID of the message the call is made for
+     * @param deadline  deadline of the message; waiting stops once it expires
+     * @param call      the call; runs on a virtual thread, possibly twice concurrently
+     * @param <T>       result type
+     * @return the result of the first attempt that succeeded
+     * @throws RuntimeException the failure of the attempts if none succeeded
+     */
+    public <T> T execute(String messageId, ProcessingDeadline deadline, Supplier<T> call) {
+        ExecutorCompletionService<T> race = new ExecutorCompletionService<>(executor);
+        Attempt<T> primaryAttempt = new Attempt<>(call);
+        Future<T> primary = race.submit(primaryAttempt);
+        Attempt<T> hedgeAttempt = null;
+        Future<T> hedge = null;
+        earnBudget();
+        try {
+            long delay = hedgeDelayNanos;
+            Future<T> first = delay < 0 ? null : race.poll(Math.min(delay, deadline.remainingNanos()), TimeUnit.NANOSECONDS);
+            if (first == null && delay >= 0 && !deadline.isExpired()) {
+                if (spendBudget() && acquirePermit()) {
+                    hedgeAttempt = new Attempt<>(call);
+                    hedge = race.submit(hedgeAttempt);
+                    metrics.hedgeSent();
+                    logger.debug("Hedged request for message {} after {} ms", messageId,
+                        TimeUnit.NANOSECONDS.toMillis(delay));
+                } else {
+                    metrics.hedgeSkipped();
+                }
+            }
+            if (first == null) {
+                first = await(race, messageId, deadline);
+            }
+            try {
+                T result = first.get();
+                if (first == hedge) {
+                    metrics.hedgeWon();
+                }
+                return result;
+            } catch (ExecutionException e) {
+                if (hedge == null) {
+                    throw unwrap(e);
+                }
+                // One attempt failed while the other is still running; use the other one
+                Future<T> second = await(race, messageId, deadline);
+                T result = unwrapGet(second);
+                if (second == hedge) {
+                    metrics.hedgeWon();
+                }
+                return result;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessageProcessingException(ErrorCodes.API_CONNECTION_ERROR,
+                String.format("Interrupted waiting for API response, Message ID: %s", messageId), e);
+        } finally {
+            cancel(primary, primaryAttempt);
+            if (hedge != null) {
+                cancel(hedge, hedgeAttempt);
+            }
+        }
+    }
+
+    private void cancel(Future<?> future, Attempt<?> attempt) {
+        if (future.cancel(true)) {
+            attempt.finish();
+        }
+    }
+
+    private <T> Future<T> await(ExecutorCompletionService<T> race, String messageId, ProcessingDeadline deadline)
+            throws InterruptedException {
+        if (!deadline.isBounded()) {
+            return race.take();
+        }
+        Future<T> done = race.poll(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+        if (done == null) {
+            throw ProcessingDeadline.expired(MessageStageEvent.POST, messageId, null);
+        }
+        return done;
+    }
+
+    private static <T> T unwrapGet(Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new MessageProcessingException(ErrorCodes.API_CONNECTION_ERROR, cause);
+    }
+
+    /**
+     * Adds the latency of a successful or cancelled attempt to the window and periodically
+     * re-estimates the delay.
+     */
+    synchronized void record(long nanos) {
+        latencies[(int) (recorded++ % WINDOW)] = nanos;
+        if (recorded >= minSamples && (hedgeDelayNanos < 0 || recorded % RECOMPUTE_EVERY == 0)) {
+            int size = (int) Math.min(recorded, WINDOW);
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            long estimate = sorted[Math.min(size - 1, (int) Math.ceil(percentile * size) - 1)];
+            hedgeDelayNanos = Math.max(minDelayNanos, Math.min(maxDelayNanos, estimate));
+        }
+    }
+
+    private synchronized void earnBudget() {
+        budget = Math.min(MAX_BUDGET, budget + budgetRatio);
+    }
+
+    private synchronized boolean spendBudget() {
+        if (budget < 1) {
+            return false;
+        }
+        budget -= 1;
+        return true;
+    }
+
+    /**
+     * Takes a rate limit permit for a hedge without waiting, returning the spent budget if there
+     * is none.
+     */
+    private boolean acquirePermit() {
+        if (rateLimiter.tryAcquire(0)) {
+            return true;
+        }
+        synchronized (this) {
+            budget = Math.min(MAX_BUDGET, budget + 1);
+        }
+        return false;
+    }
+
+    /**
+     * One attempt of a call, recording its latency once: when it succeeds, or when it is
+     * cancelled with the time it had run so far.
+     */
+    private final class Attempt<T> implements Callable<T> {
+        private final Supplier<T> call;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean recorded = new AtomicBoolean();
+
+        private Attempt(Supplier<T> call) {
+            this.call = call;
+        }
+
+        @Override
+        public T call() {
+            T result = call.get();
+            finish();
+            return result;
+        }
+
+        void finish() {
+            if (recorded.compareAndSet(false, true)) {
+                record(System.nanoTime() - start);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.learning.demo_sqslistener.service;
+
+import com.learning.demo_sqslistener.metrics.ListenerMetrics;
+import com.learning.demo_sqslistener.ratelimit.GlobalRateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Changes how the listener consumes while it runs: pausing and resuming, resizing the pollers
+ * and tenant workers, and the poll and downstream rate limits. Changes apply within one poll
+ * delay and are not persisted; a restart goes back to the configured values.
+ *
+ * @author demo-sqslistener
+ */
+@Service
+public class ListenerControlService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListenerControlService.class);
+    /** Seconds the reported throughput is averaged over */
+    static final int THROUGHPUT_WINDOW_SECONDS = 10;
+
+    private final SQSListener listener;
+    private final TenantScheduler tenantScheduler;
+    private final GlobalRateLimiter rateLimiter;
+    private final ListenerMetrics metrics;
+
+    public ListenerControlService(SQSListener listener, TenantScheduler tenantScheduler,
+                                  GlobalRateLimiter rateLimiter, ListenerMetrics metrics) {
+        this.listener = listener;
+        this.tenantScheduler = tenantScheduler;
+        this.rateLimiter = rateLimiter;
+        this.metrics = metrics;
+    }
+
+    public ListenerStatus pause() {
+        listener.pause();
+        return status();
+    }
+
+    public ListenerStatus resume() {
+        listener.resume();
+        return status();
+    }
+
+    /**
+     * Applies the given settings. Every setting is checked before any is applied, so a rejected
+     * request changes nothing.
+     *
+     * @param settings settings to change; null fields are left as they are
+     * @return the status after the change
+     * @throws IllegalArgumentException if a setting is out of range
+     * @throws IllegalStateException if a setting needs a feature that is not enabled
+     */
+    public ListenerStatus update(ListenerSettings settings) {
+        try {
+            validate(settings);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            logger.warn("Rejected listener settings {}: {}", settings, e.getMessage());
+            throw e;
+        }
+        if (settings.maxMessagesPerPoll() != null) {
+            listener.setMaxMessagesPerPoll(settings.maxMessagesPerPoll());
+        }
+        if (settings.pollsPerSecond() != null) {
+            listener.setPollsPerSecond(settings.pollsPerSecond());
+        }
+        if (settings.pollDelayMs() != null) {
+            listener.setPollDelayMs(settings.pollDelayMs());
+        }
+        if (settings.pollers() != null) {
+            listener.setPollerCount(settings.pollers());
+        }
+        if (settings.workers() != null) {
+            tenantScheduler.setWorkerCount(settings.workers());
+        }
+        if (settings.downstreamPermitsPerSecond() != null) {
+            rateLimiter.setPermitsPerSecond(settings.downstreamPermitsPerSecond());
+        }
+        logger.info("Listener settings changed: {}", settings);
+        return status();
+    }
+
+    public ListenerStatus status() {
+        return new ListenerStatus(
+            listener.isPaused(),
+            listener.getPollerCount(),
+            listener.getPollDelayMs(),
+            listener.getMaxMessagesPerPoll(),
+            listener.getPollsPerSecond(),
+            tenantScheduler.isEnabled() ? tenantScheduler.getWorkerCount() : null,
+            rateLimiter.isEnabled() ? rateLimiter.getPermitsPerSecond() : null,
+            metrics.getInFlight(),
+            metrics.getProcessedPerSecond(THROUGHPUT_WINDOW_SECONDS),
+            (long) metrics.getReceivedCount(),
+            (long) metrics.getAckedCount(),
+            metrics.getProcessingPercentilesMillis());
+    }
+
+    private void validate(ListenerSettings settings) {
+        if (settings.pollers() != null && settings.pollers() < 1) {
+            throw new IllegalArgumentException("pollers must be at least 1");
+        }
+        if (settings.pollDelayMs() != null && settings.pollDelayMs() < 0) {
+            throw new IllegalArgumentException("pollDelayMs must not be negative");
+        }
+        if (settings.maxMessagesPerPoll() != null
+                && (settings.maxMessagesPerPoll() < 1 || settings.maxMessagesPerPoll() > SQSListener.MAX_MESSAGES_PER_POLL)) {
+            throw new IllegalArgumentException("maxMessagesPerPoll must be between 1 and " + SQSListener.MAX_MESSAGES_PER_POLL);
+        }
+        if (settings.pollsPerSecond() != null && !(settings.pollsPerSecond() > 0)) {
+            throw new IllegalArgumentException("pollsPerSecond must be positive");
+        }
+        if (settings.workers() != null) {
+            if (!tenantScheduler.isEnabled()) {
+                throw new IllegalStateException("workers requires tenant scheduling; without it the pollers process messages");
+            }
+            if (settings.workers() < 1) {
+                throw new IllegalArgumentException("workers must be at least 1");
+            }
+        }
+        if (settings.downstreamPermitsPerSecond() != null) {
+            if (!rateLimiter.isEnabled()) {
+                throw new IllegalStateException("downstreamPermitsPerSecond requires the global rate limit");
+            }
+            if (!(settings.downstreamPermitsPerSecond() > 0)) {
+                throw new IllegalArgumentException("downstreamPermitsPerSecond must be positive");
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.learning.demo_sqslistener.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Options of the {@link SQSListener} that are fixed at startup. The settings that can be changed
+ * while it runs are {@link ListenerSettings}.
+ *
+ * @param inboxRetryDelayMs        delay before an inbox message that failed is attempted again
+ * @param successLogOneIn          only every n-th successfully processed message is logged; failures always are
+ * @param visibilityTimeoutSeconds visibility timeout requested for received messages
+ * @param deadlineMarginMs         part of the visibility timeout kept free to release a message before it
+ *                                 becomes visible again; the rest is the message's processing deadline
+ *
+ * @author demo-sqslistener
+ */
+@Component
+public record ListenerOptions(long inboxRetryDelayMs, int successLogOneIn, int visibilityTimeoutSeconds,
+                               long deadlineMarginMs) {
+
+    @Autowired
+    public ListenerOptions(
+            @Value("${aws.sqs.inbox.retry-delay-ms:1000}") long inboxRetryDelayMs,
+            @Value("${logging.sampling.success-one-in:1}") int successLogOneIn,
+            @Value("${aws.sqs.visibility-timeout-seconds:30}") int visibilityTimeoutSeconds,
+            @Value("${aws.sqs.deadline.safety-margin-ms:5000}") long deadlineMarginMs) {
+        if (TimeUnit.SECONDS.toMillis(visibilityTimeoutSeconds) <= deadlineMarginMs) {
+            throw new IllegalArgumentException(String.format(
+                "Visibility timeout of %d s must exceed the deadline safety margin of %d ms",
+                visibilityTimeoutSeconds, deadlineMarginMs));
+        }
+        this.inboxRetryDelayMs = inboxRetryDelayMs;
+        this.successLogOneIn = Math.max(1, successLogOneIn);
+        this.visibilityTimeoutSeconds = visibilityTimeoutSeconds;
+        this.deadlineMarginMs = deadlineMarginMs;
+    }
+
+    public ListenerOptions withInboxRetryDelayMs(long inboxRetryDelayMs) {
+        return new ListenerOptions(inboxRetryDelayMs, successLogOneIn, visibilityTimeoutSeconds, deadlineMarginMs);
+    }
+
+    public ListenerOptions withSuccessLogOneIn(int successLogOneIn) {
+        return new ListenerOptions(inboxRetryDelayMs, successLogOneIn, visibilityTimeoutSeconds, deadlineMarginMs);
+    }
+
+    public ListenerOptions withVisibilityTimeout(int visibilityTimeoutSeconds, long deadlineMarginMs) {
+        return new ListenerOptions(inboxRetryDelayMs, successLogOneIn, visibilityTimeoutSeconds, deadlineMarginMs);
+    }
+
+    /**
+     * @return time a received message has for processing, in milliseconds
+     */
+    public long processingDeadlineMillis() {
+        return TimeUnit.SECONDS.toMillis(visibilityTimeoutSeconds) - deadlineMarginMs;
+    }
+}
@@ -0,0 +1,15 @@
+package com.learning.demo_sqslistener.service;
+
+/**
+ * Runtime settings of the listener to change. Null fields are left as they are.
+ *
+ * @param pollers                    number of concurrent pollers
+ * @param pollDelayMs                time each poller waits between polls
+ * @param maxMessagesPerPoll         messages requested per receive, 1 to 10
+ * @param pollsPerSecond             ceiling on receive calls per second across all pollers
+ * @param workers                    number of tenant scheduler workers; requires tenant scheduling
+ * @param downstreamPermitsPerSecond cluster-wide rate of downstream calls; requires the global rate limit
+ */
+public record ListenerSettings(Integer pollers, Long pollDelayMs, Integer maxMessagesPerPoll,
+                               Double pollsPerSecond, Integer workers, Double downstreamPermitsPerSecond) {
+}
@@ -0,0 +1,25 @@
+package com.learning.demo_sqslistener.service;
+
+import java.util.Map;
+
+/**
+ * Point-in-time view of the listener's settings and load.
+ *
+ * @param paused                     whether receiving is paused
+ * @param pollers                    number of concurrent pollers
+ * @param pollDelayMs                time each poller waits between polls
+ * @param maxMessagesPerPoll         messages requested per receive
+ * @param pollsPerSecond             ceiling on receive calls per second across all pollers
+ * @param workers                    number of tenant scheduler workers, or null without tenant scheduling
+ * @param downstreamPermitsPerSecond cluster-wide rate of downstream calls, or null without the global rate limit
+ * @param inFlight                   messages being processed now
+ * @param messagesPerSecond          deliveries processed per second over the last ten seconds
+ * @param received                   messages received since startup
+ * @param acked                      messages processed and deleted since startup
+ * @param latencyMillis              processing time percentiles over about the last minute, keyed p50, p95, p99
+ */
+public record ListenerStatus(boolean paused, int pollers, long pollDelayMs, int maxMessagesPerPoll,
+                             double pollsPerSecond, Integer workers, Double downstreamPermitsPerSecond,
+                             int inFlight, double messagesPerSecond, long received, long acked,
+                             Map<String, Double> latencyMillis) {
+}
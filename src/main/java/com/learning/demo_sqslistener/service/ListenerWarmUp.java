@@ -0,0 +1,215 @@
+package com.learning.demo_sqslistener.service;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.GetQueueAttributesRequest;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.QueueAttributeName;
+import com.learning.demo_sqslistener.exception.MessageProcessingException;
+import com.learning.demo_sqslistener.metrics.ListenerMetrics;
+import com.learning.demo_sqslistener.metrics.ListenerMetrics.WarmUpStage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warm-up of the message path before the listener starts polling.
+ * <p>
+ * Right after startup the message path runs in the interpreter and every connection still has to
+ * be opened, which shows as a latency spike on each deploy. The warm-up first runs the validation,
+ * sanitization and JSON check of {@link MessageProcessor} on synthetic payloads until the JIT has
+ * compiled them, then opens connections to the API endpoint and the SQS endpoint in parallel, so
+ * the pools hold connections the first messages reuse.
+ * <p>
+ * It runs as an application runner, and Spring Boot reports the application ready only after all
+ * runners have finished, so readiness is delayed until the warm-up is done. {@link SQSListener}
+ * does not poll before {@link #isComplete()}. The mean latency of each stage at the start and at
+ * the end of the warm-up is recorded in {@link ListenerMetrics}.
+ *
+ * @author demo-sqslistener
+ */
+@Component
+public class ListenerWarmUp implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListenerWarmUp.class);
+
+    private final boolean enabled;
+    private final MessageProcessor messageProcessor;
+    private final AmazonSQS amazonSQS;
+    private final ListenerMetrics metrics;
+    private final String queueUrl;
+    private final int iterations;
+    private final int connections;
+    private final long maxDurationNanos;
+    private volatile boolean complete;
+
+    @Autowired
+    public ListenerWarmUp(@Value("${startup.warmup.enabled:true}") boolean enabled,
+                          MessageProcessor messageProcessor,
+                          AmazonSQS amazonSQS,
+                          ListenerMetrics metrics,
+                          @Value("${aws.sqs.url}") String queueUrl,
+                          @Value("${startup.warmup.iterations:20000}") int iterations,
+                          @Value("${startup.warmup.connections:4}") int connections,
+                          @Value("${startup.warmup.max-duration-ms:15000}") long maxDurationMs) {
+        this.enabled = enabled;
+        this.messageProcessor = messageProcessor;
+        this.amazonSQS = amazonSQS;
+        this.metrics = metrics;
+        this.queueUrl = queueUrl;
+        this.iterations = Math.max(1, iterations);
+        this.connections = Math.max(1, connections);
+        this.maxDurationNanos = TimeUnit.MILLISECONDS.toNanos(maxDurationMs);
+        this.complete = !enabled;
+    }
+
+    /**
+     * @return whether the warm-up has finished or is switched off, so polling may start
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            warmUpPipeline(start + maxDurationNanos);
+            warmUpConnections(WarmUpStage.DOWNSTREAM, messageProcessor::openConnection);
+            warmUpConnections(WarmUpStage.SQS, () -> amazonSQS.getQueueAttributes(new GetQueueAttributesRequest(queueUrl)
+                .withAttributeNames(QueueAttributeName.ApproximateNumberOfMessages)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            metrics.warmUpFinished(elapsed);
+            complete = true;
+            logger.info("Warm-up finished in {} ms, polling starts", TimeUnit.NANOSECONDS.toMillis(elapsed));
+        }
+    }
+
+    /**
+     * Runs the synthetic payloads through the pipeline round after round, comparing the mean time
+     * per message of the first round with that of the last.
+     */
+    void warmUpPipeline(long deadline) {
+        List<Message> messages = syntheticMessages();
+        int rounds = Math.max(2, iterations / messages.size());
+        long cold = 0;
+        long warm = 0;
+        int round = 0;
+        for (; round < rounds && (round < 2 || System.nanoTime() - deadline < 0); round++) {
+            long start = System.nanoTime();
+            for (Message message : messages) {
+                try {
+                    messageProcessor.exercisePipeline(message);
+                } catch (IllegalArgumentException | MessageProcessingException e) {
+                    // Rejected payloads are part of the mix
+                }
+            }
+            long mean = (System.nanoTime() - start) / messages.size();
+            if (round == 0) {
+                cold = mean;
+            }
+            warm = mean;
+        }
+        metrics.recordWarmUp(WarmUpStage.PIPELINE, cold, warm);
+        logger.info("Warm-up ran {} synthetic messages: {} µs per message cold, {} µs warm",
+            round * messages.size(), TimeUnit.NANOSECONDS.toMicros(cold), TimeUnit.NANOSECONDS.toMicros(warm));
+    }
+
+    /**
+     * Makes as many requests in parallel as connections are wanted, twice: the first round opens
+     * the connections, the second reuses them.
+     */
+    void warmUpConnections(WarmUpStage stage, Runnable request) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(connections,
+            Thread.ofPlatform().name("warmup-" + name(stage) + "-", 0).daemon().factory());
+        try {
+            long cold = timedRound(executor, request);
+            long warm = timedRound(executor, request);
+            metrics.recordWarmUp(stage, cold, warm);
+            logger.info("Warm-up opened {} {} connections: {} µs per request cold, {} µs warm", connections,
+                name(stage), TimeUnit.NANOSECONDS.toMicros(cold), TimeUnit.NANOSECONDS.toMicros(warm));
+        } catch (ExecutionException e) {
+            logger.warn("Warm-up could not open {} connections, continuing without: {}",
+                name(stage), e.getCause().toString());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String name(WarmUpStage stage) {
+        return stage.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return mean duration of the requests, in nanoseconds
+     */
+    private long timedRound(ExecutorService executor, Runnable request) throws InterruptedException, ExecutionException {
+        List<Future<Long>> durations = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            durations.add(executor.submit(() -> {
+                long start = System.nanoTime();
+                request.run();
+                return System.nanoTime() - start;
+            }));
+        }
+        long total = 0;
+        for (Future<Long> duration : durations) {
+            total += duration.get();
+        }
+        return total / connections;
+    }
+
+    /**
+     * Product-like payloads of several sizes, clean and with markup to strip, with non-ASCII text,
+     * and an invalid one, so the branches of sanitization and validation are all compiled.
+     */
+    static List<Message> syntheticMessages() {
+        List<Message> messages = new ArrayList<>();
+        String[] fillers = {
+            "plain product description text without markup ",
+            "<script>alert(document.cookie)</script><b>bold</b> text <i>markup</i> ",
+            "Beschreibung mit Umlauten äöü und Zeichen € ✓ ",
+        };
+        int[] sizes = {128, 1024, 8192};
+        for (String filler : fillers) {
+            for (int size : sizes) {
+                messages.add(syntheticMessage(payload(size, filler)));
+            }
+        }
+        messages.add(syntheticMessage("{\"name\":\"Broken Product\",\"price\":"));
+        return messages;
+    }
+
+    private static Message syntheticMessage(String body) {
+        return new Message().withMessageId("warmup-" + body.length()).withBody(body);
+    }
+
+    private static String payload(int size, String filler) {
+        String head = "{\"name\":\"Warm-up Product\",\"price\":99.99,\"quantity\":10,\"description\":\"";
+        String tail = "\"}";
+        StringBuilder json = new StringBuilder(size).append(head);
+        int room = size - head.length() - tail.length();
+        while (json.length() - head.length() < room) {
+            json.append(filler, 0, Math.min(filler.length(), room - (json.length() - head.length())));
+        }
+        return json.append(tail).toString();
+    }
+}
@@ -0,0 +1,169 @@
+package com.learning.demo_sqslistener.service;
+
+import com.amazonaws.services.sqs.model.Message;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.learning.demo_sqslistener.metrics.ListenerMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Last-write-wins compaction of received messages: of several messages carrying the same value
+ * in the configured key field, only the latest is forwarded and the others are superseded.
+ * <p>
+ * "Latest" is decided by the numeric version field when one is configured and present in both
+ * messages, then by the {@code SentTimestamp} attribute, then by receive order. The key and
+ * version are read from the top-level fields of the JSON body with a streaming parser. Messages
+ * without a key, or whose body cannot be parsed, are never coalesced.
+ * <p>
+ * {@code SQSListener} collects messages for {@link #getWindowMillis()} before calling
+ * {@link #coalesce(List)}, and deletes the superseded messages in batches.
+ *
+ * @author demo-sqslistener
+ */
+@Component
+public class MessageCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageCoalescer.class);
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final boolean enabled;
+    private final String keyField;
+    private final String versionField;
+    private final long windowMillis;
+    private final int maxMessages;
+
+    public MessageCoalescer(
+            @Value("${aws.sqs.coalesce.enabled:false}") boolean enabled,
+            @Value("${aws.sqs.coalesce.key-field:id}") String keyField,
+            @Value("${aws.sqs.coalesce.version-field:}") String versionField,
+            @Value("${aws.sqs.coalesce.window-ms:2000}") long windowMillis,
+            @Value("${aws.sqs.coalesce.max-messages:100}") int maxMessages) {
+        if (enabled && (keyField == null || keyField.isBlank())) {
+            throw new IllegalArgumentException("aws.sqs.coalesce.key-field is required when coalescing is enabled");
+        }
+        this.enabled = enabled;
+        this.keyField = keyField;
+        this.versionField = versionField == null || versionField.isBlank() ? null : versionField;
+        this.windowMillis = windowMillis;
+        this.maxMessages = maxMessages;
+        if (enabled) {
+            logger.info("Coalescing messages by '{}' (version field: {}) over {} ms windows",
+                keyField, this.versionField, windowMillis);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * @return number of messages after which collection stops even if the window is still open
+     */
+    public int getMaxMessages() {
+        return maxMessages;
+    }
+
+    /**
+     * Splits messages into the ones to forward and the ones superseded by a later message with
+     * the same key. Forwarded messages keep their receive order.
+     *
+     * @param messages received messages, in receive order
+     * @return the split
+     */
+    public Coalesced coalesce(List<Message> messages) {
+        Map<String, Candidate> latest = new HashMap<>();
+        List<Candidate> candidates = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            Candidate candidate = candidate(messages.get(i), i);
+            candidates.add(candidate);
+            if (candidate.key != null) {
+                latest.merge(candidate.key, candidate, (current, next) -> next.isNewerThan(current) ? next : current);
+            }
+        }
+        List<Message> forward = new ArrayList<>(latest.size());
+        List<Message> superseded = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (candidate.key == null || latest.get(candidate.key) == candidate) {
+                forward.add(candidate.message);
+            } else {
+                superseded.add(candidate.message);
+            }
+        }
+        return new Coalesced(forward, superseded);
+    }
+
+    private Candidate candidate(Message message, int order) {
+        String key = null;
+        Long version = null;
+        String body = message.getBody();
+        if (body != null) {
+            try (JsonParser parser = jsonFactory.createParser(body)) {
+                if (parser.nextToken() == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = parser.currentName();
+                        JsonToken value = parser.nextToken();
+                        if (keyField.equals(field) && value.isScalarValue() && value != JsonToken.VALUE_NULL) {
+                            key = parser.getText();
+                        } else if (field.equals(versionField) && value.isNumeric()) {
+                            version = parser.getLongValue();
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // Malformed bodies are forwarded as they are and fail validation there
+                key = null;
+            }
+        }
+        return new Candidate(message, key, version, sentTimestamp(message), order);
+    }
+
+    private static long sentTimestamp(Message message) {
+        String value = message.getAttributes() == null ? null : message.getAttributes().get(ListenerMetrics.SENT_TIMESTAMP);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private record Candidate(Message message, String key, Long version, long sentTimestamp, int order) {
+
+        boolean isNewerThan(Candidate other) {
+            if (version != null && other.version != null && !version.equals(other.version)) {
+                return version > other.version;
+            }
+            if (sentTimestamp != other.sentTimestamp) {
+                return sentTimestamp > other.sentTimestamp;
+            }
+            return order > other.order;
+        }
+    }
+
+    /**
+     * Result of {@link #coalesce(List)}.
+     *
+     * @param forward    messages to process, in receive order
+     * @param superseded messages replaced by a later message with the same key
+     */
+    public record Coalesced(List<Message> forward, List<Message> superseded) {
+    }
+}
@@ -0,0 +1,277 @@
+package com.learning.demo_sqslistener.service;
+
+import com.amazonaws.services.sqs.model.Message;
+import com.learning.demo_sqslistener.exception.ErrorCodes;
+import com.learning.demo_sqslistener.exception.SQSProcessingException;
+import com.learning.demo_sqslistener.journal.JournalBatch;
+import com.learning.demo_sqslistener.journal.JournalCheckpoint;
+import com.learning.demo_sqslistener.journal.JournalPosition;
+import com.learning.demo_sqslistener.journal.JournalRecord;
+import com.learning.demo_sqslistener.journal.SegmentedJournal;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node-local write-ahead inbox. In inbox mode {@code SQSListener} appends received messages
+ * here, deletes them from SQS once they are durable, and processes them from the inbox,
+ * so processing time is no longer bounded by the visibility timeout.
+ * <p>
+ * Messages are stored in a {@link SegmentedJournal} whose group commits are forced to disk, so
+ * a whole receive batch costs one fsync. The read position is kept in a {@link JournalCheckpoint};
+ * after a restart processing resumes from the checkpoint, and messages processed after the last
+ * checkpoint are processed again. Durability is that of the local disk.
+ *
+ * @author demo-sqslistener
+ */
+@Service
+public class MessageInbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageInbox.class);
+    private static final String JOURNAL_NAME = "inbox";
+    private static final byte FORMAT_VERSION = 1;
+    private static final int COUNT_BATCH = 1024;
+
+    private final boolean enabled;
+    private final long commitTimeoutMs;
+    private final long maxPending;
+    private final long drainDelayMs;
+    private final int drainWorkers;
+    private final SegmentedJournal journal;
+    private final JournalCheckpoint checkpoint;
+    private final AtomicLong pending = new AtomicLong();
+
+    public MessageInbox(
+            @Value("${aws.sqs.inbox.enabled:false}") boolean enabled,
+            @Value("${aws.sqs.inbox.dir:data/inbox}") String directory,
+            @Value("${aws.sqs.inbox.segment-bytes:67108864}") int segmentBytes,
+            @Value("${aws.sqs.inbox.commit-timeout-ms:5000}") long commitTimeoutMs,
+            @Value("${aws.sqs.inbox.max-pending:10000}") long maxPending,
+            @Value("${aws.sqs.inbox.drain-delay-ms:100}") long drainDelayMs,
+            @Value("${aws.sqs.inbox.drain-workers:4}") int drainWorkers) {
+        this.enabled = enabled;
+        this.commitTimeoutMs = commitTimeoutMs;
+        this.maxPending = maxPending;
+        this.drainDelayMs = Math.max(1, drainDelayMs);
+        this.drainWorkers = Math.max(1, drainWorkers);
+        if (!enabled) {
+            this.journal = null;
+            this.checkpoint = null;
+            return;
+        }
+        Path path = Path.of(directory);
+        try {
+            this.journal = new SegmentedJournal(path, JOURNAL_NAME, segmentBytes, true);
+            this.checkpoint = new JournalCheckpoint(path.resolve(JOURNAL_NAME + ".checkpoint"));
+            pending.set(countPending());
+        } catch (IOException e) {
+            throw new SQSProcessingException(ErrorCodes.SYSTEM_ERROR,
+                String.format("Unable to open message inbox in %s", path), e);
+        }
+        logger.info("Message inbox enabled in {} with {} messages to recover", path, pending.get());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return time the drain loop waits between passes over the inbox
+     */
+    public long getDrainDelayMs() {
+        return drainDelayMs;
+    }
+
+    /**
+     * @return number of threads inbox messages are processed on
+     */
+    public int getDrainWorkers() {
+        return drainWorkers;
+    }
+
+    /**
+     * @return number of messages appended but not yet acknowledged
+     */
+    public long getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * @return whether the inbox holds as many unprocessed messages as it may, so polling should pause
+     */
+    public boolean isFull() {
+        return pending.get() >= maxPending;
+    }
+
+    /**
+     * Durably appends received messages. Blocks until all of them are part of a forced group
+     * commit or the commit timeout expires. Every message whose commit lands counts as pending,
+     * also when the call gave up waiting, as the drain will read it all the same.
+     *
+     * @param sourceQueueUrl URL of the queue the messages were received from
+     * @param messages received messages
+     * @return true if every message is now stored in the inbox
+     */
+    public boolean append(String sourceQueueUrl, List<Message> messages) {
+        try {
+            List<CompletableFuture<JournalPosition>> commits = new ArrayList<>(messages.size());
+            for (Message message : messages) {
+                commits.add(journal.append(encode(new InboxMessage(sourceQueueUrl, message.getMessageId(),
+                    message.getBody(), message.getAttributes(), System.currentTimeMillis())))
+                    .thenApply(position -> {
+                        pending.incrementAndGet();
+                        return position;
+                    }));
+            }
+            CompletableFuture.allOf(commits.toArray(CompletableFuture[]::new))
+                .get(commitTimeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while appending {} messages to the inbox", messages.size());
+            return false;
+        } catch (ExecutionException | TimeoutException | IOException | RuntimeException e) {
+            logger.error("Could not append {} messages to the inbox: {}", messages.size(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reads messages that have not been acknowledged yet.
+     *
+     * @param maxRecords maximum number of entries to return
+     * @return the next batch of inbox entries
+     * @throws IOException if the journal cannot be read
+     */
+    public JournalBatch readPending(int maxRecords) throws IOException {
+        return journal.read(checkpoint.load(journal.firstPosition()), maxRecords);
+    }
+
+    /**
+     * Marks everything before the given position as processed and drops fully processed segments.
+     *
+     * @param position position right after the last processed entry
+     * @param processed number of entries the acknowledgement covers
+     * @throws IOException if the checkpoint cannot be stored
+     */
+    public void acknowledge(JournalPosition position, int processed) throws IOException {
+        checkpoint.store(position);
+        journal.deleteSegmentsBefore(position);
+        pending.addAndGet(-processed);
+    }
+
+    private long countPending() throws IOException {
+        long count = 0;
+        JournalPosition position = checkpoint.load(journal.firstPosition());
+        JournalBatch batch;
+        while (!(batch = journal.read(position, COUNT_BATCH)).isEmpty()) {
+            count += batch.records().size();
+            position = batch.end();
+        }
+        return count;
+    }
+
+    public InboxMessage decode(JournalRecord record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record.payload()));
+        byte version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported inbox record version " + version);
+        }
+        long appendedAt = in.readLong();
+        String sourceQueueUrl = readString(in);
+        String messageId = readString(in);
+        String body = readString(in);
+        int attributeCount = in.readInt();
+        Map<String, String> attributes = new HashMap<>(attributeCount * 2);
+        for (int i = 0; i < attributeCount; i++) {
+            attributes.put(readString(in), readString(in));
+        }
+        return new InboxMessage(sourceQueueUrl, messageId, body, attributes, appendedAt);
+    }
+
+    byte[] encode(InboxMessage message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+            128 + (message.body() != null ? message.body().length() : 0));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(FORMAT_VERSION);
+        out.writeLong(message.appendedAtMillis());
+        writeString(out, message.sourceQueueUrl());
+        writeString(out, message.messageId());
+        writeString(out, message.body());
+        Map<String, String> attributes = message.attributes() != null ? message.attributes() : Map.of();
+        out.writeInt(attributes.size());
+        for (Map.Entry<String, String> entry : attributes.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] data = new byte[length];
+        in.readFully(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * A message held in the inbox until it has been processed.
+     *
+     * @param sourceQueueUrl   URL of the queue the message was received from
+     * @param messageId        SQS message ID
+     * @param body             message body
+     * @param attributes       SQS system attributes of the message, such as {@code SentTimestamp}
+     * @param appendedAtMillis time the message was appended
+     */
+    public record InboxMessage(String sourceQueueUrl, String messageId, String body, Map<String, String> attributes,
+                               long appendedAtMillis) {
+
+        /**
+         * @return the message as the processor expects it; it carries no receipt handle
+         */
+        public Message toMessage() {
+            return new Message().withMessageId(messageId).withBody(body)
+                .withAttributes(attributes != null ? attributes : Map.of());
+        }
+    }
+}
@@ -2,17 +2,29 @@ package com.learning.demo_sqslistener.service;
 
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import com.amazonaws.services.sqs.model.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.learning.demo_sqslistener.exception.ErrorCodes;
 import com.learning.demo_sqslistener.exception.MessageProcessingException;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.learning.demo_sqslistener.exception.MessageValidationException;
+import com.learning.demo_sqslistener.metrics.ListenerMetrics;
+import com.learning.demo_sqslistener.profiling.MessageStageEvent;
+import com.learning.demo_sqslistener.ratelimit.GlobalRateLimiter;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.DefaultResponseErrorHandler;
 import org.springframework.web.client.RestClientException;
 
+import java.io.IOException;
+
 /**
  * Service responsible for processing messages received from SQS.
  * This class handles the core business logic of processing messages,
@@ -39,20 +51,43 @@ public class MessageProcessor {
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    /** Pipeline metrics, records downstream call latency */
+    private final ListenerMetrics metrics;
+
+    /** Sends a second request when the downstream API is slow to answer */
+    private final DownstreamHedger hedger;
+
+    /** Cluster-wide limit on the rate of downstream calls */
+    private final GlobalRateLimiter rateLimiter;
+
+    /** Headers of the forwarded payload; the body is always UTF-8 encoded JSON */
+    private static final HttpHeaders JSON_HEADERS = HttpHeaders.readOnlyHttpHeaders(jsonHeaders());
+
+    /** Header letting the API recognise the copies of a hedged request */
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     /**
      * Constructs a new MessageProcessor with the specified API endpoint.
      *
      * @param apiUrl the endpoint URL where messages will be forwarded
+     * @param metrics pipeline metrics receiving the downstream call latency
+     * @param hedger hedger of slow downstream calls
+     * @param rateLimiter cluster-wide limit on the rate of downstream calls
      * @throws IllegalArgumentException if apiUrl is null or empty
      */
-    public MessageProcessor(@Value("${api.endpoint.url}") String apiUrl) {
+    @Autowired
+    public MessageProcessor(@Value("${api.endpoint.url}") String apiUrl, ListenerMetrics metrics,
+                            DownstreamHedger hedger, GlobalRateLimiter rateLimiter) {
         if (!isValidUrl(apiUrl)) {
             logger.error("Invalid API URL provided: {}", apiUrl);
             throw new IllegalArgumentException(
                 String.format("Invalid API URL: %s", apiUrl));
         }
-        this.restTemplate = new RestTemplate();
+        this.restTemplate = restTemplate();
         this.apiUrl = apiUrl;
+        this.metrics = metrics;
+        this.hedger = hedger;
+        this.rateLimiter = rateLimiter;
         logger.info("MessageProcessor initialized with API URL: {}", apiUrl);
     }
 
@@ -69,116 +104,218 @@ public class MessageProcessor {
      * @param message The SQS message to process
      * @throws IllegalArgumentException if the message is null, empty, or exceeds size limit
      * @throws RuntimeException if processing fails or API call fails
-     * @see #sanitizeMessageContent(String)
+     * @see Utf8Payload
      */
     public void processMessage(Message message) {
+        processMessage(message, ProcessingDeadline.none());
+    }
+
+    /**
+     * Processes a single SQS message like {@link #processMessage(Message)}, giving up once the
+     * deadline expires. The deadline is checked before every stage and bounds the timeouts of
+     * the downstream HTTP call.
+     *
+     * @param message The SQS message to process
+     * @param deadline time by which processing must be finished
+     * @throws MessageProcessingException with {@link ErrorCodes#PROCESSING_DEADLINE_EXCEEDED}
+     *         if the deadline expires before or during processing
+     */
+    public void processMessage(Message message, ProcessingDeadline deadline) {
+        MessageStageEvent stage = MessageStageEvent.start(MessageStageEvent.VALIDATE,
+            message != null ? message.getMessageId() : null, message != null ? message.getBody() : null);
         try {
-            validateMessage(message);
+            Utf8Payload payload = validateMessage(message);
+            stage.succeeded();
             String messageId = message.getMessageId();
             logger.debug("Starting to process message: {}", messageId);
-            String sanitizedContent = sanitizeMessageContent(message.getBody());
-            processContent(messageId, sanitizedContent);
-            logger.info("Successfully processed message: {}", messageId);
+            deadline.check(MessageStageEvent.SANITIZE, messageId);
+            stage = MessageStageEvent.start(MessageStageEvent.SANITIZE, messageId, null);
+            stage.setBytes(payload.length());
+            payload.sanitize();
+            stage.succeeded();
+            processContent(messageId, payload, deadline);
+            logger.debug("Successfully processed message: {}", messageId);
         } catch (IllegalArgumentException | MessageProcessingException e) {
-            String messageId = message != null ? message.getMessageId() : "null";
-            logger.error("Processing failed for message {}: {}", messageId, e.getMessage(), e);
-            throw e; // Re-throw the original exception
+            // Reported once, with the message's outcome, by the caller
+            stage.failed(e);
+            throw e;
         } catch (Exception e) {
+            stage.failed(e);
             String messageId = message != null ? message.getMessageId() : "null";
-            logger.error("Message processing failed for message {}", messageId, e);
-            throw new MessageProcessingException(ErrorCodes.MESSAGE_PROCESSING_ERROR, 
+            throw MessageProcessingException.stackless(ErrorCodes.MESSAGE_PROCESSING_ERROR,
                 String.format("Message ID: %s", messageId), e);
         }
     }
 
     /**
-     * Validates the message for null checks and size constraints.
+     * Runs the validation, sanitization and JSON check of {@link #processMessage(Message)} without
+     * forwarding the message, so the warm-up can have them compiled before the first real message.
+     *
+     * @param message a synthetic message
+     * @throws MessageValidationException if the message is invalid
+     * @throws MessageProcessingException if the body is not valid JSON
+     */
+    public void exercisePipeline(Message message) {
+        Utf8Payload payload = validateMessage(message);
+        payload.sanitize();
+        validateJsonFormat(payload);
+    }
+
+    /**
+     * Sends a HEAD request to the API endpoint, which opens a connection, and for HTTPS
+     * negotiates TLS, that later requests reuse. Neither the rate limit nor the metrics of
+     * downstream calls apply; any response status will do.
+     *
+     * @throws RestClientException if the endpoint cannot be reached
+     */
+    public void openConnection() {
+        restTemplate.exchange(apiUrl, HttpMethod.HEAD, null, Void.class);
+    }
+
+    /**
+     * Validates the message for null checks and size constraints, and encodes its body.
+     * The size limit applies to the UTF-8 encoded body.
      * 
      * @param message The SQS message to validate
-     * @throws IllegalArgumentException if message is null, message body is null,
-     *         or message size exceeds MAX_MESSAGE_SIZE
+     * @return the body encoded into this thread's pooled buffer
+     * @throws MessageValidationException if message is null, message body is null,
+     *         or message size exceeds MAX_MESSAGE_SIZE bytes
      */
-    void validateMessage(Message message) {
+    Utf8Payload validateMessage(Message message) {
         logger.debug("Validating message...");
         if (message == null || message.getBody() == null) {
-            logger.error("Null message or message body received");
-            throw new IllegalArgumentException("Message or message body cannot be null");
-        }
-        if (message.getBody().length() > MAX_MESSAGE_SIZE) {
-            logger.error("Message size {} exceeds limit of {} bytes for message ID: {}", 
-                message.getBody().length(), MAX_MESSAGE_SIZE, message.getMessageId());
-            throw new IllegalArgumentException(
-                String.format("Message size %d exceeds limit of %d bytes", 
-                    message.getBody().length(), MAX_MESSAGE_SIZE));
+            throw new MessageValidationException("Message or message body cannot be null");
         }
+        Utf8Payload payload = Utf8Payload.encode(message.getBody(), MAX_MESSAGE_SIZE);
         logger.debug("Message validation successful for message ID: {}", message.getMessageId());
+        return payload;
     }
 
     /**
      * Processes the sanitized content by sending it to the configured API endpoint.
      * 
      * @param messageId The ID of the message being processed, used for logging
-     * @param content The sanitized content to be sent to the API
-     * @throws MessageProcessingException if the API call fails or returns a non-2xx status
+     * @param content The sanitized payload to be sent to the API
+     * @param deadline time by which processing must be finished
+     * @throws MessageProcessingException if the API call fails or returns a non-2xx status,
+     *         or the deadline expires
      */
-    private void processContent(String messageId, String content) {
+    private void processContent(String messageId, Utf8Payload content, ProcessingDeadline deadline) {
         logger.debug("Processing content for message ID: {}", messageId);
+        MessageStageEvent stage = MessageStageEvent.start(MessageStageEvent.JSON_VALIDATE, messageId, null);
+        stage.setBytes(content.length());
         try {
+            deadline.check(MessageStageEvent.JSON_VALIDATE, messageId);
             validateJsonFormat(content);
-            ResponseEntity<String> response = restTemplate.postForEntity(apiUrl, content, String.class);
-            
+            stage.succeeded();
+            deadline.check(MessageStageEvent.POST, messageId);
+            if (!rateLimiter.tryAcquire(deadline.remainingNanos())) {
+                logger.warn("No downstream rate limit permit for message ID {} before its processing deadline", messageId);
+                throw ProcessingDeadline.expired(MessageStageEvent.POST, messageId, null);
+            }
+            stage = MessageStageEvent.start(MessageStageEvent.POST, messageId, null);
+            stage.setBytes(content.length());
+            long start = System.nanoTime();
+            ResponseEntity<String> response;
+            DeadlineRequestFactory.set(deadline);
+            try {
+                if (hedger.isEnabled()) {
+                    // The losing attempt may still be writing when this thread reuses its buffer
+                    Utf8Payload copy = content.copy();
+                    response = hedger.execute(messageId, deadline, () -> postIdempotent(messageId, copy, deadline));
+                } else {
+                    response = restTemplate.postForEntity(apiUrl, new HttpEntity<>(content, JSON_HEADERS), String.class);
+                }
+            } catch (RestClientException e) {
+                metrics.recordDownstream(System.nanoTime() - start, false);
+                if (deadline.isExpired()) {
+                    throw ProcessingDeadline.expired(MessageStageEvent.POST, messageId, e);
+                }
+                throw e;
+            } catch (MessageProcessingException e) {
+                if (e.getErrorCode() == ErrorCodes.API_RESPONSE_ERROR) {
+                    // Every hedged attempt was answered with an error status
+                    metrics.recordDownstream(System.nanoTime() - start, false);
+                }
+                throw e;
+            } finally {
+                DeadlineRequestFactory.clear();
+            }
+            metrics.recordDownstream(System.nanoTime() - start, response.getStatusCode().is2xxSuccessful());
+
             if (!response.getStatusCode().is2xxSuccessful()) {
-                logger.error("API call failed with status: {} for message ID: {}", 
-                    response.getStatusCode(), messageId);
-                throw new MessageProcessingException(ErrorCodes.API_RESPONSE_ERROR, 
-                    String.format("API call failed with status: %s", response.getStatusCode()));
+                throw apiResponseError(response);
             }
+            stage.succeeded();
             logger.debug("Successfully processed content for message ID: {}", messageId);
-        } catch (JsonProcessingException e) {
-            logger.error("Invalid JSON format for message ID: {}", messageId, e);
-            throw new MessageProcessingException(ErrorCodes.INVALID_JSON_FORMAT, 
-                "Invalid JSON format in message", e);
+        } catch (MessageProcessingException e) {
+            stage.failed(e);
+            throw e;
         } catch (RestClientException e) {
-            logger.error("API call failed for message ID: {}", messageId, e);
-            throw new MessageProcessingException(ErrorCodes.API_CONNECTION_ERROR, 
+            stage.failed(ErrorCodes.API_CONNECTION_ERROR);
+            throw MessageProcessingException.stackless(ErrorCodes.API_CONNECTION_ERROR,
                 "Failed to process message due to API error", e);
         }
     }
 
     /**
-     * Sanitizes message content to prevent security vulnerabilities.
-     * This method removes or escapes potentially dangerous characters
-     * to ensure safe processing of the message content.
-     *
-     * @param content The raw message content to sanitize
-     * @return Sanitized version of the message content with dangerous characters removed
-     * @throws IllegalArgumentException if content is null
+     * Posts content with the message ID as idempotency key, so the API can discard the second
+     * copy of a hedged request. Runs on a hedger thread, hence the deadline is set again here.
      */
-    private String sanitizeMessageContent(String content) {
-        logger.debug("Sanitizing message content");
-        if (content == null) {
-            logger.error("Cannot sanitize null content");
-            throw new IllegalArgumentException("Content cannot be null");
+    private ResponseEntity<String> postIdempotent(String messageId, Utf8Payload content, ProcessingDeadline deadline) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set(IDEMPOTENCY_KEY_HEADER, messageId);
+        DeadlineRequestFactory.set(deadline);
+        try {
+            ResponseEntity<String> response = restTemplate.postForEntity(apiUrl, new HttpEntity<>(content, headers), String.class);
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                // Lets the hedger fall back to the other attempt
+                throw apiResponseError(response);
+            }
+            return response;
+        } finally {
+            DeadlineRequestFactory.clear();
         }
-        // Basic XSS prevention
-        String sanitized = content.replaceAll("<script>.*?</script>", "")
-                                .replaceAll("<.*?>", "");
-        logger.debug("Message content sanitization completed");
-        return sanitized;
     }
 
-    private void validateJsonFormat(String content) throws JsonProcessingException {
+    void validateJsonFormat(Utf8Payload content) {
         try {
             logger.debug("Validating JSON format");
-            objectMapper.readTree(content);
+            content.validateJson(objectMapper.getFactory());
             logger.debug("JSON format validation successful");
-        } catch (JsonProcessingException e) {
-            logger.error("JSON validation failed: {}", e.getMessage(), e);
-            throw new MessageProcessingException(ErrorCodes.INVALID_JSON_FORMAT, 
-                "Invalid JSON format in message", e);
+        } catch (IOException e) {
+            logger.debug("JSON validation failed: {}", e.getMessage());
+            throw MessageProcessingException.expected(ErrorCodes.INVALID_JSON_FORMAT);
         }
     }
 
+    private static MessageProcessingException apiResponseError(ResponseEntity<?> response) {
+        return MessageProcessingException.stackless(ErrorCodes.API_RESPONSE_ERROR,
+            "API call failed with status: " + response.getStatusCode(), null);
+    }
+
+    /**
+     * Error statuses are handled as responses by {@link #processContent}, so the template does not
+     * build an exception with a stack trace for each of them.
+     */
+    private static RestTemplate restTemplate() {
+        RestTemplate template = new RestTemplate(new DeadlineRequestFactory());
+        template.setErrorHandler(new DefaultResponseErrorHandler() {
+            @Override
+            public boolean hasError(ClientHttpResponse response) {
+                return false;
+            }
+        });
+        return template;
+    }
+
+    private static HttpHeaders jsonHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return headers;
+    }
+
     private boolean isValidUrl(String url) {
         try {
             new java.net.URL(url).toURI();
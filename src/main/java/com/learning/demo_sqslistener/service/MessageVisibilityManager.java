@@ -24,6 +24,17 @@ public class MessageVisibilityManager {
     }
 
     public void changeVisibility(Message message, int visibilityTimeout) {
+        changeVisibility(queueUrl, message, visibilityTimeout);
+    }
+
+    /**
+     * Changes the visibility timeout of a message received from the given queue.
+     *
+     * @param queueUrl URL of the queue (shard) the message was received from
+     * @param message the received message
+     * @param visibilityTimeout new visibility timeout in seconds
+     */
+    public void changeVisibility(String queueUrl, Message message, int visibilityTimeout) {
         try {
             ChangeMessageVisibilityRequest request = new ChangeMessageVisibilityRequest()
                 .withQueueUrl(queueUrl)
@@ -0,0 +1,109 @@
+package com.learning.demo_sqslistener.service;
+
+import com.learning.demo_sqslistener.exception.ErrorCodes;
+import com.learning.demo_sqslistener.exception.MessageProcessingException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time by which the processing of a message must be finished, based on
+ * {@link System#nanoTime()}. {@code SQSListener} derives it from the visibility timeout of the
+ * receive call minus a safety margin, so an attempt gives up before SQS redelivers the message
+ * to another consumer.
+ *
+ * @author demo-sqslistener
+ */
+public final class ProcessingDeadline {
+
+    private static final ProcessingDeadline NONE = new ProcessingDeadline(0, false);
+
+    private final long deadlineNanos;
+    private final boolean bounded;
+
+    private ProcessingDeadline(long deadlineNanos, boolean bounded) {
+        this.deadlineNanos = deadlineNanos;
+        this.bounded = bounded;
+    }
+
+    /**
+     * @return a deadline that never expires
+     */
+    public static ProcessingDeadline none() {
+        return NONE;
+    }
+
+    /**
+     * @param startNanos  {@link System#nanoTime()} at which the budget starts
+     * @param budgetNanos time available from the start
+     * @return a deadline expiring once the budget is used up
+     */
+    public static ProcessingDeadline after(long startNanos, long budgetNanos) {
+        return new ProcessingDeadline(startNanos + budgetNanos, true);
+    }
+
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    /**
+     * @return nanoseconds left, zero once expired, {@link Long#MAX_VALUE} when unbounded
+     */
+    public long remainingNanos() {
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, deadlineNanos - System.nanoTime());
+    }
+
+    /**
+     * @return milliseconds left, rounded up so that a running deadline never reports zero early
+     */
+    public long remainingMillis() {
+        long remaining = remainingNanos();
+        return remaining == Long.MAX_VALUE ? Long.MAX_VALUE : TimeUnit.NANOSECONDS.toMillis(remaining + 999_999);
+    }
+
+    public boolean isExpired() {
+        return bounded && deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Fails fast when the deadline has passed before a stage starts.
+     *
+     * @param stage name of the stage about to run
+     * @param messageId ID of the message being processed
+     * @throws MessageProcessingException with {@link ErrorCodes#PROCESSING_DEADLINE_EXCEEDED} if expired
+     */
+    public void check(String stage, String messageId) {
+        if (isExpired()) {
+            throw expired(stage, messageId, null);
+        }
+    }
+
+    /**
+     * @return the exception reported when the deadline expires during or before a stage
+     */
+    static MessageProcessingException expired(String stage, String messageId, Throwable cause) {
+        return MessageProcessingException.stackless(ErrorCodes.PROCESSING_DEADLINE_EXCEEDED,
+            String.format("Message ID: %s, Stage: %s", messageId, stage), cause);
+    }
+
+    /**
+     * @param failure exception thrown while processing a message
+     * @return whether the failure was caused by an expired deadline
+     */
+    public static boolean isDeadlineFailure(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof MessageProcessingException e
+                    && e.getErrorCode() == ErrorCodes.PROCESSING_DEADLINE_EXCEEDED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return bounded ? "ProcessingDeadline[" + remainingMillis() + " ms left]" : "ProcessingDeadline[none]";
+    }
+}
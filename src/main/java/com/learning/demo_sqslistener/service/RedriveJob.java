@@ -0,0 +1,153 @@
+package com.learning.demo_sqslistener.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mutable state of a single DLQ redrive run, shared by its reader threads.
+ * The state can be written to and restored from {@link Properties} so that a run
+ * interrupted by a restart resumes with its counters intact.
+ *
+ * @author demo-sqslistener
+ */
+public class RedriveJob {
+
+    public enum Status { RUNNING, COMPLETED, CANCELLED, FAILED }
+
+    private final String id;
+    private final RedriveOptions options;
+    private final Instant startedAt;
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong matched = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong redriven = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    /** Receive budget left when a message limit is set, including receives currently in flight */
+    private final AtomicLong budget;
+    private volatile Status status = Status.RUNNING;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    RedriveJob(String id, RedriveOptions options, Instant startedAt) {
+        this.id = id;
+        this.options = options;
+        this.startedAt = startedAt;
+        this.budget = new AtomicLong(options.maxMessages() > 0 ? options.maxMessages() : Long.MAX_VALUE);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public RedriveOptions getOptions() {
+        return options;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isRunning() {
+        return status == Status.RUNNING;
+    }
+
+    /**
+     * Reserves up to {@code wanted} messages of the receive budget.
+     *
+     * @return number of messages the caller may receive, 0 once the limit is reached
+     */
+    int claim(int wanted) {
+        while (true) {
+            long left = budget.get();
+            int granted = (int) Math.min(wanted, left);
+            if (granted <= 0 || budget.compareAndSet(left, left - granted)) {
+                return Math.max(granted, 0);
+            }
+        }
+    }
+
+    void release(int unused) {
+        if (unused > 0 && options.maxMessages() > 0) {
+            budget.addAndGet(unused);
+        }
+    }
+
+    void recordReceived(int total, int matchedCount) {
+        received.addAndGet(total);
+        matched.addAndGet(matchedCount);
+        skipped.addAndGet(total - matchedCount);
+    }
+
+    void recordRedriven(int count) {
+        redriven.addAndGet(count);
+    }
+
+    void recordFailed(int count) {
+        failed.addAndGet(count);
+    }
+
+    synchronized void finish(Status finalStatus, String reason) {
+        if (status == Status.RUNNING) {
+            status = finalStatus;
+            error = reason;
+            finishedAt = Instant.now();
+        }
+    }
+
+    public RedriveProgress snapshot() {
+        Instant end = finishedAt != null ? finishedAt : Instant.now();
+        double seconds = Math.max(Duration.between(startedAt, end).toMillis(), 1) / 1000.0;
+        return new RedriveProgress(id, status, options, received.get(), matched.get(), skipped.get(),
+            redriven.get(), failed.get(), startedAt, finishedAt, redriven.get() / seconds, error);
+    }
+
+    Properties toProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("id", id);
+        properties.setProperty("status", status.name());
+        properties.setProperty("startedAt", startedAt.toString());
+        properties.setProperty("maxMessages", String.valueOf(options.maxMessages()));
+        properties.setProperty("messagesPerSecond", String.valueOf(options.messagesPerSecond()));
+        if (options.failureReason() != null) {
+            properties.setProperty("failureReason", options.failureReason());
+        }
+        properties.setProperty("dryRun", String.valueOf(options.dryRun()));
+        properties.setProperty("readers", String.valueOf(options.readers()));
+        properties.setProperty("received", String.valueOf(received.get()));
+        properties.setProperty("matched", String.valueOf(matched.get()));
+        properties.setProperty("skipped", String.valueOf(skipped.get()));
+        properties.setProperty("redriven", String.valueOf(redriven.get()));
+        properties.setProperty("failed", String.valueOf(failed.get()));
+        return properties;
+    }
+
+    /**
+     * Restores a job persisted by {@link #toProperties()}. The restored job is running
+     * and its receive budget accounts for the messages already received.
+     */
+    static RedriveJob fromProperties(Properties properties) {
+        RedriveOptions options = new RedriveOptions(
+            Long.parseLong(properties.getProperty("maxMessages", "0")),
+            Double.parseDouble(properties.getProperty("messagesPerSecond")),
+            properties.getProperty("failureReason"),
+            Boolean.parseBoolean(properties.getProperty("dryRun")),
+            Integer.parseInt(properties.getProperty("readers")));
+        RedriveJob job = new RedriveJob(properties.getProperty("id"), options,
+            Instant.parse(properties.getProperty("startedAt")));
+        job.received.set(Long.parseLong(properties.getProperty("received", "0")));
+        job.matched.set(Long.parseLong(properties.getProperty("matched", "0")));
+        job.skipped.set(Long.parseLong(properties.getProperty("skipped", "0")));
+        job.redriven.set(Long.parseLong(properties.getProperty("redriven", "0")));
+        job.failed.set(Long.parseLong(properties.getProperty("failed", "0")));
+        if (options.maxMessages() > 0) {
+            job.budget.set(Math.max(options.maxMessages() - job.received.get(), 0));
+        }
+        return job;
+    }
+
+    static Status persistedStatus(Properties properties) {
+        return Status.valueOf(properties.getProperty("status", Status.COMPLETED.name()));
+    }
+}
@@ -0,0 +1,23 @@
+package com.learning.demo_sqslistener.service;
+
+/**
+ * Parameters of a DLQ redrive run. Null fields fall back to the configured defaults.
+ *
+ * @param maxMessages       stop after this many DLQ messages have been received; null or 0 for no limit
+ * @param messagesPerSecond ceiling on re-sent messages per second across all readers
+ * @param failureReason     only redrive messages whose {@code FailureReason} attribute equals this value; null for all
+ * @param dryRun            count what would be redriven without sending or deleting anything
+ * @param readers           number of parallel long-poll readers on the DLQ
+ */
+public record RedriveOptions(Long maxMessages, Double messagesPerSecond, String failureReason,
+                             boolean dryRun, Integer readers) {
+
+    RedriveOptions withDefaults(double defaultMessagesPerSecond, int defaultReaders) {
+        return new RedriveOptions(
+            maxMessages == null ? 0L : maxMessages,
+            messagesPerSecond == null || messagesPerSecond <= 0 ? defaultMessagesPerSecond : messagesPerSecond,
+            failureReason == null || failureReason.isBlank() ? null : failureReason,
+            dryRun,
+            readers == null || readers <= 0 ? defaultReaders : readers);
+    }
+}
@@ -0,0 +1,24 @@
+package com.learning.demo_sqslistener.service;
+
+import java.time.Instant;
+
+/**
+ * Point-in-time view of a DLQ redrive run.
+ *
+ * @param jobId             id of the run
+ * @param status            current state of the run
+ * @param options           effective options of the run
+ * @param received          DLQ messages received so far
+ * @param matched           received messages that passed the failure reason filter
+ * @param skipped           received messages left on the DLQ by the filter
+ * @param redriven          messages re-sent to the source queue and removed from the DLQ
+ * @param failed            messages whose re-send failed; they stay on the DLQ
+ * @param startedAt         when the run was first started
+ * @param finishedAt        when the run ended, or null while it is running
+ * @param messagesPerSecond average redrive throughput since the start
+ * @param error             reason the run failed, if it did
+ */
+public record RedriveProgress(String jobId, RedriveJob.Status status, RedriveOptions options,
+                              long received, long matched, long skipped, long redriven, long failed,
+                              Instant startedAt, Instant finishedAt, double messagesPerSecond, String error) {
+}
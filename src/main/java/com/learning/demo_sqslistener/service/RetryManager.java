@@ -4,12 +4,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class RetryManager {
     private static final Logger logger = LoggerFactory.getLogger(RetryManager.class);
     private final ConcurrentHashMap<String, Integer> retryCount = new ConcurrentHashMap<>();
+    /** Messages stored in the DLQ whose delete from the source queue failed */
+    private final Set<String> deadLettered = ConcurrentHashMap.newKeySet();
     private final int maxRetries;
 
     public RetryManager(@Value("${sqs.retry.max:3}") int maxRetries) {
@@ -33,4 +36,21 @@ public class RetryManager {
         retryCount.remove(messageId);
         logger.debug("Cleared retry count for message {}", messageId);
     }
+
+    /**
+     * Remembers that a message is already in the DLQ although it is still on the source queue,
+     * so that its redelivery is deleted instead of being retried and dead-lettered again.
+     */
+    public void markDeadLettered(String messageId) {
+        retryCount.remove(messageId);
+        deadLettered.add(messageId);
+    }
+
+    public boolean isDeadLettered(String messageId) {
+        return deadLettered.contains(messageId);
+    }
+
+    public void clearDeadLettered(String messageId) {
+        deadLettered.remove(messageId);
+    }
 } 
\ No newline at end of file
@@ -2,26 +2,54 @@ package com.learning.demo_sqslistener.service;
 
 import com.amazonaws.services.sqs.AmazonSQS;
 import com.amazonaws.services.sqs.model.*;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.google.common.util.concurrent.RateLimiter;
+import com.learning.demo_sqslistener.capture.TrafficCapture;
+import com.learning.demo_sqslistener.exception.ErrorCodes;
+import com.learning.demo_sqslistener.exception.FailureLog;
+import com.learning.demo_sqslistener.journal.JournalBatch;
+import com.learning.demo_sqslistener.journal.JournalPosition;
+import com.learning.demo_sqslistener.journal.JournalRecord;
+import com.learning.demo_sqslistener.metrics.ListenerMetrics;
+import com.learning.demo_sqslistener.profiling.MessageStageEvent;
+import jakarta.annotation.PreDestroy;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 /**
  * Service class responsible for listening to AWS SQS messages and managing their processing.
  * Implements message polling, retry logic, dead letter queue handling, and rate limiting.
+ * <p>
+ * Polling runs on poller threads started with the application context. Their number, the
+ * delay between polls, the messages per poll and the poll rate can be changed while running,
+ * and consumption can be paused and resumed; see {@code ListenerControlService}.
  *
  * @author demo-sqslistener
  * @version 1.0
  */
 @Service
 @EnableScheduling
-public class SQSListener {
+public class SQSListener implements SmartLifecycle {
 
     private static final Logger logger = LoggerFactory.getLogger(SQSListener.class);
     /**
@@ -29,108 +57,778 @@ public class SQSListener {
      */
     private static final int MAX_RETRIES = 3;
     /**
-     * Maximum number of messages to retrieve in a single poll
+     * Maximum number of messages SQS returns for a single receive
      */
-    private static final int MAX_MESSAGES_PER_POLL = 10;
+    public static final int MAX_MESSAGES_PER_POLL = 10;
     /**
-     * Time period in milliseconds between polls
+     * Default time in milliseconds each poller waits between polls
      */
     private static final int RATE_LIMIT_PERIOD_MS = 1000;
+    /**
+     * Default ceiling on polls per second across all pollers
+     */
+    private static final double DEFAULT_POLLS_PER_SECOND = 10;
+    /**
+     * Visibility timeout in seconds applied when a message could not be dead-lettered,
+     * so it is not redelivered straight away while the DLQ and spill journal are failing
+     */
+    private static final int DLQ_FAILURE_VISIBILITY_SECONDS = 300;
+    /**
+     * Visibility timeout in seconds applied after a failed attempt, before the message is retried
+     */
+    private static final int RETRY_VISIBILITY_SECONDS = 30;
+    /**
+     * Maximum number of inbox messages, counted from the checkpoint, that are processed or
+     * waiting to be; bounds how far processing runs ahead of a message that keeps failing
+     */
+    private static final int MAX_MESSAGES_PER_DRAIN = 100;
     private final AmazonSQS amazonSQS;
-    private final String queueUrl;
-    private final String dlqUrl;
     private final MessageProcessor messageProcessor;
     private final RetryManager retryManager;
     private final DeadLetterQueueService dlqService;
     private final MessageVisibilityManager visibilityManager;
+    private final ShardedQueueRouter shardRouter;
+    private final ListenerMetrics metrics;
+    private final TrafficCapture capture;
+    private final MessageCoalescer coalescer;
+    private final MessageInbox inbox;
+    private final TenantScheduler tenantScheduler;
+    private final ListenerWarmUp warmUp;
+    private final int successLogOneIn;
+    private final AtomicLong successes = new AtomicLong();
+    private final long inboxRetryDelayNanos;
+    /** Runs {@link #drainInbox()}, or null when the inbox is disabled */
+    private final ScheduledExecutorService inboxDrainer;
+    /** Pending run of the drain loop while the listener is running; guarded by the poller list */
+    private ScheduledFuture<?> inboxDrain;
+    /** Processes inbox messages, or null when the inbox is disabled */
+    private final ExecutorService inboxWorkers;
+    /** Inbox messages being processed, by position; only touched by {@link #drainInbox()} */
+    private final Map<JournalPosition, Future<Boolean>> inboxInFlight = new HashMap<>();
+    /** Inbox messages done with that lie past the checkpoint; only touched by {@link #drainInbox()} */
+    private final Set<JournalPosition> inboxDone = new HashSet<>();
+    /** Earliest time a failed inbox message may be attempted again, by position */
+    private final Map<JournalPosition, Long> inboxRetryAt = new ConcurrentHashMap<>();
+    private final int visibilityTimeoutSeconds;
+    private final long deadlineMarginNanos;
     private final RateLimiter rateLimiter;
+    /** Whether pollers skip receiving until resumed; received messages are still processed */
+    private volatile boolean paused;
+    private volatile long pollDelayMs = RATE_LIMIT_PERIOD_MS;
+    private volatile int maxMessagesPerPoll = MAX_MESSAGES_PER_POLL;
+    /** Running pollers; guarded by itself */
+    private final List<Poller> pollers = new ArrayList<>();
+    private int pollerCount = 1;
+    private boolean running;
 
     /**
      * Constructs a new SQSListener with the specified dependencies.
      *
      * @param amazonSQS AWS SQS client
-     * @param queueUrl URL of the main SQS queue
-     * @param dlqUrl URL of the dead letter queue
      * @param messageProcessor Service for processing messages
      * @param retryManager Service for managing retry attempts
      * @param dlqService Service for handling dead letter queue operations
      * @param visibilityManager Service for managing message visibility timeouts
+     * @param shardRouter Router selecting which queue shard to poll
+     * @param metrics Pipeline metrics
+     * @param capture Recorder of received messages for later replay
+     * @param coalescer Last-write-wins compaction of messages with the same key
+     * @param inbox Local write-ahead inbox that received messages are acked into, when enabled
+     * @param tenantScheduler Weighted fair scheduling of processing across tenants, when enabled
+     * @param warmUp Warm-up of the message path that polling waits for
+     * @param options Timeouts, retry delay and log sampling of the listener
      */
     public SQSListener(AmazonSQS amazonSQS,
-                      @Value("${aws.sqs.url}") String queueUrl,
-                      @Value("${aws.sqs.dlq.url}") String dlqUrl,
                       MessageProcessor messageProcessor,
                       RetryManager retryManager,
                       DeadLetterQueueService dlqService,
-                      MessageVisibilityManager visibilityManager) {
+                      MessageVisibilityManager visibilityManager,
+                      ShardedQueueRouter shardRouter,
+                      ListenerMetrics metrics,
+                      TrafficCapture capture,
+                      MessageCoalescer coalescer,
+                      MessageInbox inbox,
+                      TenantScheduler tenantScheduler,
+                      ListenerWarmUp warmUp,
+                      ListenerOptions options) {
+        if (coalescer.isEnabled() && coalescer.getWindowMillis() >= options.processingDeadlineMillis()) {
+            throw new IllegalArgumentException(String.format(
+                "Coalescing window of %d ms must be shorter than the processing deadline of %d ms",
+                coalescer.getWindowMillis(), options.processingDeadlineMillis()));
+        }
+        if (inbox.isEnabled() && tenantScheduler.isEnabled()) {
+            throw new IllegalArgumentException("The inbox and tenant scheduling cannot be enabled together");
+        }
         this.amazonSQS = amazonSQS;
-        this.queueUrl = queueUrl;
-        this.dlqUrl = dlqUrl;
         this.messageProcessor = messageProcessor;
         this.retryManager = retryManager;
         this.dlqService = dlqService;
         this.visibilityManager = visibilityManager;
-        this.rateLimiter = RateLimiter.create(MAX_MESSAGES_PER_POLL);
-        logger.info("SQSListener initialized with queue URL: {}", queueUrl);
+        this.shardRouter = shardRouter;
+        this.metrics = metrics;
+        this.capture = capture;
+        this.coalescer = coalescer;
+        this.inbox = inbox;
+        this.inboxRetryDelayNanos = TimeUnit.MILLISECONDS.toNanos(options.inboxRetryDelayMs());
+        this.inboxDrainer = inbox.isEnabled()
+            ? Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("inbox-drainer").daemon().factory())
+            : null;
+        this.inboxWorkers = inbox.isEnabled()
+            ? Executors.newFixedThreadPool(inbox.getDrainWorkers(),
+                Thread.ofPlatform().name("inbox-drain-", 0).daemon().factory())
+            : null;
+        this.tenantScheduler = tenantScheduler;
+        this.warmUp = warmUp;
+        this.successLogOneIn = options.successLogOneIn();
+        this.visibilityTimeoutSeconds = options.visibilityTimeoutSeconds();
+        this.deadlineMarginNanos = TimeUnit.MILLISECONDS.toNanos(options.deadlineMarginMs());
+        this.rateLimiter = RateLimiter.create(DEFAULT_POLLS_PER_SECOND);
+        metrics.bindRateLimiter("sqs.listener.poll.rate.limit", rateLimiter);
+        logger.info("SQSListener initialized with queue URL(s): {}", shardRouter.getShardUrls());
     }
 
     /**
      * Polls for messages from SQS queue at a fixed rate.
      * Implements rate limiting to prevent overwhelming the queue or downstream services.
+     * When the queue is sharded, each poll reads from one shard chosen by backlog.
+     * Every received message must be processed before its visibility timeout, less the
+     * safety margin, has passed since the receive call started; messages of a batch share
+     * that deadline because they are processed one after another.
+     * With coalescing enabled, messages keep being received from the same shard for the
+     * coalescing window, and only the latest message per key is processed.
+     * With the inbox enabled, received messages are appended to the inbox and deleted from
+     * the queue instead; {@link #drainInbox()} processes them.
+     * With tenant scheduling enabled, messages are handed to the {@link TenantScheduler}
+     * workers and polling continues while they are processed.
+     * Polling starts once the {@link ListenerWarmUp} has finished and is skipped while paused.
+     * Every poller calls this method, waiting the poll delay between calls.
      */
-    @Scheduled(fixedDelay = RATE_LIMIT_PERIOD_MS)
     public void pollMessages() {
+        if (paused || !warmUp.isComplete()) {
+            return;
+        }
+        if (inbox.isEnabled() && inbox.isFull()) {
+            logger.warn("Inbox holds {} unprocessed messages, skipping poll", inbox.getPendingCount());
+            return;
+        }
+        if (tenantScheduler.isEnabled() && tenantScheduler.isSaturated()) {
+            logger.debug("Tenant queues are full, skipping poll");
+            return;
+        }
         if (!rateLimiter.tryAcquire()) {
-            logger.warn("Rate limit exceeded, skipping poll");
+            logger.debug("Poll rate limit reached, skipping poll");
             return;
         }
         try {
-            logger.debug("Polling for messages from SQS");
+            String shardUrl = shardRouter.nextShardToPoll();
+            logger.debug("Polling for messages from SQS queue {}", shardUrl);
             ReceiveMessageRequest receiveRequest = new ReceiveMessageRequest()
-                .withQueueUrl(queueUrl)
-                .withMaxNumberOfMessages(10)
+                .withQueueUrl(shardUrl)
+                .withMaxNumberOfMessages(maxMessagesPerPoll)
+                .withVisibilityTimeout(visibilityTimeoutSeconds)
+                .withAttributeNames(ListenerMetrics.SENT_TIMESTAMP, ListenerMetrics.FIRST_RECEIVE_TIMESTAMP)
                 .withWaitTimeSeconds(20);
+            if (tenantScheduler.isEnabled()) {
+                receiveRequest.withMessageAttributeNames(tenantScheduler.getTenantAttribute());
+            }
 
-            List<Message> messages = amazonSQS.receiveMessage(receiveRequest).getMessages();
+            MessageStageEvent receive = MessageStageEvent.start(MessageStageEvent.RECEIVE);
+            List<Message> messages;
+            long receiveStart;
+            try {
+                receiveStart = System.nanoTime();
+                messages = amazonSQS.receiveMessage(receiveRequest).getMessages();
+            } catch (RuntimeException e) {
+                receive.failed(ErrorCodes.SQS_MESSAGE_RECEIVE_ERROR);
+                throw e;
+            }
+            if (receive.isEnabled()) {
+                receive.setBytes(messages.stream().mapToLong(m -> m.getBody() == null ? 0 : MessageStageEvent.encodedLength(m.getBody())).sum());
+            }
+            receive.succeeded();
             logger.debug("Received {} messages from SQS", messages.size());
+            metrics.messagesReceived(messages.size());
 
+            // The visibility timeout starts when SQS returns the messages, at the latest when
+            // the long poll ends, so the receive start is a conservative reference
+            ProcessingDeadline deadline = ProcessingDeadline.after(receiveStart,
+                TimeUnit.SECONDS.toNanos(visibilityTimeoutSeconds) - deadlineMarginNanos);
+            if (coalescer.isEnabled() && !messages.isEmpty()) {
+                messages = collectWindow(receiveRequest, messages);
+            }
+            for (Message message : messages) {
+                capture.capture(message);
+            }
+            if (coalescer.isEnabled() && messages.size() > 1) {
+                MessageCoalescer.Coalesced coalesced = coalescer.coalesce(messages);
+                deleteBatch(shardUrl, coalesced.superseded(), "superseded", message -> {
+                    retryManager.clearRetryCount(message.getMessageId());
+                    metrics.messageCoalesced();
+                    metrics.recordMessage(shardUrl, message, ListenerMetrics.Outcome.COALESCED, 0);
+                });
+                messages = coalesced.forward();
+            }
+            if (inbox.isEnabled()) {
+                ackIntoInbox(shardUrl, messages);
+                return;
+            }
             for (Message message : messages) {
-                processMessageWithRetry(message);
+                if (tenantScheduler.isEnabled()) {
+                    tenantScheduler.submit(tenantScheduler.tenantOf(message),
+                        () -> processMessageWithRetry(message, shardUrl, deadline));
+                } else {
+                    processMessageWithRetry(message, shardUrl, deadline);
+                }
             }
         } catch (Exception e) {
             logger.error("Error polling messages from SQS", e);
         }
     }
 
+    /**
+     * Stops receiving new messages. Messages already received, queued for tenants or held in
+     * the inbox are not lost: received batches finish processing, the rest waits for
+     * {@link #resume()}.
+     */
+    public void pause() {
+        if (!paused) {
+            paused = true;
+            logger.info("Listener paused, {} messages in flight", metrics.getInFlight());
+        }
+    }
+
+    public void resume() {
+        if (paused) {
+            paused = false;
+            wakePollers();
+            logger.info("Listener resumed");
+        }
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Starts or retires pollers until the given number run. A retired poller finishes the batch
+     * it is processing before it stops.
+     *
+     * @param count number of concurrent pollers, at least 1
+     */
+    public void setPollerCount(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Poller count must be at least 1: " + count);
+        }
+        synchronized (pollers) {
+            pollerCount = count;
+            if (running) {
+                adjustPollers();
+            }
+        }
+        logger.info("Listener runs {} pollers", count);
+    }
+
+    public int getPollerCount() {
+        synchronized (pollers) {
+            return pollerCount;
+        }
+    }
+
+    /**
+     * @param delayMs time each poller waits between polls, applied to waits already in progress
+     */
+    public void setPollDelayMs(long delayMs) {
+        if (delayMs < 0) {
+            throw new IllegalArgumentException("Poll delay must not be negative: " + delayMs);
+        }
+        pollDelayMs = delayMs;
+        wakePollers();
+    }
+
+    public long getPollDelayMs() {
+        return pollDelayMs;
+    }
+
+    /**
+     * @param max messages requested per receive, between 1 and {@value #MAX_MESSAGES_PER_POLL}
+     */
+    public void setMaxMessagesPerPoll(int max) {
+        if (max < 1 || max > MAX_MESSAGES_PER_POLL) {
+            throw new IllegalArgumentException(String.format(
+                "Messages per poll must be between 1 and %d: %d", MAX_MESSAGES_PER_POLL, max));
+        }
+        maxMessagesPerPoll = max;
+    }
+
+    public int getMaxMessagesPerPoll() {
+        return maxMessagesPerPoll;
+    }
+
+    /**
+     * @param pollsPerSecond ceiling on receive calls per second across all pollers
+     */
+    public void setPollsPerSecond(double pollsPerSecond) {
+        if (!(pollsPerSecond > 0)) {
+            throw new IllegalArgumentException("Polls per second must be positive: " + pollsPerSecond);
+        }
+        rateLimiter.setRate(pollsPerSecond);
+    }
+
+    public double getPollsPerSecond() {
+        return rateLimiter.getRate();
+    }
+
+    @Override
+    public void start() {
+        synchronized (pollers) {
+            running = true;
+            adjustPollers();
+            if (inboxDrainer != null && inboxDrain == null) {
+                inboxDrain = inboxDrainer.scheduleWithFixedDelay(this::drainInbox,
+                    0, inbox.getDrainDelayMs(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Stops the pollers and the inbox drain loop on shutdown. Like the scheduler threads before
+     * them the pollers are interrupted; messages of an interrupted batch become visible again
+     * after their visibility timeout. A drain pass that is under way finishes first.
+     */
+    @Override
+    public void stop() {
+        synchronized (pollers) {
+            running = false;
+            for (Poller poller : pollers) {
+                poller.retired = true;
+                poller.thread.interrupt();
+            }
+            pollers.clear();
+            if (inboxDrain != null) {
+                inboxDrain.cancel(false);
+                inboxDrain = null;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (inboxDrainer != null) {
+            inboxDrainer.shutdownNow();
+        }
+        if (inboxWorkers != null) {
+            inboxWorkers.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        synchronized (pollers) {
+            return running;
+        }
+    }
+
+    /**
+     * Must be called with the poller list locked.
+     */
+    private void adjustPollers() {
+        while (pollers.size() < pollerCount) {
+            Poller poller = new Poller(pollers.size());
+            pollers.add(poller);
+            poller.thread.start();
+        }
+        while (pollers.size() > pollerCount) {
+            Poller poller = pollers.remove(pollers.size() - 1);
+            poller.retired = true;
+            LockSupport.unpark(poller.thread);
+        }
+    }
+
+    private void wakePollers() {
+        synchronized (pollers) {
+            for (Poller poller : pollers) {
+                LockSupport.unpark(poller.thread);
+            }
+        }
+    }
+
+    /**
+     * Polls until retired, waiting the poll delay after each poll. The wait is recomputed when
+     * woken, so a shorter delay or a resume takes effect at once.
+     */
+    private final class Poller implements Runnable {
+        private final Thread thread;
+        private volatile boolean retired;
+
+        Poller(int index) {
+            this.thread = Thread.ofPlatform().name("sqs-poller-" + index).daemon().unstarted(this);
+        }
+
+        @Override
+        public void run() {
+            while (!retired) {
+                pollMessages();
+                long waitStart = System.nanoTime();
+                long remaining;
+                while (!retired && (remaining = TimeUnit.MILLISECONDS.toNanos(pollDelayMs)
+                        - (System.nanoTime() - waitStart)) > 0) {
+                    LockSupport.parkNanos(this, remaining);
+                    if (Thread.interrupted()) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps receiving from the queue of the first receive until the coalescing window has passed
+     * since the first messages arrived, the window holds the maximum number of messages, or a
+     * short poll at the end of the window comes back empty.
+     *
+     * @param firstRequest the request of the first receive
+     * @param first messages of the first receive
+     * @return all messages received in the window, in receive order
+     */
+    private List<Message> collectWindow(ReceiveMessageRequest firstRequest, List<Message> first) {
+        List<Message> window = new ArrayList<>(first);
+        long windowEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(coalescer.getWindowMillis());
+        while (window.size() < coalescer.getMaxMessages()) {
+            long remaining = windowEnd - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            int waitSeconds = (int) TimeUnit.NANOSECONDS.toSeconds(remaining);
+            ReceiveMessageRequest request = new ReceiveMessageRequest()
+                .withQueueUrl(firstRequest.getQueueUrl())
+                .withMaxNumberOfMessages(Math.min(maxMessagesPerPoll, coalescer.getMaxMessages() - window.size()))
+                .withVisibilityTimeout(firstRequest.getVisibilityTimeout())
+                .withAttributeNames(firstRequest.getAttributeNames())
+                .withMessageAttributeNames(firstRequest.getMessageAttributeNames())
+                .withWaitTimeSeconds(waitSeconds);
+            List<Message> more;
+            try {
+                more = amazonSQS.receiveMessage(request).getMessages();
+            } catch (RuntimeException e) {
+                logger.warn("Receive failed while collecting the coalescing window, processing {} messages: {}",
+                    window.size(), e.getMessage());
+                break;
+            }
+            metrics.messagesReceived(more.size());
+            window.addAll(more);
+            if (more.isEmpty() && waitSeconds == 0) {
+                break;
+            }
+        }
+        return window;
+    }
+
+    /**
+     * Deletes messages in batches. Messages that cannot be deleted become visible again
+     * and are received once more.
+     *
+     * @param queueUrl URL of the queue (shard) the messages were received from
+     * @param messages messages to delete
+     * @param kind what the messages are, for logging
+     * @param onDeleted called for every message that was deleted
+     */
+    private void deleteBatch(String queueUrl, List<Message> messages, String kind, Consumer<Message> onDeleted) {
+        for (int from = 0; from < messages.size(); from += SqsBatchLimits.MAX_BATCH_ENTRIES) {
+            List<Message> chunk = messages.subList(from, Math.min(messages.size(), from + SqsBatchLimits.MAX_BATCH_ENTRIES));
+            List<DeleteMessageBatchRequestEntry> entries = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                entries.add(new DeleteMessageBatchRequestEntry(String.valueOf(i), chunk.get(i).getReceiptHandle()));
+            }
+            DeleteMessageBatchResult result;
+            try {
+                result = amazonSQS.deleteMessageBatch(queueUrl, entries);
+            } catch (RuntimeException e) {
+                logger.warn("Could not delete {} {} messages: {}", chunk.size(), kind, e.getMessage());
+                continue;
+            }
+            for (BatchResultErrorEntry failed : result.getFailed()) {
+                logger.warn("Could not delete {} message {}: {}",
+                    kind, chunk.get(Integer.parseInt(failed.getId())).getMessageId(), failed.getMessage());
+            }
+            for (DeleteMessageBatchResultEntry deleted : result.getSuccessful()) {
+                onDeleted.accept(chunk.get(Integer.parseInt(deleted.getId())));
+            }
+            logger.debug("Deleted {} {} messages", result.getSuccessful().size(), kind);
+        }
+    }
+
+    /**
+     * Appends received messages to the inbox and deletes them from the queue once the append
+     * is durable. If the append fails nothing is deleted and the messages are redelivered after
+     * their visibility timeout. A message whose delete fails is redelivered as well and ends up
+     * in the inbox twice, which processing tolerates like any other SQS redelivery.
+     *
+     * @param queueUrl URL of the queue (shard) the messages were received from
+     * @param messages messages to hand over to the inbox
+     */
+    private void ackIntoInbox(String queueUrl, List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        if (!inbox.append(queueUrl, messages)) {
+            logger.warn("Leaving {} messages on the queue, the inbox did not accept them", messages.size());
+            return;
+        }
+        deleteBatch(queueUrl, messages, "inboxed", message -> retryManager.clearRetryCount(message.getMessageId()));
+    }
+
+    /**
+     * Processes messages from the inbox on the inbox workers, started in append order from the
+     * checkpoint. The checkpoint advances past the messages that were processed or dead-lettered
+     * up to the first one that is not; a failed message is attempted again after the retry delay,
+     * until its retries are exhausted, while the messages behind it carry on. Messages finished
+     * past the checkpoint are processed again after a restart, like any SQS redelivery.
+     * Does nothing unless the inbox is enabled. Runs on the listener's own drain thread,
+     * waiting the drain delay between passes, while the listener is running.
+     */
+    public void drainInbox() {
+        if (!inbox.isEnabled() || paused || !warmUp.isComplete()) {
+            return;
+        }
+        try {
+            JournalBatch batch = inbox.readPending(MAX_MESSAGES_PER_DRAIN);
+            if (batch.isEmpty()) {
+                return;
+            }
+            JournalPosition processed = null;
+            int count = 0;
+            boolean blocked = false;
+            for (JournalRecord record : batch.records()) {
+                boolean finished = inboxDone.contains(record.position()) || advanceInboxEntry(record);
+                if (blocked || !finished) {
+                    blocked = true;
+                    if (finished) {
+                        inboxDone.add(record.position());
+                    }
+                    continue;
+                }
+                inboxDone.remove(record.position());
+                processed = record.next();
+                count++;
+            }
+            if (!blocked) {
+                processed = batch.end();
+            }
+            if (processed != null) {
+                inbox.acknowledge(processed, count);
+            }
+        } catch (Exception e) {
+            logger.error("Error draining the message inbox", e);
+        }
+    }
+
+    /**
+     * Starts processing an inbox entry that is not in flight and not waiting for a retry,
+     * or collects its result.
+     *
+     * @param record the inbox entry
+     * @return true if the entry is done with, false if it is in flight or must be attempted again
+     */
+    private boolean advanceInboxEntry(JournalRecord record) {
+        JournalPosition position = record.position();
+        Future<Boolean> running = inboxInFlight.get(position);
+        if (running != null) {
+            if (!running.isDone()) {
+                return false;
+            }
+            inboxInFlight.remove(position);
+            return running.state() == Future.State.SUCCESS && running.resultNow();
+        }
+        Long retryAt = inboxRetryAt.get(position);
+        if (retryAt != null && System.nanoTime() - retryAt < 0) {
+            return false;
+        }
+        inboxInFlight.put(position, inboxWorkers.submit(() -> processInboxRecord(record)));
+        return false;
+    }
+
+    private boolean processInboxRecord(JournalRecord record) {
+        MessageInbox.InboxMessage entry;
+        try {
+            entry = inbox.decode(record);
+        } catch (IOException e) {
+            logger.error("Skipping unreadable inbox entry at {}: {}", record.position(), e.getMessage());
+            return true;
+        }
+        return processInboxMessage(record.position(), entry);
+    }
+
+    /**
+     * Processes one inbox message. Unlike messages processed straight from the queue it has
+     * no visibility timeout to respect, so it runs without a deadline.
+     *
+     * @param position position of the message in the inbox
+     * @param entry the inbox message
+     * @return true if the message is done with, false if it must be attempted again
+     */
+    private boolean processInboxMessage(JournalPosition position, MessageInbox.InboxMessage entry) {
+        Message message = entry.toMessage();
+        String messageId = message.getMessageId();
+        metrics.processingStarted();
+        long start = System.nanoTime();
+        ListenerMetrics.Outcome outcome = ListenerMetrics.Outcome.RETRIED;
+        try {
+            logger.debug("Processing inbox message: {} (Attempt: {})", messageId, retryManager.getRetryCount(messageId) + 1);
+            messageProcessor.processMessage(message, ProcessingDeadline.none());
+            retryManager.clearRetryCount(messageId);
+            if (sampleSuccess()) {
+                logger.info("Successfully processed inbox message: {}", messageId);
+            }
+            metrics.messageAcked();
+            outcome = ListenerMetrics.Outcome.ACKED;
+            inboxRetryAt.remove(position);
+            return true;
+        } catch (Exception e) {
+            retryManager.incrementRetryCount(messageId);
+            int attempt = retryManager.getRetryCount(messageId);
+            if (retryManager.shouldRetry(messageId)) {
+                FailureLog.warn(logger, e, "Inbox message {} failed on attempt {}, retrying", messageId, attempt);
+                metrics.messageRetried();
+                inboxRetryAt.put(position, System.nanoTime() + inboxRetryDelayNanos);
+                return false;
+            }
+            retryManager.clearRetryCount(messageId);
+            if (!dlqService.sendToDLQ(message, "Exceeded maximum retry attempts")) {
+                FailureLog.error(logger, e, "Inbox message {} failed on attempt {} and could not be dead-lettered, retrying in {} seconds",
+                    messageId, attempt, DLQ_FAILURE_VISIBILITY_SECONDS);
+                outcome = ListenerMetrics.Outcome.DLQ_FAILED;
+                inboxRetryAt.put(position, System.nanoTime() + TimeUnit.SECONDS.toNanos(DLQ_FAILURE_VISIBILITY_SECONDS));
+                return false;
+            }
+            FailureLog.error(logger, e, "Inbox message {} dead-lettered after {} attempts", messageId, attempt);
+            metrics.messageDeadLettered();
+            outcome = ListenerMetrics.Outcome.DEAD_LETTERED;
+            inboxRetryAt.remove(position);
+            return true;
+        } finally {
+            metrics.processingFinished();
+            metrics.recordMessage(entry.sourceQueueUrl(), message, outcome, System.nanoTime() - start);
+        }
+    }
+
     /**
      * Processes a message with retry logic.
      * If processing fails, the message will be retried up to MAX_RETRIES times
      * before being moved to the dead letter queue.
      *
      * @param message The SQS message to process
+     * @param sourceQueueUrl URL of the queue (shard) the message was received from
+     * @param deadline time by which processing must be finished; a message whose deadline has
+     *        passed is made visible again right away instead of after the visibility timeout
      */
-    private void processMessageWithRetry(Message message) {
+    private void processMessageWithRetry(Message message, String sourceQueueUrl, ProcessingDeadline deadline) {
         String messageId = message.getMessageId();
+        metrics.processingStarted();
+        long start = System.nanoTime();
+        ListenerMetrics.Outcome outcome = ListenerMetrics.Outcome.RETRIED;
+        if (deadline.isExpired()) {
+            // Never attempted, so the retry count is left alone
+            logger.warn("Deadline of message {} passed before processing, releasing it", messageId);
+            outcome = ListenerMetrics.Outcome.EXPIRED;
+            try {
+                metrics.messageExpired();
+                visibilityManager.changeVisibility(sourceQueueUrl, message, 0);
+            } catch (Exception e) {
+                logger.warn("Could not release expired message {}: {}", messageId, e.getMessage());
+            } finally {
+                metrics.processingFinished();
+                metrics.recordMessage(sourceQueueUrl, message, outcome, System.nanoTime() - start);
+            }
+            return;
+        }
+        if (retryManager.isDeadLettered(messageId)) {
+            try {
+                deleteDeadLettered(message, sourceQueueUrl);
+            } finally {
+                metrics.processingFinished();
+            }
+            return;
+        }
         try {
-            logger.info("Processing message: {} (Attempt: {})", messageId, retryManager.getRetryCount(messageId) + 1);
-            messageProcessor.processMessage(message);
+            logger.debug("Processing message: {} (Attempt: {})", messageId, retryManager.getRetryCount(messageId) + 1);
+            messageProcessor.processMessage(message, deadline);
             
             // Success - delete message and clear retry count
-            amazonSQS.deleteMessage(queueUrl, message.getReceiptHandle());
+            MessageStageEvent delete = MessageStageEvent.start(MessageStageEvent.DELETE, messageId, null);
+            try {
+                amazonSQS.deleteMessage(sourceQueueUrl, message.getReceiptHandle());
+            } catch (RuntimeException e) {
+                delete.failed(ErrorCodes.SQS_MESSAGE_DELETE_ERROR);
+                throw e;
+            }
+            delete.succeeded();
             retryManager.clearRetryCount(messageId);
-            logger.info("Successfully processed and deleted message: {}", messageId);
+            metrics.messageAcked();
+            outcome = ListenerMetrics.Outcome.ACKED;
+            if (sampleSuccess()) {
+                logger.info("Successfully processed and deleted message: {}", messageId);
+            }
             
         } catch (Exception e) {
             retryManager.incrementRetryCount(messageId);
-            logger.warn("Failed to process message: {} (Attempt: {})", 
-                messageId, retryManager.getRetryCount(messageId), e);
-            
+            int attempt = retryManager.getRetryCount(messageId);
+
+            // Reported once per outcome; the processor does not log failures itself
             if (!retryManager.shouldRetry(messageId)) {
-                dlqService.moveMessageToDLQ(message, "Exceeded maximum retry attempts");
-                retryManager.clearRetryCount(messageId);
+                DeadLetterQueueService.MoveResult moved =
+                    dlqService.moveMessageToDLQ(message, "Exceeded maximum retry attempts", sourceQueueUrl);
+                if (moved == DeadLetterQueueService.MoveResult.NOT_STORED) {
+                    FailureLog.error(logger, e, "Message {} failed on attempt {} and could not be dead-lettered, delaying redelivery by {} seconds",
+                        messageId, attempt, DLQ_FAILURE_VISIBILITY_SECONDS);
+                    outcome = ListenerMetrics.Outcome.DLQ_FAILED;
+                    visibilityManager.changeVisibility(sourceQueueUrl, message, DLQ_FAILURE_VISIBILITY_SECONDS);
+                    retryManager.clearRetryCount(messageId);
+                } else {
+                    FailureLog.error(logger, e, "Message {} dead-lettered after {} attempts", messageId, attempt);
+                    metrics.messageDeadLettered();
+                    outcome = ListenerMetrics.Outcome.DEAD_LETTERED;
+                    if (moved == DeadLetterQueueService.MoveResult.STORED_NOT_DELETED) {
+                        // Its redelivery is deleted without being processed again
+                        retryManager.markDeadLettered(messageId);
+                    } else {
+                        retryManager.clearRetryCount(messageId);
+                    }
+                }
+            } else if (ProcessingDeadline.isDeadlineFailure(e)) {
+                FailureLog.warn(logger, e, "Message {} hit its processing deadline on attempt {}, releasing it", messageId, attempt);
+                metrics.messageExpired();
+                outcome = ListenerMetrics.Outcome.EXPIRED;
+                visibilityManager.changeVisibility(sourceQueueUrl, message, 0);
             } else {
-                visibilityManager.changeVisibility(message, 30);
+                FailureLog.warn(logger, e, "Message {} failed on attempt {}, retrying", messageId, attempt);
+                metrics.messageRetried();
+                visibilityManager.changeVisibility(sourceQueueUrl, message, RETRY_VISIBILITY_SECONDS);
             }
+        } finally {
+            metrics.processingFinished();
+            metrics.recordMessage(sourceQueueUrl, message, outcome, System.nanoTime() - start);
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * Deletes the redelivery of a message that was stored in the DLQ before while its delete
+     * failed. If this delete fails as well, the next redelivery tries again.
+     */
+    private void deleteDeadLettered(Message message, String sourceQueueUrl) {
+        try {
+            amazonSQS.deleteMessage(sourceQueueUrl, message.getReceiptHandle());
+            retryManager.clearDeadLettered(message.getMessageId());
+            logger.info("Deleted redelivered message {}, it was already dead-lettered", message.getMessageId());
+        } catch (RuntimeException e) {
+            FailureLog.warn(logger, e, "Could not delete redelivered message {}, it was already dead-lettered",
+                message.getMessageId());
+        }
+    }
+
+    /**
+     * @return whether the success of the current message is one of the sampled ones to log
+     */
+    private boolean sampleSuccess() {
+        return successLogOneIn == 1 || successes.getAndIncrement() % successLogOneIn == 0;
+    }
+}
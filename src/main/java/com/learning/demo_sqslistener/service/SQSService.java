@@ -6,21 +6,87 @@ import com.amazonaws.services.sqs.model.SendMessageResult;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 @Service
 public class SQSService {
-    
+
     private final AmazonSQS amazonSQS;
-    private final String queueUrl;
+    private final ShardedQueueRouter shardRouter;
+    private final BatchingMessageSender batchingSender;
+    private final boolean batchingEnabled;
 
-    public SQSService(AmazonSQS amazonSQS, @Value("${aws.sqs.url}") String queueUrl) {
+    public SQSService(AmazonSQS amazonSQS,
+                      ShardedQueueRouter shardRouter,
+                      BatchingMessageSender batchingSender,
+                      @Value("${aws.sqs.producer.batching.enabled:true}") boolean batchingEnabled) {
         this.amazonSQS = amazonSQS;
-        this.queueUrl = queueUrl;
+        this.shardRouter = shardRouter;
+        this.batchingSender = batchingSender;
+        this.batchingEnabled = batchingEnabled;
     }
 
     public SendMessageResult sendMessage(String message) {
+        return sendMessage(message, null);
+    }
+
+    /**
+     * Sends a message to the shard owning the given partition key.
+     *
+     * @param message message body
+     * @param partitionKey key that keeps related messages on one shard; null to spread across shards
+     * @return the send result
+     */
+    public SendMessageResult sendMessage(String message, String partitionKey) {
+        String queueUrl = shardRouter.shardFor(partitionKey);
+        if (!batchingEnabled) {
+            return sendDirect(queueUrl, message);
+        }
+        try {
+            return batchingSender.send(queueUrl, message).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a message without blocking the caller. With batching enabled the message
+     * joins the next {@code SendMessageBatch} call to the queue.
+     *
+     * @param message message body
+     * @return future completed with the result for this message
+     */
+    public CompletableFuture<SendMessageResult> sendMessageAsync(String message) {
+        return sendMessageAsync(message, null);
+    }
+
+    /**
+     * Asynchronous variant of {@link #sendMessage(String, String)}.
+     *
+     * @param message message body
+     * @param partitionKey key that keeps related messages on one shard; null to spread across shards
+     * @return future completed with the result for this message
+     */
+    public CompletableFuture<SendMessageResult> sendMessageAsync(String message, String partitionKey) {
+        String queueUrl = shardRouter.shardFor(partitionKey);
+        if (!batchingEnabled) {
+            try {
+                return CompletableFuture.completedFuture(sendDirect(queueUrl, message));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return batchingSender.send(queueUrl, message);
+    }
+
+    private SendMessageResult sendDirect(String queueUrl, String message) {
         SendMessageRequest sendMessageRequest = new SendMessageRequest()
                 .withQueueUrl(queueUrl)
                 .withMessageBody(message);
         return amazonSQS.sendMessage(sendMessageRequest);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,70 @@
+package com.learning.demo_sqslistener.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for the ingest API. Caps the number of sends that have been accepted
+ * but not yet acknowledged by SQS, so that an SQS slowdown turns into fast 429 responses
+ * instead of an ever-growing backlog of waiting requests.
+ *
+ * @author demo-sqslistener
+ */
+@Service
+public class SendAdmissionLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(SendAdmissionLimiter.class);
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private final int maxPending;
+    private final int retryAfterSeconds;
+
+    public SendAdmissionLimiter(
+            @Value("${aws.sqs.admission.max-pending:2000}") int maxPending,
+            @Value("${aws.sqs.admission.retry-after-seconds:1}") int retryAfterSeconds) {
+        this.maxPending = maxPending;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Tries to admit one send. Every successful call must be paired with {@link #release()}.
+     *
+     * @return true if the send may proceed, false if the pending limit is reached
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= maxPending) {
+                if (rejected.incrementAndGet() % 1000 == 1) {
+                    logger.warn("Rejecting sends: {} pending sends at limit of {}", current, maxPending);
+                }
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
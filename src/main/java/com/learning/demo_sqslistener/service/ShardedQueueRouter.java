@@ -0,0 +1,132 @@
+package com.learning.demo_sqslistener.service;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.GetQueueAttributesRequest;
+import com.amazonaws.services.sqs.model.QueueAttributeName;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Maps one logical queue onto N physical SQS queues (shards).
+ * <p>
+ * Producers pick a shard by consistent-hashing a partition key, so messages with the same
+ * key always land on the same shard and adding a shard only moves a fraction of the keys.
+ * Messages without a key are spread round-robin. Consumers pick the shard to poll next
+ * with a probability proportional to its approximate backlog, which is refreshed
+ * periodically from the queue attributes. The shard list is plain configuration
+ * ({@code aws.sqs.shards.urls}) and defaults to the single {@code aws.sqs.url} queue.
+ *
+ * @author demo-sqslistener
+ */
+@Service
+public class ShardedQueueRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedQueueRouter.class);
+
+    private final AmazonSQS amazonSQS;
+    private final List<String> shardUrls;
+    private final AtomicLongArray backlog;
+    private final AtomicInteger roundRobin = new AtomicInteger();
+
+    public ShardedQueueRouter(AmazonSQS amazonSQS,
+                              @Value("${aws.sqs.shards.urls:${aws.sqs.url}}") List<String> shardUrls) {
+        if (shardUrls == null || shardUrls.isEmpty()) {
+            throw new IllegalArgumentException("At least one queue URL must be configured");
+        }
+        this.amazonSQS = amazonSQS;
+        this.shardUrls = shardUrls.stream().map(String::trim).filter(url -> !url.isEmpty()).toList();
+        this.backlog = new AtomicLongArray(this.shardUrls.size());
+        logger.info("ShardedQueueRouter initialized with {} shard(s)", this.shardUrls.size());
+    }
+
+    public List<String> getShardUrls() {
+        return shardUrls;
+    }
+
+    public boolean isSharded() {
+        return shardUrls.size() > 1;
+    }
+
+    /**
+     * Selects the shard a message should be sent to.
+     *
+     * @param partitionKey key that pins related messages to one shard; null to spread round-robin
+     * @return URL of the target shard
+     */
+    public String shardFor(String partitionKey) {
+        if (!isSharded()) {
+            return shardUrls.get(0);
+        }
+        if (partitionKey == null || partitionKey.isEmpty()) {
+            return shardUrls.get(Math.floorMod(roundRobin.getAndIncrement(), shardUrls.size()));
+        }
+        int shard = Hashing.consistentHash(
+            Hashing.murmur3_32_fixed().hashString(partitionKey, StandardCharsets.UTF_8), shardUrls.size());
+        return shardUrls.get(shard);
+    }
+
+    /**
+     * Selects the shard the next poll should read from, weighted by approximate backlog.
+     * Every shard keeps a minimum weight so that new backlog is noticed between refreshes.
+     *
+     * @return URL of the shard to poll
+     */
+    public String nextShardToPoll() {
+        if (!isSharded()) {
+            return shardUrls.get(0);
+        }
+        long total = 0;
+        for (int i = 0; i < backlog.length(); i++) {
+            total += backlog.get(i) + 1;
+        }
+        long pick = ThreadLocalRandom.current().nextLong(total);
+        for (int i = 0; i < backlog.length(); i++) {
+            pick -= backlog.get(i) + 1;
+            if (pick < 0) {
+                return shardUrls.get(i);
+            }
+        }
+        return shardUrls.get(shardUrls.size() - 1);
+    }
+
+    /**
+     * @param shardUrl URL of a shard
+     * @return the last observed approximate number of visible messages on that shard
+     */
+    public long getBacklog(String shardUrl) {
+        int index = shardUrls.indexOf(shardUrl);
+        return index < 0 ? 0 : backlog.get(index);
+    }
+
+    /**
+     * Refreshes the approximate backlog of every shard.
+     */
+    @Scheduled(fixedDelayString = "${aws.sqs.shards.backlog-refresh-ms:10000}")
+    public void refreshBacklog() {
+        if (!isSharded()) {
+            return;
+        }
+        for (int i = 0; i < shardUrls.size(); i++) {
+            try {
+                String visible = amazonSQS.getQueueAttributes(new GetQueueAttributesRequest(shardUrls.get(i))
+                        .withAttributeNames(QueueAttributeName.ApproximateNumberOfMessages))
+                    .getAttributes()
+                    .get(QueueAttributeName.ApproximateNumberOfMessages.toString());
+                backlog.set(i, visible == null ? 0 : Long.parseLong(visible));
+            } catch (RuntimeException e) {
+                logger.warn("Failed to refresh backlog of shard {}: {}", shardUrls.get(i), e.getMessage());
+            }
+        }
+        logger.debug("Shard backlog refreshed: {}", backlog);
+    }
+}
@@ -0,0 +1,76 @@
+package com.learning.demo_sqslistener.service;
+
+import com.amazonaws.services.sqs.model.MessageAttributeValue;
+
+import java.util.Map;
+
+/**
+ * SQS service limits that apply to batch operations, plus the size accounting SQS uses
+ * to enforce them.
+ *
+ * @author demo-sqslistener
+ */
+public final class SqsBatchLimits {
+
+    /** Maximum number of entries in a single SendMessageBatch or DeleteMessageBatch call */
+    public static final int MAX_BATCH_ENTRIES = 10;
+
+    /** Maximum combined payload of a SendMessageBatch call, and of a single message, in bytes */
+    public static final int MAX_BATCH_PAYLOAD_BYTES = 256 * 1024;
+
+    private SqsBatchLimits() {
+    }
+
+    /**
+     * Computes the size SQS charges for a message: the UTF-8 body plus, for every attribute,
+     * its name, data type and value.
+     *
+     * @param body       message body
+     * @param attributes message attributes, may be null
+     * @return payload size in bytes
+     */
+    public static int payloadSize(String body, Map<String, MessageAttributeValue> attributes) {
+        int size = body == null ? 0 : utf8Length(body);
+        if (attributes != null) {
+            for (Map.Entry<String, MessageAttributeValue> entry : attributes.entrySet()) {
+                MessageAttributeValue value = entry.getValue();
+                size += utf8Length(entry.getKey());
+                size += value.getDataType() == null ? 0 : utf8Length(value.getDataType());
+                size += value.getStringValue() == null ? 0 : utf8Length(value.getStringValue());
+                size += value.getBinaryValue() == null ? 0 : value.getBinaryValue().remaining();
+            }
+        }
+        return size;
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Checks whether one more entry can be added to a batch.
+     *
+     * @param entries          entries already in the batch
+     * @param payloadBytes     combined payload of the entries already in the batch
+     * @param nextPayloadBytes payload of the entry to add
+     * @return true if the entry fits within both batch limits
+     */
+    public static boolean fits(int entries, int payloadBytes, int nextPayloadBytes) {
+        return entries < MAX_BATCH_ENTRIES && payloadBytes + nextPayloadBytes <= MAX_BATCH_PAYLOAD_BYTES;
+    }
+}
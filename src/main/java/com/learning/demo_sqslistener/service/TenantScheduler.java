@@ -0,0 +1,337 @@
+package com.learning.demo_sqslistener.service;
+
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.MessageAttributeValue;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Weighted fair scheduling of message processing across tenants.
+ * <p>
+ * Received messages are queued per tenant, identified by a message attribute, and a fixed set of
+ * workers takes them with deficit round robin: each visit to a tenant adds its weight to the
+ * tenant's deficit and every message costs one, so a tenant with weight 3 is served three messages
+ * for every one of a tenant with weight 1 while both have work queued. A tenant never has more than
+ * the configured number of messages in flight, so one tenant's backlog cannot occupy every worker.
+ * <p>
+ * Messages wait in the tenant queues while their visibility timeout runs; {@code SQSListener}
+ * stops polling while {@link #isSaturated()} and releases messages whose deadline passed.
+ * The number of workers can be changed while running.
+ *
+ * @author demo-sqslistener
+ */
+@Component
+public class TenantScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(TenantScheduler.class);
+    /** Tenant of messages without the tenant attribute */
+    static final String DEFAULT_TENANT = "default";
+
+    private final boolean enabled;
+    private final String tenantAttribute;
+    private final int defaultWeight;
+    private final Map<String, Integer> weights;
+    private final int maxInFlightPerTenant;
+    private final int maxQueued;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    /** Tenants with queued or in-flight messages */
+    private final Map<String, Tenant> tenants = new HashMap<>();
+    /** Round-robin ring of tenants with queued messages; the head is visited next */
+    private final ArrayDeque<Tenant> active = new ArrayDeque<>();
+    /** Running workers; guarded by the lock */
+    private final List<Worker> workers = new ArrayList<>();
+    private int workerSequence;
+    private int queued;
+    private boolean closed;
+
+    public TenantScheduler(
+            @Value("${aws.sqs.tenant.enabled:false}") boolean enabled,
+            @Value("${aws.sqs.tenant.attribute:tenant}") String tenantAttribute,
+            @Value("${aws.sqs.tenant.weights:}") String weights,
+            @Value("${aws.sqs.tenant.default-weight:1}") int defaultWeight,
+            @Value("${aws.sqs.tenant.max-in-flight:2}") int maxInFlightPerTenant,
+            @Value("${aws.sqs.tenant.max-queued:100}") int maxQueued,
+            @Value("${aws.sqs.tenant.workers:4}") int workerCount) {
+        this.enabled = enabled;
+        this.tenantAttribute = tenantAttribute;
+        this.defaultWeight = defaultWeight;
+        this.weights = parseWeights(weights);
+        this.maxInFlightPerTenant = maxInFlightPerTenant;
+        this.maxQueued = maxQueued;
+        if (!enabled) {
+            return;
+        }
+        if (defaultWeight < 1 || maxInFlightPerTenant < 1 || workerCount < 1) {
+            throw new IllegalArgumentException(
+                "aws.sqs.tenant.default-weight, max-in-flight and workers must be at least 1");
+        }
+        for (int i = 0; i < workerCount; i++) {
+            startWorker();
+        }
+        logger.info("Tenant scheduling by attribute '{}' with weights {} (default {}), {} workers, {} in flight per tenant",
+            tenantAttribute, this.weights, defaultWeight, workerCount, maxInFlightPerTenant);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts or retires workers until the given number run. A retired worker finishes the task
+     * it is running before it stops.
+     *
+     * @param count number of workers, at least 1
+     * @throws IllegalStateException if tenant scheduling is not enabled
+     */
+    public void setWorkerCount(int count) {
+        if (!enabled) {
+            throw new IllegalStateException("Tenant scheduling is not enabled");
+        }
+        if (count < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + count);
+        }
+        lock.lock();
+        try {
+            while (workers.size() < count) {
+                startWorker();
+            }
+            while (workers.size() > count) {
+                workers.remove(workers.size() - 1).retired = true;
+            }
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        logger.info("Tenant scheduling runs {} workers", count);
+    }
+
+    public int getWorkerCount() {
+        lock.lock();
+        try {
+            return workers.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return name of the message attribute holding the tenant, to be requested on receive
+     */
+    public String getTenantAttribute() {
+        return tenantAttribute;
+    }
+
+    /**
+     * @param message a received message
+     * @return the tenant the message belongs to
+     */
+    public String tenantOf(Message message) {
+        MessageAttributeValue value = message.getMessageAttributes().get(tenantAttribute);
+        if (value == null || value.getStringValue() == null || value.getStringValue().isBlank()) {
+            return DEFAULT_TENANT;
+        }
+        return value.getStringValue();
+    }
+
+    /**
+     * @return whether as many messages are queued as allowed, so polling should pause
+     */
+    public boolean isSaturated() {
+        lock.lock();
+        try {
+            return queued >= maxQueued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues work for a tenant. It runs on a worker once the tenant's turn comes.
+     *
+     * @param tenant the tenant the work is done for
+     * @param task the work
+     */
+    public void submit(String tenant, Runnable task) {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Tenant scheduler is closed");
+            }
+            Tenant state = tenants.computeIfAbsent(tenant,
+                id -> new Tenant(id, weights.getOrDefault(id, defaultWeight)));
+            state.queue.add(task);
+            if (state.queue.size() == 1) {
+                active.addLast(state);
+            }
+            queued++;
+            workAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the next task in deficit round robin order. Must be called with the lock held.
+     *
+     * @return the next task, or null if every tenant with queued work is at its in-flight limit
+     */
+    Dispatch next() {
+        for (int visited = 0, size = active.size(); visited < size; visited++) {
+            Tenant tenant = active.peekFirst();
+            if (tenant.inFlight < maxInFlightPerTenant) {
+                if (tenant.deficit < 1) {
+                    tenant.deficit += tenant.weight;
+                }
+                tenant.deficit--;
+                tenant.inFlight++;
+                queued--;
+                Runnable task = tenant.queue.poll();
+                if (tenant.queue.isEmpty()) {
+                    // An idle tenant does not bank its remaining quantum
+                    active.pollFirst();
+                    tenant.deficit = 0;
+                } else if (tenant.deficit < 1) {
+                    active.addLast(active.pollFirst());
+                }
+                return new Dispatch(tenant, task);
+            }
+            active.addLast(active.pollFirst());
+        }
+        return null;
+    }
+
+    private void finished(Tenant tenant) {
+        lock.lock();
+        try {
+            tenant.inFlight--;
+            if (tenant.inFlight == 0 && tenant.queue.isEmpty()) {
+                tenants.remove(tenant.id);
+            }
+            workAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void startWorker() {
+        Worker worker = new Worker();
+        workers.add(worker);
+        worker.thread = Thread.ofPlatform().name("tenant-worker-" + workerSequence++).daemon()
+            .start(() -> runWorker(worker));
+    }
+
+    private void runWorker(Worker self) {
+        while (true) {
+            Dispatch dispatch;
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed || self.retired) {
+                        return;
+                    }
+                    if ((dispatch = next()) != null) {
+                        break;
+                    }
+                    workAvailable.await();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                dispatch.task().run();
+            } catch (RuntimeException e) {
+                logger.error("Task of tenant {} failed", dispatch.tenant().id, e);
+            } finally {
+                finished(dispatch.tenant());
+            }
+        }
+    }
+
+    /**
+     * Parses tenant weights in the form {@code tenantA:3,tenantB:1}.
+     */
+    static Map<String, Integer> parseWeights(String spec) {
+        Map<String, Integer> weights = new HashMap<>();
+        if (spec == null || spec.isBlank()) {
+            return weights;
+        }
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split(":");
+            int weight;
+            try {
+                weight = parts.length == 2 ? Integer.parseInt(parts[1].trim()) : 0;
+            } catch (NumberFormatException e) {
+                weight = 0;
+            }
+            if (weight < 1 || parts[0].isBlank()) {
+                throw new IllegalArgumentException(String.format(
+                    "Invalid tenant weight '%s', expected tenant:weight with a weight of at least 1", entry.trim()));
+            }
+            weights.put(parts[0].trim(), weight);
+        }
+        return weights;
+    }
+
+    /**
+     * Stops the workers once the tasks already taken have finished. Queued tasks are dropped;
+     * their messages become visible again after the visibility timeout.
+     */
+    @PreDestroy
+    public void close() {
+        List<Worker> running;
+        lock.lock();
+        try {
+            closed = true;
+            workAvailable.signalAll();
+            running = new ArrayList<>(workers);
+        } finally {
+            lock.unlock();
+        }
+        for (Worker worker : running) {
+            try {
+                worker.thread.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    record Dispatch(Tenant tenant, Runnable task) {
+    }
+
+    private static final class Worker {
+        private Thread thread;
+        /** Set under the lock when the pool shrinks */
+        private boolean retired;
+    }
+
+    static final class Tenant {
+        private final String id;
+        private final int weight;
+        private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+        private long deficit;
+        private int inFlight;
+
+        Tenant(String id, int weight) {
+            this.id = id;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.learning.demo_sqslistener.service;
+
+import com.learning.demo_sqslistener.exception.MessageValidationException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.google.common.base.Utf8;
+import org.springframework.core.io.AbstractResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * UTF-8 encoded message body held in a buffer that is reused by the thread processing the
+ * message, so a body is encoded once and then sanitized, validated and written to the HTTP
+ * request without further copies.
+ * <p>
+ * Sanitization works on the bytes in place. Its rules are the ones of the former regular
+ * expressions {@code <script>.*?</script>} and {@code <.*?>}: a match never spans a line
+ * terminator. All markers are ASCII, and in UTF-8 ASCII bytes never occur inside a multi-byte
+ * sequence, so scanning bytes finds the same matches as scanning characters.
+ * <p>
+ * As a {@link org.springframework.core.io.Resource} the payload is streamed into the request
+ * body by {@code ResourceHttpMessageConverter}. A pooled payload is only valid until the same
+ * thread encodes the next message; use {@link #copy()} to hand it to another thread.
+ *
+ * @author demo-sqslistener
+ */
+final class Utf8Payload extends AbstractResource {
+
+    private static final byte[] SCRIPT_OPEN = "<script>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SCRIPT_CLOSE = "</script>".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ThreadLocal<Utf8Payload> POOL =
+        ThreadLocal.withInitial(() -> new Utf8Payload(new byte[MessageProcessor.MAX_MESSAGE_SIZE], 0));
+
+    private final byte[] bytes;
+    private int length;
+
+    private Utf8Payload(byte[] bytes, int length) {
+        this.bytes = bytes;
+        this.length = length;
+    }
+
+    /**
+     * Encodes a message body into the calling thread's buffer. Unpaired surrogates are encoded
+     * as {@code ?}, like {@link String#getBytes} does.
+     *
+     * @param body message body
+     * @param maxBytes size limit in UTF-8 bytes, at most {@link MessageProcessor#MAX_MESSAGE_SIZE}
+     * @return the pooled payload holding the body
+     * @throws MessageValidationException if the body is larger than {@code maxBytes}
+     */
+    static Utf8Payload encode(String body, int maxBytes) {
+        Utf8Payload payload = POOL.get();
+        int size = body.length() > maxBytes ? -1 : payload.fill(body, Math.min(maxBytes, payload.bytes.length));
+        if (size < 0) {
+            throw new MessageValidationException(String.format("Message size %d exceeds limit of %d bytes",
+                utf8Length(body), maxBytes));
+        }
+        return payload;
+    }
+
+    private int fill(String body, int limit) {
+        byte[] b = bytes;
+        int p = 0;
+        int n = body.length();
+        for (int i = 0; i < n; i++) {
+            char c = body.charAt(i);
+            if (c < 0x80) {
+                if (p >= limit) {
+                    return -1;
+                }
+                b[p++] = (byte) c;
+            } else if (c < 0x800) {
+                if (p + 2 > limit) {
+                    return -1;
+                }
+                b[p++] = (byte) (0xC0 | c >> 6);
+                b[p++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(body.charAt(i + 1))) {
+                    if (p + 4 > limit) {
+                        return -1;
+                    }
+                    int cp = Character.toCodePoint(c, body.charAt(++i));
+                    b[p++] = (byte) (0xF0 | cp >> 18);
+                    b[p++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                    b[p++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                    b[p++] = (byte) (0x80 | cp & 0x3F);
+                } else {
+                    if (p >= limit) {
+                        return -1;
+                    }
+                    b[p++] = '?';
+                }
+            } else {
+                if (p + 3 > limit) {
+                    return -1;
+                }
+                b[p++] = (byte) (0xE0 | c >> 12);
+                b[p++] = (byte) (0x80 | c >> 6 & 0x3F);
+                b[p++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        length = p;
+        return p;
+    }
+
+    private static long utf8Length(String body) {
+        try {
+            return Utf8.encodedLength(body);
+        } catch (IllegalArgumentException e) {
+            return body.length();
+        }
+    }
+
+    /**
+     * @return number of bytes of the payload
+     */
+    int length() {
+        return length;
+    }
+
+    /**
+     * Removes script blocks and then markup tags, in place.
+     *
+     * @return this payload
+     */
+    Utf8Payload sanitize() {
+        removeScriptBlocks();
+        removeTags();
+        return this;
+    }
+
+    private void removeScriptBlocks() {
+        int r = 0;
+        int w = 0;
+        while (r < length) {
+            if (bytes[r] == '<' && startsWith(r, SCRIPT_OPEN)) {
+                int close = findOnLine(r + SCRIPT_OPEN.length, SCRIPT_CLOSE);
+                if (close >= 0) {
+                    r = close + SCRIPT_CLOSE.length;
+                    continue;
+                }
+            }
+            bytes[w++] = bytes[r++];
+        }
+        length = w;
+    }
+
+    private void removeTags() {
+        int r = 0;
+        int w = 0;
+        while (r < length) {
+            if (bytes[r] == '<') {
+                int close = findOnLine(r + 1, null);
+                if (close >= 0) {
+                    r = close + 1;
+                    continue;
+                }
+            }
+            bytes[w++] = bytes[r++];
+        }
+        length = w;
+    }
+
+    /**
+     * Finds the next occurrence of a marker before the end of the line.
+     *
+     * @param from index to start at
+     * @param marker bytes to find, or null for a single {@code >}
+     * @return index of the marker, or -1 if a line terminator or the end comes first
+     */
+    private int findOnLine(int from, byte[] marker) {
+        for (int i = from; i < length; i++) {
+            if (marker == null ? bytes[i] == '>' : bytes[i] == marker[0] && startsWith(i, marker)) {
+                return i;
+            }
+            if (isLineTerminator(i)) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private boolean startsWith(int at, byte[] marker) {
+        return at + marker.length <= length && Arrays.equals(bytes, at, at + marker.length, marker, 0, marker.length);
+    }
+
+    /**
+     * Line terminators of {@link java.util.regex.Pattern}: \n, \r, U+0085, U+2028 and U+2029.
+     */
+    private boolean isLineTerminator(int i) {
+        byte b = bytes[i];
+        if (b == '\n' || b == '\r') {
+            return true;
+        }
+        if (b == (byte) 0xC2) {
+            return i + 1 < length && bytes[i + 1] == (byte) 0x85;
+        }
+        return b == (byte) 0xE2 && i + 2 < length && bytes[i + 1] == (byte) 0x80
+            && (bytes[i + 2] == (byte) 0xA8 || bytes[i + 2] == (byte) 0xA9);
+    }
+
+    /**
+     * Checks that the payload is well-formed JSON by streaming over its tokens without building
+     * a tree. Like {@code ObjectMapper.readTree}, empty content and content after the first
+     * value are accepted.
+     *
+     * @param factory factory creating the parser
+     * @throws IOException if the payload is not well-formed JSON
+     */
+    void validateJson(JsonFactory factory) throws IOException {
+        try (JsonParser parser = factory.createParser(bytes, 0, length)) {
+            if (parser.nextToken() != null) {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * @return an unpooled copy that stays valid after this thread moves on to the next message
+     */
+    Utf8Payload copy() {
+        return new Utf8Payload(Arrays.copyOf(bytes, length), length);
+    }
+
+    /**
+     * @return the payload decoded to a string; allocates, meant for tests and diagnostics
+     */
+    String asString() {
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new ByteArrayInputStream(bytes, 0, length);
+    }
+
+    @Override
+    public long contentLength() {
+        return length;
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public String getDescription() {
+        return "UTF-8 message payload [" + length + " bytes]";
+    }
+}
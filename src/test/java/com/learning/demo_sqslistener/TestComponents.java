@@ -0,0 +1,72 @@
+package com.learning.demo_sqslistener;
+
+import com.learning.demo_sqslistener.capture.TrafficCapture;
+import com.learning.demo_sqslistener.metrics.ListenerMetrics;
+import com.learning.demo_sqslistener.ratelimit.GlobalRateLimiter;
+import com.learning.demo_sqslistener.service.DownstreamHedger;
+import com.learning.demo_sqslistener.service.ListenerOptions;
+import com.learning.demo_sqslistener.service.ListenerWarmUp;
+import com.learning.demo_sqslistener.service.MessageCoalescer;
+import com.learning.demo_sqslistener.service.MessageInbox;
+import com.learning.demo_sqslistener.service.MessageProcessor;
+import com.learning.demo_sqslistener.service.TenantScheduler;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+import java.util.List;
+
+/**
+ * Listener collaborators with their optional features switched off, for tests that build
+ * components without a Spring context.
+ */
+public final class TestComponents {
+
+    private TestComponents() {
+    }
+
+    public static ListenerMetrics metrics() {
+        return new ListenerMetrics(new CompositeMeterRegistry());
+    }
+
+    public static TrafficCapture disabledCapture() {
+        return new TrafficCapture(false, "", 1.0, List.of(), 0, 0);
+    }
+
+    public static MessageCoalescer disabledCoalescer() {
+        return new MessageCoalescer(false, "id", "", 0, 0);
+    }
+
+    public static MessageInbox disabledInbox() {
+        return new MessageInbox(false, "", 0, 0, 0, 100, 1);
+    }
+
+    public static TenantScheduler disabledTenantScheduler() {
+        return new TenantScheduler(false, "tenant", "", 1, 1, 0, 0);
+    }
+
+    public static ListenerWarmUp disabledWarmUp() {
+        return new ListenerWarmUp(false, null, null, metrics(), null, 1, 1, 0);
+    }
+
+    public static GlobalRateLimiter disabledRateLimiter() {
+        return new GlobalRateLimiter(false, null, "", 1, 1, 1, 0, 1, 0);
+    }
+
+    public static DownstreamHedger disabledHedger() {
+        return new DownstreamHedger(false, 0.95, 0, 100, 0, 0, metrics(), disabledRateLimiter());
+    }
+
+    /**
+     * @return the options the listener properties default to
+     */
+    public static ListenerOptions defaultOptions() {
+        return new ListenerOptions(1000, 1, 30, 5000);
+    }
+
+    /**
+     * @param apiUrl endpoint the processor forwards to
+     * @return a processor without hedging or a global rate limit
+     */
+    public static MessageProcessor messageProcessor(String apiUrl) {
+        return new MessageProcessor(apiUrl, metrics(), disabledHedger(), disabledRateLimiter());
+    }
+}
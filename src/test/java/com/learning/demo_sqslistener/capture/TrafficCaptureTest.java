@@ -0,0 +1,124 @@
+package com.learning.demo_sqslistener.capture;
+
+import com.amazonaws.services.sqs.model.Message;
+import com.learning.demo_sqslistener.service.MessageProcessor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TrafficCaptureTest {
+
+    private static final int SEGMENT_BYTES = 64 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void captureAndReplay_PushesCapturedMessagesThroughProcessor() throws Exception {
+        TrafficCapture capture = capture(1.0, List.of(), 100);
+        capture.capture(message("m-1", "{\"name\":\"first\"}"));
+        capture.capture(message("m-2", "{\"name\":\"second\"}"));
+        capture.close();
+
+        MessageProcessor processor = mock(MessageProcessor.class);
+        TrafficReplayer.ReplayResult result = new TrafficReplayer(processor, SEGMENT_BYTES).replay(directory, 0);
+
+        ArgumentCaptor<Message> replayed = ArgumentCaptor.forClass(Message.class);
+        verify(processor, times(2)).processMessage(replayed.capture());
+        assertEquals(List.of("m-1", "m-2"), replayed.getAllValues().stream().map(Message::getMessageId).toList());
+        assertEquals("{\"name\":\"second\"}", replayed.getAllValues().get(1).getBody());
+        assertEquals(2, result.processed());
+        assertEquals(0, result.failed());
+    }
+
+    @Test
+    void replay_CountsFailuresAndContinues() throws Exception {
+        TrafficCapture capture = capture(1.0, List.of(), 100);
+        capture.capture(message("m-1", "{}"));
+        capture.capture(message("m-2", "{}"));
+        capture.close();
+        MessageProcessor processor = mock(MessageProcessor.class);
+        doThrow(new IllegalArgumentException("bad")).doNothing().when(processor).processMessage(any());
+
+        TrafficReplayer.ReplayResult result = new TrafficReplayer(processor, SEGMENT_BYTES).replay(directory, 0);
+
+        assertEquals(1, result.processed());
+        assertEquals(1, result.failed());
+    }
+
+    @Test
+    void replay_KeepsScaledInterArrivalTimes() throws Exception {
+        TrafficCapture capture = capture(1.0, List.of(), 100);
+        capture.capture(message("m-1", "{}"));
+        TimeUnit.MILLISECONDS.sleep(400);
+        capture.capture(message("m-2", "{}"));
+        capture.close();
+
+        TrafficReplayer.ReplayResult result = new TrafficReplayer(mock(MessageProcessor.class), SEGMENT_BYTES)
+            .replay(directory, 2.0);
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(result.elapsedNanos());
+        assertTrue(elapsedMillis >= 190, "replay took " + elapsedMillis + " ms");
+        assertTrue(elapsedMillis < 400, "replay took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void replay_CaptureSpanningRestart_KeepsLaterRunOnItsTimeline() throws Exception {
+        TrafficCapture first = capture(1.0, List.of(), 100);
+        first.capture(message("m-1", "{}"));
+        first.close();
+        TimeUnit.MILLISECONDS.sleep(300);
+        TrafficCapture restarted = capture(1.0, List.of(), 100);
+        restarted.capture(message("m-2", "{}"));
+        restarted.close();
+
+        TrafficReplayer.ReplayResult result = new TrafficReplayer(mock(MessageProcessor.class), SEGMENT_BYTES)
+            .replay(directory, 1.0);
+
+        assertEquals(2, result.processed());
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(result.elapsedNanos());
+        assertTrue(elapsedMillis >= 290, "replay took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void redact_MasksConfiguredFieldsKeepingLength() {
+        TrafficCapture capture = capture(1.0, List.of("email", "card"), 100);
+
+        String redacted = capture.redact("{\"name\":\"x\",\"email\":\"a@b.c\",\"items\":[{\"card\":1234}]}");
+
+        assertEquals("{\"name\":\"x\",\"email\":\"*****\",\"items\":[{\"card\":\"****\"}]}", redacted);
+        assertEquals("********", capture.redact("not json"));
+        capture.close();
+    }
+
+    @Test
+    void capture_RespectsSampleRateAndLimit() {
+        TrafficCapture none = capture(0.0, List.of(), 100);
+        none.capture(message("m-1", "{}"));
+        assertEquals(0, none.getCapturedCount());
+        none.close();
+
+        TrafficCapture limited = capture(1.0, List.of(), 1);
+        limited.capture(message("m-1", "{}"));
+        limited.capture(message("m-2", "{}"));
+        limited.close();
+        MessageProcessor processor = mock(MessageProcessor.class);
+        assertDoesNotThrow(() -> new TrafficReplayer(processor, SEGMENT_BYTES).replay(directory, 0));
+        verify(processor, times(1)).processMessage(any());
+    }
+
+    private TrafficCapture capture(double sampleRate, List<String> redactFields, long maxMessages) {
+        return new TrafficCapture(true, directory.toString(), sampleRate, redactFields, maxMessages, SEGMENT_BYTES);
+    }
+
+    private static Message message(String id, String body) {
+        return new Message().withMessageId(id).withBody(body);
+    }
+}
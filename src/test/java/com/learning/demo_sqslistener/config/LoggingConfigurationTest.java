@@ -0,0 +1,32 @@
+package com.learning.demo_sqslistener.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.async.AsyncLoggerContext;
+import org.apache.logging.log4j.util.Constants;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Guards against logging silently falling back to synchronous or allocating loggers,
+ * for example when a dependency brings logback back onto the classpath.
+ */
+class LoggingConfigurationTest {
+
+    @Test
+    void slf4jIsBoundToLog4j2() {
+        assertEquals("org.apache.logging.slf4j.Log4jLoggerFactory", LoggerFactory.getILoggerFactory().getClass().getName());
+    }
+
+    @Test
+    void loggersAreAsynchronous() {
+        assertInstanceOf(AsyncLoggerContext.class, LogManager.getContext(false));
+    }
+
+    @Test
+    void loggingIsGarbageFree() {
+        assertTrue(Constants.ENABLE_THREADLOCALS);
+        assertTrue(org.apache.logging.log4j.core.util.Constants.ENABLE_DIRECT_ENCODERS);
+    }
+}
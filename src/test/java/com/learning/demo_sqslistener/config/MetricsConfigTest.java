@@ -0,0 +1,31 @@
+package com.learning.demo_sqslistener.config;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.learning.demo_sqslistener.service.BatchingMessageSender;
+import com.learning.demo_sqslistener.service.SendAdmissionLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class MetricsConfigTest {
+
+    @Test
+    void ingestBufferMetrics_ReportsRejectionsAsCounter() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SendAdmissionLimiter admissionLimiter = new SendAdmissionLimiter(1, 1);
+        BatchingMessageSender batchingSender = new BatchingMessageSender(mock(AmazonSQS.class), 5, 1);
+        try {
+            new MetricsConfig().ingestBufferMetrics(batchingSender, admissionLimiter).bindTo(registry);
+            assertTrue(admissionLimiter.tryAcquire());
+            assertFalse(admissionLimiter.tryAcquire());
+            assertFalse(admissionLimiter.tryAcquire());
+
+            assertEquals(2, registry.get("ingest.admission.rejected").functionCounter().count());
+            assertEquals(1, registry.get("ingest.admission.in.flight").gauge().value());
+        } finally {
+            batchingSender.shutdown();
+        }
+    }
+}
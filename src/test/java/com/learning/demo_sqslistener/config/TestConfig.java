@@ -1,12 +1,15 @@
 package com.learning.demo_sqslistener.config;
 
 import com.amazonaws.services.sqs.AmazonSQS;
+import com.learning.demo_sqslistener.TestComponents;
 import com.learning.demo_sqslistener.service.*;
 import org.mockito.Mockito;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.List;
+
 @TestConfiguration
 public class TestConfig {
     
@@ -31,12 +34,17 @@ public class TestConfig {
 
     @Bean
     public MessageProcessor messageProcessor(RestTemplate restTemplate) {
-        return new MessageProcessor(TEST_API_URL);
+        return TestComponents.messageProcessor(TEST_API_URL);
+    }
+
+    @Bean
+    public DlqSpillJournal dlqSpillJournal() {
+        return Mockito.mock(DlqSpillJournal.class);
     }
 
     @Bean
-    public DeadLetterQueueService deadLetterQueueService(AmazonSQS amazonSQS) {
-        return new DeadLetterQueueService(amazonSQS, TEST_QUEUE_URL, TEST_DLQ_URL);
+    public DeadLetterQueueService deadLetterQueueService(AmazonSQS amazonSQS, DlqSpillJournal dlqSpillJournal) {
+        return new DeadLetterQueueService(amazonSQS, TEST_QUEUE_URL, TEST_DLQ_URL, dlqSpillJournal);
     }
 
     @Bean
@@ -44,21 +52,33 @@ public class TestConfig {
         return new MessageVisibilityManager(amazonSQS, TEST_QUEUE_URL);
     }
 
+    @Bean
+    public ShardedQueueRouter shardedQueueRouter(AmazonSQS amazonSQS) {
+        return new ShardedQueueRouter(amazonSQS, List.of(TEST_QUEUE_URL));
+    }
+
     @Bean
     public SQSListener sqsListener(
             AmazonSQS amazonSQS,
             MessageProcessor messageProcessor,
             RetryManager retryManager,
             DeadLetterQueueService deadLetterQueueService,
-            MessageVisibilityManager messageVisibilityManager) {
+            MessageVisibilityManager messageVisibilityManager,
+            ShardedQueueRouter shardedQueueRouter) {
         return new SQSListener(
             amazonSQS,
-            TEST_QUEUE_URL,
-            TEST_DLQ_URL,
             messageProcessor,
             retryManager,
             deadLetterQueueService,
-            messageVisibilityManager
+            messageVisibilityManager,
+            shardedQueueRouter,
+            TestComponents.metrics(),
+            TestComponents.disabledCapture(),
+            TestComponents.disabledCoalescer(),
+            TestComponents.disabledInbox(),
+            TestComponents.disabledTenantScheduler(),
+            TestComponents.disabledWarmUp(),
+            TestComponents.defaultOptions()
         );
     }
 } 
\ No newline at end of file
@@ -0,0 +1,58 @@
+package com.learning.demo_sqslistener.exception;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageProcessingExceptionTest {
+
+    @Test
+    void expected_IsSharedAndStackless() {
+        MessageProcessingException failure = MessageProcessingException.expected(ErrorCodes.INVALID_JSON_FORMAT);
+
+        assertSame(failure, MessageProcessingException.expected(ErrorCodes.INVALID_JSON_FORMAT));
+        assertEquals(ErrorCodes.INVALID_JSON_FORMAT, failure.getErrorCode());
+        assertEquals(ErrorCodes.INVALID_JSON_FORMAT.getFormattedMessage(), failure.getMessage());
+        assertEquals(0, failure.getStackTrace().length);
+    }
+
+    @Test
+    void expected_CannotBeModifiedByCallers() {
+        MessageProcessingException failure = MessageProcessingException.expected(ErrorCodes.API_RESPONSE_ERROR);
+
+        failure.addSuppressed(new IllegalStateException("other"));
+        failure.setStackTrace(new Throwable().getStackTrace());
+
+        assertEquals(0, failure.getSuppressed().length);
+        assertEquals(0, failure.getStackTrace().length);
+        assertThrows(IllegalStateException.class, () -> failure.initCause(new IOException()));
+    }
+
+    @Test
+    void stackless_KeepsCauseWithoutStackTrace() {
+        IOException cause = new IOException("connection refused");
+
+        MessageProcessingException failure = MessageProcessingException.stackless(
+            ErrorCodes.API_CONNECTION_ERROR, "Message ID: 1", cause);
+
+        assertSame(cause, failure.getCause());
+        assertEquals(0, failure.getStackTrace().length);
+        assertTrue(failure.getMessage().contains("Message ID: 1"));
+    }
+
+    @Test
+    void messageValidationException_IsStackless() {
+        assertEquals(0, new MessageValidationException("too large").getStackTrace().length);
+    }
+
+    @Test
+    void describe_AppendsRootCause() {
+        MessageProcessingException failure = MessageProcessingException.stackless(ErrorCodes.API_CONNECTION_ERROR,
+            "Failed to process message due to API error", new RuntimeException("wrapper", new IOException("refused")));
+
+        assertEquals("[API-4001] Failed to connect to external API - Failed to process message due to API error"
+            + " (caused by IOException: refused)", FailureLog.describe(failure));
+    }
+}
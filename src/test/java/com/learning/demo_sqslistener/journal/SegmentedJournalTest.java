@@ -0,0 +1,182 @@
+package com.learning.demo_sqslistener.journal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentedJournalTest {
+
+    private static final int SEGMENT_BYTES = 128;
+
+    @TempDir
+    Path directory;
+
+    private SegmentedJournal journal;
+
+    @AfterEach
+    void tearDown() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    @Test
+    void append_ThenRead_ReturnsRecordsInOrder() throws Exception {
+        journal = new SegmentedJournal(directory, "test", SEGMENT_BYTES, true);
+        append("first");
+        append("second");
+
+        JournalBatch batch = journal.read(journal.firstPosition(), 10);
+
+        assertEquals(2, batch.records().size());
+        assertEquals("first", text(batch.records().get(0)));
+        assertEquals("second", text(batch.records().get(1)));
+        assertEquals(batch.records().get(1).next(), batch.end());
+    }
+
+    @Test
+    void append_WhenSegmentFull_RotatesToNewSegment() throws Exception {
+        journal = new SegmentedJournal(directory, "test", SEGMENT_BYTES, true);
+        for (int i = 0; i < 5; i++) {
+            append("record-" + "x".repeat(30) + i);
+        }
+
+        assertTrue(segmentCount() > 1);
+        JournalBatch batch = journal.read(journal.firstPosition(), 10);
+        assertEquals(5, batch.records().size());
+        assertTrue(text(batch.records().get(4)).endsWith("4"));
+    }
+
+    @Test
+    void read_FromCheckpoint_SkipsAcknowledgedRecords() throws Exception {
+        journal = new SegmentedJournal(directory, "test", SEGMENT_BYTES, true);
+        append("first");
+        append("second");
+
+        JournalBatch first = journal.read(journal.firstPosition(), 1);
+        JournalBatch rest = journal.read(first.end(), 10);
+
+        assertEquals(1, rest.records().size());
+        assertEquals("second", text(rest.records().get(0)));
+    }
+
+    @Test
+    void reopen_RecoversCommittedRecords() throws Exception {
+        journal = new SegmentedJournal(directory, "test", SEGMENT_BYTES, true);
+        append("before-restart");
+        journal.close();
+
+        journal = new SegmentedJournal(directory, "test", SEGMENT_BYTES, true);
+        append("after-restart");
+
+        JournalBatch batch = journal.read(journal.firstPosition(), 10);
+        assertEquals(2, batch.records().size());
+        assertEquals("before-restart", text(batch.records().get(0)));
+        assertEquals("after-restart", text(batch.records().get(1)));
+    }
+
+    @Test
+    void openReadOnly_ReadsRecordsAndLeavesTornTailInPlace() throws Exception {
+        journal = new SegmentedJournal(directory, "test", SEGMENT_BYTES, true);
+        append("first");
+        journal.close();
+        journal = null;
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        byte[] torn = Files.readAllBytes(segment);
+        torn[SegmentedJournal.HEADER_BYTES + 5] = 9;
+        torn[SegmentedJournal.HEADER_BYTES + 8] = 1;
+        Files.write(segment, torn);
+
+        try (SegmentedJournal readOnly = SegmentedJournal.openReadOnly(directory, "test", SEGMENT_BYTES)) {
+            JournalBatch batch = readOnly.read(readOnly.firstPosition(), 10);
+
+            assertEquals(List.of("first"), batch.records().stream().map(SegmentedJournalTest::text).toList());
+            assertThrows(IllegalStateException.class, () -> readOnly.append("x".getBytes(StandardCharsets.UTF_8)));
+        }
+        assertArrayEquals(torn, Files.readAllBytes(segment));
+    }
+
+    @Test
+    void deleteSegmentsBefore_RemovesConsumedSegments() throws Exception {
+        journal = new SegmentedJournal(directory, "test", SEGMENT_BYTES, true);
+        for (int i = 0; i < 5; i++) {
+            append("record-" + "x".repeat(30) + i);
+        }
+        JournalBatch batch = journal.read(journal.firstPosition(), 10);
+
+        journal.deleteSegmentsBefore(batch.end());
+
+        assertEquals(1, segmentCount());
+        assertTrue(journal.read(batch.end(), 10).isEmpty());
+    }
+
+    @Test
+    void append_RacingClose_CompletesEveryFuture() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            SegmentedJournal racing = new SegmentedJournal(directory.resolve("race-" + round), "race", 4096, false);
+            List<CompletableFuture<JournalPosition>> futures = new CopyOnWriteArrayList<>();
+            Thread appender = Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 500; i++) {
+                    futures.add(racing.append(("record-" + i).getBytes(StandardCharsets.UTF_8)));
+                }
+            });
+            racing.close();
+            appender.join();
+
+            for (CompletableFuture<JournalPosition> future : futures) {
+                try {
+                    future.get(5, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    assertInstanceOf(IllegalStateException.class, e.getCause());
+                }
+            }
+        }
+    }
+
+    @Test
+    void append_WhenRecordLargerThanSegment_Throws() throws Exception {
+        journal = new SegmentedJournal(directory, "test", SEGMENT_BYTES, true);
+
+        assertThrows(IllegalArgumentException.class, () -> journal.append(new byte[SEGMENT_BYTES]));
+    }
+
+    @Test
+    void checkpoint_StoreAndLoad_RoundTrips() throws IOException {
+        JournalCheckpoint checkpoint = new JournalCheckpoint(directory.resolve("test.checkpoint"));
+        JournalPosition fallback = new JournalPosition(1, 0);
+
+        assertEquals(fallback, checkpoint.load(fallback));
+        checkpoint.store(new JournalPosition(3, 42));
+        assertEquals(new JournalPosition(3, 42), checkpoint.load(fallback));
+    }
+
+    private void append(String value) throws Exception {
+        journal.append(value.getBytes(StandardCharsets.UTF_8)).get(5, TimeUnit.SECONDS);
+    }
+
+    private static String text(JournalRecord record) {
+        return new String(record.payload(), StandardCharsets.UTF_8);
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".seg")).count();
+        }
+    }
+}
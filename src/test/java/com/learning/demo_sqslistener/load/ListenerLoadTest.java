@@ -0,0 +1,475 @@
+package com.learning.demo_sqslistener.load;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learning.demo_sqslistener.DemoSqslistenerApplication;
+import com.learning.demo_sqslistener.service.SQSListener;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * End-to-end load test: the full application runs against the in-memory SQS and forwards to
+ * an embedded HTTP stub. Two runs are compared with {@code src/test/resources/load/baseline.properties}
+ * and fail when they regress past the tolerance:
+ * <ul>
+ *   <li>the sustained run offers messages at a configured rate and shape and gates on
+ *       p50/p99/p99.9 send-to-downstream latency and on every message completing; its
+ *       throughput only echoes the offered rate and is reported, not gated</li>
+ *   <li>the capacity run fills a backlog while the listener is paused, resumes it with the poll
+ *       rate limit and poll delay lifted and measures how fast the backlog drains; it gates on
+ *       that drain rate per core</li>
+ * </ul>
+ * <p>
+ * Run with {@code mvn -Pload test}. System properties:
+ * <ul>
+ *   <li>{@code load.rate} – offered messages per second (default 8)</li>
+ *   <li>{@code load.shape} – {@code constant}, {@code burst} or {@code ramp} (default constant)</li>
+ *   <li>{@code load.warmup-seconds} / {@code load.duration-seconds} – default 5 / 20</li>
+ *   <li>{@code load.capacity.messages} – backlog drained by the capacity run (default 2000)</li>
+ *   <li>{@code load.capacity.pollers} – pollers during the capacity run (default 4)</li>
+ *   <li>{@code load.downstream.latency-ms} – latency of the stub endpoint (default 5)</li>
+ *   <li>{@code load.tolerance} – allowed relative regression (default 0.25)</li>
+ *   <li>{@code load.update-baseline} – write the result as the new baseline</li>
+ * </ul>
+ */
+@Tag("load")
+@SpringBootTest(classes = DemoSqslistenerApplication.class, properties = "spring.main.web-application-type=none")
+@ActiveProfiles("local-sqs")
+class ListenerLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListenerLoadTest.class);
+
+    private static final Path BASELINE = Path.of("src/test/resources/load/baseline.properties");
+    private static final Path RESULT = Path.of("target/load/load-result.properties");
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final double RATE = Double.parseDouble(System.getProperty("load.rate", "8"));
+    private static final String SHAPE = System.getProperty("load.shape", "constant");
+    private static final int WARMUP_SECONDS = Integer.getInteger("load.warmup-seconds", 5);
+    private static final int DURATION_SECONDS = Integer.getInteger("load.duration-seconds", 20);
+    private static final int CAPACITY_MESSAGES = Integer.getInteger("load.capacity.messages", 2000);
+    private static final int CAPACITY_POLLERS = Integer.getInteger("load.capacity.pollers", 4);
+    private static final int DOWNSTREAM_LATENCY_MS = Integer.getInteger("load.downstream.latency-ms", 5);
+    private static final double TOLERANCE = Double.parseDouble(System.getProperty("load.tolerance", "0.25"));
+
+    private static final DownstreamStub downstream = DownstreamStub.start(DOWNSTREAM_LATENCY_MS);
+
+    @Autowired
+    private AmazonSQS amazonSQS;
+
+    @Autowired
+    private SQSListener listener;
+
+    @Value("${aws.sqs.url}")
+    private String queueUrl;
+
+    @DynamicPropertySource
+    static void downstreamUrl(DynamicPropertyRegistry registry) {
+        registry.add("api.endpoint.url", downstream::url);
+    }
+
+    @BeforeAll
+    static void clearResult() throws IOException {
+        Files.deleteIfExists(RESULT);
+    }
+
+    @AfterAll
+    static void stopDownstream() {
+        downstream.stop();
+    }
+
+    @Test
+    void sustainedLatency_DoesNotRegress() throws Exception {
+        drive(WARMUP_SECONDS, Phase.WARMUP);
+        downstream.startMeasuring();
+        long start = System.nanoTime();
+        int offered = drive(DURATION_SECONDS, Phase.MEASURED);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long completedInWindow = downstream.measuredCount();
+        downstream.awaitMeasured(offered, TimeUnit.SECONDS.toNanos(30));
+
+        LoadResult result = LoadResult.of(completedInWindow / seconds, downstream.latenciesMillis(), offered);
+        logger.info("Sustained load result ({}, {} msg/s offered, {} ms downstream): {}",
+            SHAPE, RATE, DOWNSTREAM_LATENCY_MS, result);
+        storeAndCompare(result::storeInto, baseline -> result.regressionsAgainst(LoadResult.from(baseline), TOLERANCE));
+    }
+
+    @Test
+    void capacity_DoesNotRegress() throws Exception {
+        double pollsPerSecond = listener.getPollsPerSecond();
+        long pollDelayMs = listener.getPollDelayMs();
+        int pollers = listener.getPollerCount();
+        listener.pause();
+        try {
+            fill(CAPACITY_MESSAGES);
+            downstream.startCapacity();
+            long start = System.nanoTime();
+            listener.setPollsPerSecond(1_000_000);
+            listener.setPollDelayMs(0);
+            listener.setPollerCount(CAPACITY_POLLERS);
+            listener.resume();
+            long drained = downstream.awaitCapacity(CAPACITY_MESSAGES, TimeUnit.SECONDS.toNanos(120));
+            assertTrue(drained >= CAPACITY_MESSAGES,
+                "Backlog not drained: " + drained + " of " + CAPACITY_MESSAGES + " messages completed");
+
+            CapacityResult result = CapacityResult.of(drained, downstream.lastCapacityNanos() - start,
+                Runtime.getRuntime().availableProcessors());
+            logger.info("Capacity result ({} message backlog, {} ms downstream): {}",
+                CAPACITY_MESSAGES, DOWNSTREAM_LATENCY_MS, result);
+            storeAndCompare(result::storeInto, baseline -> result.regressionsAgainst(CapacityResult.from(baseline), TOLERANCE));
+        } finally {
+            listener.setPollerCount(pollers);
+            listener.setPollDelayMs(pollDelayMs);
+            listener.setPollsPerSecond(pollsPerSecond);
+            listener.resume();
+        }
+    }
+
+    /**
+     * Merges a result into the result file and, depending on {@code load.update-baseline}, into
+     * the baseline or compares it with the baseline. Both runs share the files, each with its own keys.
+     */
+    private static void storeAndCompare(Consumer<Properties> result,
+                                        Function<Properties, List<String>> regressions) throws IOException {
+        Files.createDirectories(RESULT.getParent());
+        merge(RESULT, result);
+        if (Boolean.getBoolean("load.update-baseline")) {
+            merge(BASELINE, result);
+            return;
+        }
+        assertTrue(Files.exists(BASELINE), "No baseline at " + BASELINE + "; run with -Dload.update-baseline=true");
+        List<String> found = regressions.apply(read(BASELINE));
+        if (!found.isEmpty()) {
+            fail("Load test regressed past " + (int) (TOLERANCE * 100) + "% tolerance: " + found);
+        }
+    }
+
+    private static void merge(Path file, Consumer<Properties> result) throws IOException {
+        Properties properties = Files.exists(file) ? read(file) : new Properties();
+        result.accept(properties);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            properties.store(out, String.format(
+                "Listener load test: %s shape, %.1f msg/s offered, %d message backlog, %d ms downstream",
+                SHAPE, RATE, CAPACITY_MESSAGES, DOWNSTREAM_LATENCY_MS));
+        }
+    }
+
+    private static Properties read(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        return properties;
+    }
+
+    /**
+     * Sends a backlog of messages as fast as the queue takes them.
+     */
+    private void fill(int messages) {
+        List<SendMessageBatchRequestEntry> batch = new ArrayList<>(10);
+        for (int i = 0; i < messages; i++) {
+            batch.add(new SendMessageBatchRequestEntry(String.valueOf(batch.size()), payload(Phase.CAPACITY)));
+            if (batch.size() == 10 || i == messages - 1) {
+                amazonSQS.sendMessageBatch(queueUrl, batch);
+                batch = new ArrayList<>(10);
+            }
+        }
+    }
+
+    /**
+     * Offers messages for the given number of seconds in 100 ms ticks, following the configured shape.
+     *
+     * @return number of messages sent
+     */
+    private int drive(int durationSeconds, Phase phase) throws InterruptedException {
+        long tickNanos = TimeUnit.MILLISECONDS.toNanos(100);
+        int ticks = durationSeconds * 10;
+        double owed = 0;
+        int sent = 0;
+        long next = System.nanoTime();
+        for (int tick = 0; tick < ticks; tick++) {
+            owed += RATE / 10 * shapeFactor(tick, ticks);
+            List<SendMessageBatchRequestEntry> batch = new ArrayList<>(10);
+            while (owed >= 1) {
+                owed--;
+                batch.add(new SendMessageBatchRequestEntry(String.valueOf(batch.size()), payload(phase)));
+                if (batch.size() == 10) {
+                    amazonSQS.sendMessageBatch(queueUrl, batch);
+                    sent += batch.size();
+                    batch = new ArrayList<>(10);
+                }
+            }
+            if (!batch.isEmpty()) {
+                amazonSQS.sendMessageBatch(queueUrl, batch);
+                sent += batch.size();
+            }
+            next += tickNanos;
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, next - System.nanoTime()));
+        }
+        return sent;
+    }
+
+    /**
+     * Relative rate of a tick; every shape averages to 1 over the run.
+     */
+    private static double shapeFactor(int tick, int ticks) {
+        return switch (SHAPE) {
+            case "burst" -> tick % 50 < 10 ? 5.0 : 0.0;
+            case "ramp" -> 2.0 * (tick + 0.5) / ticks;
+            default -> 1.0;
+        };
+    }
+
+    private static String payload(Phase phase) {
+        return "{\"name\":\"Load Product\",\"price\":19.99,\"quantity\":1,\"phase\":\"" + phase
+            + "\",\"sentNanos\":" + System.nanoTime() + "}";
+    }
+
+    enum Phase { WARMUP, MEASURED, CAPACITY }
+
+    /**
+     * Result of the sustained run, stored as properties so it can serve as the next baseline.
+     */
+    record LoadResult(double throughput, double p50, double p99, double p999, int offered, int completed) {
+
+        static LoadResult of(double throughput, long[] latenciesMillis, int offered) {
+            Arrays.sort(latenciesMillis);
+            return new LoadResult(throughput, percentile(latenciesMillis, 0.50), percentile(latenciesMillis, 0.99),
+                percentile(latenciesMillis, 0.999), offered, latenciesMillis.length);
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return Double.NaN;
+            }
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)];
+        }
+
+        List<String> regressionsAgainst(LoadResult baseline, double tolerance) {
+            List<String> regressions = new ArrayList<>();
+            if (completed < offered) {
+                regressions.add(String.format("only %d of %d messages completed", completed, offered));
+            }
+            checkLatency(regressions, "p50", p50, baseline.p50, tolerance);
+            checkLatency(regressions, "p99", p99, baseline.p99, tolerance);
+            checkLatency(regressions, "p99.9", p999, baseline.p999, tolerance);
+            return regressions;
+        }
+
+        private static void checkLatency(List<String> regressions, String name, double value, double baseline,
+                                         double tolerance) {
+            if (value > baseline * (1 + tolerance)) {
+                regressions.add(String.format("%s latency %.0f ms > baseline %.0f ms", name, value, baseline));
+            }
+        }
+
+        void storeInto(Properties properties) {
+            properties.setProperty("throughput", String.format("%.2f", throughput));
+            properties.setProperty("latency.p50.ms", String.valueOf(p50));
+            properties.setProperty("latency.p99.ms", String.valueOf(p99));
+            properties.setProperty("latency.p999.ms", String.valueOf(p999));
+            properties.setProperty("offered", String.valueOf(offered));
+            properties.setProperty("completed", String.valueOf(completed));
+        }
+
+        static LoadResult from(Properties properties) {
+            return new LoadResult(
+                Double.parseDouble(properties.getProperty("throughput")),
+                Double.parseDouble(properties.getProperty("latency.p50.ms")),
+                Double.parseDouble(properties.getProperty("latency.p99.ms")),
+                Double.parseDouble(properties.getProperty("latency.p999.ms")),
+                Integer.parseInt(properties.getProperty("offered")),
+                Integer.parseInt(properties.getProperty("completed")));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.1f msg/s, p50=%.0f ms, p99=%.0f ms, p99.9=%.0f ms, %d/%d completed",
+                throughput, p50, p99, p999, completed, offered);
+        }
+    }
+
+    /**
+     * Result of the capacity run: the rate a saturated listener drains a backlog at.
+     */
+    record CapacityResult(double capacity, double capacityPerCore, long messages) {
+
+        static CapacityResult of(long messages, long elapsedNanos, int cores) {
+            double capacity = messages / (elapsedNanos / 1e9);
+            return new CapacityResult(capacity, capacity / cores, messages);
+        }
+
+        List<String> regressionsAgainst(CapacityResult baseline, double tolerance) {
+            List<String> regressions = new ArrayList<>();
+            if (capacityPerCore < baseline.capacityPerCore * (1 - tolerance)) {
+                regressions.add(String.format("capacity %.1f < baseline %.1f msg/s per core",
+                    capacityPerCore, baseline.capacityPerCore));
+            }
+            return regressions;
+        }
+
+        void storeInto(Properties properties) {
+            properties.setProperty("capacity", String.format("%.2f", capacity));
+            properties.setProperty("capacity-per-core", String.format("%.2f", capacityPerCore));
+            properties.setProperty("capacity.messages", String.valueOf(messages));
+        }
+
+        static CapacityResult from(Properties properties) {
+            return new CapacityResult(
+                Double.parseDouble(properties.getProperty("capacity")),
+                Double.parseDouble(properties.getProperty("capacity-per-core")),
+                Long.parseLong(properties.getProperty("capacity.messages")));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.1f msg/s (%.2f per core) draining %d messages", capacity, capacityPerCore, messages);
+        }
+    }
+
+    /**
+     * Embedded HTTP endpoint standing in for the downstream API. Each request answers 200 after
+     * the configured latency. For measured messages it records the send-to-arrival latency, for
+     * capacity messages the count and the time the last one completed.
+     */
+    static final class DownstreamStub {
+        private final HttpServer server;
+        private final int latencyMillis;
+        private final long[] latencies = new long[1 << 20];
+        private final AtomicInteger recorded = new AtomicInteger();
+        private final AtomicLong measuredCount = new AtomicLong();
+        private final AtomicLong capacityCount = new AtomicLong();
+        private final AtomicLong lastCapacityNanos = new AtomicLong();
+        private volatile boolean measuring;
+        private volatile boolean countingCapacity;
+
+        private DownstreamStub(HttpServer server, int latencyMillis) {
+            this.server = server;
+            this.latencyMillis = latencyMillis;
+        }
+
+        static DownstreamStub start(int latencyMillis) {
+            try {
+                HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+                DownstreamStub stub = new DownstreamStub(server, latencyMillis);
+                server.createContext("/api/products", stub::handle);
+                server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+                server.start();
+                return stub;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + "/api/products";
+        }
+
+        void startMeasuring() {
+            measuring = true;
+        }
+
+        long measuredCount() {
+            return measuredCount.get();
+        }
+
+        /**
+         * Starts counting capacity messages; any that completed before are not counted.
+         */
+        void startCapacity() {
+            capacityCount.set(0);
+            countingCapacity = true;
+        }
+
+        /**
+         * @return number of capacity messages completed when the count was reached or the timeout expired
+         */
+        long awaitCapacity(long expected, long timeoutNanos) throws InterruptedException {
+            long deadline = System.nanoTime() + timeoutNanos;
+            while (capacityCount.get() < expected && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            countingCapacity = false;
+            return capacityCount.get();
+        }
+
+        long lastCapacityNanos() {
+            return lastCapacityNanos.get();
+        }
+
+        long[] latenciesMillis() {
+            return Arrays.copyOf(latencies, Math.min(recorded.get(), latencies.length));
+        }
+
+        void awaitMeasured(int expected, long timeoutNanos) throws InterruptedException {
+            long deadline = System.nanoTime() + timeoutNanos;
+            while (recorded.get() < expected && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            long arrived = System.nanoTime();
+            try (exchange) {
+                JsonNode body = objectMapper.readTree(exchange.getRequestBody());
+                if (latencyMillis > 0) {
+                    Thread.sleep(latencyMillis);
+                }
+                exchange.sendResponseHeaders(200, -1);
+                String phase = body.path("phase").asText();
+                if (countingCapacity && Phase.CAPACITY.name().equals(phase)) {
+                    capacityCount.incrementAndGet();
+                    lastCapacityNanos.accumulateAndGet(System.nanoTime(), Math::max);
+                }
+                if (measuring && Phase.MEASURED.name().equals(phase)) {
+                    measuredCount.incrementAndGet();
+                    int slot = recorded.getAndIncrement();
+                    if (slot < latencies.length) {
+                        latencies[slot] = TimeUnit.NANOSECONDS.toMillis(arrived - body.path("sentNanos").asLong());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.learning.demo_sqslistener.localsqs;
+
+import com.amazonaws.services.sqs.model.AmazonSQSException;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import com.amazonaws.services.sqs.model.CreateQueueRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.MessageNotInflightException;
+import com.amazonaws.services.sqs.model.QueueDoesNotExistException;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.amazonaws.services.sqs.model.TooManyEntriesInBatchRequestException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryAmazonSQSTest {
+
+    private final TestClock clock = new TestClock();
+    private InMemoryAmazonSQS sqs;
+    private String queueUrl;
+    private String dlqUrl;
+
+    @BeforeEach
+    void setUp() {
+        sqs = new InMemoryAmazonSQS(clock);
+        dlqUrl = sqs.createQueue("orders-dlq").getQueueUrl();
+        String dlqArn = sqs.getQueueAttributes(dlqUrl, List.of("QueueArn")).getAttributes().get("QueueArn");
+        queueUrl = sqs.createQueue(new CreateQueueRequest("orders").withAttributes(Map.of(
+            "VisibilityTimeout", "30",
+            "RedrivePolicy", "{\"maxReceiveCount\":\"2\",\"deadLetterTargetArn\":\"" + dlqArn + "\"}"))).getQueueUrl();
+    }
+
+    @Test
+    void sendReceiveDelete_RoundTrip() {
+        String messageId = sqs.sendMessage(queueUrl, "hello").getMessageId();
+
+        List<Message> messages = receive(queueUrl, 10);
+
+        assertEquals(1, messages.size());
+        assertEquals(messageId, messages.get(0).getMessageId());
+        assertEquals("1", messages.get(0).getAttributes().get("ApproximateReceiveCount"));
+        assertNotNull(messages.get(0).getAttributes().get("SentTimestamp"));
+        sqs.deleteMessage(queueUrl, messages.get(0).getReceiptHandle());
+        clock.advance(60_000);
+        assertTrue(receive(queueUrl, 10).isEmpty());
+    }
+
+    @Test
+    void receive_ResolvesQueueByNameFromAnyUrl() {
+        sqs.sendMessage("https://sqs.us-east-1.amazonaws.com/123456789012/orders", "hello");
+
+        assertEquals(1, receive(queueUrl, 10).size());
+        assertThrows(QueueDoesNotExistException.class, () -> sqs.sendMessage("http://localhost/unknown", "x"));
+    }
+
+    @Test
+    void visibilityTimeout_HidesMessageUntilItExpires() {
+        sqs.sendMessage(queueUrl, "hello");
+        Message first = receive(queueUrl, 1).get(0);
+
+        clock.advance(29_000);
+        assertTrue(receive(queueUrl, 1).isEmpty());
+        clock.advance(1_000);
+        Message second = receive(queueUrl, 1).get(0);
+
+        assertEquals(first.getMessageId(), second.getMessageId());
+        assertNotEquals(first.getReceiptHandle(), second.getReceiptHandle());
+        assertEquals("2", second.getAttributes().get("ApproximateReceiveCount"));
+        // The superseded handle is accepted but does not delete the redelivered message
+        sqs.deleteMessage(queueUrl, first.getReceiptHandle());
+        assertEquals("0", attribute(queueUrl, "ApproximateNumberOfMessages"));
+        assertEquals("1", attribute(queueUrl, "ApproximateNumberOfMessagesNotVisible"));
+    }
+
+    @Test
+    void changeVisibility_ZeroMakesMessageVisibleAgain() {
+        sqs.sendMessage(queueUrl, "hello");
+        Message message = receive(queueUrl, 1).get(0);
+
+        sqs.changeMessageVisibility(queueUrl, message.getReceiptHandle(), 0);
+
+        assertEquals(1, receive(queueUrl, 1).size());
+        assertThrows(MessageNotInflightException.class,
+            () -> sqs.changeMessageVisibility(queueUrl, message.getReceiptHandle(), 10));
+    }
+
+    @Test
+    void receive_AfterMaxReceiveCount_MovesMessageToDeadLetterQueue() {
+        sqs.sendMessage(queueUrl, "poison");
+        receive(queueUrl, 1);
+        clock.advance(30_000);
+        receive(queueUrl, 1);
+        clock.advance(30_000);
+
+        assertTrue(receive(queueUrl, 1).isEmpty());
+        List<Message> deadLettered = receive(dlqUrl, 10);
+        assertEquals(1, deadLettered.size());
+        assertEquals("poison", deadLettered.get(0).getBody());
+    }
+
+    @Test
+    void receive_LongPollWakesUpOnSend() throws Exception {
+        CompletableFuture<List<Message>> poll = CompletableFuture.supplyAsync(() -> sqs.receiveMessage(
+            new ReceiveMessageRequest(queueUrl).withWaitTimeSeconds(5)).getMessages());
+        Thread.sleep(100);
+
+        sqs.sendMessage(queueUrl, "late");
+
+        assertEquals("late", poll.get(2, TimeUnit.SECONDS).get(0).getBody());
+    }
+
+    @Test
+    void delaySeconds_HidesMessageUntilDelayPasses() {
+        sqs.sendMessage(new SendMessageRequest(queueUrl, "delayed").withDelaySeconds(10));
+
+        assertTrue(receive(queueUrl, 1).isEmpty());
+        assertEquals("1", attribute(queueUrl, "ApproximateNumberOfMessagesDelayed"));
+        clock.advance(10_000);
+        assertEquals(1, receive(queueUrl, 1).size());
+    }
+
+    @Test
+    void batchOperations_ReportPerEntryResults() {
+        SendMessageBatchResult sent = sqs.sendMessageBatch(queueUrl, List.of(
+            new SendMessageBatchRequestEntry("a", "one"),
+            new SendMessageBatchRequestEntry("b", "")));
+        assertEquals(1, sent.getSuccessful().size());
+        assertEquals("b", sent.getFailed().get(0).getId());
+
+        Message message = receive(queueUrl, 10).get(0);
+        sqs.changeMessageVisibilityBatch(queueUrl, List.of(
+            new ChangeMessageVisibilityBatchRequestEntry("v", message.getReceiptHandle()).withVisibilityTimeout(60)));
+        DeleteMessageBatchResult deleted = sqs.deleteMessageBatch(queueUrl, List.of(
+            new DeleteMessageBatchRequestEntry("ok", message.getReceiptHandle()),
+            new DeleteMessageBatchRequestEntry("bad", "no-such-handle")));
+
+        assertEquals("ok", deleted.getSuccessful().get(0).getId());
+        assertEquals("ReceiptHandleIsInvalid", deleted.getFailed().get(0).getCode());
+        assertThrows(TooManyEntriesInBatchRequestException.class, () -> sqs.sendMessageBatch(queueUrl,
+            IntStream.range(0, 11).mapToObj(i -> new SendMessageBatchRequestEntry("e" + i, "x")).toList()));
+    }
+
+    @Test
+    void fifoQueue_DeliversGroupsInOrderOneBatchAtATime() {
+        String fifoUrl = sqs.createQueue(new CreateQueueRequest("orders.fifo")
+            .withAttributes(Map.of("FifoQueue", "true", "ContentBasedDeduplication", "true"))).getQueueUrl();
+        sqs.sendMessage(new SendMessageRequest(fifoUrl, "a1").withMessageGroupId("a"));
+        sqs.sendMessage(new SendMessageRequest(fifoUrl, "a2").withMessageGroupId("a"));
+        sqs.sendMessage(new SendMessageRequest(fifoUrl, "b1").withMessageGroupId("b"));
+        sqs.sendMessage(new SendMessageRequest(fifoUrl, "a1").withMessageGroupId("a"));
+
+        List<Message> first = receive(fifoUrl, 2);
+        assertEquals(List.of("a1", "a2"), first.stream().map(Message::getBody).toList());
+        List<Message> second = receive(fifoUrl, 10);
+        assertEquals(List.of("b1"), second.stream().map(Message::getBody).toList());
+        assertTrue(receive(fifoUrl, 10).isEmpty());
+
+        sqs.deleteMessage(fifoUrl, first.get(0).getReceiptHandle());
+        clock.advance(30_000);
+        assertEquals(List.of("a2", "b1"), receive(fifoUrl, 10).stream().map(Message::getBody).toList());
+        assertThrows(AmazonSQSException.class, () -> sqs.sendMessage(fifoUrl, "no group"));
+    }
+
+    @Test
+    void errorRate_FailsCalls() {
+        sqs.setErrorRate(1.0);
+
+        AmazonSQSException e = assertThrows(AmazonSQSException.class, () -> sqs.sendMessage(queueUrl, "x"));
+        assertEquals(500, e.getStatusCode());
+        sqs.setErrorRate(0);
+        assertDoesNotThrow(() -> sqs.sendMessage(queueUrl, "x"));
+    }
+
+    private List<Message> receive(String url, int max) {
+        return sqs.receiveMessage(new ReceiveMessageRequest(url)
+            .withMaxNumberOfMessages(max)
+            .withWaitTimeSeconds(0)
+            .withAttributeNames("All")).getMessages();
+    }
+
+    private String attribute(String url, String name) {
+        return sqs.getQueueAttributes(url, List.of(name)).getAttributes().get(name);
+    }
+
+    private static final class TestClock extends Clock {
+        private volatile long millis = 1_700_000_000_000L;
+
+        void advance(long deltaMillis) {
+            millis += deltaMillis;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+}
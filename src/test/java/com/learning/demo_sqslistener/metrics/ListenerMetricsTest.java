@@ -0,0 +1,33 @@
+package com.learning.demo_sqslistener.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ListenerMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ListenerMetrics metrics = new ListenerMetrics(registry);
+
+    @Test
+    void firstMessageTime_UnsetUntilFirstMessageFinishes() {
+        assertEquals(-1, metrics.getFirstMessageUptimeMillis());
+        assertTrue(Double.isNaN(registry.get("sqs.listener.first.message.time").gauge().value()));
+    }
+
+    @Test
+    void firstMessageTime_KeepsFirstMessageOnly() throws InterruptedException {
+        metrics.processingStarted();
+        metrics.processingFinished();
+        long first = metrics.getFirstMessageUptimeMillis();
+        Thread.sleep(5);
+        metrics.processingStarted();
+        metrics.processingFinished();
+
+        assertTrue(first > 0);
+        assertEquals(first, metrics.getFirstMessageUptimeMillis());
+        assertEquals(first / 1000.0, registry.get("sqs.listener.first.message.time").gauge().value());
+        assertEquals(0, registry.get("sqs.listener.messages.in.flight").gauge().value());
+    }
+}
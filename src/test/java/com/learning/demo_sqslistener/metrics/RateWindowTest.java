@@ -0,0 +1,48 @@
+package com.learning.demo_sqslistener.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateWindowTest {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toNanos(1000));
+    private final RateWindow window = new RateWindow(now::get);
+
+    @Test
+    void perSecond_AveragesCompleteSecondsOfTheWindow() {
+        record(30);
+        advanceSeconds(1);
+        record(10);
+        advanceSeconds(1);
+        // Still filling, not counted
+        record(100);
+
+        assertEquals(20.0, window.perSecond(2));
+        assertEquals(4.0, window.perSecond(10));
+    }
+
+    @Test
+    void perSecond_ForgetsSecondsOutsideTheWindow() {
+        record(50);
+        advanceSeconds(RateWindow.MAX_SECONDS + 5);
+        record(1);
+        advanceSeconds(1);
+
+        assertEquals(1.0, window.perSecond(1));
+        assertEquals(1.0 / 30, window.perSecond(30), 1e-9);
+    }
+
+    private void record(int count) {
+        for (int i = 0; i < count; i++) {
+            window.record();
+        }
+    }
+
+    private void advanceSeconds(long seconds) {
+        now.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+}
@@ -0,0 +1,56 @@
+package com.learning.demo_sqslistener.metrics;
+
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Request;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqsClientMetricsHandlerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final SqsClientMetricsHandler handler = new SqsClientMetricsHandler(registry);
+
+    @Test
+    void afterResponse_RecordsLatencyPerOperation() {
+        Request<?> first = request(new ReceiveMessageRequest());
+        Request<?> second = request(new ReceiveMessageRequest());
+        handler.beforeRequest(first);
+        handler.afterResponse(first, null);
+        handler.beforeRequest(second);
+        handler.afterResponse(second, null);
+
+        Timer timer = registry.get(SqsClientMetricsHandler.METRIC_NAME)
+            .tag("operation", "ReceiveMessage").tag("outcome", "success").timer();
+        assertEquals(2, timer.count());
+    }
+
+    @Test
+    void afterError_RecordsFailure() {
+        Request<?> request = request(new SendMessageBatchRequest());
+        handler.beforeRequest(request);
+        handler.afterError(request, null, new RuntimeException("boom"));
+
+        assertEquals(1, registry.get(SqsClientMetricsHandler.METRIC_NAME)
+            .tag("operation", "SendMessageBatch").tag("outcome", "failure").timer().count());
+    }
+
+    @Test
+    void listenerMetrics_DownstreamTimerIsTaggedByOutcome() {
+        ListenerMetrics metrics = new ListenerMetrics(registry);
+
+        metrics.recordDownstream(1_000_000, true);
+        metrics.recordDownstream(2_000_000, false);
+
+        assertEquals(1, registry.get("downstream.requests").tag("outcome", "success").timer().count());
+        assertEquals(1, registry.get("downstream.requests").tag("outcome", "failure").timer().count());
+    }
+
+    private static Request<?> request(com.amazonaws.AmazonWebServiceRequest original) {
+        return new DefaultRequest<>(original, "AmazonSQS");
+    }
+}
@@ -0,0 +1,140 @@
+package com.learning.demo_sqslistener.profiling;
+
+import com.amazonaws.services.sqs.model.Message;
+import com.learning.demo_sqslistener.TestComponents;
+import com.learning.demo_sqslistener.exception.ErrorCodes;
+import com.learning.demo_sqslistener.service.MessageProcessor;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MessageStageEventTest {
+
+    private static final String EVENT_NAME = "com.learning.demo_sqslistener.MessageStage";
+    private static final String FAILURE_EVENT_NAME = "com.learning.demo_sqslistener.MessageStageFailure";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void processMessage_EmitsOneEventPerStage() throws Exception {
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        when(restTemplate.postForEntity(anyString(), any(), any()))
+            .thenReturn(new ResponseEntity<>("ok", HttpStatus.OK));
+        MessageProcessor processor = TestComponents.messageProcessor("http://test-api.com");
+        ReflectionTestUtils.setField(processor, "restTemplate", restTemplate);
+
+        List<RecordedEvent> events = record(() -> processor.processMessage(
+            new Message().withMessageId("m-1").withBody("{\"name\":\"café\"}")));
+
+        Map<String, RecordedEvent> byStage = events.stream()
+            .collect(Collectors.toMap(e -> e.getString("stage"), Function.identity()));
+        assertEquals(List.of("JSON_VALIDATE", "POST", "SANITIZE", "VALIDATE"),
+            byStage.keySet().stream().sorted().toList());
+        RecordedEvent post = byStage.get("POST");
+        assertEquals("m-1", post.getString("messageId"));
+        assertEquals("SUCCESS", post.getString("outcome"));
+        assertEquals(16, post.getLong("bytes"));
+        assertNull(post.getString("errorCode"));
+    }
+
+    @Test
+    void processMessage_FailedStageCarriesErrorCode() throws Exception {
+        MessageProcessor processor = TestComponents.messageProcessor("http://test-api.com");
+
+        List<RecordedEvent> events = record(() -> assertThrows(RuntimeException.class, () ->
+            processor.processMessage(new Message().withMessageId("m-2").withBody("{not json"))));
+
+        RecordedEvent json = events.stream()
+            .filter(e -> "JSON_VALIDATE".equals(e.getString("stage")))
+            .findFirst()
+            .orElseThrow();
+        assertEquals("FAILURE", json.getString("outcome"));
+        assertEquals(ErrorCodes.INVALID_JSON_FORMAT.getCode(), json.getString("errorCode"));
+        assertTrue(events.stream().noneMatch(e -> "POST".equals(e.getString("stage"))));
+    }
+
+    @Test
+    void succeeded_CalledTwice_CommitsOnce() throws Exception {
+        List<RecordedEvent> events = record(() -> {
+            MessageStageEvent event = MessageStageEvent.start(MessageStageEvent.DELETE, "m-3", null);
+            event.succeeded();
+            event.failed(ErrorCodes.SQS_MESSAGE_DELETE_ERROR);
+        });
+
+        assertEquals(1, events.size());
+        assertEquals("SUCCESS", events.get(0).getString("outcome"));
+    }
+
+    @Test
+    void failed_BelowStageThreshold_StillRecordsFailureEvent() throws Exception {
+        Path file = directory.resolve("profile.jfr");
+        Configuration profile;
+        try (Reader reader = new InputStreamReader(
+                MessageStageEventTest.class.getResourceAsStream("/jfr/sqs-listener.jfc"), StandardCharsets.UTF_8)) {
+            profile = Configuration.create(reader);
+        }
+        try (Recording recording = new Recording(profile)) {
+            recording.start();
+            MessageStageEvent.start(MessageStageEvent.VALIDATE, "m-4", "{}").failed(ErrorCodes.INVALID_JSON_FORMAT);
+            MessageStageEvent.start(MessageStageEvent.DELETE, "m-5", null).succeeded();
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+            .filter(e -> e.getEventType().getName().startsWith(EVENT_NAME))
+            .toList();
+
+        assertEquals(1, events.size());
+        RecordedEvent failure = events.get(0);
+        assertEquals(FAILURE_EVENT_NAME, failure.getEventType().getName());
+        assertEquals("VALIDATE", failure.getString("stage"));
+        assertEquals("m-4", failure.getString("messageId"));
+        assertEquals(ErrorCodes.INVALID_JSON_FORMAT.getCode(), failure.getString("errorCode"));
+        assertEquals(2, failure.getLong("bytes"));
+    }
+
+    @Test
+    void encodedLength_CountsUtf8Bytes() {
+        assertEquals(5, MessageStageEvent.encodedLength("café"));
+        assertEquals(4, MessageStageEvent.encodedLength("\uD83D\uDE00"));
+        assertEquals(1, MessageStageEvent.encodedLength("\uD83D"));
+    }
+
+    private List<RecordedEvent> record(Runnable action) throws Exception {
+        Path file = directory.resolve("stages.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(EVENT_NAME).withThreshold(Duration.ZERO);
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file).stream()
+            .filter(e -> e.getEventType().getName().equals(EVENT_NAME))
+            .toList();
+    }
+}
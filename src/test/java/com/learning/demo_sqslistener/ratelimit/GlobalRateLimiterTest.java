@@ -0,0 +1,148 @@
+package com.learning.demo_sqslistener.ratelimit;
+
+import com.learning.demo_sqslistener.TestComponents;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GlobalRateLimiterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void tryAcquire_LeasesTokensInBatches() {
+        AtomicInteger calls = new AtomicInteger();
+        TokenBucketBackend backend = (bucket, requested, rate, capacity) -> {
+            calls.incrementAndGet();
+            return requested;
+        };
+        GlobalRateLimiter limiter = new GlobalRateLimiter(true, backend, "test", 100, 100, 10, 60_000, 1, 5000);
+
+        for (int i = 0; i < 25; i++) {
+            assertTrue(limiter.tryAcquire(0));
+        }
+
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void tryAcquire_SharesOneBucketAcrossNodes() {
+        FileLockTokenBucketBackend backend = new FileLockTokenBucketBackend(directory.toString());
+        GlobalRateLimiter nodeA = new GlobalRateLimiter(true, backend, "shared", 0.001, 20, 5, 60_000, 2, 5000);
+        GlobalRateLimiter nodeB = new GlobalRateLimiter(true,
+            new FileLockTokenBucketBackend(directory.toString()), "shared", 0.001, 20, 5, 60_000, 2, 5000);
+
+        int granted = 0;
+        for (int i = 0; i < 30; i++) {
+            granted += nodeA.tryAcquire(0) ? 1 : 0;
+            granted += nodeB.tryAcquire(0) ? 1 : 0;
+        }
+
+        assertEquals(20, granted);
+        assertFalse(nodeA.isDegraded());
+    }
+
+    @Test
+    void tryAcquire_WhenBackendFails_FallsBackToNodeShare() {
+        TokenBucketBackend backend = (bucket, requested, rate, capacity) -> {
+            throw new IOException("store down");
+        };
+        GlobalRateLimiter limiter = new GlobalRateLimiter(true, backend, "test", 20, 20, 10, 1000, 4, 60_000);
+
+        assertTrue(limiter.tryAcquire(0));
+        assertTrue(limiter.isDegraded());
+        // Per-node share is 5 permits/s, so the next permit is 200 ms away
+        assertFalse(limiter.tryAcquire(TimeUnit.MILLISECONDS.toNanos(50)));
+        assertTrue(limiter.tryAcquire(TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    @Test
+    void tryAcquire_WhenBackendRecovers_LeavesFallback() {
+        AtomicInteger calls = new AtomicInteger();
+        TokenBucketBackend backend = (bucket, requested, rate, capacity) -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IOException("store down");
+            }
+            return requested;
+        };
+        GlobalRateLimiter limiter = new GlobalRateLimiter(true, backend, "test", 1000, 1000, 10, 1000, 1, 0);
+
+        assertTrue(limiter.tryAcquire(0));
+        assertTrue(limiter.isDegraded());
+        assertTrue(limiter.tryAcquire(TimeUnit.SECONDS.toNanos(1)));
+
+        assertFalse(limiter.isDegraded());
+    }
+
+    @Test
+    void tryAcquire_WhileLeasing_CallsBackendOnceWithoutHoldingTheLock() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch taking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TokenBucketBackend backend = (bucket, requested, rate, capacity) -> {
+            calls.incrementAndGet();
+            taking.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return requested;
+        };
+        GlobalRateLimiter limiter = new GlobalRateLimiter(true, backend, "test", 100, 100, 2, 60_000, 1, 5000);
+        CompletableFuture<Boolean> leasing = CompletableFuture.supplyAsync(() -> limiter.tryAcquire(Long.MAX_VALUE));
+        assertTrue(taking.await(5, TimeUnit.SECONDS));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+            assertEquals(100.0, limiter.getPermitsPerSecond());
+            assertFalse(limiter.tryAcquire(TimeUnit.MILLISECONDS.toNanos(50)));
+        });
+        CompletableFuture<Boolean> waiting =
+            CompletableFuture.supplyAsync(() -> limiter.tryAcquire(TimeUnit.SECONDS.toNanos(5)));
+        release.countDown();
+
+        assertTrue(leasing.get(5, TimeUnit.SECONDS));
+        assertTrue(waiting.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void setPermitsPerSecond_AppliesToBackendAndFallback() {
+        List<Double> rates = new CopyOnWriteArrayList<>();
+        TokenBucketBackend backend = (bucket, requested, rate, capacity) -> {
+            rates.add(rate);
+            return 1;
+        };
+        GlobalRateLimiter limiter = new GlobalRateLimiter(true, backend, "test", 100, 100, 1, 60_000, 1, 5000);
+
+        assertTrue(limiter.tryAcquire(0));
+        limiter.setPermitsPerSecond(5);
+        assertTrue(limiter.tryAcquire(0));
+
+        assertEquals(List.of(100.0, 5.0), rates);
+        assertEquals(5.0, limiter.getPermitsPerSecond());
+        assertThrows(IllegalArgumentException.class, () -> limiter.setPermitsPerSecond(0));
+    }
+
+    @Test
+    void setPermitsPerSecond_WhenDisabled_Throws() {
+        assertThrows(IllegalStateException.class, () -> TestComponents.disabledRateLimiter().setPermitsPerSecond(10));
+    }
+
+    @Test
+    void tryAcquire_WhenDisabled_AlwaysGrants() {
+        assertTrue(TestComponents.disabledRateLimiter().tryAcquire(0));
+    }
+}
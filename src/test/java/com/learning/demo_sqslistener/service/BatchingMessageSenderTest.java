@@ -0,0 +1,155 @@
+package com.learning.demo_sqslistener.service;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+import com.amazonaws.services.sqs.model.SendMessageResult;
+import com.learning.demo_sqslistener.exception.ErrorCodes;
+import com.learning.demo_sqslistener.exception.SQSProcessingException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchingMessageSenderTest {
+
+    private static final String QUEUE_URL = "queue-url";
+
+    @Mock
+    private AmazonSQS amazonSQS;
+
+    private BatchingMessageSender sender;
+
+    @BeforeEach
+    void setUp() {
+        sender = new BatchingMessageSender(amazonSQS, 50, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sender.shutdown();
+    }
+
+    @Test
+    void send_ConcurrentMessages_AreBatchedAndResultsMappedPerEntry() throws Exception {
+        when(amazonSQS.sendMessageBatch(any(SendMessageBatchRequest.class))).thenAnswer(invocation -> {
+            SendMessageBatchRequest request = invocation.getArgument(0);
+            SendMessageBatchResult result = new SendMessageBatchResult();
+            for (SendMessageBatchRequestEntry entry : request.getEntries()) {
+                result.withSuccessful(new SendMessageBatchResultEntry()
+                    .withId(entry.getId())
+                    .withMessageId("id-" + entry.getMessageBody()));
+            }
+            return result;
+        });
+
+        List<CompletableFuture<SendMessageResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            futures.add(sender.send(QUEUE_URL, "m" + i));
+        }
+
+        for (int i = 0; i < 25; i++) {
+            assertEquals("id-m" + i, futures.get(i).get(5, TimeUnit.SECONDS).getMessageId());
+        }
+        ArgumentCaptor<SendMessageBatchRequest> captor = ArgumentCaptor.forClass(SendMessageBatchRequest.class);
+        verify(amazonSQS, atLeast(3)).sendMessageBatch(captor.capture());
+        captor.getAllValues().forEach(request -> assertTrue(request.getEntries().size() <= 10));
+        assertEquals(0, sender.pendingCount());
+    }
+
+    @Test
+    void send_WhenEntryFails_OnlyThatCallerFails() throws Exception {
+        when(amazonSQS.sendMessageBatch(any(SendMessageBatchRequest.class)))
+            .thenReturn(new SendMessageBatchResult()
+                .withSuccessful(new SendMessageBatchResultEntry().withId("0").withMessageId("ok"))
+                .withFailed(new BatchResultErrorEntry().withId("1").withCode("InternalError").withMessage("boom")));
+
+        CompletableFuture<SendMessageResult> ok = sender.send(QUEUE_URL, "first");
+        CompletableFuture<SendMessageResult> failed = sender.send(QUEUE_URL, "second");
+
+        assertEquals("ok", ok.get(5, TimeUnit.SECONDS).getMessageId());
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertEquals(ErrorCodes.SQS_MESSAGE_SEND_ERROR, ((SQSProcessingException) exception.getCause()).getErrorCode());
+    }
+
+    @Test
+    void send_LargeMessages_SplitByPayloadLimit() throws Exception {
+        when(amazonSQS.sendMessageBatch(any(SendMessageBatchRequest.class))).thenAnswer(invocation -> {
+            SendMessageBatchRequest request = invocation.getArgument(0);
+            SendMessageBatchResult result = new SendMessageBatchResult();
+            request.getEntries().forEach(entry -> result.withSuccessful(
+                new SendMessageBatchResultEntry().withId(entry.getId()).withMessageId("id")));
+            return result;
+        });
+        String body = "x".repeat(150 * 1024);
+
+        CompletableFuture.allOf(sender.send(QUEUE_URL, body), sender.send(QUEUE_URL, body))
+            .get(5, TimeUnit.SECONDS);
+
+        verify(amazonSQS, times(2)).sendMessageBatch(any(SendMessageBatchRequest.class));
+    }
+
+    @Test
+    void send_RacingShutdown_CompletesEveryFuture() throws Exception {
+        lenient().when(amazonSQS.sendMessageBatch(any(SendMessageBatchRequest.class))).thenAnswer(invocation -> {
+            SendMessageBatchRequest request = invocation.getArgument(0);
+            SendMessageBatchResult result = new SendMessageBatchResult();
+            for (SendMessageBatchRequestEntry entry : request.getEntries()) {
+                result.withSuccessful(new SendMessageBatchResultEntry().withId(entry.getId()).withMessageId("id"));
+            }
+            return result;
+        });
+        for (int round = 0; round < 20; round++) {
+            BatchingMessageSender racing = new BatchingMessageSender(amazonSQS, 0, 2);
+            List<CompletableFuture<SendMessageResult>> futures = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch sending = new CountDownLatch(1);
+            Thread producer = Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    futures.add(racing.send(QUEUE_URL, "message-" + i));
+                    sending.countDown();
+                }
+            });
+            sending.await();
+            racing.shutdown();
+            producer.join();
+
+            for (CompletableFuture<SendMessageResult> future : futures) {
+                try {
+                    future.get(5, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    assertInstanceOf(SQSProcessingException.class, e.getCause());
+                }
+            }
+            assertEquals(0, racing.pendingCount());
+        }
+    }
+
+    @Test
+    void send_OversizedMessage_FailsWithoutCallingSqs() {
+        CompletableFuture<SendMessageResult> future =
+            sender.send(QUEUE_URL, "x".repeat(SqsBatchLimits.MAX_BATCH_PAYLOAD_BYTES + 1));
+
+        ExecutionException exception = assertThrows(ExecutionException.class, future::get);
+        assertEquals(ErrorCodes.MESSAGE_SIZE_EXCEEDED, ((SQSProcessingException) exception.getCause()).getErrorCode());
+        verifyNoInteractions(amazonSQS);
+    }
+}
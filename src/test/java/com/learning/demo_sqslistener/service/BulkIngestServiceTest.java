@@ -0,0 +1,157 @@
+package com.learning.demo_sqslistener.service;
+
+import com.amazonaws.services.sqs.model.SendMessageResult;
+import com.learning.demo_sqslistener.exception.ErrorCodes;
+import com.learning.demo_sqslistener.exception.SQSProcessingException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BulkIngestServiceTest {
+
+    @Mock
+    private SQSService sqsService;
+
+    private SendAdmissionLimiter admissionLimiter;
+    private BulkIngestService bulkIngestService;
+
+    @BeforeEach
+    void setUp() {
+        admissionLimiter = new SendAdmissionLimiter(100, 1);
+        bulkIngestService = new BulkIngestService(sqsService, admissionLimiter, 2, "id");
+    }
+
+    @Test
+    void ingest_Ndjson_WritesResultPerLineInOrder() throws Exception {
+        when(sqsService.sendMessageAsync(anyString(), any())).thenAnswer(invocation ->
+            CompletableFuture.completedFuture(new SendMessageResult().withMessageId("id-" + invocation.getArgument(0))));
+
+        String[] results = ingest("{\"a\":1}\n{bad json}\n\n{\"a\":2}\n");
+
+        assertEquals(3, results.length);
+        assertEquals("{\"line\":1,\"status\":\"OK\",\"messageId\":\"id-{\\\"a\\\":1}\"}", results[0]);
+        assertTrue(results[1].startsWith("{\"line\":2,\"status\":\"ERROR\""));
+        assertTrue(results[2].startsWith("{\"line\":4,\"status\":\"OK\""));
+        verify(sqsService, times(2)).sendMessageAsync(anyString(), any());
+    }
+
+    @Test
+    void ingest_JsonArray_SendsEachElement() throws Exception {
+        when(sqsService.sendMessageAsync(anyString(), any()))
+            .thenReturn(CompletableFuture.completedFuture(new SendMessageResult().withMessageId("id")));
+
+        String[] results = ingest("  [{\"a\":1}, {\"b\":2}, {\"c\":3}]");
+
+        assertEquals(3, results.length);
+        verify(sqsService).sendMessageAsync("{\"a\":1}", null);
+        verify(sqsService).sendMessageAsync("{\"b\":2}", null);
+        verify(sqsService).sendMessageAsync("{\"c\":3}", null);
+    }
+
+    @Test
+    void ingest_WhenSendFails_ReportsErrorForThatLine() throws Exception {
+        when(sqsService.sendMessageAsync(anyString(), any()))
+            .thenReturn(CompletableFuture.completedFuture(new SendMessageResult().withMessageId("id")))
+            .thenReturn(CompletableFuture.failedFuture(new SQSProcessingException(ErrorCodes.SQS_MESSAGE_SEND_ERROR)));
+
+        String[] results = ingest("{\"a\":1}\n{\"a\":2}");
+
+        assertTrue(results[0].contains("\"OK\""));
+        assertTrue(results[1].contains("SQS-1002"));
+    }
+
+    @Test
+    void ingest_OversizedLine_IsRejectedWithoutSending() throws Exception {
+        String oversized = "{\"a\":\"" + "x".repeat(MessageProcessor.MAX_MESSAGE_SIZE) + "\"}";
+
+        String[] results = ingest(oversized + "\n");
+
+        assertEquals(1, results.length);
+        assertTrue(results[0].contains("exceeds limit"));
+        verifyNoInteractions(sqsService);
+    }
+
+    @Test
+    void ingest_RecordWithPartitionKeyField_RoutesByKey() throws Exception {
+        when(sqsService.sendMessageAsync(anyString(), any()))
+            .thenReturn(CompletableFuture.completedFuture(new SendMessageResult().withMessageId("id")));
+
+        ingest("{\"id\":\"order-7\",\"a\":1}\n[1]\n");
+
+        verify(sqsService).sendMessageAsync("{\"id\":\"order-7\",\"a\":1}", "order-7");
+        verify(sqsService).sendMessageAsync("[1]", null);
+    }
+
+    @Test
+    void ingest_ReleasesAdmissionPermitPerSend() throws Exception {
+        when(sqsService.sendMessageAsync(anyString(), any())).thenAnswer(invocation -> {
+            assertEquals(1, admissionLimiter.getInFlight());
+            return CompletableFuture.completedFuture(new SendMessageResult().withMessageId("id"));
+        });
+
+        String[] results = ingest("{\"a\":1}\n{\"a\":2}\n");
+
+        assertTrue(results[0].contains("\"OK\"") && results[1].contains("\"OK\""));
+        assertEquals(0, admissionLimiter.getInFlight());
+    }
+
+    @Test
+    void ingest_WhenAdmissionLimitHeldByOtherSends_RejectsRecord() throws Exception {
+        admissionLimiter = new SendAdmissionLimiter(1, 1);
+        bulkIngestService = new BulkIngestService(sqsService, admissionLimiter, 2, "id");
+        assertTrue(admissionLimiter.tryAcquire());
+
+        String[] results = ingest("{\"a\":1}\n");
+
+        assertTrue(results[0].contains("Too many pending sends"));
+        verifyNoInteractions(sqsService);
+    }
+
+    @Test
+    void ingest_WhenAdmissionLimitHeldByOwnSends_WaitsForOldest() throws Exception {
+        admissionLimiter = new SendAdmissionLimiter(1, 1);
+        bulkIngestService = new BulkIngestService(sqsService, admissionLimiter, 2, "id");
+        when(sqsService.sendMessageAsync(anyString(), any())).thenAnswer(invocation ->
+            CompletableFuture.supplyAsync(() -> new SendMessageResult().withMessageId("id"),
+                CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS)));
+
+        String[] results = ingest("{\"a\":1}\n{\"a\":2}\n{\"a\":3}\n");
+
+        assertEquals(3, results.length);
+        for (String result : results) {
+            assertTrue(result.contains("\"OK\""));
+        }
+        assertEquals(0, admissionLimiter.getInFlight());
+    }
+
+    @Test
+    void ingest_EmptyBody_WritesNothing() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        BulkIngestService.BulkIngestSummary summary =
+            bulkIngestService.ingest(new ByteArrayInputStream(new byte[0]), out);
+
+        assertEquals(0, summary.accepted() + summary.rejected());
+        assertEquals(0, out.size());
+    }
+
+    private String[] ingest(String body) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bulkIngestService.ingest(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out);
+        return out.toString(StandardCharsets.UTF_8).split("\n");
+    }
+}
@@ -25,12 +25,15 @@ class DeadLetterQueueServiceTest {
     @Mock
     private Message message;
 
+    @Mock
+    private DlqSpillJournal spillJournal;
+
     private static final String QUEUE_URL = "queue-url";
     private static final String DLQ_URL = "dlq-url";
 
     @BeforeEach
     void setUp() {
-        dlqService = new DeadLetterQueueService(amazonSQS, QUEUE_URL, DLQ_URL);
+        dlqService = new DeadLetterQueueService(amazonSQS, QUEUE_URL, DLQ_URL, spillJournal);
     }
 
     @Test
@@ -63,4 +66,45 @@ class DeadLetterQueueServiceTest {
 
         verify(amazonSQS, never()).deleteMessage(anyString(), anyString());
     }
+
+    @Test
+    void moveMessageToDLQ_WhenSendFails_SpillsAndDeletes() {
+        when(message.getMessageId()).thenReturn("test-id");
+        when(message.getBody()).thenReturn("test-body");
+        when(message.getReceiptHandle()).thenReturn("test-receipt");
+        when(amazonSQS.sendMessage(any(SendMessageRequest.class)))
+            .thenThrow(new RuntimeException("Send failed"));
+        when(spillJournal.spill(eq("test-id"), eq("test-body"), anyMap(), eq("Test failure reason")))
+            .thenReturn(true);
+
+        assertEquals(DeadLetterQueueService.MoveResult.MOVED, dlqService.moveMessageToDLQ(message, "Test failure reason"));
+
+        verify(amazonSQS).deleteMessage(QUEUE_URL, "test-receipt");
+    }
+
+    @Test
+    void moveMessageToDLQ_WhenDeleteFails_ReportsStoredNotDeleted() {
+        when(message.getMessageId()).thenReturn("test-id");
+        when(message.getBody()).thenReturn("test-body");
+        when(message.getReceiptHandle()).thenReturn("test-receipt");
+        doThrow(new RuntimeException("Delete failed")).when(amazonSQS).deleteMessage(QUEUE_URL, "test-receipt");
+
+        assertEquals(DeadLetterQueueService.MoveResult.STORED_NOT_DELETED,
+            dlqService.moveMessageToDLQ(message, "Test failure reason"));
+
+        verify(amazonSQS).sendMessage(any(SendMessageRequest.class));
+    }
+
+    @Test
+    void moveMessageToDLQ_WhenSendAndSpillFail_ReportsNotStored() {
+        when(message.getMessageId()).thenReturn("test-id");
+        when(message.getBody()).thenReturn("test-body");
+        when(amazonSQS.sendMessage(any(SendMessageRequest.class)))
+            .thenThrow(new RuntimeException("Send failed"));
+        when(spillJournal.spill(anyString(), anyString(), anyMap(), anyString())).thenReturn(false);
+
+        assertEquals(DeadLetterQueueService.MoveResult.NOT_STORED, dlqService.moveMessageToDLQ(message, "Test failure reason"));
+
+        verify(amazonSQS, never()).deleteMessage(anyString(), anyString());
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,184 @@
+package com.learning.demo_sqslistener.service;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.MessageAttributeValue;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DlqRedriveServiceTest {
+
+    private static final String QUEUE_URL = "queue-url";
+    private static final String DLQ_URL = "dlq-url";
+
+    @Mock
+    private AmazonSQS amazonSQS;
+
+    @TempDir
+    Path directory;
+
+    private DlqRedriveService redriveService;
+
+    @BeforeEach
+    void setUp() {
+        redriveService = new DlqRedriveService(amazonSQS, new ShardedQueueRouter(amazonSQS, List.of(QUEUE_URL)),
+            DLQ_URL, 1000, 1, 300, 0, 1, directory.resolve("redrive.properties").toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        redriveService.shutdown();
+    }
+
+    @Test
+    void start_RedrivesMatchingMessagesAndDeletesFromDLQ() {
+        when(amazonSQS.receiveMessage(any(ReceiveMessageRequest.class)))
+            .thenReturn(new ReceiveMessageResult().withMessages(
+                dlqMessage("m1", "Exceeded maximum retry attempts"),
+                dlqMessage("m2", "Other reason")))
+            .thenReturn(new ReceiveMessageResult());
+        when(amazonSQS.sendMessageBatch(eq(QUEUE_URL), anyList()))
+            .thenReturn(new SendMessageBatchResult().withSuccessful(new SendMessageBatchResultEntry().withId("0")));
+        when(amazonSQS.deleteMessageBatch(eq(DLQ_URL), anyList())).thenReturn(new DeleteMessageBatchResult());
+
+        redriveService.start(new RedriveOptions(null, null, "Exceeded maximum retry attempts", false, 1));
+        RedriveProgress progress = awaitFinished();
+
+        assertEquals(RedriveJob.Status.COMPLETED, progress.status());
+        assertEquals(2, progress.received());
+        assertEquals(1, progress.skipped());
+        assertEquals(1, progress.redriven());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SendMessageBatchRequestEntry>> captor = ArgumentCaptor.forClass(List.class);
+        verify(amazonSQS).sendMessageBatch(eq(QUEUE_URL), captor.capture());
+        assertEquals(1, captor.getValue().size());
+        assertEquals("body-m1", captor.getValue().get(0).getMessageBody());
+        verify(amazonSQS).deleteMessageBatch(eq(DLQ_URL), anyList());
+    }
+
+    @Test
+    void start_WithShardedSourceQueue_SpreadsMessagesOverShards() {
+        redriveService = new DlqRedriveService(amazonSQS, new ShardedQueueRouter(amazonSQS, List.of("shard-0", "shard-1")),
+            DLQ_URL, 1000, 1, 300, 0, 1, directory.resolve("redrive.properties").toString());
+        when(amazonSQS.receiveMessage(any(ReceiveMessageRequest.class)))
+            .thenReturn(new ReceiveMessageResult().withMessages(dlqMessage("m1", "reason"), dlqMessage("m2", "reason")))
+            .thenReturn(new ReceiveMessageResult());
+        when(amazonSQS.sendMessageBatch(anyString(), anyList())).thenAnswer(invocation -> {
+            List<SendMessageBatchRequestEntry> entries = invocation.getArgument(1);
+            return new SendMessageBatchResult().withSuccessful(entries.stream()
+                .map(entry -> new SendMessageBatchResultEntry().withId(entry.getId())).toList());
+        });
+        when(amazonSQS.deleteMessageBatch(eq(DLQ_URL), anyList())).thenReturn(new DeleteMessageBatchResult());
+
+        redriveService.start(new RedriveOptions(null, null, null, false, 1));
+        RedriveProgress progress = awaitFinished();
+
+        assertEquals(2, progress.redriven());
+        verify(amazonSQS).sendMessageBatch(eq("shard-0"), anyList());
+        verify(amazonSQS).sendMessageBatch(eq("shard-1"), anyList());
+        verify(amazonSQS, never()).sendMessageBatch(eq(QUEUE_URL), anyList());
+    }
+
+    @Test
+    void start_InDryRun_DoesNotSendOrDelete() {
+        when(amazonSQS.receiveMessage(any(ReceiveMessageRequest.class)))
+            .thenReturn(new ReceiveMessageResult().withMessages(dlqMessage("m1", "reason")))
+            .thenReturn(new ReceiveMessageResult());
+
+        redriveService.start(new RedriveOptions(null, null, null, true, 1));
+        RedriveProgress progress = awaitFinished();
+
+        assertEquals(1, progress.matched());
+        assertEquals(0, progress.redriven());
+        verify(amazonSQS, never()).sendMessageBatch(anyString(), anyList());
+        verify(amazonSQS, never()).deleteMessageBatch(anyString(), anyList());
+    }
+
+    @Test
+    void start_WithMessageLimit_StopsAtLimit() {
+        when(amazonSQS.receiveMessage(any(ReceiveMessageRequest.class)))
+            .thenReturn(new ReceiveMessageResult().withMessages(dlqMessage("m1", "reason")));
+
+        redriveService.start(new RedriveOptions(1L, null, null, true, 1));
+        RedriveProgress progress = awaitFinished();
+
+        assertEquals(1, progress.received());
+        verify(amazonSQS, times(1)).receiveMessage(any(ReceiveMessageRequest.class));
+    }
+
+    @Test
+    void start_WhenAlreadyRunning_Throws() {
+        lenient().when(amazonSQS.receiveMessage(any(ReceiveMessageRequest.class))).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return new ReceiveMessageResult().withMessages(dlqMessage("m1", "reason"));
+        });
+
+        redriveService.start(new RedriveOptions(null, null, null, true, 1));
+
+        assertThrows(IllegalStateException.class,
+            () -> redriveService.start(new RedriveOptions(null, null, null, true, 1)));
+        redriveService.cancel();
+    }
+
+    @Test
+    void resumeInterruptedRun_RestoresCountersFromStateFile() throws Exception {
+        RedriveJob interrupted = new RedriveJob("job-1", new RedriveOptions(0L, 50.0, null, true, 1), Instant.now());
+        interrupted.recordReceived(7, 7);
+        try (OutputStream out = Files.newOutputStream(directory.resolve("redrive.properties"))) {
+            interrupted.toProperties().store(out, null);
+        }
+        when(amazonSQS.receiveMessage(any(ReceiveMessageRequest.class))).thenReturn(new ReceiveMessageResult());
+
+        redriveService.resumeInterruptedRun();
+        RedriveProgress progress = awaitFinished();
+
+        assertEquals("job-1", progress.jobId());
+        assertEquals(7, progress.received());
+        assertEquals(RedriveJob.Status.COMPLETED, progress.status());
+    }
+
+    private RedriveProgress awaitFinished() {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            RedriveProgress progress = redriveService.progress().orElseThrow();
+            if (progress.status() != RedriveJob.Status.RUNNING) {
+                return progress;
+            }
+            Thread.onSpinWait();
+        }
+        return fail("Redrive did not finish in time");
+    }
+
+    private static Message dlqMessage(String id, String failureReason) {
+        return new Message()
+            .withMessageId(id)
+            .withReceiptHandle("receipt-" + id)
+            .withBody("body-" + id)
+            .addMessageAttributesEntry("FailureReason", new MessageAttributeValue()
+                .withDataType("String")
+                .withStringValue(failureReason));
+    }
+}
@@ -0,0 +1,112 @@
+package com.learning.demo_sqslistener.service;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.MessageAttributeValue;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DlqSpillReplayerTest {
+
+    private static final String DLQ_URL = "dlq-url";
+
+    @Mock
+    private AmazonSQS amazonSQS;
+
+    @TempDir
+    Path directory;
+
+    private DlqSpillJournal spillJournal;
+    private DlqSpillReplayer replayer;
+
+    @BeforeEach
+    void setUp() {
+        spillJournal = new DlqSpillJournal(true, directory.toString(), 1024 * 1024, 5000);
+        replayer = new DlqSpillReplayer(amazonSQS, DLQ_URL, spillJournal, 60000, 300000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        spillJournal.close();
+    }
+
+    @Test
+    void replayPending_SendsSpilledMessageToDLQ() {
+        spill("msg-1");
+
+        assertEquals(1, replayer.replayPending());
+
+        ArgumentCaptor<SendMessageRequest> captor = ArgumentCaptor.forClass(SendMessageRequest.class);
+        verify(amazonSQS).sendMessage(captor.capture());
+        assertEquals(DLQ_URL, captor.getValue().getQueueUrl());
+        assertEquals("body-msg-1", captor.getValue().getMessageBody());
+        assertEquals("Exceeded maximum retry attempts",
+            captor.getValue().getMessageAttributes().get("FailureReason").getStringValue());
+    }
+
+    @Test
+    void replayPending_AfterDelivery_DoesNotResend() {
+        spill("msg-1");
+
+        replayer.replayPending();
+        assertEquals(0, replayer.replayPending());
+
+        verify(amazonSQS, times(1)).sendMessage(any(SendMessageRequest.class));
+    }
+
+    @Test
+    void replayPending_WhenDLQFails_BacksOffAndKeepsEntries() {
+        spill("msg-1");
+        spill("msg-2");
+        when(amazonSQS.sendMessage(any(SendMessageRequest.class)))
+            .thenReturn(new SendMessageResult())
+            .thenThrow(new RuntimeException("DLQ unavailable"));
+
+        assertEquals(1, replayer.replayPending());
+        assertEquals(0, replayer.replayPending());
+
+        verify(amazonSQS, times(2)).sendMessage(any(SendMessageRequest.class));
+    }
+
+    @Test
+    void spill_WhenCommitOutlastsTimeout_WaitsForIt() {
+        DlqSpillJournal impatient = new DlqSpillJournal(true, directory.resolve("impatient").toString(), 1024 * 1024, 0);
+        try {
+            for (int i = 0; i < 20; i++) {
+                assertTrue(impatient.spill("msg-" + i, "body", Map.of(), "reason"));
+            }
+        } finally {
+            impatient.close();
+        }
+    }
+
+    @Test
+    void spill_WhenDisabled_ReturnsFalse() {
+        DlqSpillJournal disabled = new DlqSpillJournal(false, directory.toString(), 1024, 5000);
+
+        assertFalse(disabled.spill("msg-1", "body", Map.of(), "reason"));
+    }
+
+    private void spill(String messageId) {
+        assertTrue(spillJournal.spill(messageId, "body-" + messageId,
+            Map.of("FailureReason", new MessageAttributeValue()
+                .withDataType("String")
+                .withStringValue("Exceeded maximum retry attempts")),
+            "Exceeded maximum retry attempts"));
+    }
+}
@@ -0,0 +1,183 @@
+package com.learning.demo_sqslistener.service;
+
+import com.learning.demo_sqslistener.TestComponents;
+import com.learning.demo_sqslistener.exception.ErrorCodes;
+import com.learning.demo_sqslistener.exception.MessageProcessingException;
+import com.learning.demo_sqslistener.metrics.ListenerMetrics;
+import com.learning.demo_sqslistener.ratelimit.GlobalRateLimiter;
+import com.learning.demo_sqslistener.ratelimit.TokenBucketBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownstreamHedgerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private DownstreamHedger hedger;
+
+    @AfterEach
+    void tearDown() {
+        if (hedger != null) {
+            hedger.close();
+        }
+    }
+
+    @Test
+    void execute_WithoutEnoughSamples_DoesNotHedge() {
+        hedger = hedger(100, 10);
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = hedger.execute("m-1", ProcessingDeadline.none(), () -> {
+            calls.incrementAndGet();
+            sleep(50);
+            return "primary";
+        });
+
+        assertEquals("primary", result);
+        assertEquals(1, calls.get());
+        assertEquals(-1, hedger.getHedgeDelayNanos());
+    }
+
+    @Test
+    void execute_WhenPrimaryIsSlow_UsesHedgeAndCancelsPrimary() throws Exception {
+        hedger = hedger(100, 10);
+        warmUp(10, TimeUnit.MILLISECONDS.toNanos(1));
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch primaryCancelled = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        String result = hedger.execute("m-1", ProcessingDeadline.none(), () -> {
+            if (calls.incrementAndGet() == 1) {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    primaryCancelled.countDown();
+                }
+                return "primary";
+            }
+            return "hedge";
+        });
+
+        assertEquals("hedge", result);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5_000);
+        assertTrue(primaryCancelled.await(5, TimeUnit.SECONDS));
+        assertEquals(1, hedgeCount("sent"));
+        assertEquals(1, hedgeCount("won"));
+    }
+
+    @Test
+    void execute_LimitsHedgesToBudget() {
+        hedger = hedger(25, 10);
+        warmUp(10, TimeUnit.MILLISECONDS.toNanos(1));
+
+        for (int i = 0; i < 10; i++) {
+            hedger.execute("m-" + i, ProcessingDeadline.none(), () -> {
+                sleep(20);
+                return "ok";
+            });
+        }
+
+        assertEquals(2, hedgeCount("sent"));
+        assertEquals(8, hedgeCount("skipped"));
+    }
+
+    @Test
+    void execute_WithoutRateLimitPermit_SkipsHedge() {
+        // The bucket stays empty, so there is no permit for a hedge
+        TokenBucketBackend backend = (bucket, requested, rate, capacity) -> 0;
+        GlobalRateLimiter rateLimiter = new GlobalRateLimiter(true, backend, "test", 0.001, 1, 1, 60_000, 1, 5000);
+        hedger = hedger(100, 10, rateLimiter);
+        warmUp(10, TimeUnit.MILLISECONDS.toNanos(1));
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = hedger.execute("m-1", ProcessingDeadline.none(), () -> {
+            calls.incrementAndGet();
+            sleep(50);
+            return "primary";
+        });
+
+        assertEquals("primary", result);
+        assertEquals(1, calls.get());
+        assertEquals(0, hedgeCount("sent"));
+        assertEquals(1, hedgeCount("skipped"));
+    }
+
+    @Test
+    void execute_WhenPrimaryFailsFast_ThrowsWithoutHedging() {
+        hedger = hedger(100, 10);
+        warmUp(10, TimeUnit.MILLISECONDS.toNanos(500));
+        AtomicInteger calls = new AtomicInteger();
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+            () -> hedger.execute("m-1", ProcessingDeadline.none(), () -> {
+                calls.incrementAndGet();
+                throw new IllegalStateException("boom");
+            }));
+
+        assertEquals("boom", exception.getMessage());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void execute_WhenDeadlineExpires_Throws() {
+        hedger = hedger(0, 10);
+        warmUp(10, TimeUnit.MILLISECONDS.toNanos(1));
+
+        MessageProcessingException exception = assertThrows(MessageProcessingException.class,
+            () -> hedger.execute("m-1", ProcessingDeadline.after(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(100)),
+                () -> {
+                    sleep(10_000);
+                    return "late";
+                }));
+
+        assertEquals(ErrorCodes.PROCESSING_DEADLINE_EXCEEDED, exception.getErrorCode());
+    }
+
+    @Test
+    void execute_WhenAttemptIsCancelled_RecordsElapsedTimeAsLatency() {
+        hedger = hedger(0, 1);
+
+        assertThrows(MessageProcessingException.class,
+            () -> hedger.execute("m-1", ProcessingDeadline.after(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(200)),
+                () -> {
+                    sleep(10_000);
+                    return "late";
+                }));
+
+        assertTrue(hedger.getHedgeDelayNanos() >= TimeUnit.MILLISECONDS.toNanos(190),
+            "hedge delay " + hedger.getHedgeDelayNanos() + " ns");
+    }
+
+    private DownstreamHedger hedger(double budgetPercent, int minSamples) {
+        return hedger(budgetPercent, minSamples, TestComponents.disabledRateLimiter());
+    }
+
+    private DownstreamHedger hedger(double budgetPercent, int minSamples, GlobalRateLimiter rateLimiter) {
+        return new DownstreamHedger(true, 0.95, budgetPercent, minSamples, 1, 2000, new ListenerMetrics(registry),
+            rateLimiter);
+    }
+
+    private void warmUp(int samples, long nanos) {
+        for (int i = 0; i < samples; i++) {
+            hedger.record(nanos);
+        }
+    }
+
+    private double hedgeCount(String result) {
+        return registry.get("downstream.hedges").tag("result", result).counter().count();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
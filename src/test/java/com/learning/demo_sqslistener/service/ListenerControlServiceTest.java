@@ -0,0 +1,101 @@
+package com.learning.demo_sqslistener.service;
+
+import com.amazonaws.services.sqs.model.Message;
+import com.learning.demo_sqslistener.TestComponents;
+import com.learning.demo_sqslistener.metrics.ListenerMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ListenerControlServiceTest {
+
+    @Mock private SQSListener listener;
+
+    private final TenantScheduler tenantScheduler = new TenantScheduler(true, "tenant", "", 1, 1, 100, 1);
+    private final ListenerMetrics metrics = new ListenerMetrics(new SimpleMeterRegistry());
+    private ListenerControlService controlService;
+
+    @BeforeEach
+    void setUp() {
+        when(listener.getPollerCount()).thenReturn(1);
+        when(listener.getPollDelayMs()).thenReturn(1000L);
+        when(listener.getMaxMessagesPerPoll()).thenReturn(10);
+        when(listener.getPollsPerSecond()).thenReturn(10.0);
+        controlService = new ListenerControlService(listener, tenantScheduler, TestComponents.disabledRateLimiter(),
+            metrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tenantScheduler.close();
+    }
+
+    @Test
+    void pauseAndResume_DelegateToListener() {
+        when(listener.isPaused()).thenReturn(true);
+        assertTrue(controlService.pause().paused());
+        verify(listener).pause();
+
+        controlService.resume();
+        verify(listener).resume();
+    }
+
+    @Test
+    void update_AppliesGivenSettingsOnly() {
+        ListenerStatus status = controlService.update(new ListenerSettings(4, 200L, null, 25.0, 3, null));
+
+        verify(listener).setPollerCount(4);
+        verify(listener).setPollDelayMs(200);
+        verify(listener).setPollsPerSecond(25.0);
+        verify(listener, never()).setMaxMessagesPerPoll(anyInt());
+        assertEquals(3, status.workers());
+        assertNull(status.downstreamPermitsPerSecond());
+    }
+
+    @Test
+    void update_WithSettingOfDisabledFeature_ChangesNothing() {
+        assertThrows(IllegalStateException.class,
+            () -> controlService.update(new ListenerSettings(4, null, null, null, null, 5.0)));
+
+        verify(listener, never()).setPollerCount(anyInt());
+    }
+
+    @Test
+    void update_WithInvalidValue_ChangesNothing() {
+        assertThrows(IllegalArgumentException.class,
+            () -> controlService.update(new ListenerSettings(2, null, 11, null, null, null)));
+
+        verify(listener, never()).setPollerCount(anyInt());
+        assertEquals(1, tenantScheduler.getWorkerCount());
+    }
+
+    @Test
+    void status_ReportsLoadFromMetrics() {
+        metrics.messagesReceived(1);
+        metrics.processingStarted();
+        metrics.recordMessage("queue", new Message(), ListenerMetrics.Outcome.ACKED, TimeUnit.MILLISECONDS.toNanos(40));
+
+        ListenerStatus status = controlService.status();
+
+        assertEquals(1, status.inFlight());
+        assertEquals(1, status.received());
+        assertEquals(1, status.workers());
+        assertEquals(List.of("p50", "p95", "p99"), List.copyOf(status.latencyMillis().keySet()));
+        assertEquals(40, status.latencyMillis().get("p99"), 5);
+    }
+}
@@ -0,0 +1,27 @@
+package com.learning.demo_sqslistener.service;
+
+import com.learning.demo_sqslistener.TestComponents;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ListenerOptionsTest {
+
+    @Test
+    void new_WhenMarginCoversVisibilityTimeout_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> new ListenerOptions(1000, 1, 5, 5000));
+        assertThrows(IllegalArgumentException.class, () -> TestComponents.defaultOptions().withVisibilityTimeout(1, 1000));
+    }
+
+    @Test
+    void processingDeadlineMillis_IsVisibilityTimeoutLessMargin() {
+        assertEquals(25_000, TestComponents.defaultOptions().processingDeadlineMillis());
+        assertEquals(1, TestComponents.defaultOptions().withVisibilityTimeout(1, 999).processingDeadlineMillis());
+    }
+
+    @Test
+    void withSuccessLogOneIn_BelowOne_LogsEverySuccess() {
+        assertEquals(1, TestComponents.defaultOptions().withSuccessLogOneIn(0).successLogOneIn());
+        assertEquals(4, TestComponents.defaultOptions().withSuccessLogOneIn(4).successLogOneIn());
+    }
+}
@@ -0,0 +1,91 @@
+package com.learning.demo_sqslistener.service;
+
+import com.learning.demo_sqslistener.TestComponents;
+import com.learning.demo_sqslistener.localsqs.InMemoryAmazonSQS;
+import com.learning.demo_sqslistener.metrics.ListenerMetrics;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ListenerWarmUpTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ListenerMetrics metrics = new ListenerMetrics(registry);
+    private final InMemoryAmazonSQS amazonSQS = new InMemoryAmazonSQS();
+    private final AtomicInteger headRequests = new AtomicInteger();
+    private HttpServer server;
+    private String queueUrl;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                headRequests.incrementAndGet();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        queueUrl = amazonSQS.createQueue("warmup-queue").getQueueUrl();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void run_WarmsUpEveryStageAndCompletes() {
+        String apiUrl = "http://localhost:" + server.getAddress().getPort() + "/api";
+        ListenerWarmUp warmUp = new ListenerWarmUp(true, TestComponents.messageProcessor(apiUrl), amazonSQS, metrics,
+            queueUrl, 100, 2, 10000);
+        assertFalse(warmUp.isComplete());
+
+        warmUp.run(null);
+
+        assertTrue(warmUp.isComplete());
+        assertEquals(4, headRequests.get());
+        for (String stage : new String[] {"pipeline", "downstream", "sqs"}) {
+            for (String phase : new String[] {"cold", "warm"}) {
+                assertEquals(1, registry.get("sqs.listener.warmup.latency")
+                    .tag("stage", stage).tag("phase", phase).timer().count(), stage + " " + phase);
+            }
+        }
+        assertFalse(Double.isNaN(registry.get("sqs.listener.warmup.duration").gauge().value()));
+    }
+
+    @Test
+    void run_WhenApiUnreachable_StillCompletes() {
+        ListenerWarmUp warmUp = new ListenerWarmUp(true, TestComponents.messageProcessor("http://localhost:1/api"), amazonSQS,
+            metrics, queueUrl, 100, 2, 10000);
+
+        warmUp.run(null);
+
+        assertTrue(warmUp.isComplete());
+        assertEquals(0, registry.get("sqs.listener.warmup.latency")
+            .tag("stage", "downstream").tag("phase", "cold").timer().count());
+        assertEquals(1, registry.get("sqs.listener.warmup.latency")
+            .tag("stage", "sqs").tag("phase", "cold").timer().count());
+    }
+
+    @Test
+    void disabled_IsCompleteWithoutRunning() {
+        assertTrue(TestComponents.disabledWarmUp().isComplete());
+    }
+
+    @Test
+    void syntheticMessages_StayWithinSizeLimit() {
+        for (var message : ListenerWarmUp.syntheticMessages()) {
+            assertTrue(Utf8Payload.encode(message.getBody(), MessageProcessor.MAX_MESSAGE_SIZE).length() > 0);
+        }
+    }
+}
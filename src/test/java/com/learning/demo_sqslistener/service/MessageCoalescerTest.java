@@ -0,0 +1,62 @@
+package com.learning.demo_sqslistener.service;
+
+import com.amazonaws.services.sqs.model.Message;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageCoalescerTest {
+
+    private final MessageCoalescer coalescer = new MessageCoalescer(true, "productId", "version", 1000, 100);
+
+    @Test
+    void coalesce_KeepsLatestPerKeyInReceiveOrder() {
+        Message a1 = message("a1", "{\"productId\":\"A\",\"price\":1}", 1000);
+        Message b1 = message("b1", "{\"productId\":\"B\",\"price\":1}", 1001);
+        Message a2 = message("a2", "{\"productId\":\"A\",\"price\":2}", 1002);
+
+        MessageCoalescer.Coalesced result = coalescer.coalesce(List.of(a1, b1, a2));
+
+        assertEquals(List.of(b1, a2), result.forward());
+        assertEquals(List.of(a1), result.superseded());
+    }
+
+    @Test
+    void coalesce_PrefersVersionOverSentTimestamp() {
+        Message newer = message("v2", "{\"productId\":1,\"version\":2}", 1000);
+        Message older = message("v1", "{\"productId\":1,\"version\":1}", 2000);
+
+        MessageCoalescer.Coalesced result = coalescer.coalesce(List.of(newer, older));
+
+        assertEquals(List.of(newer), result.forward());
+        assertEquals(List.of(older), result.superseded());
+    }
+
+    @Test
+    void coalesce_FallsBackToReceiveOrderOnTies() {
+        Message first = message("first", "{\"productId\":\"A\"}", 1000);
+        Message second = message("second", "{\"productId\":\"A\"}", 1000);
+
+        assertEquals(List.of(second), coalescer.coalesce(List.of(first, second)).forward());
+    }
+
+    @Test
+    void coalesce_NeverDropsMessagesWithoutKey() {
+        Message noKey = message("n1", "{\"name\":\"x\",\"nested\":{\"productId\":\"A\"}}", 1000);
+        Message malformed = message("n2", "{productId: A", 1001);
+        Message nullKey = message("n3", "{\"productId\":null}", 1002);
+        Message keyed = message("k1", "{\"productId\":\"A\"}", 1003);
+
+        MessageCoalescer.Coalesced result = coalescer.coalesce(List.of(noKey, malformed, nullKey, keyed));
+
+        assertEquals(List.of(noKey, malformed, nullKey, keyed), result.forward());
+        assertTrue(result.superseded().isEmpty());
+    }
+
+    private static Message message(String id, String body, long sentTimestamp) {
+        return new Message().withMessageId(id).withReceiptHandle("rh-" + id).withBody(body)
+            .addAttributesEntry("SentTimestamp", String.valueOf(sentTimestamp));
+    }
+}
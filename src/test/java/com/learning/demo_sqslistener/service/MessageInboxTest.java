@@ -0,0 +1,127 @@
+package com.learning.demo_sqslistener.service;
+
+import com.amazonaws.services.sqs.model.Message;
+import com.learning.demo_sqslistener.TestComponents;
+import com.learning.demo_sqslistener.journal.JournalBatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageInboxTest {
+
+    private static final String QUEUE_URL = "queue-url";
+
+    @TempDir
+    Path directory;
+
+    private MessageInbox inbox;
+
+    @BeforeEach
+    void setUp() {
+        inbox = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        inbox.close();
+    }
+
+    @Test
+    void append_StoresMessagesWithSourceQueueAndAttributes() throws IOException {
+        Message message = new Message().withMessageId("msg-1").withReceiptHandle("rh-1").withBody("{\"id\":1}")
+            .addAttributesEntry("SentTimestamp", "1700000000000");
+
+        assertTrue(inbox.append(QUEUE_URL, List.of(message)));
+
+        JournalBatch batch = inbox.readPending(10);
+        assertEquals(1, batch.records().size());
+        MessageInbox.InboxMessage stored = inbox.decode(batch.records().get(0));
+        assertEquals(QUEUE_URL, stored.sourceQueueUrl());
+        assertEquals("msg-1", stored.messageId());
+        assertEquals("{\"id\":1}", stored.body());
+        assertEquals("1700000000000", stored.toMessage().getAttributes().get("SentTimestamp"));
+        assertNull(stored.toMessage().getReceiptHandle());
+        assertEquals(1, inbox.getPendingCount());
+    }
+
+    @Test
+    void acknowledge_AdvancesReadPosition() throws IOException {
+        inbox.append(QUEUE_URL, List.of(message("msg-1"), message("msg-2")));
+
+        JournalBatch batch = inbox.readPending(1);
+        inbox.acknowledge(batch.records().get(0).next(), 1);
+
+        JournalBatch rest = inbox.readPending(10);
+        assertEquals(1, rest.records().size());
+        assertEquals("msg-2", inbox.decode(rest.records().get(0)).messageId());
+        assertEquals(1, inbox.getPendingCount());
+    }
+
+    @Test
+    void reopen_ResumesFromCheckpoint() throws IOException {
+        inbox.append(QUEUE_URL, List.of(message("msg-1"), message("msg-2"), message("msg-3")));
+        inbox.acknowledge(inbox.readPending(1).end(), 1);
+        inbox.close();
+
+        inbox = open();
+
+        assertEquals(2, inbox.getPendingCount());
+        JournalBatch batch = inbox.readPending(10);
+        assertEquals(List.of("msg-2", "msg-3"), batch.records().stream().map(record -> {
+            try {
+                return inbox.decode(record).messageId();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }).toList());
+    }
+
+    @Test
+    void isFull_WhenPendingReachesLimit() {
+        inbox.close();
+        inbox = new MessageInbox(true, directory.toString(), 1024 * 1024, 5000, 2, 100, 1);
+
+        inbox.append(QUEUE_URL, List.of(message("msg-1")));
+        assertFalse(inbox.isFull());
+        inbox.append(QUEUE_URL, List.of(message("msg-2")));
+        assertTrue(inbox.isFull());
+    }
+
+    @Test
+    void append_WhenCommitTimesOut_StillCountsMessagesThatLand() throws Exception {
+        inbox.close();
+        inbox = new MessageInbox(true, directory.toString(), 1024 * 1024, 0, 10000, 100, 1);
+        List<Message> messages = IntStream.range(0, 50).mapToObj(i -> message("msg-" + i)).toList();
+
+        inbox.append(QUEUE_URL, messages);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (inbox.getPendingCount() < 50 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(50, inbox.getPendingCount());
+        assertEquals(50, inbox.readPending(100).records().size());
+    }
+
+    @Test
+    void disabled_IsNotEnabled() {
+        assertFalse(TestComponents.disabledInbox().isEnabled());
+    }
+
+    private MessageInbox open() {
+        return new MessageInbox(true, directory.toString(), 1024 * 1024, 5000, 10000, 100, 1);
+    }
+
+    private static Message message(String id) {
+        return new Message().withMessageId(id).withReceiptHandle("rh-" + id).withBody("{\"id\":\"" + id + "\"}");
+    }
+}
@@ -1,13 +1,16 @@
 package com.learning.demo_sqslistener.service;
 
 import com.amazonaws.services.sqs.model.Message;
+import com.learning.demo_sqslistener.TestComponents;
 import com.learning.demo_sqslistener.exception.MessageProcessingException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.client.RestTemplate;
@@ -15,6 +18,14 @@ import org.springframework.web.client.ResourceAccessException;
 import org.junit.jupiter.api.DisplayName;
 import org.springframework.beans.factory.annotation.Value;
 import com.learning.demo_sqslistener.exception.ErrorCodes;
+import com.learning.demo_sqslistener.ratelimit.GlobalRateLimiter;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -22,7 +33,10 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.never;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
 
 @ExtendWith(MockitoExtension.class)
 class MessageProcessorTest {
@@ -40,7 +54,7 @@ class MessageProcessorTest {
 
     @BeforeEach
     void setUp() {
-        messageProcessor = new MessageProcessor(apiUrl);
+        messageProcessor = TestComponents.messageProcessor(apiUrl);
         ReflectionTestUtils.setField(messageProcessor, "restTemplate", restTemplate);
     }
 
@@ -172,7 +186,8 @@ class MessageProcessorTest {
     void constructor_WithInvalidUrl_ThrowsException() {
         // Act & Assert
         assertThrows(IllegalArgumentException.class,
-            () -> new MessageProcessor("invalid-url"));
+            () -> new MessageProcessor("invalid-url", TestComponents.metrics(),
+                TestComponents.disabledHedger(), TestComponents.disabledRateLimiter()));
     }
 
     @Test
@@ -180,7 +195,8 @@ class MessageProcessorTest {
     void constructor_WithNullUrl_ThrowsException() {
         // Act & Assert
         assertThrows(IllegalArgumentException.class,
-            () -> new MessageProcessor(null));
+            () -> new MessageProcessor(null, TestComponents.metrics(),
+                TestComponents.disabledHedger(), TestComponents.disabledRateLimiter()));
     }
 
     @Test
@@ -329,6 +345,179 @@ class MessageProcessorTest {
         messageProcessor.processMessage(message);
 
         // Assert
-        verify(restTemplate).postForEntity(eq(apiUrl), eq(expectedSanitized), eq(String.class));
+        verify(restTemplate).postForEntity(eq(apiUrl), argThat((HttpEntity<?> entity) ->
+            entity.getBody() instanceof Utf8Payload payload && expectedSanitized.equals(payload.asString())
+                && MediaType.APPLICATION_JSON.equals(entity.getHeaders().getContentType())), eq(String.class));
+    }
+
+    @Test
+    @DisplayName("Should apply the size limit to UTF-8 bytes")
+    void processMessage_WithMultiByteBodyOverLimit_ThrowsException() {
+        String body = "{\"d\":\"" + "é".repeat(MessageProcessor.MAX_MESSAGE_SIZE / 2) + "\"}";
+        when(message.getBody()).thenReturn(body);
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+            () -> messageProcessor.processMessage(message));
+        assertTrue(exception.getMessage().contains("Message size " + (MessageProcessor.MAX_MESSAGE_SIZE + 8)));
+        verify(restTemplate, never()).postForEntity(anyString(), any(), eq(String.class));
+    }
+
+    @Test
+    @DisplayName("Should not call the API once the deadline has passed")
+    void processMessage_WithExpiredDeadline_SkipsApiCall() {
+        when(message.getBody()).thenReturn("{\"key\":\"value\"}");
+        when(message.getMessageId()).thenReturn("test-id");
+        ProcessingDeadline expired = ProcessingDeadline.after(System.nanoTime(), 0);
+
+        MessageProcessingException exception = assertThrows(MessageProcessingException.class,
+            () -> messageProcessor.processMessage(message, expired));
+
+        assertEquals(ErrorCodes.PROCESSING_DEADLINE_EXCEEDED, exception.getErrorCode());
+        verify(restTemplate, never()).postForEntity(anyString(), any(), eq(String.class));
+    }
+
+    @Test
+    @DisplayName("Should abandon a hanging API call when the deadline expires")
+    void processMessage_WithHangingApi_CancelsCallAtDeadline() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        try {
+            MessageProcessor processor = TestComponents.messageProcessor("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+            Message hanging = new Message().withMessageId("hanging").withBody("{\"key\":\"value\"}");
+            long start = System.nanoTime();
+
+            MessageProcessingException exception = assertThrows(MessageProcessingException.class,
+                () -> processor.processMessage(hanging, ProcessingDeadline.after(System.nanoTime(),
+                    TimeUnit.MILLISECONDS.toNanos(300))));
+
+            assertEquals(ErrorCodes.PROCESSING_DEADLINE_EXCEEDED, exception.getErrorCode());
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5_000);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    @DisplayName("Should abandon a response trickling in past the deadline")
+    void processMessage_WithTricklingApi_CancelsCallAtDeadline() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            // Each byte arrives well within the read timeout, the whole body long after the deadline
+            try (exchange; OutputStream body = exchange.getResponseBody()) {
+                exchange.sendResponseHeaders(200, 0);
+                for (int i = 0; i < 100; i++) {
+                    body.write('x');
+                    body.flush();
+                    Thread.sleep(100);
+                }
+            } catch (IOException | InterruptedException e) {
+                // Client went away
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        try {
+            MessageProcessor processor = TestComponents.messageProcessor("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+            Message trickling = new Message().withMessageId("trickling").withBody("{\"key\":\"value\"}");
+            long start = System.nanoTime();
+
+            MessageProcessingException exception = assertThrows(MessageProcessingException.class,
+                () -> processor.processMessage(trickling, ProcessingDeadline.after(System.nanoTime(),
+                    TimeUnit.MILLISECONDS.toNanos(500))));
+
+            assertEquals(ErrorCodes.PROCESSING_DEADLINE_EXCEEDED, exception.getErrorCode());
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsedMillis < 2_000, "call took " + elapsedMillis + " ms");
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    @DisplayName("Should send hedgeable requests with an idempotency key")
+    void processMessage_WithHedging_SendsIdempotencyKey() {
+        DownstreamHedger hedger = new DownstreamHedger(true, 0.95, 5, 100, 5, 2000, TestComponents.metrics(),
+            TestComponents.disabledRateLimiter());
+        try {
+            MessageProcessor processor = new MessageProcessor(apiUrl, TestComponents.metrics(), hedger, TestComponents.disabledRateLimiter());
+            ReflectionTestUtils.setField(processor, "restTemplate", restTemplate);
+            when(message.getBody()).thenReturn("{\"key\":\"value\"}");
+            when(message.getMessageId()).thenReturn("test-id");
+            when(restTemplate.postForEntity(eq(apiUrl), any(), eq(String.class)))
+                .thenReturn(new ResponseEntity<>("OK", HttpStatus.OK));
+
+            processor.processMessage(message);
+
+            verify(restTemplate).postForEntity(eq(apiUrl), argThat((HttpEntity<?> entity) ->
+                "test-id".equals(entity.getHeaders().getFirst(MessageProcessor.IDEMPOTENCY_KEY_HEADER))), eq(String.class));
+        } finally {
+            hedger.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Should fail with the deadline error when no rate limit permit comes in time")
+    void processMessage_WhenRateLimitedPastDeadline_ThrowsDeadlineExceeded() {
+        GlobalRateLimiter limiter = mock(GlobalRateLimiter.class);
+        when(limiter.tryAcquire(anyLong())).thenReturn(false);
+        MessageProcessor processor = new MessageProcessor(apiUrl, TestComponents.metrics(), TestComponents.disabledHedger(), limiter);
+        ReflectionTestUtils.setField(processor, "restTemplate", restTemplate);
+        when(message.getBody()).thenReturn("{\"key\":\"value\"}");
+        when(message.getMessageId()).thenReturn("test-id");
+
+        MessageProcessingException exception = assertThrows(MessageProcessingException.class,
+            () -> processor.processMessage(message, ProcessingDeadline.after(System.nanoTime(), TimeUnit.SECONDS.toNanos(1))));
+
+        assertEquals(ErrorCodes.PROCESSING_DEADLINE_EXCEEDED, exception.getErrorCode());
+        verify(restTemplate, never()).postForEntity(anyString(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should report an API error status without building stack traces")
+    void processMessage_WithErrorStatusFromApi_ThrowsStacklessException() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            MessageProcessor processor = TestComponents.messageProcessor("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+            Message failing = new Message().withMessageId("failing").withBody("{\"key\":\"value\"}");
+
+            MessageProcessingException exception = assertThrows(MessageProcessingException.class,
+                () -> processor.processMessage(failing));
+
+            assertEquals(ErrorCodes.API_RESPONSE_ERROR, exception.getErrorCode());
+            assertTrue(exception.getMessage().contains("503"));
+            assertEquals(0, exception.getStackTrace().length);
+            assertNull(exception.getCause());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    @DisplayName("Should reuse one exception for invalid JSON")
+    void processMessage_WithInvalidJson_ThrowsSharedException() {
+        Message first = new Message().withMessageId("first").withBody("{broken");
+        Message second = new Message().withMessageId("second").withBody("[1,");
+
+        MessageProcessingException firstFailure = assertThrows(MessageProcessingException.class,
+            () -> messageProcessor.processMessage(first));
+        MessageProcessingException secondFailure = assertThrows(MessageProcessingException.class,
+            () -> messageProcessor.processMessage(second));
+
+        assertSame(firstFailure, secondFailure);
+        assertEquals(0, firstFailure.getStackTrace().length);
     }
-} 
\ No newline at end of file
+}
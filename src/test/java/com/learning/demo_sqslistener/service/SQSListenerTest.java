@@ -2,17 +2,41 @@ package com.learning.demo_sqslistener.service;
 
 import com.amazonaws.services.sqs.AmazonSQS;
 import com.amazonaws.services.sqs.model.*;
+import com.learning.demo_sqslistener.TestComponents;
+import com.learning.demo_sqslistener.exception.ErrorCodes;
+import com.learning.demo_sqslistener.exception.MessageProcessingException;
+import com.learning.demo_sqslistener.metrics.ListenerMetrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.config.Property;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -25,19 +49,25 @@ class SQSListenerTest {
     @Mock private MessageVisibilityManager visibilityManager;
 
     private SQSListener sqsListener;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
     private static final String QUEUE_URL = "queue-url";
-    private static final String DLQ_URL = "dlq-url";
 
     @BeforeEach
     void setUp() {
         sqsListener = new SQSListener(
             amazonSQS,
-            QUEUE_URL,
-            DLQ_URL,
             messageProcessor,
             retryManager,
             dlqService,
-            visibilityManager
+            visibilityManager,
+            new ShardedQueueRouter(amazonSQS, List.of(QUEUE_URL)),
+            new ListenerMetrics(meterRegistry),
+            TestComponents.disabledCapture(),
+            TestComponents.disabledCoalescer(),
+            TestComponents.disabledInbox(),
+            TestComponents.disabledTenantScheduler(),
+            TestComponents.disabledWarmUp(),
+            TestComponents.defaultOptions()
         );
     }
 
@@ -48,7 +78,7 @@ class SQSListenerTest {
 
         sqsListener.pollMessages();
 
-        verify(messageProcessor, never()).processMessage(any(Message.class));
+        verify(messageProcessor, never()).processMessage(any(Message.class), any(ProcessingDeadline.class));
     }
 
     @Test
@@ -59,9 +89,12 @@ class SQSListenerTest {
         
         sqsListener.pollMessages();
 
-        verify(messageProcessor).processMessage(message);
+        verify(messageProcessor).processMessage(eq(message), any(ProcessingDeadline.class));
         verify(amazonSQS).deleteMessage(QUEUE_URL, message.getReceiptHandle());
         verify(retryManager).clearRetryCount(message.getMessageId());
+        assertEquals(1, meterRegistry.get("sqs.listener.messages.received").counter().count());
+        assertEquals(1, meterRegistry.get("sqs.listener.messages.acked").counter().count());
+        assertEquals(0, meterRegistry.get("sqs.listener.messages.in.flight").gauge().value());
     }
 
     @Test
@@ -70,13 +103,14 @@ class SQSListenerTest {
         when(amazonSQS.receiveMessage(any(ReceiveMessageRequest.class)))
             .thenReturn(new ReceiveMessageResult().withMessages(Arrays.asList(message)));
         doThrow(new RuntimeException("Processing failed"))
-            .when(messageProcessor).processMessage(any(Message.class));
+            .when(messageProcessor).processMessage(any(Message.class), any(ProcessingDeadline.class));
         when(retryManager.shouldRetry(anyString())).thenReturn(true);
 
         sqsListener.pollMessages();
 
         verify(retryManager).incrementRetryCount(message.getMessageId());
-        verify(visibilityManager).changeVisibility(eq(message), anyInt());
+        verify(visibilityManager).changeVisibility(eq(QUEUE_URL), eq(message), anyInt());
+        assertEquals(1, meterRegistry.get("sqs.listener.messages.retried").counter().count());
     }
 
     @Test
@@ -85,15 +119,454 @@ class SQSListenerTest {
         when(amazonSQS.receiveMessage(any(ReceiveMessageRequest.class)))
             .thenReturn(new ReceiveMessageResult().withMessages(Arrays.asList(message)));
         doThrow(new RuntimeException("Processing failed"))
-            .when(messageProcessor).processMessage(any(Message.class));
+            .when(messageProcessor).processMessage(any(Message.class), any(ProcessingDeadline.class));
         when(retryManager.shouldRetry(anyString())).thenReturn(false);
 
         sqsListener.pollMessages();
 
-        verify(dlqService).moveMessageToDLQ(eq(message), anyString());
+        verify(dlqService).moveMessageToDLQ(eq(message), anyString(), eq(QUEUE_URL));
         verify(retryManager).clearRetryCount(message.getMessageId());
     }
 
+    @Test
+    void pollMessages_WithSuccessSampling_LogsOneInNSuccessesAndEveryFailure() throws Exception {
+        sqsListener = new SQSListener(amazonSQS, messageProcessor, retryManager,
+            dlqService, visibilityManager, new ShardedQueueRouter(amazonSQS, List.of(QUEUE_URL)),
+            new ListenerMetrics(meterRegistry), TestComponents.disabledCapture(), TestComponents.disabledCoalescer(),
+            TestComponents.disabledInbox(), TestComponents.disabledTenantScheduler(), TestComponents.disabledWarmUp(),
+            TestComponents.defaultOptions().withSuccessLogOneIn(4));
+        List<Message> messages = IntStream.range(0, 10)
+            .mapToObj(i -> new Message().withMessageId("m-" + i).withReceiptHandle("rh-" + i).withBody("{}"))
+            .toList();
+        when(amazonSQS.receiveMessage(any(ReceiveMessageRequest.class)))
+            .thenReturn(new ReceiveMessageResult().withMessages(messages));
+        doAnswer(invocation -> {
+            String messageId = invocation.<Message>getArgument(0).getMessageId();
+            if ("m-3".equals(messageId) || "m-7".equals(messageId)) {
+                throw new RuntimeException("Processing failed");
+            }
+            return null;
+        }).when(messageProcessor).processMessage(any(Message.class), any(ProcessingDeadline.class));
+        when(retryManager.shouldRetry(anyString())).thenReturn(true);
+        List<LogEvent> events = new CopyOnWriteArrayList<>();
+        org.apache.logging.log4j.core.Logger logger =
+            ((LoggerContext) LogManager.getContext(false)).getLogger(SQSListener.class.getName());
+        AbstractAppender appender = new AbstractAppender("sampling-test", null, null, true, Property.EMPTY_ARRAY) {
+            @Override
+            public void append(LogEvent event) {
+                events.add(event.toImmutable());
+            }
+        };
+        appender.start();
+        logger.addAppender(appender);
+
+        try {
+            sqsListener.pollMessages();
+
+            // Loggers are asynchronous and may still deliver events of earlier tests, hence the message IDs
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (countLogged(events, Level.WARN, "Message m-") < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(100);
+        } finally {
+            logger.removeAppender(appender);
+            appender.stop();
+        }
+
+        assertEquals(2, countLogged(events, Level.INFO, "processed and deleted message: m-"));
+        assertEquals(2, countLogged(events, Level.WARN, "Message m-"));
+        assertEquals(8, meterRegistry.get("sqs.listener.messages.acked").counter().count());
+    }
+
+    private static long countLogged(List<LogEvent> events, Level level, String text) {
+        return events.stream()
+            .filter(event -> event.getLevel() == level && event.getMessage().getFormattedMessage().contains(text))
+            .count();
+    }
+
+    @Test
+    void pollMessages_WhenDeadLetteredButNotDeleted_DeletesRedeliveryWithoutProcessing() {
+        RetryManager retries = new RetryManager(1);
+        sqsListener = new SQSListener(amazonSQS, messageProcessor, retries, dlqService, visibilityManager,
+            new ShardedQueueRouter(amazonSQS, List.of(QUEUE_URL)), new ListenerMetrics(meterRegistry),
+            TestComponents.disabledCapture(), TestComponents.disabledCoalescer(), TestComponents.disabledInbox(),
+            TestComponents.disabledTenantScheduler(), TestComponents.disabledWarmUp(), TestComponents.defaultOptions());
+        Message message = createTestMessage();
+        when(amazonSQS.receiveMessage(any(ReceiveMessageRequest.class)))
+            .thenReturn(new ReceiveMessageResult().withMessages(List.of(message)));
+        doThrow(new RuntimeException("Processing failed"))
+            .when(messageProcessor).processMessage(any(Message.class), any(ProcessingDeadline.class));
+        when(dlqService.moveMessageToDLQ(eq(message), anyString(), eq(QUEUE_URL)))
+            .thenReturn(DeadLetterQueueService.MoveResult.STORED_NOT_DELETED);
+        sqsListener.setPollsPerSecond(1000);
+
+        sqsListener.pollMessages();
+        sqsListener.pollMessages();
+
+        verify(messageProcessor, times(1)).processMessage(any(Message.class), any(ProcessingDeadline.class));
+        verify(dlqService, times(1)).moveMessageToDLQ(any(Message.class), anyString(), anyString());
+        verify(visibilityManager, never()).changeVisibility(anyString(), any(Message.class), anyInt());
+        verify(amazonSQS).deleteMessage(QUEUE_URL, message.getReceiptHandle());
+        assertFalse(retries.isDeadLettered(message.getMessageId()));
+        assertEquals(1, meterRegistry.get("sqs.listener.messages.dlq").counter().count());
+    }
+
+    @Test
+    void pollMessages_WithShards_DeletesFromShardThatWasPolled() {
+        String busyShard = "queue-url-2";
+        ShardedQueueRouter router = new ShardedQueueRouter(amazonSQS, List.of(QUEUE_URL, busyShard));
+        when(amazonSQS.getQueueAttributes(any(GetQueueAttributesRequest.class))).thenAnswer(invocation -> {
+            GetQueueAttributesRequest request = invocation.getArgument(0);
+            String backlog = busyShard.equals(request.getQueueUrl()) ? "100000000" : "0";
+            return new GetQueueAttributesResult().addAttributesEntry("ApproximateNumberOfMessages", backlog);
+        });
+        router.refreshBacklog();
+        sqsListener = new SQSListener(amazonSQS, messageProcessor, retryManager,
+            dlqService, visibilityManager, router, new ListenerMetrics(meterRegistry),
+            TestComponents.disabledCapture(), TestComponents.disabledCoalescer(), TestComponents.disabledInbox(), TestComponents.disabledTenantScheduler(), TestComponents.disabledWarmUp(),
+            TestComponents.defaultOptions());
+        Message message = createTestMessage();
+        when(amazonSQS.receiveMessage(any(ReceiveMessageRequest.class)))
+            .thenReturn(new ReceiveMessageResult().withMessages(List.of(message)));
+
+        sqsListener.pollMessages();
+
+        verify(amazonSQS).receiveMessage(argThat((ReceiveMessageRequest request) -> busyShard.equals(request.getQueueUrl())));
+        verify(amazonSQS).deleteMessage(busyShard, message.getReceiptHandle());
+    }
+
+    @Test
+    void pollMessages_RecordsMessageAgeByQueueAndOutcome() {
+        long now = System.currentTimeMillis();
+        Message message = createTestMessage()
+            .addAttributesEntry("SentTimestamp", String.valueOf(now - 5000))
+            .addAttributesEntry("ApproximateFirstReceiveTimestamp", String.valueOf(now - 2000));
+        when(amazonSQS.receiveMessage(any(ReceiveMessageRequest.class)))
+            .thenReturn(new ReceiveMessageResult().withMessages(List.of(message)));
+
+        sqsListener.pollMessages();
+
+        verify(amazonSQS).receiveMessage(argThat((ReceiveMessageRequest request) ->
+            request.getAttributeNames().containsAll(List.of("SentTimestamp", "ApproximateFirstReceiveTimestamp"))));
+        Timer endToEnd = meterRegistry.get("sqs.message.end.to.end")
+            .tag("queue", QUEUE_URL).tag("outcome", "acked").timer();
+        Timer dwell = meterRegistry.get("sqs.message.queue.dwell")
+            .tag("queue", QUEUE_URL).tag("outcome", "acked").timer();
+        assertEquals(1, endToEnd.count());
+        assertTrue(endToEnd.totalTime(TimeUnit.MILLISECONDS) >= 5000);
+        assertEquals(3000, dwell.totalTime(TimeUnit.MILLISECONDS));
+        assertEquals(1, meterRegistry.get("sqs.message.processing").tag("outcome", "acked").timer().count());
+    }
+
+    @Test
+    void pollMessages_WhenDeadlineExpiresDuringProcessing_ReleasesMessageImmediately() {
+        Message message = createTestMessage();
+        when(amazonSQS.receiveMessage(any(ReceiveMessageRequest.class)))
+            .thenReturn(new ReceiveMessageResult().withMessages(List.of(message)));
+        doThrow(new MessageProcessingException(ErrorCodes.PROCESSING_DEADLINE_EXCEEDED, "POST"))
+            .when(messageProcessor).processMessage(any(Message.class), any(ProcessingDeadline.class));
+        when(retryManager.shouldRetry(anyString())).thenReturn(true);
+
+        sqsListener.pollMessages();
+
+        verify(amazonSQS).receiveMessage(argThat((ReceiveMessageRequest request) -> request.getVisibilityTimeout() == 30));
+        verify(retryManager).incrementRetryCount(message.getMessageId());
+        verify(visibilityManager).changeVisibility(QUEUE_URL, message, 0);
+        assertEquals(1, meterRegistry.get("sqs.listener.messages.expired").counter().count());
+        assertEquals(0, meterRegistry.get("sqs.listener.messages.retried").counter().count());
+    }
+
+    @Test
+    void pollMessages_WhenDeadlinePassedBeforeProcessing_ReleasesWithoutAttempt() {
+        sqsListener = new SQSListener(amazonSQS, messageProcessor, retryManager,
+            dlqService, visibilityManager, new ShardedQueueRouter(amazonSQS, List.of(QUEUE_URL)),
+            new ListenerMetrics(meterRegistry), TestComponents.disabledCapture(), TestComponents.disabledCoalescer(), TestComponents.disabledInbox(), TestComponents.disabledTenantScheduler(), TestComponents.disabledWarmUp(),
+            TestComponents.defaultOptions().withVisibilityTimeout(1, 999));
+        Message message = createTestMessage();
+        when(amazonSQS.receiveMessage(any(ReceiveMessageRequest.class))).thenAnswer(invocation -> {
+            TimeUnit.MILLISECONDS.sleep(20);
+            return new ReceiveMessageResult().withMessages(List.of(message));
+        });
+
+        sqsListener.pollMessages();
+
+        verify(messageProcessor, never()).processMessage(any(Message.class), any(ProcessingDeadline.class));
+        verify(retryManager, never()).incrementRetryCount(anyString());
+        verify(visibilityManager).changeVisibility(QUEUE_URL, message, 0);
+        assertEquals(1, meterRegistry.get("sqs.message.processing").tag("outcome", "expired").timer().count());
+    }
+
+    @Test
+    void pollMessages_WithCoalescing_ProcessesLatestAndBatchDeletesSuperseded() {
+        sqsListener = new SQSListener(amazonSQS, messageProcessor, retryManager,
+            dlqService, visibilityManager, new ShardedQueueRouter(amazonSQS, List.of(QUEUE_URL)),
+            new ListenerMetrics(meterRegistry), TestComponents.disabledCapture(),
+            new MessageCoalescer(true, "productId", "", 100, 100), TestComponents.disabledInbox(), TestComponents.disabledTenantScheduler(), TestComponents.disabledWarmUp(),
+            TestComponents.defaultOptions());
+        Message old = new Message().withMessageId("old").withReceiptHandle("rh-old")
+            .withBody("{\"productId\":\"A\",\"price\":1}");
+        Message other = new Message().withMessageId("other").withReceiptHandle("rh-other")
+            .withBody("{\"productId\":\"B\",\"price\":1}");
+        Message latest = new Message().withMessageId("latest").withReceiptHandle("rh-latest")
+            .withBody("{\"productId\":\"A\",\"price\":2}");
+        when(amazonSQS.receiveMessage(any(ReceiveMessageRequest.class)))
+            .thenReturn(new ReceiveMessageResult().withMessages(List.of(old, other)))
+            .thenReturn(new ReceiveMessageResult().withMessages(List.of(latest)))
+            .thenReturn(new ReceiveMessageResult());
+        when(amazonSQS.deleteMessageBatch(eq(QUEUE_URL), anyList())).thenReturn(new DeleteMessageBatchResult()
+            .withSuccessful(new DeleteMessageBatchResultEntry().withId("0")));
+
+        sqsListener.pollMessages();
+
+        verify(messageProcessor).processMessage(eq(other), any(ProcessingDeadline.class));
+        verify(messageProcessor).processMessage(eq(latest), any(ProcessingDeadline.class));
+        verify(messageProcessor, never()).processMessage(eq(old), any(ProcessingDeadline.class));
+        verify(amazonSQS).deleteMessageBatch(eq(QUEUE_URL), argThat((List<DeleteMessageBatchRequestEntry> entries) ->
+            entries.size() == 1 && "rh-old".equals(entries.get(0).getReceiptHandle())));
+        assertEquals(3, meterRegistry.get("sqs.listener.messages.received").counter().count());
+        assertEquals(1, meterRegistry.get("sqs.listener.messages.coalesced").counter().count());
+    }
+
+    @Test
+    void pollMessages_WithInbox_AppendsAndBatchDeletesWithoutProcessing(@TempDir Path directory) throws Exception {
+        MessageInbox inbox = new MessageInbox(true, directory.toString(), 1024 * 1024, 5000, 10000, 100, 2);
+        sqsListener = new SQSListener(amazonSQS, messageProcessor, retryManager,
+            dlqService, visibilityManager, new ShardedQueueRouter(amazonSQS, List.of(QUEUE_URL)),
+            new ListenerMetrics(meterRegistry), TestComponents.disabledCapture(), TestComponents.disabledCoalescer(),
+            inbox, TestComponents.disabledTenantScheduler(), TestComponents.disabledWarmUp(), TestComponents.defaultOptions());
+        Message message = createTestMessage();
+        when(amazonSQS.receiveMessage(any(ReceiveMessageRequest.class)))
+            .thenReturn(new ReceiveMessageResult().withMessages(List.of(message)));
+        when(amazonSQS.deleteMessageBatch(eq(QUEUE_URL), anyList())).thenReturn(new DeleteMessageBatchResult()
+            .withSuccessful(new DeleteMessageBatchResultEntry().withId("0")));
+
+        try {
+            sqsListener.pollMessages();
+
+            verify(messageProcessor, never()).processMessage(any(Message.class), any(ProcessingDeadline.class));
+            verify(amazonSQS).deleteMessageBatch(eq(QUEUE_URL), argThat((List<DeleteMessageBatchRequestEntry> entries) ->
+                entries.size() == 1 && "test-receipt".equals(entries.get(0).getReceiptHandle())));
+            assertEquals(1, inbox.getPendingCount());
+
+            drainInboxUntilPending(inbox, 0);
+
+            verify(messageProcessor).processMessage(argThat((Message processed) ->
+                "test-message-id".equals(processed.getMessageId())), eq(ProcessingDeadline.none()));
+            verify(amazonSQS, never()).deleteMessage(anyString(), anyString());
+            assertEquals(0, inbox.getPendingCount());
+            assertTrue(inbox.readPending(10).isEmpty());
+        } finally {
+            sqsListener.close();
+            inbox.close();
+        }
+    }
+
+    @Test
+    void drainInbox_WhenRetriesExhausted_SendsToDLQWithoutDeletingFromQueue(@TempDir Path directory) throws Exception {
+        MessageInbox inbox = new MessageInbox(true, directory.toString(), 1024 * 1024, 5000, 10000, 100, 2);
+        sqsListener = new SQSListener(amazonSQS, messageProcessor, retryManager,
+            dlqService, visibilityManager, new ShardedQueueRouter(amazonSQS, List.of(QUEUE_URL)),
+            new ListenerMetrics(meterRegistry), TestComponents.disabledCapture(), TestComponents.disabledCoalescer(),
+            inbox, TestComponents.disabledTenantScheduler(), TestComponents.disabledWarmUp(),
+            TestComponents.defaultOptions().withInboxRetryDelayMs(0));
+        inbox.append(QUEUE_URL, List.of(createTestMessage()));
+        doThrow(new MessageProcessingException(ErrorCodes.API_CONNECTION_ERROR, "down"))
+            .when(messageProcessor).processMessage(any(Message.class), any(ProcessingDeadline.class));
+        when(retryManager.shouldRetry(anyString())).thenReturn(true, false);
+        when(dlqService.sendToDLQ(any(Message.class), anyString())).thenReturn(true);
+
+        try {
+            drainInboxUntilPending(inbox, 0);
+
+            verify(messageProcessor, times(2)).processMessage(any(Message.class), any(ProcessingDeadline.class));
+            verify(dlqService).sendToDLQ(any(Message.class), eq("Exceeded maximum retry attempts"));
+            verify(dlqService, never()).moveMessageToDLQ(any(Message.class), anyString(), anyString());
+            assertEquals(0, inbox.getPendingCount());
+            assertEquals(1, meterRegistry.get("sqs.message.processing").tag("outcome", "dead_lettered").timer().count());
+        } finally {
+            sqsListener.close();
+            inbox.close();
+        }
+    }
+
+    @Test
+    void drainInbox_WhenMessageKeepsFailing_ProcessesLaterMessagesAndKeepsCheckpoint(@TempDir Path directory)
+            throws Exception {
+        MessageInbox inbox = new MessageInbox(true, directory.toString(), 1024 * 1024, 5000, 10000, 100, 2);
+        sqsListener = new SQSListener(amazonSQS, messageProcessor, retryManager,
+            dlqService, visibilityManager, new ShardedQueueRouter(amazonSQS, List.of(QUEUE_URL)),
+            new ListenerMetrics(meterRegistry), TestComponents.disabledCapture(), TestComponents.disabledCoalescer(),
+            inbox, TestComponents.disabledTenantScheduler(), TestComponents.disabledWarmUp(),
+            TestComponents.defaultOptions().withInboxRetryDelayMs(TimeUnit.MINUTES.toMillis(10)));
+        Message failing = new Message().withMessageId("failing").withBody("{}");
+        Message later = new Message().withMessageId("later").withBody("{}");
+        inbox.append(QUEUE_URL, List.of(failing, later));
+        doAnswer(invocation -> {
+            if ("failing".equals(invocation.<Message>getArgument(0).getMessageId())) {
+                throw new MessageProcessingException(ErrorCodes.API_CONNECTION_ERROR, "down");
+            }
+            return null;
+        }).when(messageProcessor).processMessage(any(Message.class), any(ProcessingDeadline.class));
+        when(retryManager.shouldRetry("failing")).thenReturn(true);
+
+        try {
+            sqsListener.drainInbox();
+            verify(messageProcessor, timeout(5000)).processMessage(argThat((Message m) ->
+                m != null && "later".equals(m.getMessageId())), any(ProcessingDeadline.class));
+            verify(retryManager, timeout(5000)).shouldRetry("failing");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (meterRegistry.get("sqs.listener.messages.acked").counter().count() < 1
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            for (int i = 0; i < 3; i++) {
+                sqsListener.drainInbox();
+                Thread.sleep(10);
+            }
+
+            verify(messageProcessor, times(2)).processMessage(any(Message.class), any(ProcessingDeadline.class));
+            verify(retryManager).clearRetryCount("later");
+            assertEquals(1, meterRegistry.get("sqs.listener.messages.acked").counter().count());
+            assertEquals(2, inbox.getPendingCount());
+            assertEquals("failing", inbox.decode(inbox.readPending(10).records().get(0)).messageId());
+        } finally {
+            sqsListener.close();
+            inbox.close();
+        }
+    }
+
+    private void drainInboxUntilPending(MessageInbox inbox, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (inbox.getPendingCount() != expected && System.nanoTime() < deadline) {
+            sqsListener.drainInbox();
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void pollMessages_WithTenantScheduling_ProcessesOnSchedulerWorkers() throws Exception {
+        TenantScheduler scheduler = new TenantScheduler(true, "tenant", "", 1, 1, 100, 2);
+        sqsListener = new SQSListener(amazonSQS, messageProcessor, retryManager,
+            dlqService, visibilityManager, new ShardedQueueRouter(amazonSQS, List.of(QUEUE_URL)),
+            new ListenerMetrics(meterRegistry), TestComponents.disabledCapture(), TestComponents.disabledCoalescer(),
+            TestComponents.disabledInbox(), scheduler, TestComponents.disabledWarmUp(), TestComponents.defaultOptions());
+        Message message = createTestMessage();
+        when(amazonSQS.receiveMessage(any(ReceiveMessageRequest.class)))
+            .thenReturn(new ReceiveMessageResult().withMessages(List.of(message)));
+
+        try {
+            sqsListener.pollMessages();
+
+            verify(amazonSQS).receiveMessage(argThat((ReceiveMessageRequest request) ->
+                request.getMessageAttributeNames().contains("tenant")));
+            verify(amazonSQS, timeout(5000)).deleteMessage(QUEUE_URL, message.getReceiptHandle());
+        } finally {
+            scheduler.close();
+        }
+    }
+
+    @Test
+    void pollMessages_BeforeWarmUpFinished_DoesNotPoll() {
+        ListenerWarmUp warmUp = new ListenerWarmUp(true, messageProcessor, amazonSQS,
+            new ListenerMetrics(meterRegistry), QUEUE_URL, 10, 1, 1000);
+        sqsListener = new SQSListener(amazonSQS, messageProcessor, retryManager,
+            dlqService, visibilityManager, new ShardedQueueRouter(amazonSQS, List.of(QUEUE_URL)),
+            new ListenerMetrics(meterRegistry), TestComponents.disabledCapture(), TestComponents.disabledCoalescer(),
+            TestComponents.disabledInbox(), TestComponents.disabledTenantScheduler(), warmUp, TestComponents.defaultOptions());
+
+        sqsListener.pollMessages();
+        verify(amazonSQS, never()).receiveMessage(any(ReceiveMessageRequest.class));
+
+        when(amazonSQS.receiveMessage(any(ReceiveMessageRequest.class)))
+            .thenReturn(new ReceiveMessageResult().withMessages(Collections.emptyList()));
+        warmUp.run(null);
+        sqsListener.pollMessages();
+
+        verify(amazonSQS).receiveMessage(any(ReceiveMessageRequest.class));
+    }
+
+    @Test
+    void pollMessages_WhenPaused_ReceivesNothingUntilResumed() {
+        when(amazonSQS.receiveMessage(any(ReceiveMessageRequest.class)))
+            .thenReturn(new ReceiveMessageResult().withMessages(Collections.emptyList()));
+
+        sqsListener.pause();
+        sqsListener.pollMessages();
+        verify(amazonSQS, never()).receiveMessage(any(ReceiveMessageRequest.class));
+
+        sqsListener.resume();
+        sqsListener.pollMessages();
+        verify(amazonSQS).receiveMessage(any(ReceiveMessageRequest.class));
+    }
+
+    @Test
+    void pollMessages_RequestsConfiguredMessagesPerPoll() {
+        when(amazonSQS.receiveMessage(any(ReceiveMessageRequest.class)))
+            .thenReturn(new ReceiveMessageResult().withMessages(Collections.emptyList()));
+
+        sqsListener.setMaxMessagesPerPoll(3);
+        sqsListener.pollMessages();
+
+        verify(amazonSQS).receiveMessage(argThat((ReceiveMessageRequest request) -> request.getMaxNumberOfMessages() == 3));
+    }
+
+    @Test
+    void setMaxMessagesPerPoll_RejectsMoreThanSqsReturns() {
+        assertThrows(IllegalArgumentException.class, () -> sqsListener.setMaxMessagesPerPoll(11));
+        assertEquals(10, sqsListener.getMaxMessagesPerPoll());
+    }
+
+    @Test
+    void start_PollersPollUntilStopped() {
+        when(amazonSQS.receiveMessage(any(ReceiveMessageRequest.class)))
+            .thenReturn(new ReceiveMessageResult().withMessages(Collections.emptyList()));
+        sqsListener.setPollDelayMs(10);
+        sqsListener.setPollerCount(2);
+
+        sqsListener.start();
+        try {
+            assertTrue(sqsListener.isRunning());
+            verify(amazonSQS, timeout(5000).atLeast(4)).receiveMessage(any(ReceiveMessageRequest.class));
+        } finally {
+            sqsListener.stop();
+        }
+        assertFalse(sqsListener.isRunning());
+    }
+
+    @Test
+    void start_WithInbox_DrainsOnItsOwnThreadUntilStopped(@TempDir Path directory) throws Exception {
+        MessageInbox inbox = new MessageInbox(true, directory.toString(), 1024 * 1024, 5000, 10000, 10, 2);
+        sqsListener = new SQSListener(amazonSQS, messageProcessor, retryManager,
+            dlqService, visibilityManager, new ShardedQueueRouter(amazonSQS, List.of(QUEUE_URL)),
+            new ListenerMetrics(meterRegistry), TestComponents.disabledCapture(), TestComponents.disabledCoalescer(),
+            inbox, TestComponents.disabledTenantScheduler(), TestComponents.disabledWarmUp(), TestComponents.defaultOptions());
+        when(amazonSQS.receiveMessage(any(ReceiveMessageRequest.class)))
+            .thenReturn(new ReceiveMessageResult().withMessages(Collections.emptyList()));
+        inbox.append(QUEUE_URL, List.of(createTestMessage()));
+
+        try {
+            sqsListener.start();
+            try {
+                verify(messageProcessor, timeout(5000)).processMessage(any(Message.class), eq(ProcessingDeadline.none()));
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (inbox.getPendingCount() != 0 && System.nanoTime() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertEquals(0, inbox.getPendingCount());
+            } finally {
+                sqsListener.stop();
+            }
+            inbox.append(QUEUE_URL, List.of(createTestMessage()));
+            Thread.sleep(100);
+            verify(messageProcessor).processMessage(any(Message.class), any(ProcessingDeadline.class));
+            assertEquals(1, inbox.getPendingCount());
+        } finally {
+            sqsListener.close();
+            inbox.close();
+        }
+    }
+
     private Message createTestMessage() {
         return new Message()
             .withMessageId("test-message-id")
@@ -0,0 +1,42 @@
+package com.learning.demo_sqslistener.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SendAdmissionLimiterTest {
+
+    private SendAdmissionLimiter admissionLimiter;
+
+    @BeforeEach
+    void setUp() {
+        admissionLimiter = new SendAdmissionLimiter(2, 3);
+    }
+
+    @Test
+    void tryAcquire_BelowLimit_Admits() {
+        assertTrue(admissionLimiter.tryAcquire());
+        assertTrue(admissionLimiter.tryAcquire());
+        assertEquals(2, admissionLimiter.getInFlight());
+    }
+
+    @Test
+    void tryAcquire_AtLimit_Rejects() {
+        admissionLimiter.tryAcquire();
+        admissionLimiter.tryAcquire();
+
+        assertFalse(admissionLimiter.tryAcquire());
+        assertEquals(1, admissionLimiter.getRejectedCount());
+    }
+
+    @Test
+    void release_FreesCapacity() {
+        admissionLimiter.tryAcquire();
+        admissionLimiter.tryAcquire();
+        admissionLimiter.release();
+
+        assertTrue(admissionLimiter.tryAcquire());
+        assertEquals(3, admissionLimiter.getRetryAfterSeconds());
+    }
+}
@@ -0,0 +1,93 @@
+package com.learning.demo_sqslistener.service;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.GetQueueAttributesRequest;
+import com.amazonaws.services.sqs.model.GetQueueAttributesResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ShardedQueueRouterTest {
+
+    private static final List<String> SHARDS = List.of("shard-0", "shard-1", "shard-2");
+
+    @Mock
+    private AmazonSQS amazonSQS;
+
+    @Test
+    void shardFor_SameKey_AlwaysSameShard() {
+        ShardedQueueRouter router = new ShardedQueueRouter(amazonSQS, SHARDS);
+
+        String shard = router.shardFor("customer-42");
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(shard, router.shardFor("customer-42"));
+        }
+    }
+
+    @Test
+    void shardFor_AddingShard_MovesOnlySomeKeys() {
+        ShardedQueueRouter three = new ShardedQueueRouter(amazonSQS, SHARDS);
+        ShardedQueueRouter four = new ShardedQueueRouter(amazonSQS,
+            List.of("shard-0", "shard-1", "shard-2", "shard-3"));
+
+        int moved = 0;
+        for (int i = 0; i < 1000; i++) {
+            String before = three.shardFor("key-" + i);
+            String after = four.shardFor("key-" + i);
+            if (!before.equals(after)) {
+                assertEquals("shard-3", after);
+                moved++;
+            }
+        }
+        assertTrue(moved > 150 && moved < 350, "moved " + moved);
+    }
+
+    @Test
+    void shardFor_NoKey_SpreadsRoundRobin() {
+        ShardedQueueRouter router = new ShardedQueueRouter(amazonSQS, SHARDS);
+
+        Set<String> used = new HashSet<>();
+        for (int i = 0; i < SHARDS.size(); i++) {
+            used.add(router.shardFor(null));
+        }
+
+        assertEquals(Set.copyOf(SHARDS), used);
+    }
+
+    @Test
+    void nextShardToPoll_FollowsBacklog() {
+        ShardedQueueRouter router = new ShardedQueueRouter(amazonSQS, SHARDS);
+        when(amazonSQS.getQueueAttributes(any(GetQueueAttributesRequest.class))).thenAnswer(invocation -> {
+            GetQueueAttributesRequest request = invocation.getArgument(0);
+            String backlog = "shard-1".equals(request.getQueueUrl()) ? "100000000" : "0";
+            return new GetQueueAttributesResult().addAttributesEntry("ApproximateNumberOfMessages", backlog);
+        });
+
+        router.refreshBacklog();
+
+        assertEquals(100000000L, router.getBacklog("shard-1"));
+        assertEquals("shard-1", router.nextShardToPoll());
+    }
+
+    @Test
+    void singleShard_NeverQueriesBacklog() {
+        ShardedQueueRouter router = new ShardedQueueRouter(amazonSQS, List.of("queue-url"));
+
+        router.refreshBacklog();
+
+        assertEquals("queue-url", router.nextShardToPoll());
+        assertEquals("queue-url", router.shardFor("any-key"));
+        verifyNoInteractions(amazonSQS);
+    }
+}
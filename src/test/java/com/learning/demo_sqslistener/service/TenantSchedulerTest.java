@@ -0,0 +1,132 @@
+package com.learning.demo_sqslistener.service;
+
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.MessageAttributeValue;
+import com.learning.demo_sqslistener.TestComponents;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TenantSchedulerTest {
+
+    private TenantScheduler scheduler;
+
+    @AfterEach
+    void tearDown() {
+        if (scheduler != null) {
+            scheduler.close();
+        }
+    }
+
+    @Test
+    void submit_ServesTenantsInProportionToTheirWeights() throws InterruptedException {
+        scheduler = new TenantScheduler(true, "tenant", "big:3", 1, 2, 100, 1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(8);
+        scheduler.submit("gate", () -> await(gate));
+        for (int i = 0; i < 6; i++) {
+            scheduler.submit("big", () -> { order.add("big"); done.countDown(); });
+        }
+        for (int i = 0; i < 2; i++) {
+            scheduler.submit("small", () -> { order.add("small"); done.countDown(); });
+        }
+
+        gate.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("big", "big", "big", "small", "big", "big", "big", "small"), order);
+    }
+
+    @Test
+    void submit_LimitsInFlightWorkPerTenant() throws InterruptedException {
+        scheduler = new TenantScheduler(true, "tenant", "", 1, 1, 100, 2);
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        CountDownLatch otherTenantDone = new CountDownLatch(1);
+        scheduler.submit("noisy", () -> { firstStarted.countDown(); await(releaseFirst); });
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        scheduler.submit("noisy", secondStarted::countDown);
+        scheduler.submit("quiet", otherTenantDone::countDown);
+
+        assertTrue(otherTenantDone.await(5, TimeUnit.SECONDS));
+        assertFalse(secondStarted.await(100, TimeUnit.MILLISECONDS));
+
+        releaseFirst.countDown();
+        assertTrue(secondStarted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void isSaturated_WhenQueuedReachesLimit() throws InterruptedException {
+        scheduler = new TenantScheduler(true, "tenant", "", 1, 1, 2, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        scheduler.submit("a", () -> { started.countDown(); await(gate); });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        scheduler.submit("a", () -> { });
+        assertFalse(scheduler.isSaturated());
+        scheduler.submit("a", () -> { });
+
+        assertTrue(scheduler.isSaturated());
+        gate.countDown();
+    }
+
+    @Test
+    void setWorkerCount_ChangesHowManyTasksRunAtOnce() throws InterruptedException {
+        scheduler = new TenantScheduler(true, "tenant", "", 1, 10, 100, 1);
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            scheduler.submit("a", () -> { started.countDown(); await(gate); });
+        }
+        assertFalse(started.await(100, TimeUnit.MILLISECONDS));
+
+        scheduler.setWorkerCount(3);
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        scheduler.setWorkerCount(1);
+        assertEquals(1, scheduler.getWorkerCount());
+        gate.countDown();
+        CountDownLatch afterShrink = new CountDownLatch(1);
+        scheduler.submit("a", afterShrink::countDown);
+        assertTrue(afterShrink.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void setWorkerCount_WhenDisabled_Throws() {
+        assertThrows(IllegalStateException.class, () -> TestComponents.disabledTenantScheduler().setWorkerCount(2));
+    }
+
+    @Test
+    void tenantOf_ReadsMessageAttributeWithDefault() {
+        scheduler = TestComponents.disabledTenantScheduler();
+        Message tagged = new Message().withMessageAttributes(Map.of("tenant",
+            new MessageAttributeValue().withDataType("String").withStringValue("acme")));
+
+        assertEquals("acme", scheduler.tenantOf(tagged));
+        assertEquals(TenantScheduler.DEFAULT_TENANT, scheduler.tenantOf(new Message()));
+    }
+
+    @Test
+    void parseWeights_RejectsInvalidEntries() {
+        assertEquals(Map.of("a", 3, "b", 1), TenantScheduler.parseWeights(" a:3, b:1 "));
+        assertThrows(IllegalArgumentException.class, () -> TenantScheduler.parseWeights("a:0"));
+        assertThrows(IllegalArgumentException.class, () -> TenantScheduler.parseWeights("a"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
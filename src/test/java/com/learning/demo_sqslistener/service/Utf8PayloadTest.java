@@ -0,0 +1,84 @@
+package com.learning.demo_sqslistener.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Utf8PayloadTest {
+
+    private static final int LIMIT = MessageProcessor.MAX_MESSAGE_SIZE;
+
+    @Test
+    void encode_MatchesStringGetBytes() {
+        String body = "{\"name\":\"café ☕ 𝄞\",\"lone\":\"\uD800x\"}";
+
+        Utf8Payload payload = Utf8Payload.encode(body, LIMIT);
+
+        byte[] expected = body.getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected.length, payload.length());
+        assertEquals(new String(expected, StandardCharsets.UTF_8), payload.asString());
+    }
+
+    @Test
+    void encode_WhenBytesExceedLimit_Throws() {
+        assertDoesNotThrow(() -> Utf8Payload.encode("é".repeat(5), 10));
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+            () -> Utf8Payload.encode("é".repeat(6), 10));
+        assertEquals("Message size 12 exceeds limit of 10 bytes", exception.getMessage());
+    }
+
+    @Test
+    void sanitize_RemovesScriptsAndTags() {
+        assertEquals("{\"a\":\"bold and \"}",
+            sanitize("{\"a\":\"<b>bold</b> and <script>alert('x')</script>\"}"));
+        assertEquals("\nalert(1)", sanitize("<script>\nalert(1)</script>"));
+        assertEquals("a < b", sanitize("a < b"));
+    }
+
+    @Test
+    void sanitize_MatchesRegularExpressions() {
+        String[] atoms = {"<", ">", "<script>", "</script>", "a", "é", "☕", "\n", "\r", "\u0085", " ",
+            " ", "script", "/", " "};
+        Random random = new Random(42);
+        for (int run = 0; run < 20_000; run++) {
+            StringBuilder body = new StringBuilder();
+            int atomsInBody = random.nextInt(12);
+            for (int i = 0; i < atomsInBody; i++) {
+                body.append(atoms[random.nextInt(atoms.length)]);
+            }
+            String input = body.toString();
+            String expected = input.replaceAll("<script>.*?</script>", "").replaceAll("<.*?>", "");
+            assertEquals(expected, sanitize(input), () -> "input: " + input);
+        }
+    }
+
+    @Test
+    void validateJson_AcceptsWhatReadTreeAccepts() throws IOException {
+        JsonFactory factory = new JsonFactory();
+        Utf8Payload.encode("{\"a\":[1,{\"b\":null}]}", LIMIT).validateJson(factory);
+        Utf8Payload.encode("", LIMIT).validateJson(factory);
+        Utf8Payload.encode("42", LIMIT).validateJson(factory);
+
+        assertThrows(IOException.class, () -> Utf8Payload.encode("{name: x}", LIMIT).validateJson(factory));
+        assertThrows(IOException.class, () -> Utf8Payload.encode("{\"a\":1", LIMIT).validateJson(factory));
+    }
+
+    @Test
+    void copy_IsIndependentOfPooledBuffer() {
+        Utf8Payload copy = Utf8Payload.encode("{\"first\":1}", LIMIT).copy();
+
+        Utf8Payload.encode("{\"second\":2}", LIMIT);
+
+        assertEquals("{\"first\":1}", copy.asString());
+        assertEquals(11, copy.contentLength());
+    }
+
+    private static String sanitize(String input) {
+        return Utf8Payload.encode(input, LIMIT).sanitize().asString();
+    }
+}